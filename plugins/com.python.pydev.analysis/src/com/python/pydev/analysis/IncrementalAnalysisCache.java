@@ -0,0 +1,539 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Attribute;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Global;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Lambda;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.aliasType;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.parser.visitors.NodeUtils;
+import org.python.pydev.shared_core.cache.LRUCache;
+
+import com.python.pydev.analysis.messages.IMessage;
+import com.python.pydev.analysis.messages.ShiftedMessage;
+
+/**
+ * Keeps the messages generated for the top-level definitions (ClassDef/FunctionDef) of the last analysis of a
+ * module, so that a new analysis may skip the definitions which didn't change and reuse their messages (moved to
+ * the new lines).
+ *
+ * A definition which didn't change (same text) is still analyzed if it references or defines some name which is
+ * bound by a top-level statement which changed (i.e.: was added, removed or edited). If a changed statement has a
+ * wild import or a global statement, everything is analyzed again.
+ */
+public final class IncrementalAnalysisCache {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * Only the modules being edited are expected to be here.
+     */
+    private static final int MAX_MODULES = 20;
+
+    private static final LRUCache<String, List<TopLevelStatement>> cache = new LRUCache<String, List<TopLevelStatement>>(
+            MAX_MODULES);
+
+    private static final Object lock = new Object();
+
+    private IncrementalAnalysisCache() {
+    }
+
+    /**
+     * Information on a statement in the module level.
+     */
+    public static final class TopLevelStatement {
+
+        /**
+         * Only available during the analysis (not kept in the cache).
+         */
+        private SimpleNode node;
+
+        private final String text;
+
+        /**
+         * Starts at 1 (includes the decorators).
+         */
+        private final int startLine;
+
+        /**
+         * Starts at 1 (includes anything up to the next statement).
+         */
+        private final int endLine;
+
+        private final boolean isDefinition;
+
+        /**
+         * Names bound at the module level.
+         */
+        private final Set<String> boundNames = new HashSet<String>();
+
+        /**
+         * Names (not dotted) referenced.
+         */
+        private final Set<String> referencedNames = new HashSet<String>();
+
+        /**
+         * Names (dotted) referenced.
+         */
+        private final Set<String> referencedReps = new HashSet<String>();
+
+        private boolean hasGlobal;
+
+        private boolean hasWildImport;
+
+        /**
+         * Messages (with lines relative to the start of the statement).
+         */
+        private List<ShiftedMessage> messages;
+
+        private TopLevelStatement(SimpleNode node, String text, int startLine, int endLine) {
+            this.node = node;
+            this.text = text;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.isDefinition = node instanceof FunctionDef || node instanceof ClassDef;
+        }
+    }
+
+    /**
+     * Collects the names bound/referenced in a top-level statement.
+     */
+    private static final class NamesCollector extends VisitorBase {
+
+        private final TopLevelStatement statement;
+
+        /**
+         * Whether we're inside some definition (in which case names are not bound in the module level).
+         */
+        private int level;
+
+        private NamesCollector(TopLevelStatement statement, int level) {
+            this.statement = statement;
+            this.level = level;
+        }
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+
+        @Override
+        public Object visitName(Name node) throws Exception {
+            statement.referencedNames.add(node.id);
+            statement.referencedReps.add(node.id);
+            if (level == 0 && (node.ctx == Name.Store || node.ctx == Name.Del || node.ctx == Name.AugStore)) {
+                statement.boundNames.add(node.id);
+            }
+            return null;
+        }
+
+        @Override
+        public Object visitAttribute(Attribute node) throws Exception {
+            String rep = NodeUtils.getFullRepresentationString(node);
+            if (rep != null) {
+                statement.referencedReps.add(rep);
+            }
+            node.traverse(this);
+            return null;
+        }
+
+        @Override
+        public Object visitFunctionDef(FunctionDef node) throws Exception {
+            if (level == 0) {
+                statement.boundNames.add(NodeUtils.getRepresentationString(node));
+            }
+            level++;
+            node.traverse(this);
+            level--;
+            return null;
+        }
+
+        @Override
+        public Object visitClassDef(ClassDef node) throws Exception {
+            if (level == 0) {
+                statement.boundNames.add(NodeUtils.getRepresentationString(node));
+            }
+            level++;
+            node.traverse(this);
+            level--;
+            return null;
+        }
+
+        @Override
+        public Object visitLambda(Lambda node) throws Exception {
+            level++;
+            node.traverse(this);
+            level--;
+            return null;
+        }
+
+        @Override
+        public Object visitGlobal(Global node) throws Exception {
+            statement.hasGlobal = true;
+            return null;
+        }
+
+        @Override
+        public Object visitImport(Import node) throws Exception {
+            if (level == 0 && node.names != null) {
+                for (aliasType alias : node.names) {
+                    addImportAlias(alias, true);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object visitImportFrom(ImportFrom node) throws Exception {
+            if (node.names == null || node.names.length == 0) {
+                statement.hasWildImport = true;
+            } else if (level == 0) {
+                for (aliasType alias : node.names) {
+                    addImportAlias(alias, false);
+                }
+            }
+            return null;
+        }
+
+        private void addImportAlias(aliasType alias, boolean isImport) {
+            if (alias.asname != null) {
+                statement.boundNames.add(((NameTok) alias.asname).id);
+            } else if (alias.name != null) {
+                String name = ((NameTok) alias.name).id;
+                if (isImport) {
+                    //import a.b binds 'a'
+                    int i = name.indexOf('.');
+                    if (i != -1) {
+                        name = name.substring(0, i);
+                    }
+                }
+                statement.boundNames.add(name);
+            }
+        }
+    }
+
+    /**
+     * What should be done in a new analysis of a module.
+     */
+    public static final class Plan {
+
+        /**
+         * The nodes which don't need to be visited (compared by identity).
+         */
+        public final Set<SimpleNode> definitionsToSkip = Collections
+                .newSetFromMap(new IdentityHashMap<SimpleNode, Boolean>());
+
+        /**
+         * The names referenced in the definitions to skip.
+         */
+        public final Set<String> referencedReps = new HashSet<String>();
+
+        private final List<IMessage> cachedMessages = new ArrayList<IMessage>();
+
+        /**
+         * Ranges of lines (start, end) of the skipped definitions.
+         */
+        private final List<int[]> skippedRanges = new ArrayList<int[]>();
+
+        private int reanalyzedDefinitions;
+
+        /**
+         * @return the messages gotten in the new analysis (discarding the ones in the skipped definitions) along with
+         * the messages from the previous analysis for the skipped definitions.
+         */
+        public List<IMessage> merge(List<IMessage> newMessages, IDocument doc) {
+            List<IMessage> ret = new ArrayList<IMessage>(newMessages.size() + cachedMessages.size());
+            for (IMessage message : newMessages) {
+                if (!isInSkippedRange(message.getStartLine(doc))) {
+                    ret.add(message);
+                }
+            }
+            ret.addAll(cachedMessages);
+            return ret;
+        }
+
+        private boolean isInSkippedRange(int line) {
+            for (int[] range : skippedRanges) {
+                if (line >= range[0] && line <= range[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return the statements in the module level of the given ast or null if it wasn't possible to get them.
+     */
+    public static List<TopLevelStatement> computeStatements(SimpleNode ast, String contents) {
+        if (!(ast instanceof Module)) {
+            return null;
+        }
+        stmtType[] body = ((Module) ast).body;
+        if (body == null) {
+            return null;
+        }
+
+        //Line starts (lines start at 1).
+        List<Integer> lineStarts = new ArrayList<Integer>();
+        lineStarts.add(0);
+        int len = contents.length();
+        for (int i = 0; i < len; i++) {
+            char c = contents.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < len && contents.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStarts.add(i + 1);
+            } else if (c == '\n') {
+                lineStarts.add(i + 1);
+            }
+        }
+        int numberOfLines = lineStarts.size();
+
+        List<TopLevelStatement> ret = new ArrayList<TopLevelStatement>(body.length);
+        int[] starts = new int[body.length];
+        for (int i = 0; i < body.length; i++) {
+            stmtType stmt = body[i];
+            if (stmt == null) {
+                return null;
+            }
+            int start = i == 0 ? 1 : getStartLine(stmt);
+            if (start < 1 || start > numberOfLines || (i > 0 && start <= starts[i - 1])) {
+                return null; //Something is not right (i.e.: the document changed).
+            }
+            starts[i] = start;
+        }
+
+        try {
+            for (int i = 0; i < body.length; i++) {
+                int start = starts[i];
+                int end = i + 1 < body.length ? starts[i + 1] - 1 : numberOfLines;
+                int startOffset = lineStarts.get(start - 1);
+                int endOffset = end < numberOfLines ? lineStarts.get(end) : len;
+                TopLevelStatement statement = new TopLevelStatement(body[i], contents.substring(startOffset,
+                        endOffset), start, end);
+
+                NamesCollector collector;
+                if (statement.isDefinition) {
+                    statement.boundNames.add(NodeUtils.getRepresentationString(body[i]));
+                    collector = new NamesCollector(statement, 1);
+                    body[i].traverse(collector);
+                } else {
+                    collector = new NamesCollector(statement, 0);
+                    body[i].accept(collector);
+                }
+                ret.add(statement);
+            }
+        } catch (Exception e) {
+            Log.log(e);
+            return null;
+        }
+        return ret;
+    }
+
+    private static int getStartLine(stmtType stmt) {
+        int start = stmt.beginLine;
+        decoratorsType[] decs = null;
+        if (stmt instanceof FunctionDef) {
+            decs = ((FunctionDef) stmt).decs;
+        } else if (stmt instanceof ClassDef) {
+            decs = ((ClassDef) stmt).decs;
+        }
+        if (decs != null) {
+            for (decoratorsType dec : decs) {
+                if (dec != null) {
+                    if (dec.beginLine > 0 && dec.beginLine < start) {
+                        start = dec.beginLine;
+                    }
+                    if (dec.func != null && dec.func.beginLine > 0 && dec.func.beginLine < start) {
+                        start = dec.func.beginLine;
+                    }
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return a plan for reusing the information from the previous analysis (or null if there's no information
+     * available or if the module must be fully analyzed).
+     */
+    public static Plan createPlan(String key, List<TopLevelStatement> statements) {
+        List<TopLevelStatement> previous;
+        synchronized (lock) {
+            previous = cache.getObj(key);
+        }
+        if (previous == null) {
+            return null;
+        }
+
+        //Match the statements by text.
+        Map<String, LinkedList<TopLevelStatement>> previousByText = new HashMap<String, LinkedList<TopLevelStatement>>();
+        for (TopLevelStatement statement : previous) {
+            LinkedList<TopLevelStatement> list = previousByText.get(statement.text);
+            if (list == null) {
+                list = new LinkedList<TopLevelStatement>();
+                previousByText.put(statement.text, list);
+            }
+            list.add(statement);
+        }
+
+        Map<TopLevelStatement, TopLevelStatement> newToPrevious = new IdentityHashMap<TopLevelStatement, TopLevelStatement>();
+        Set<String> changedNames = new HashSet<String>();
+        for (TopLevelStatement statement : statements) {
+            LinkedList<TopLevelStatement> list = previousByText.get(statement.text);
+            if (list != null && list.size() > 0) {
+                newToPrevious.put(statement, list.removeFirst());
+            } else {
+                //Added or changed.
+                if (statement.hasGlobal || statement.hasWildImport) {
+                    return null;
+                }
+                changedNames.addAll(statement.boundNames);
+            }
+        }
+        for (LinkedList<TopLevelStatement> list : previousByText.values()) {
+            for (TopLevelStatement statement : list) {
+                //Removed or changed.
+                if (statement.hasGlobal || statement.hasWildImport) {
+                    return null;
+                }
+                changedNames.addAll(statement.boundNames);
+            }
+        }
+
+        Plan plan = new Plan();
+        for (TopLevelStatement statement : statements) {
+            if (!statement.isDefinition) {
+                continue;
+            }
+            TopLevelStatement previousStatement = newToPrevious.get(statement);
+            if (previousStatement == null || previousStatement.messages == null) {
+                plan.reanalyzedDefinitions++;
+                continue;
+            }
+            if (intersects(statement.referencedNames, changedNames)
+                    || intersects(statement.boundNames, changedNames)) {
+                plan.reanalyzedDefinitions++;
+                continue;
+            }
+            plan.definitionsToSkip.add(statement.node);
+            plan.referencedReps.addAll(statement.referencedReps);
+            plan.skippedRanges.add(new int[] { statement.startLine, statement.endLine });
+            for (ShiftedMessage message : previousStatement.messages) {
+                plan.cachedMessages.add(message.shift(statement.startLine - 1));
+            }
+        }
+        if (DEBUG) {
+            System.out.println("Incremental analysis: " + key + " - skipped: " + plan.definitionsToSkip.size()
+                    + " - analyzed: " + plan.reanalyzedDefinitions + " - changed names: " + changedNames);
+        }
+        if (plan.definitionsToSkip.size() == 0) {
+            return null;
+        }
+        return plan;
+    }
+
+    private static boolean intersects(Set<String> s1, Set<String> s2) {
+        if (s1.size() > s2.size()) {
+            Set<String> temp = s1;
+            s1 = s2;
+            s2 = temp;
+        }
+        for (String s : s1) {
+            if (s2.contains(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the messages related to the definitions in the given statements (only the messages from the scope
+     * analysis should be passed: messages which are computed for the whole document shouldn't be passed).
+     */
+    public static void store(String key, List<TopLevelStatement> statements, List<IMessage> messages, IDocument doc) {
+        for (TopLevelStatement statement : statements) {
+            statement.node = null; //Don't keep the AST in the cache.
+            if (statement.isDefinition) {
+                statement.messages = new ArrayList<ShiftedMessage>(0);
+            }
+        }
+        for (IMessage message : messages) {
+            ShiftedMessage shifted = new ShiftedMessage(message, doc);
+            int line = shifted.getStartLine(doc);
+            TopLevelStatement statement = findStatement(statements, line);
+            if (statement != null && statement.isDefinition) {
+                statement.messages.add(shifted.shift(-(statement.startLine - 1)));
+            }
+        }
+        synchronized (lock) {
+            cache.add(key, statements);
+        }
+    }
+
+    private static TopLevelStatement findStatement(List<TopLevelStatement> statements, int line) {
+        int low = 0;
+        int high = statements.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            TopLevelStatement statement = statements.get(mid);
+            if (line < statement.startLine) {
+                high = mid - 1;
+            } else if (line > statement.endLine) {
+                low = mid + 1;
+            } else {
+                return statement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the information on the given key.
+     */
+    public static void remove(String key) {
+        synchronized (lock) {
+            cache.remove(key);
+        }
+    }
+
+    public static void clear() {
+        synchronized (lock) {
+            cache.clear();
+        }
+    }
+}
@@ -37,6 +37,19 @@ public class OccurrencesAnalyzer {
     public IMessage[] analyzeDocument(IPythonNature nature, final SourceModule module,
             final IAnalysisPreferences prefs,
             final IDocument document, final IProgressMonitor monitor, IIndentPrefs indentPrefs) {
+        return analyzeDocument(nature, module, prefs, document, monitor, indentPrefs, null, false);
+    }
+
+    /**
+     * @param incrementalKey if not null, the messages for the top-level definitions will be kept in the
+     * IncrementalAnalysisCache with this key (so that a later analysis may reuse them).
+     * @param reuseCachedDefinitions if true (and incrementalKey != null), top-level definitions which didn't change
+     * since the last analysis stored with the same key won't be visited again (their previous messages are reused).
+     */
+    public IMessage[] analyzeDocument(IPythonNature nature, final SourceModule module,
+            final IAnalysisPreferences prefs,
+            final IDocument document, final IProgressMonitor monitor, IIndentPrefs indentPrefs,
+            String incrementalKey, boolean reuseCachedDefinitions) {
 
         //Do pep8 in a thread.
         final List<IMessage> pep8Messages = new ArrayList<>();
@@ -48,12 +61,27 @@ public class OccurrencesAnalyzer {
         };
         t.start();
         OccurrencesVisitor visitor = new OccurrencesVisitor(nature, module.getName(), module, prefs, document, monitor);
+        List<IncrementalAnalysisCache.TopLevelStatement> statements = null;
+        IncrementalAnalysisCache.Plan plan = null;
+        boolean visited = false;
         try {
             SimpleNode ast = module.getAst();
             if (ast != null) {
+                if (incrementalKey != null) {
+                    statements = IncrementalAnalysisCache.computeStatements(ast, document.get());
+                    if (statements == null) {
+                        IncrementalAnalysisCache.remove(incrementalKey);
+                    } else if (reuseCachedDefinitions) {
+                        plan = IncrementalAnalysisCache.createPlan(incrementalKey, statements);
+                        if (plan != null) {
+                            visitor.setDefinitionsToSkip(plan.definitionsToSkip, plan.referencedReps);
+                        }
+                    }
+                }
                 if (nature.startRequests()) {
                     try {
                         ast.accept(visitor);
+                        visited = true;
                     } finally {
                         nature.endRequests();
                     }
@@ -68,6 +96,16 @@ public class OccurrencesAnalyzer {
         List<IMessage> messages = new ArrayList<IMessage>();
         if (!monitor.isCanceled()) {
             messages = visitor.getMessages();
+            if (plan != null) {
+                messages = plan.merge(messages, document);
+            }
+            if (statements != null) {
+                if (visited) {
+                    IncrementalAnalysisCache.store(incrementalKey, statements, messages, document);
+                } else {
+                    IncrementalAnalysisCache.remove(incrementalKey);
+                }
+            }
             try {
                 messages.addAll(TabNanny.analyzeDoc(document, prefs, module.getName(), indentPrefs, monitor));
             } catch (Exception e) {
@@ -67,6 +67,7 @@ import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.IInfo;
 import com.python.pydev.analysis.additionalinfo.InfoFactory;
 import com.python.pydev.analysis.additionalinfo.ModInfo;
+import com.python.pydev.analysis.additionalinfo.TokensNameIndex;
 
 /**
  * Let us choose from a list of IInfo (and the related additional info)
@@ -385,6 +386,9 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
                 progressMonitor.beginTask("Searching...", this.additionalInfo.size());
             }
 
+            //When possible, only get the tokens which may match from the index (instead of adding all the tokens).
+            String namePattern = MatchHelper.getNamePatternForIndex(((InfoFilter) itemsFilter).initialPattern);
+
             for (AbstractAdditionalTokensInfo additionalInfo : this.additionalInfo) {
                 if (progressMonitor != null) {
                     if (progressMonitor.isCanceled()) {
@@ -393,7 +397,15 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
                         progressMonitor.worked(1);
                     }
                 }
-                Collection<IInfo> allTokens = new HashSet<IInfo>(additionalInfo.getAllTokens()); //no duplicates
+                Collection<IInfo> allTokens; //no duplicates
+                if (namePattern != null) {
+                    TokensNameIndex.Matches matches = new TokensNameIndex.Matches(Integer.MAX_VALUE);
+                    additionalInfo.getTokensMatching(namePattern, AbstractAdditionalTokensInfo.TOP_LEVEL
+                            | AbstractAdditionalTokensInfo.INNER, TokensNameIndex.MATCH_SUBSEQUENCE, matches);
+                    allTokens = new HashSet<IInfo>(matches.getInfos());
+                } else {
+                    allTokens = new HashSet<IInfo>(additionalInfo.getAllTokens());
+                }
                 for (IInfo iInfo : allTokens) {
                     contentProvider.add(new AdditionalInfoAndIInfo(additionalInfo, iInfo), itemsFilter);
                 }
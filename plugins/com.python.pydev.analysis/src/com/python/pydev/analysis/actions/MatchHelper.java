@@ -61,6 +61,26 @@ public class MatchHelper {
         return tailPattern.matches(info.getName());
     }
 
+    /**
+     * @return the part of the pattern which should match the name of the tokens (or null if all the tokens have to be
+     * checked -- i.e.: the pattern has wildcards or the name part is empty).
+     * 
+     * Note that the tokens gotten from the index for the returned pattern with TokensNameIndex.MATCH_SUBSEQUENCE are a
+     * superset of the ones accepted by the SearchPattern (which accepts prefix and camel-case matches).
+     */
+    public static String getNamePatternForIndex(String pattern) {
+        int i = pattern.lastIndexOf('.');
+        String namePattern = pattern.substring(i + 1).trim();
+        if (namePattern.endsWith("<")) {
+            namePattern = namePattern.substring(0, namePattern.length() - 1);
+        }
+        if (namePattern.length() == 0 || namePattern.indexOf('*') != -1 || namePattern.indexOf('?') != -1
+                || namePattern.indexOf(' ') != -1) {
+            return null;
+        }
+        return namePattern;
+    }
+
     /**
      * Checks if equals considering scopes.
      */
@@ -15,17 +15,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.util.AbstractCollection;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.zip.ZipFile;
 
 import org.eclipse.core.resources.IProject;
@@ -41,9 +40,10 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.core.ObjectsPool;
 import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.cache.ClassHierarchyIndex;
 import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.DiskCache;
-import org.python.pydev.core.docutils.PySelection;
+import org.python.pydev.core.cache.TokensIndex;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure;
 import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure.ZipContents;
@@ -95,6 +95,18 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public DiskCache completeIndex;
 
+    /**
+     * Inverted index with the identifiers found in each module (used to answer getModulesWithToken without
+     * having to read all the modules). Persisted alongside the completeIndex.
+     */
+    public TokensIndex tokensIndex;
+
+    /**
+     * Index with the bases of the classes found in each module (used to find the subclasses of a class without
+     * searching all the modules with its name). Always updated along with the tokensIndex.
+     */
+    public ClassHierarchyIndex classHierarchyIndex;
+
     /**
      * default constructor
      * @throws MisconfigurationException 
@@ -117,8 +129,14 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         File persistingFolder = getCompleteIndexPersistingFolder();
 
         completeIndex = new DiskCache(persistingFolder, ".v2_indexcache");
+        tokensIndex = new TokensIndex(new File(persistingFolder, TOKENS_INDEX_FILENAME));
+        classHierarchyIndex = new ClassHierarchyIndex(new File(persistingFolder, CLASS_HIERARCHY_INDEX_FILENAME));
     }
 
+    private static final String TOKENS_INDEX_FILENAME = "tokens.index";
+
+    private static final String CLASS_HIERARCHY_INDEX_FILENAME = "class_hierarchy.index";
+
     /**
      * @return a folder where the index should be persisted
      * @throws MisconfigurationException 
@@ -144,6 +162,8 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             super.clearAllInfo();
             try {
                 completeIndex.clear();
+                tokensIndex.clear();
+                classHierarchyIndex.clear();
             } catch (NullPointerException e) {
                 //that's ok... because it might be called before actually having any values
             }
@@ -208,53 +228,59 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
         Set<File> ignoreFiles = new HashSet<File>();
 
-        if (hasNew) {
-            FastStringBuffer buffer = new FastStringBuffer();
-            int currI = 0;
-            int total = newKeys.size();
-            for (ModulesKey newKey : newKeys) {
-                currI += 1;
-                if (monitor.isCanceled()) {
-                    return;
-                }
-                if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
-                    buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                            .append(" (source module): ").append(newKey.name).append("  (")
-                            .append(currI).append(" of ").append(total).append(")");
-                    try {
-                        this.addAstInfo(newKey, false);
-                    } catch (Exception e) {
-                        Log.log(e);
-                    }
-                } else {
-                    if (isJython && ignoreFiles.contains(newKey.file)) {
-                        continue;
+        //Readers only see the changes at the end (or from time to time if there are many changes).
+        this.startBatch();
+        try {
+            if (hasNew) {
+                FastStringBuffer buffer = new FastStringBuffer();
+                int currI = 0;
+                int total = newKeys.size();
+                for (ModulesKey newKey : newKeys) {
+                    currI += 1;
+                    if (monitor.isCanceled()) {
+                        return;
                     }
-                    buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                            .append(" (builtin module): ").append(newKey.name);
-                    monitor.setTaskName(buffer.toString());
-                    IModule builtinModule = info.getModulesManager().getModule(newKey.name,
-                            info.getModulesManager().getNature(), true);
-                    if (builtinModule != null) {
-                        if (builtinModule instanceof AbstractJavaClassModule) {
-                            if (newKey.file != null) {
-                                ignoreFiles.add(newKey.file);
-                            } else {
-                                Log.log("Not expecting null file for java class module: " + newKey);
-                            }
+                    if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
+                        buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
+                                .append(" (source module): ").append(newKey.name).append("  (")
+                                .append(currI).append(" of ").append(total).append(")");
+                        try {
+                            this.addAstInfo(newKey, false);
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
+                    } else {
+                        if (isJython && ignoreFiles.contains(newKey.file)) {
                             continue;
                         }
-                        boolean removeFirst = keys.containsKey(newKey);
-                        addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+                        buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
+                                .append(" (builtin module): ").append(newKey.name);
+                        monitor.setTaskName(buffer.toString());
+                        IModule builtinModule = info.getModulesManager().getModule(newKey.name,
+                                info.getModulesManager().getNature(), true);
+                        if (builtinModule != null) {
+                            if (builtinModule instanceof AbstractJavaClassModule) {
+                                if (newKey.file != null) {
+                                    ignoreFiles.add(newKey.file);
+                                } else {
+                                    Log.log("Not expecting null file for java class module: " + newKey);
+                                }
+                                continue;
+                            }
+                            boolean removeFirst = keys.containsKey(newKey);
+                            addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+                        }
                     }
                 }
             }
-        }
 
-        if (hasRemoved) {
-            for (ModulesKey removedKey : removedKeys) {
-                this.removeInfoFromModule(removedKey.name, false);
+            if (hasRemoved) {
+                for (ModulesKey removedKey : removedKeys) {
+                    this.removeInfoFromModule(removedKey.name, false);
+                }
             }
+        } finally {
+            this.endBatch();
         }
 
         if (hasNew || hasRemoved) {
@@ -297,6 +323,12 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         addAstInfo(astFactory.createModule(body), newKey, false);
     }
 
+    /**
+     * Max number of pending commands for each searcher (when the queue is full, the producer blocks until a searcher
+     * is free, so, the memory used is bounded by the number of searchers and not by the number of modules).
+     */
+    private static final int PENDING_COMMANDS_PER_SEARCHER = 8;
+
     /**
      * Note: if it's a name with dots, we'll split it and search for each one.
      */
@@ -319,27 +351,102 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                         "Token: %s is not a valid token to search for.", token));
             }
         }
+        final List<String> searchTokens = StringUtils.dotSplit(token);
+
+        //Modules which are up to date in the tokens index don't need to be read (only the ones not indexed
+        //or changed since they were indexed are read and searched -- and indexed in the process).
+        final Set<String> modulesInIndex = tokensIndex.getModulesWithAnyToken(searchTokens);
+
+        return getModulesMatching(project, "Get modules with token: " + token, new ModulesMatcher() {
+
+            @Override
+            public boolean matchesIndexed(String moduleName) {
+                return modulesInIndex.contains(moduleName);
+            }
+
+            @Override
+            public boolean matchesContents(Set<String> tokens, List<Tuple<String, String>> classesAndBases) {
+                for (String searchToken : searchTokens) {
+                    if (tokens.contains(searchToken)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, monitor);
+    }
+
+    /**
+     * @param className the name of the class for which we want the subclasses.
+     * @return the modules which have a class with a base whose last part is the last part of the given class name
+     * (clients must still check if those are actually subclasses as the base may not be resolved to the class).
+     */
+    public List<ModulesKey> getModulesWithSubclasses(IProject project, final String className,
+            IProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        if (className == null || className.length() == 0) {
+            return new ArrayList<ModulesKey>();
+        }
+        final Set<String> modulesInIndex = classHierarchyIndex.getModulesWithSubclassesOf(className);
+
+        return getModulesMatching(project, "Get modules with subclasses of: " + className, new ModulesMatcher() {
+
+            @Override
+            public boolean matchesIndexed(String moduleName) {
+                return modulesInIndex.contains(moduleName);
+            }
+
+            @Override
+            public boolean matchesContents(Set<String> tokens, List<Tuple<String, String>> classesAndBases) {
+                return ClassHierarchyIndex.hasSubclassOf(classesAndBases, className);
+            }
+        }, monitor);
+    }
+
+    /**
+     * Decides whether a module should be in the results of getModulesMatching.
+     */
+    private interface ModulesMatcher {
+
+        /**
+         * Called for modules whose information in the indexes is up to date.
+         */
+        boolean matchesIndexed(String moduleName);
+
+        /**
+         * Called for modules which had to be read (and were indexed in the process) with what was extracted from
+         * their contents.
+         */
+        boolean matchesContents(Set<String> tokens, List<Tuple<String, String>> classesAndBases);
+    }
+
+    /**
+     * @return the source modules in the pythonpath which are accepted by the given matcher.
+     */
+    private List<ModulesKey> getModulesMatching(IProject project, String description, ModulesMatcher matcher,
+            IProgressMonitor monitor) {
+        ArrayList<ModulesKey> ret = new ArrayList<ModulesKey>();
+        NullProgressMonitor nullMonitor = new NullProgressMonitor();
+
         //Note: not synchronized with lock because we don't do anything with our own keys 
         FastStringBuffer bufProgress = new FastStringBuffer();
 
-        //This buffer will be used as we load file by file.
-        FastStringBuffer bufFileContents = new FastStringBuffer();
-
         Set<String> pythonPathFolders = this.getPythonPathFolders();
         long last = System.currentTimeMillis();
         int worked = 0;
 
-        LinkedBlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+        //The searchers read the contents of the modules themselves (each one reusing its own buffer), so, reading
+        //and searching is done in parallel and the producer just has to check what has to be read.
+        int searchers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ArrayBlockingQueue<Command> queue = new ArrayBlockingQueue<>(searchers * PENDING_COMMANDS_PER_SEARCHER);
 
-        int searchers = 2;
         //The 'ret' should be filled with the module keys where the tokens are found.
-
-        // Create 2 consumers
         Thread[] threads = new Thread[searchers];
         for (int i = 0; i < searchers; i++) {
-            Searcher searcher = new Searcher(queue, StringUtils.dotSplit(token), ret);
-            //Spawn a thread to do the search while we load the contents.
-            Thread t = new Thread(searcher);
+            Searcher searcher = new Searcher(queue, matcher, ret, tokensIndex, classHierarchyIndex, monitor);
+            Thread t = new Thread(searcher, description + " (" + i + ")");
             threads[i] = t;
             t.start();
         }
@@ -350,7 +457,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             pythonPathHelper.setPythonPath(new ArrayList<String>(pythonPathFolders));
             ModulesFoundStructure modulesFound = pythonPathHelper.getModulesFoundStructure(project, nullMonitor);
             int totalSteps = modulesFound.regularModules.size() + modulesFound.zipContents.size();
-            monitor.beginTask("Get modules with token in: " + this.getUIRepresentation(), totalSteps);
+            monitor.beginTask(description + " in: " + this.getUIRepresentation(), totalSteps);
 
             PyPublicTreeMap<ModulesKey, ModulesKey> keys = new PyPublicTreeMap<>();
             boolean includeOnlySourceModules = true; //no point in searching dlls.
@@ -361,16 +468,15 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 if (monitor.isCanceled()) {
                     break;
                 }
-                if (DEBUG) {
-                    System.out.println("Loading: " + entry);
-                }
-
-                try (FileInputStream stream = new FileInputStream(entry.file)) {
-                    fill(bufFileContents, stream);
-                    queue.put(new Command(entry, bufFileContents
-                            .toCharArray()));
-                } catch (Exception e) {
-                    Log.log(e);
+                long stamp = entry.file.lastModified();
+                if (isIndexUpToDate(entry.name, stamp)) {
+                    if (matcher.matchesIndexed(entry.name)) {
+                        synchronized (ret) {
+                            ret.add(entry);
+                        }
+                    }
+                } else {
+                    queue.put(new Command(entry, stamp));
                 }
 
                 last = setProgress(monitor, bufProgress, last, worked++, entry.name);
@@ -385,36 +491,40 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 }
 
                 ModulesManager.buildKeysForZipContents(keys, zipContents);
-                try (ZipFile zipFile = new ZipFile(zipContents.zipFile)) {
-                    for (ModulesKey entry : keys.values()) {
-                        if (DEBUG) {
-                            System.out.println("Loading: " + entry);
-                        }
-                        if (monitor.isCanceled()) {
-                            break;
-                        }
-                        ModulesKeyForZip z = (ModulesKeyForZip) entry;
-                        if (!z.isFile) {
-                            continue;
-                        }
-
-                        try (InputStream stream = zipFile.getInputStream(zipFile.getEntry(z.zipModulePath))) {
-                            fill(bufFileContents, stream);
-                            queue.put(new Command(entry, bufFileContents.toCharArray()));
-                        } catch (Exception e) {
-                            Log.log(e);
+                long stamp = zipContents.zipFile.lastModified();
+                List<ModulesKeyForZip> entriesToRead = new ArrayList<>();
+                for (ModulesKey entry : keys.values()) {
+                    ModulesKeyForZip z = (ModulesKeyForZip) entry;
+                    if (!z.isFile) {
+                        continue;
+                    }
+                    if (isIndexUpToDate(entry.name, stamp)) {
+                        if (matcher.matchesIndexed(entry.name)) {
+                            synchronized (ret) {
+                                ret.add(entry);
+                            }
                         }
+                    } else {
+                        entriesToRead.add(z);
                     }
-
-                    last = setProgress(monitor, bufProgress, last, worked++, zipContents.zipFile.getName());
-                } catch (Exception e) {
-                    Log.log(e);
                 }
+                if (entriesToRead.size() > 0) {
+                    //A zip is read by a single searcher (so that it's opened only once).
+                    queue.put(new Command(zipContents.zipFile, stamp, entriesToRead));
+                }
+
+                last = setProgress(monitor, bufProgress, last, worked++, zipContents.zipFile.getName());
             }
 
+        } catch (InterruptedException e) {
+            Log.log("Not expecting to be interrupted! Results of getting tokens may be wrong.", e);
         } finally {
             for (int i = 0; i < searchers; i++) {
-                queue.add(new Command()); // add it to wait for the thread to finish.
+                try {
+                    queue.put(Command.FINISH); // add it to wait for the thread to finish.
+                } catch (InterruptedException e) {
+                    Log.log(e);
+                }
             }
             monitor.done();
         }
@@ -430,14 +540,14 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     protected abstract String getUIRepresentation();
 
-    private void fill(FastStringBuffer bufFileContents, InputStream stream) throws IOException {
+    private static void fill(FastStringBuffer bufFileContents, InputStream stream) throws IOException {
         for (int i = 0; i < 5; i++) {
             try {
                 bufFileContents.clear();
                 FileUtils.fillBufferWithStream(stream, null, new NullProgressMonitor(), bufFileContents);
                 return; //if it worked, return, otherwise go to the next iteration
             } catch (OutOfMemoryError e) {
-                //We went too fast and have no more memory... (consumers are slow) retry again in a few moments...
+                //No more memory available (i.e.: too many big files being read at once): retry again in a few moments...
                 bufFileContents.clearMemory();
                 Object o = new Object();
                 synchronized (o) {
@@ -470,57 +580,62 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         return last;
     }
 
-    private class Command {
+    private static final class Command {
+
+        public static final Command FINISH = new Command(null, 0);
 
-        public final boolean finish;
-        public final char[] charArray;
         public final ModulesKey modulesKey;
+        public final long stamp;
 
-        public Command(ModulesKey modulesKey, char[] charArray) {
-            this.charArray = charArray;
+        /**
+         * Only available when reading from a zip file (in which case modulesKey is null).
+         */
+        public final File zipFile;
+        public final List<ModulesKeyForZip> zipEntries;
+
+        public Command(ModulesKey modulesKey, long stamp) {
             this.modulesKey = modulesKey;
-            this.finish = false;
+            this.stamp = stamp;
+            this.zipFile = null;
+            this.zipEntries = null;
         }
 
-        public Command() {
+        public Command(File zipFile, long stamp, List<ModulesKeyForZip> zipEntries) {
             this.modulesKey = null;
-            this.charArray = null;
-            this.finish = true;
+            this.stamp = stamp;
+            this.zipFile = zipFile;
+            this.zipEntries = zipEntries;
         }
 
     }
 
+    /**
+     * Reads the contents of the modules, updates the indexes with them and checks if the module is accepted by
+     * the matcher.
+     */
     private static class Searcher implements Runnable {
 
         private final BlockingQueue<Command> queue;
-        private final Collection<String> searchTokens;
+        private final ModulesMatcher matcher;
         private final ArrayList<ModulesKey> ret;
-        private final FastStringBuffer temp = new FastStringBuffer();
-
-        public Searcher(BlockingQueue<Command> linkedBlockingQueue, Collection<String> token, ArrayList<ModulesKey> ret) {
+        private final TokensIndex tokensIndex;
+        private final ClassHierarchyIndex classHierarchyIndex;
+        private final IProgressMonitor monitor;
+
+        /**
+         * Reused for all the files read by this searcher.
+         */
+        private final FastStringBuffer bufFileContents = new FastStringBuffer();
+
+        public Searcher(BlockingQueue<Command> linkedBlockingQueue, ModulesMatcher matcher,
+                ArrayList<ModulesKey> ret, TokensIndex tokensIndex, ClassHierarchyIndex classHierarchyIndex,
+                IProgressMonitor monitor) {
             this.queue = linkedBlockingQueue;
-            if (token.size() == 1) {
-                final String searchfor = token.iterator().next();
-                this.searchTokens = new AbstractCollection<String>() {
-                    @Override
-                    public boolean contains(Object o) {
-                        return searchfor.equals(o); // implementation should be a bit faster than using a set (only for when we know there's a single entry)
-                    }
-
-                    @Override
-                    public Iterator<String> iterator() {
-                        throw new RuntimeException("not implemented");
-                    }
-
-                    @Override
-                    public int size() {
-                        throw new RuntimeException("not implemented");
-                    }
-                };
-            } else {
-                this.searchTokens = new HashSet<String>(token);
-            }
+            this.matcher = matcher;
             this.ret = ret;
+            this.tokensIndex = tokensIndex;
+            this.classHierarchyIndex = classHierarchyIndex;
+            this.monitor = monitor;
         }
 
         @Override
@@ -529,49 +644,67 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 Command cmd;
                 try {
                     cmd = queue.take();
-                    if (cmd.finish) {
+                    if (cmd == Command.FINISH) {
                         break;
                     }
-                    this.search(cmd.modulesKey, cmd.charArray);
+                    if (monitor.isCanceled()) {
+                        continue; //Just consume the pending commands until the finish is found.
+                    }
+                    if (cmd.zipFile != null) {
+                        this.searchZip(cmd);
+                    } else {
+                        if (DEBUG) {
+                            System.out.println("Loading: " + cmd.modulesKey);
+                        }
+                        try (FileInputStream stream = new FileInputStream(cmd.modulesKey.file)) {
+                            fill(bufFileContents, stream);
+                            this.search(cmd.modulesKey, cmd.stamp);
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
+                    }
                 } catch (InterruptedException e) {
                     Log.log("Not expecting to be interrupted in searcher. Results may be wrong.", e);
                     break;
                 }
             }
+            bufFileContents.clearMemory();
         }
 
-        private void search(ModulesKey modulesKey, char[] bufFileContents) {
-            temp.clear();
-            int length = bufFileContents.length;
-            for (int i = 0; i < length; i++) {
-                char c = bufFileContents[i];
-                if (Character.isJavaIdentifierStart(c)) {
-                    temp.clear();
-                    temp.append(c);
-                    i++;
-                    for (; i < length; i++) {
-                        c = bufFileContents[i];
-                        if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
-                            break; //Fast forward through the most common case...
-                        }
-                        if (Character.isJavaIdentifierPart(c)) {
-                            temp.append(c);
-                        } else {
-                            break;
-                        }
+        private void searchZip(Command cmd) {
+            try (ZipFile zipFile = new ZipFile(cmd.zipFile)) {
+                for (ModulesKeyForZip entry : cmd.zipEntries) {
+                    if (monitor.isCanceled()) {
+                        return;
                     }
-                    String str = temp.toString();
-                    if (PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
-                        continue;
+                    if (DEBUG) {
+                        System.out.println("Loading: " + entry);
                     }
-                    if (searchTokens.contains(str)) {
-                        if (DEBUG) {
-                            System.out.println("Found in: " + modulesKey);
-                        }
-                        ret.add(modulesKey);
-                        break;
+                    try (InputStream stream = zipFile.getInputStream(zipFile.getEntry(entry.zipModulePath))) {
+                        fill(bufFileContents, stream);
+                        this.search(entry, cmd.stamp);
+                    } catch (Exception e) {
+                        Log.log(e);
                     }
                 }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+
+        private void search(ModulesKey modulesKey, long stamp) {
+            Set<String> tokens = new HashSet<String>();
+            List<Tuple<String, String>> classesAndBases = new ArrayList<Tuple<String, String>>();
+            indexContents(tokensIndex, classHierarchyIndex, modulesKey.name, stamp,
+                    bufFileContents.getInternalCharsArray(), bufFileContents.length(), tokens, classesAndBases);
+
+            if (matcher.matchesContents(tokens, classesAndBases)) {
+                if (DEBUG) {
+                    System.out.println("Found in: " + modulesKey);
+                }
+                synchronized (ret) {
+                    ret.add(modulesKey);
+                }
             }
         }
     }
@@ -595,12 +728,120 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 completeIndex.add(completeIndexKey);
 
             }
+            if (key.file != null && !isIndexUpToDate(key.name, key.file.lastModified())
+                    && PythonPathHelper.canAddAstInfoForSourceModule(key)) {
+                //The contents weren't indexed when reading it (i.e.: the ast came from the builder), so, we
+                //have to read it to update the tokens index.
+                indexTokensFromSource(key);
+            }
         } catch (Exception e) {
             Log.log(e);
         }
         return addAstInfo;
     }
 
+    @Override
+    protected List<IInfo> onSourceContentsRead(ModulesKey key, char[] charArray, int len, boolean generateDelta) {
+        if (key.file != null) {
+            indexTokens(key, key.file.lastModified(), charArray, len);
+        }
+        if (generateDelta) {
+            return null; //Deltas must be generated from the actual ast info.
+        }
+
+        //If the contents didn't change since the info was last created (even if the file was touched), the info
+        //stored in the disk cache may be used without having to parse it again.
+        byte[] value = completeIndex.getValue(key.name, DiskCache.hashContents(charArray, len));
+        if (value == null) {
+            return null;
+        }
+        List<IInfo> infos;
+        if (value.length == 0) {
+            infos = new ArrayList<IInfo>(0);
+        } else {
+            try {
+                infos = InfoStrFactory.strToInfo(new String(value, StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                Log.log(e);
+                return null;
+            }
+            if (infos == null) {
+                return null;
+            }
+        }
+        synchronized (lock) {
+            for (IInfo info : infos) {
+                if (info.getPath() == null || info.getPath().length() == 0) {
+                    this.add(info, TOP_LEVEL);
+                } else {
+                    this.add(info, INNER);
+                }
+            }
+            CompleteIndexKey completeIndexKey = new CompleteIndexKey(key);
+            if (key.file != null) {
+                completeIndexKey.lastModified = key.file.lastModified();
+            }
+            completeIndex.add(completeIndexKey);
+        }
+        return infos;
+    }
+
+    @Override
+    protected void onAstInfoCreatedFromContents(ModulesKey key, char[] charArray, int len, List<IInfo> infos) {
+        byte[] value;
+        if (infos.size() == 0) {
+            value = new byte[0];
+        } else {
+            value = InfoStrFactory.infoToString(infos).getBytes(StandardCharsets.UTF_8);
+        }
+        completeIndex.putValue(key.name, DiskCache.hashContents(charArray, len), value);
+    }
+
+    private void indexTokensFromSource(ModulesKey key) throws IOException {
+        //Get the stamp before reading (if it changes while reading, it'll be re-indexed later on).
+        long stamp = key.file.lastModified();
+        FastStringBuffer bufFileContents = new FastStringBuffer();
+        if (key instanceof ModulesKeyForZip) {
+            ModulesKeyForZip z = (ModulesKeyForZip) key;
+            try (ZipFile zipFile = new ZipFile(z.file);
+                    InputStream stream = zipFile.getInputStream(zipFile.getEntry(z.zipModulePath))) {
+                fill(bufFileContents, stream);
+            }
+        } else {
+            try (FileInputStream stream = new FileInputStream(key.file)) {
+                fill(bufFileContents, stream);
+            }
+        }
+        indexTokens(key, stamp, bufFileContents.getInternalCharsArray(), bufFileContents.length());
+    }
+
+    private void indexTokens(ModulesKey key, long stamp, char[] charArray, int len) {
+        indexContents(tokensIndex, classHierarchyIndex, key.name, stamp, charArray, len, new HashSet<String>(),
+                new ArrayList<Tuple<String, String>>());
+    }
+
+    /**
+     * Updates the tokens index and the class hierarchy index with the given contents of a module.
+     * 
+     * @param tokens (out) the tokens found in the contents.
+     * @param classesAndBases (out) the classes and bases found in the contents.
+     */
+    private static void indexContents(TokensIndex tokensIndex, ClassHierarchyIndex classHierarchyIndex,
+            String moduleName, long stamp, char[] charArray, int len, Set<String> tokens,
+            List<Tuple<String, String>> classesAndBases) {
+        TokensIndex.extractTokens(charArray, len, tokens);
+        ClassHierarchyIndex.extractClassesAndBases(charArray, len, classesAndBases);
+        tokensIndex.indexModule(moduleName, stamp, tokens);
+        classHierarchyIndex.indexModule(moduleName, stamp, classesAndBases);
+    }
+
+    /**
+     * @return true if the information on the module in the tokens index and in the class hierarchy index may be used.
+     */
+    private boolean isIndexUpToDate(String moduleName, long stamp) {
+        return tokensIndex.isUpToDate(moduleName, stamp) && classHierarchyIndex.isUpToDate(moduleName, stamp);
+    }
+
     @Override
     public void removeInfoFromModule(String moduleName, boolean generateDelta) {
         synchronized (lock) {
@@ -608,18 +849,18 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new AssertionError("The module name may not be null.");
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
+            tokensIndex.remove(moduleName);
+            classHierarchyIndex.remove(moduleName);
             super.removeInfoFromModule(moduleName, generateDelta);
         }
     }
 
     @Override
-    protected void saveTo(OutputStreamWriter writer, FastStringBuffer tempBuf, File pathToSave) throws IOException {
+    protected void saveExtraInfo(FastStringBuffer tempBuf) throws IOException {
         synchronized (lock) {
             completeIndex.writeTo(tempBuf);
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
-            tempBuf.clear();
-
-            super.saveTo(writer, tempBuf, pathToSave);
+            tokensIndex.save();
+            classHierarchyIndex.save();
         }
     }
 
@@ -643,6 +884,8 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 //this can happen if the user moves its .metadata folder (so, we have to validate it).
                 completeIndex.setFolderToPersist(shouldBeOn);
             }
+            tokensIndex.setPersistFile(new File(shouldBeOn, TOKENS_INDEX_FILENAME));
+            classHierarchyIndex.setPersistFile(new File(shouldBeOn, CLASS_HIERARCHY_INDEX_FILENAME));
 
             super.restoreSavedInfo(readFromFile.o1);
         }
@@ -687,6 +930,26 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
     }
 
     private Object loadContentsFromFile(File file) throws FileNotFoundException, IOException, MisconfigurationException {
+        if (TreeIO.isBinaryFile(file)) {
+            TreeIO.BinaryTrees trees = TreeIO.loadTreesFromBinaryFile(file);
+            if (trees.infoVersion != AbstractAdditionalTokensInfo.version) {
+                throw new RuntimeException("Version does not match. Found: " + trees.infoVersion + ". Expected: "
+                        + AbstractAdditionalTokensInfo.version);
+            }
+            Tuple<Tuple3<Object, Object, Object>, Object> tupWithResults = new Tuple<Tuple3<Object, Object, Object>, Object>(
+                    new Tuple3<Object, Object, Object>(trees.tree1, trees.tree2, null), null);
+
+            FastBufferedReader bufferedReader = new FastBufferedReader(new StringReader(trees.extra));
+            FastStringBuffer line = bufferedReader.readLine();
+            if (line == null || !line.startsWith("-- START DISKCACHE")) {
+                throw new RuntimeException("Unexpected line: " + line);
+            }
+            tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, new ObjectsPool.ObjectsPoolMap(true));
+            restoreSavedInfo(tupWithResults);
+            return tupWithResults;
+        }
+
+        //Text or serialized format (from previous versions): load it and save it in the binary format afterwards.
         FileInputStream fileInputStream = new FileInputStream(file);
         try {
             //            Timer timer = new Timer();
@@ -694,7 +957,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             InputStreamReader reader = new InputStreamReader(fileInputStream);
             FastBufferedReader bufferedReader = new FastBufferedReader(reader);
             FastStringBuffer string = bufferedReader.readLine();
-            ObjectsPoolMap objectsPoolMap = new ObjectsPool.ObjectsPoolMap();
+            ObjectsPoolMap objectsPoolMap = new ObjectsPool.ObjectsPoolMap(true);
             if (string != null && string.startsWith("-- VERSION_")) {
                 Tuple<Tuple3<Object, Object, Object>, Object> tupWithResults = new Tuple<Tuple3<Object, Object, Object>, Object>(
                         new Tuple3<Object, Object, Object>(
@@ -747,6 +1010,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
                     restoreSavedInfo(tupWithResults);
                     //                    timer.printDiff("Time taken");
+                    save(); //Save in new format!
                     return tupWithResults;
                 } else {
                     throw new RuntimeException("Version does not match. Found: " + string + ". Expected: " + expected);
@@ -229,45 +229,50 @@ public abstract class AbstractAdditionalInfoWithBuild extends AbstractAdditional
 
         FastStringBuffer msgBuffer = new FastStringBuffer();
 
-        for (ModulesKey key : allModules) {
-            if (monitor.isCanceled()) {
-                return null;
-            }
-            i++;
-
-            if (PythonPathHelper.canAddAstInfoForSourceModule(key)) {
-                //Note: at this point (on the interpreter configuration), we only add the tokens for source modules
-                //but later on in InterpreterInfoBuilder, it'll actually go on and create the contents for compiled modules
-                //(which is a slower process as it has to connect through a shell).
-
-                if (i % 17 == 0) {
-                    msgBuffer.clear();
-                    msgBuffer.append("Creating ");
-                    msgBuffer.append(additionalFeedback);
-                    msgBuffer.append(" additional info (");
-                    msgBuffer.append(i);
-                    msgBuffer.append(" of ");
-                    msgBuffer.append(allModules.length);
-                    msgBuffer.append(") for ");
-                    msgBuffer.append(key.file.getName());
-                    monitor.setTaskName(msgBuffer.toString());
-                    monitor.worked(1);
+        info.startBatch();
+        try {
+            for (ModulesKey key : allModules) {
+                if (monitor.isCanceled()) {
+                    return null;
                 }
-
-                try {
-                    if (info.addAstInfo(key, false) == null) {
-                        String str = "Unable to generate ast -- using %s.\nError:%s";
-                        ErrorDescription errorDesc = null;
-                        throw new RuntimeException(StringUtils.format(str, PyParser
-                                .getGrammarVersionStr(grammarVersion),
-                                (errorDesc != null && errorDesc.message != null) ? errorDesc.message
-                                        : "unable to determine"));
+                i++;
+
+                if (PythonPathHelper.canAddAstInfoForSourceModule(key)) {
+                    //Note: at this point (on the interpreter configuration), we only add the tokens for source modules
+                    //but later on in InterpreterInfoBuilder, it'll actually go on and create the contents for compiled modules
+                    //(which is a slower process as it has to connect through a shell).
+
+                    if (i % 17 == 0) {
+                        msgBuffer.clear();
+                        msgBuffer.append("Creating ");
+                        msgBuffer.append(additionalFeedback);
+                        msgBuffer.append(" additional info (");
+                        msgBuffer.append(i);
+                        msgBuffer.append(" of ");
+                        msgBuffer.append(allModules.length);
+                        msgBuffer.append(") for ");
+                        msgBuffer.append(key.file.getName());
+                        monitor.setTaskName(msgBuffer.toString());
+                        monitor.worked(1);
                     }
 
-                } catch (Throwable e) {
-                    Log.log(IStatus.ERROR, "Problem parsing the file :" + key.file + ".", e);
+                    try {
+                        if (info.addAstInfo(key, false) == null) {
+                            String str = "Unable to generate ast -- using %s.\nError:%s";
+                            ErrorDescription errorDesc = null;
+                            throw new RuntimeException(StringUtils.format(str, PyParser
+                                    .getGrammarVersionStr(grammarVersion),
+                                    (errorDesc != null && errorDesc.message != null) ? errorDesc.message
+                                            : "unable to determine"));
+                        }
+
+                    } catch (Throwable e) {
+                        Log.log(IStatus.ERROR, "Problem parsing the file :" + key.file + ".", e);
+                    }
                 }
             }
+        } finally {
+            info.endBatch();
         }
         //timer.printDiff("Time to restore additional info");
         return info;
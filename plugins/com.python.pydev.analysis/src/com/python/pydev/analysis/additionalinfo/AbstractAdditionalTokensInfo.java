@@ -12,21 +12,24 @@ package com.python.pydev.analysis.additionalinfo;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -120,6 +123,148 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
 
+    /**
+     * The contents of one of the maps above (sorted by the initials) at a given point in time.
+     */
+    private static final class SnapshotEntries {
+
+        private static final SnapshotEntries EMPTY = new SnapshotEntries(new String[0], new Object[0]);
+
+        private final String[] initials;
+        private final Object[] infos; //Set<IInfo> for the initials at the same position
+
+        private SnapshotEntries(String[] initials, Object[] infos) {
+            this.initials = initials;
+            this.infos = infos;
+        }
+
+        private static SnapshotEntries create(SortedMap<String, Set<IInfo>> initialsToInfo) {
+            int size = initialsToInfo.size();
+            if (size == 0) {
+                return EMPTY;
+            }
+            String[] initials = new String[size];
+            Object[] infos = new Object[size];
+            int i = 0;
+            for (Entry<String, Set<IInfo>> entry : initialsToInfo.entrySet()) {
+                initials[i] = entry.getKey();
+                infos[i] = entry.getValue();
+                i++;
+            }
+            return new SnapshotEntries(initials, infos);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Set<IInfo> getInfos(int i) {
+            return (Set<IInfo>) infos[i];
+        }
+
+        /**
+         * @return the index of the first initials which are equal or greater than the passed initials.
+         */
+        private int getFirstIndex(String startInitials) {
+            int i = Arrays.binarySearch(initials, startInitials);
+            return i >= 0 ? i : -(i + 1);
+        }
+    }
+
+    /**
+     * An immutable view of the indexes which is used to answer queries without any synchronization (so that
+     * code-completion doesn't have to wait for the indexing of modules being done in other threads).
+     * 
+     * The sets referenced are shared with the maps above, so, a set which is part of a published snapshot must never
+     * be changed (a writer must copy it before changing it -- see getAndCreateListForInitials).
+     */
+    private static final class IndexSnapshot {
+
+        private static final IndexSnapshot EMPTY = new IndexSnapshot(SnapshotEntries.EMPTY, SnapshotEntries.EMPTY);
+
+        private final SnapshotEntries topLevel;
+        private final SnapshotEntries inner;
+
+        private IndexSnapshot(SnapshotEntries topLevel, SnapshotEntries inner) {
+            this.topLevel = topLevel;
+            this.inner = inner;
+        }
+    }
+
+    /**
+     * The name indexes (see getTokensMatching) built from some snapshot. A level is only built after it's requested
+     * for the first time (null while not requested).
+     */
+    private static final class NameIndexes {
+
+        private final IndexSnapshot snapshot;
+        private final TokensNameIndex topLevel;
+        private final TokensNameIndex inner;
+
+        private NameIndexes(IndexSnapshot snapshot, TokensNameIndex topLevel, TokensNameIndex inner) {
+            this.snapshot = snapshot;
+            this.topLevel = topLevel;
+            this.inner = inner;
+        }
+
+        private TokensNameIndex get(int level) {
+            return level == TOP_LEVEL ? topLevel : inner;
+        }
+    }
+
+    /**
+     * The name indexes used by the readers. After they're first requested, they're rebuilt in the
+     * nameIndexesBuilder thread whenever a new snapshot is published (so, readers never wait for a rebuild, but
+     * may see the tokens from the previous snapshot until the rebuild finishes).
+     */
+    private volatile NameIndexes nameIndexes;
+
+    /**
+     * Held while building the name indexes (so that the same indexes are not built by many threads at once).
+     */
+    private final Object nameIndexesLock = new Object();
+
+    private final AtomicBoolean nameIndexesRebuildScheduled = new AtomicBoolean();
+
+    /**
+     * Rebuilds the name indexes of all the infos (a single thread, so that the rebuilds don't compete for the
+     * processors with the code-completion requests).
+     */
+    private static final ExecutorService nameIndexesBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "PyDev: Build tokens name index");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    /**
+     * The snapshot used by the readers (updated by the writers after each change or batch of changes).
+     */
+    private volatile IndexSnapshot snapshot = IndexSnapshot.EMPTY;
+
+    /**
+     * The sets created since the last snapshot was published (which may be changed in place).
+     * 
+     * Only accessed with the lock held (as well as the other fields related to the publishing of the snapshot).
+     */
+    private final Set<Set<IInfo>> setsNotPublished = Collections
+            .newSetFromMap(new IdentityHashMap<Set<IInfo>, Boolean>());
+
+    /**
+     * When > 0, changes are only published when the batch finishes (or after MAX_MODULES_CHANGED_IN_BATCH).
+     */
+    private int batchLevel;
+
+    private int modulesChangedSincePublish;
+
+    private boolean snapshotOutdated;
+
+    /**
+     * In a batch (i.e.: when indexing all the modules of an interpreter), changes are still published after this
+     * number of modules is changed, so that the info already indexed may be used.
+     */
+    private static final int MAX_MODULES_CHANGED_IN_BATCH = 100;
+
     /**
      * Should be used before re-creating the info, so that we have enough memory. 
      */
@@ -131,11 +276,136 @@ public abstract class AbstractAdditionalTokensInfo {
             if (innerInitialsToInfo != null) {
                 innerInitialsToInfo.clear();
             }
+            setsNotPublished.clear();
+            onChanged(true);
         }
     }
 
     protected Object lock = new Object();
 
+    /**
+     * Starts a batch of changes: readers will only see the changes when the batch finishes (or at each
+     * MAX_MODULES_CHANGED_IN_BATCH modules changed). Must be matched by a call to endBatch() (in a finally).
+     */
+    public void startBatch() {
+        synchronized (lock) {
+            batchLevel++;
+        }
+    }
+
+    /**
+     * Finishes a batch of changes started with startBatch(), publishing the changes done to the readers.
+     */
+    public void endBatch() {
+        synchronized (lock) {
+            batchLevel--;
+            if (batchLevel == 0 && snapshotOutdated) {
+                publishSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Must be called with the lock held after some change is done in the maps.
+     * 
+     * @param moduleChanged true if the change was the addition/removal of a whole module (in which case the changes
+     * may be published even in a batch).
+     */
+    private void onChanged(boolean moduleChanged) {
+        snapshotOutdated = true;
+        if (moduleChanged) {
+            modulesChangedSincePublish++;
+        }
+        if (batchLevel == 0 || modulesChangedSincePublish >= MAX_MODULES_CHANGED_IN_BATCH) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void publishSnapshot() {
+        snapshot = new IndexSnapshot(SnapshotEntries.create(topLevelInitialsToInfo),
+                SnapshotEntries.create(innerInitialsToInfo));
+        setsNotPublished.clear();
+        modulesChangedSincePublish = 0;
+        snapshotOutdated = false;
+        if (nameIndexes != null) {
+            scheduleNameIndexesRebuild();
+        }
+    }
+
+    /**
+     * Schedules a rebuild of the name indexes in the nameIndexesBuilder (many calls while a rebuild is still pending
+     * result in a single rebuild from the latest snapshot).
+     */
+    private void scheduleNameIndexesRebuild() {
+        if (nameIndexesRebuildScheduled.compareAndSet(false, true)) {
+            nameIndexesBuilder.execute(new Runnable() {
+
+                public void run() {
+                    //Reset before building: a snapshot published while building schedules a new rebuild.
+                    nameIndexesRebuildScheduled.set(false);
+                    try {
+                        buildNameIndexes(0);
+                    } catch (Throwable e) {
+                        Log.log(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the name index for the given level (only built in the calling thread the first time it's requested).
+     */
+    private TokensNameIndex getNameIndex(int level) {
+        NameIndexes current = nameIndexes;
+        TokensNameIndex index = current != null ? current.get(level) : null;
+        //Note: in tests, changes must be seen right away (so, don't wait for the rebuild in the background).
+        if (index == null || (AbstractAdditionalDependencyInfo.TESTING && current.snapshot != snapshot)) {
+            index = buildNameIndexes(level).get(level);
+        }
+        return index;
+    }
+
+    /**
+     * Builds the name indexes for the current snapshot (for the levels already built and the requested level).
+     * 
+     * @param requestedLevel TOP_LEVEL, INNER or 0 to build only the levels already built.
+     */
+    private NameIndexes buildNameIndexes(int requestedLevel) {
+        synchronized (nameIndexesLock) {
+            IndexSnapshot current = snapshot;
+            NameIndexes previous = nameIndexes;
+            boolean buildTopLevel = requestedLevel == TOP_LEVEL || (previous != null && previous.topLevel != null);
+            boolean buildInner = requestedLevel == INNER || (previous != null && previous.inner != null);
+            boolean sameSnapshot = previous != null && previous.snapshot == current;
+
+            TokensNameIndex topLevel = null;
+            if (buildTopLevel) {
+                topLevel = sameSnapshot && previous.topLevel != null ? previous.topLevel
+                        : createNameIndex(current.topLevel);
+            }
+            TokensNameIndex inner = null;
+            if (buildInner) {
+                inner = sameSnapshot && previous.inner != null ? previous.inner : createNameIndex(current.inner);
+            }
+            NameIndexes built = new NameIndexes(current, topLevel, inner);
+            nameIndexes = built;
+            return built;
+        }
+    }
+
+    private static TokensNameIndex createNameIndex(SnapshotEntries entries) {
+        if (entries.infos.length == 0) {
+            return TokensNameIndex.EMPTY;
+        }
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        addAllTokens(entries, toks);
+        return TokensNameIndex.create(toks);
+    }
+
     /**
      * The filter interface
      */
@@ -213,6 +483,7 @@ public abstract class AbstractAdditionalTokensInfo {
             }
             Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
             listForInitials.add(info);
+            onChanged(false);
         }
     }
 
@@ -230,13 +501,20 @@ public abstract class AbstractAdditionalTokensInfo {
     /**
      * @param initials the initials we are looking for
      * @param initialsToInfo this is the list we should use (top level or inner)
-     * @return the list of tokens with the specified initials (must be exact match)
+     * @return the list of tokens with the specified initials (must be exact match), which may be changed (a copy is
+     * created if the current list was already published to the readers). Must be called with the lock held.
      */
     protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
         Set<IInfo> lInfo = initialsToInfo.get(initials);
         if (lInfo == null) {
             lInfo = new HashSet<IInfo>();
             initialsToInfo.put(initials, lInfo);
+            setsNotPublished.add(lInfo);
+
+        } else if (!setsNotPublished.contains(lInfo)) {
+            lInfo = new HashSet<IInfo>(lInfo);
+            initialsToInfo.put(initials, lInfo);
+            setsNotPublished.add(lInfo);
         }
         return lInfo;
     }
@@ -249,17 +527,17 @@ public abstract class AbstractAdditionalTokensInfo {
                 //at least 2 parts are required
                 if (parts.get(0).equals("self")) {
                     rep = parts.get(1);
-                    //no intern construct (locked in the loop that calls this method)
-                    AttrInfo info = new AttrInfo(ObjectsPool.internUnsynched(rep), moduleName,
-                            ObjectsPool.internUnsynched(path), false);
+                    //no intern construct (interned here)
+                    AttrInfo info = new AttrInfo(ObjectsPool.intern(rep), moduleName,
+                            ObjectsPool.intern(path), false);
                     add(info, doOn);
                     return info;
                 }
             }
         } else {
-            //no intern construct (locked in the loop that calls this method)
-            AttrInfo info = new AttrInfo(ObjectsPool.internUnsynched(FullRepIterable.getFirstPart(rep)), moduleName,
-                    ObjectsPool.internUnsynched(path), false);
+            //no intern construct (interned here)
+            AttrInfo info = new AttrInfo(ObjectsPool.intern(FullRepIterable.getFirstPart(rep)), moduleName,
+                    ObjectsPool.intern(path), false);
             add(info, doOn);
             return info;
         }
@@ -307,13 +585,38 @@ public abstract class AbstractAdditionalTokensInfo {
         } else {
             throw new RuntimeException("Don't know how to handle: " + doc + " -- " + doc.getClass());
         }
+        List<IInfo> restored = onSourceContentsRead(key, charArray, len, generateDelta);
+        if (restored != null) {
+            return restored;
+        }
 
         SimpleNode node = FastDefinitionsParser.parse(charArray, key.file.getName(), len);
         if (node == null) {
             return null;
         }
 
-        return addAstInfo(node, key, generateDelta);
+        List<IInfo> created = addAstInfo(node, key, generateDelta);
+        onAstInfoCreatedFromContents(key, charArray, len, created);
+        return created;
+    }
+
+    /**
+     * Called when the contents of a source module were read to be indexed (subclasses may override to
+     * extract additional information from the contents without having to read it again).
+     * 
+     * Note that the passed array may be bigger than len and must not be kept (it may be reused afterwards).
+     * 
+     * @return the info for the module if it could be restored without parsing the contents (in which case the info
+     * must've been already added) or null if the contents should be parsed to create the info.
+     */
+    protected List<IInfo> onSourceContentsRead(ModulesKey key, char[] charArray, int len, boolean generateDelta) {
+        return null;
+    }
+
+    /**
+     * Called after the info for a module is created from its contents (which were parsed).
+     */
+    protected void onAstInfoCreatedFromContents(ModulesKey key, char[] charArray, int len, List<IInfo> infos) {
     }
 
     /**
@@ -338,26 +641,26 @@ public abstract class AbstractAdditionalTokensInfo {
                 FastStack<SimpleNode> tempStack = new FastStack<SimpleNode>(10);
 
                 synchronized (this.lock) {
-                    synchronized (ObjectsPool.lock) {
-                        key.name = ObjectsPool.internUnsynched(key.name);
-
+                    key.name = ObjectsPool.intern(key.name);
+                    batchLevel++; //only publish the changes when all the info of the module is added
+                    try {
                         while (entries.hasNext()) {
                             ASTEntry entry = entries.next();
                             IInfo infoCreated = null;
 
                             if (entry.parent == null) { //we only want those that are in the global scope
                                 if (entry.node instanceof ClassDef) {
-                                    //no intern construct (locked in this loop)
+                                    //no intern construct (interned here)
                                     ClassInfo info = new ClassInfo(
-                                            ObjectsPool.internUnsynched(((NameTok) ((ClassDef) entry.node).name).id),
+                                            ObjectsPool.intern(((NameTok) ((ClassDef) entry.node).name).id),
                                             key.name, null, false);
                                     add(info, TOP_LEVEL);
                                     infoCreated = info;
 
                                 } else if (entry.node instanceof FunctionDef) {
-                                    //no intern construct (locked in this loop)
+                                    //no intern construct (interned here)
                                     FuncInfo info2 = new FuncInfo(
-                                            ObjectsPool.internUnsynched(((NameTok) ((FunctionDef) entry.node).name).id),
+                                            ObjectsPool.intern(((NameTok) ((FunctionDef) entry.node).name).id),
                                             key.name, null, false);
                                     add(info2, TOP_LEVEL);
                                     infoCreated = info2;
@@ -379,18 +682,16 @@ public abstract class AbstractAdditionalTokensInfo {
 
                                         if (entry.node instanceof ClassDef) {
                                             ClassInfo info = new ClassInfo(
-                                                    ObjectsPool
-                                                            .internUnsynched(((NameTok) ((ClassDef) entry.node).name).id),
-                                                    key.name, ObjectsPool.internUnsynched(pathToRoot.o1), false);
+                                                    ObjectsPool.intern(((NameTok) ((ClassDef) entry.node).name).id),
+                                                    key.name, ObjectsPool.intern(pathToRoot.o1), false);
                                             add(info, INNER);
                                             infoCreated = info;
 
                                         } else {
                                             //FunctionDef
                                             FuncInfo info2 = new FuncInfo(
-                                                    ObjectsPool
-                                                            .internUnsynched(((NameTok) ((FunctionDef) entry.node).name).id),
-                                                    key.name, ObjectsPool.internUnsynched(pathToRoot.o1), false);
+                                                    ObjectsPool.intern(((NameTok) ((FunctionDef) entry.node).name).id),
+                                                    key.name, ObjectsPool.intern(pathToRoot.o1), false);
                                             add(info2, INNER);
                                             infoCreated = info2;
 
@@ -412,8 +713,10 @@ public abstract class AbstractAdditionalTokensInfo {
                             }
 
                         } //end while
-
-                    }//end lock ObjectsPool.lock
+                    } finally {
+                        batchLevel--;
+                        onChanged(true);
+                    }
 
                 }//end this.lock        
 
@@ -442,22 +745,8 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public Set<String> getAllModulesWithTokens() {
         HashSet<String> ret = new HashSet<String>();
-        synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
-
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
+        for (IInfo info : getAllTokens()) {
+            ret.add(info.getDeclaringModuleName());
         }
         return ret;
 
@@ -539,6 +828,7 @@ public abstract class AbstractAdditionalTokensInfo {
         synchronized (lock) {
             removeInfoFromMap(moduleName, topLevelInitialsToInfo);
             removeInfoFromMap(moduleName, innerInitialsToInfo);
+            onChanged(true);
         }
 
     }
@@ -548,77 +838,85 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param initialsToInfo
      */
     private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
+        for (Entry<String, Set<IInfo>> entry : initialsToInfo.entrySet()) {
+            Set<IInfo> listOfInfo = entry.getValue();
+            if (!containsInfoFromModule(moduleName, listOfInfo)) {
+                continue;
+            }
+            if (!setsNotPublished.contains(listOfInfo)) {
+                //the readers may be using it: change a copy.
+                listOfInfo = new HashSet<IInfo>(listOfInfo);
+                entry.setValue(listOfInfo);
+                setsNotPublished.add(listOfInfo);
+            }
 
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
+            Iterator<IInfo> it = listOfInfo.iterator();
             while (it.hasNext()) {
-
                 IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
+                if (info != null && moduleName.equals(info.getDeclaringModuleName())) {
+                    it.remove();
                 }
             }
         }
     }
 
+    private static boolean containsInfoFromModule(String moduleName, Set<IInfo> listOfInfo) {
+        for (IInfo info : listOfInfo) {
+            if (info != null && moduleName.equals(info.getDeclaringModuleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * This is the function for which we are most optimized!
      * 
+     * Note that queries don't lock: they're answered from the last snapshot published (so, they don't wait for
+     * modules being indexed in other threads).
+     * 
      * @param qualifier the tokens returned have to start with the given qualifier
      * @return a list of info, all starting with the given qualifier
      */
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
     }
 
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
     }
 
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
-        synchronized (lock) {
-            if (result == null) {
-                result = new ArrayList<IInfo>();
-            }
+        if (result == null) {
+            result = new ArrayList<IInfo>();
+        }
+        IndexSnapshot current = snapshot;
 
-            if ((getWhat & TOP_LEVEL) != 0) {
-                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            if ((getWhat & INNER) != 0) {
-                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            return result;
+        if ((getWhat & TOP_LEVEL) != 0) {
+            getWithFilter(qualifier, current.topLevel, result, filter, useLowerCaseQual);
+        }
+        if ((getWhat & INNER) != 0) {
+            getWithFilter(qualifier, current.inner, result, filter, useLowerCaseQual);
         }
+        return result;
     }
 
     /**
      * @param qualifier
-     * @param initialsToInfo this is where we are going to get the info from (currently: inner or top level list)
+     * @param entries this is where we are going to get the info from (currently: inner or top level list)
      * @param toks (out) the tokens will be added to this list
-     * @return
      */
-    protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
-            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
+    private void getWithFilter(String qualifier, SnapshotEntries entries, Collection<IInfo> toks, Filter filter,
+            boolean useLowerCaseQual) {
         String initials = getInitials(qualifier);
         String qualToCompare = qualifier;
         if (useLowerCaseQual) {
@@ -626,11 +924,14 @@ public abstract class AbstractAdditionalTokensInfo {
         }
 
         //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
-
-        for (Set<IInfo> listForInitials : subMap.values()) {
+        String endInitials = initials + "\uffff\uffff\uffff\uffff";
+        String[] allInitials = entries.initials;
 
-            for (IInfo info : listForInitials) {
+        for (int i = entries.getFirstIndex(initials); i < allInitials.length; i++) {
+            if (allInitials[i].compareTo(endInitials) >= 0) {
+                break;
+            }
+            for (IInfo info : entries.getInfos(i)) {
                 if (filter.doCompare(qualToCompare, info)) {
                     toks.add(info);
                 }
@@ -638,27 +939,40 @@ public abstract class AbstractAdditionalTokensInfo {
         }
     }
 
+    /**
+     * Gets the tokens whose name matches the given pattern by prefix, camel-case (i.e.: gTSW matches
+     * getTokensStartingWith) or as a subsequence of the name (see TokensNameIndex for details).
+     * 
+     * @param minMatchKind one of the TokensNameIndex.MATCH_XXX constants (i.e.: MATCH_CAMEL_CASE accepts camel-case,
+     * prefix and exact matches).
+     * @param matches (out) the matches found are added to it (only the best ones are kept).
+     * 
+     * Note: the name index is rebuilt in a background thread after changes, so, the results may not reflect the
+     * latest changes while that rebuild is pending.
+     */
+    public void getTokensMatching(String pattern, int getWhat, int minMatchKind, TokensNameIndex.Matches matches) {
+        if ((getWhat & TOP_LEVEL) != 0) {
+            getNameIndex(TOP_LEVEL).getMatches(pattern, minMatchKind, matches);
+        }
+        if ((getWhat & INNER) != 0) {
+            getNameIndex(INNER).getMatches(pattern, minMatchKind, matches);
+        }
+    }
+
     /**
      * @return all the tokens that are in this info (top level or inner)
      */
     public Collection<IInfo> getAllTokens() {
-        synchronized (lock) {
-            Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
-
-            ArrayList<IInfo> toks = new ArrayList<IInfo>();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
+        IndexSnapshot current = snapshot;
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        addAllTokens(current.topLevel, toks);
+        addAllTokens(current.inner, toks);
+        return toks;
+    }
 
-            lInfo = this.innerInitialsToInfo.values();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-            return toks;
+    private static void addAllTokens(SnapshotEntries entries, Collection<IInfo> toks) {
+        for (int i = 0; i < entries.infos.length; i++) {
+            toks.addAll(entries.getInfos(i));
         }
     }
 
@@ -684,23 +998,15 @@ public abstract class AbstractAdditionalTokensInfo {
 
     protected void save(File persistingLocation) {
         try {
-            FileOutputStream stream = new FileOutputStream(persistingLocation);
-            OutputStreamWriter writer = new OutputStreamWriter(stream);
-            try {
-                FastStringBuffer tempBuf = new FastStringBuffer();
-                tempBuf.append("-- VERSION_");
-                tempBuf.append(AbstractAdditionalTokensInfo.version);
-                tempBuf.append('\n');
-                writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
-                tempBuf.clear();
-
-                saveTo(writer, tempBuf, persistingLocation);
-            } finally {
-                try {
-                    writer.close();
-                } finally {
-                    stream.close();
+            synchronized (lock) {
+                if (DEBUG_ADDITIONAL_INFO) {
+                    System.out.println("Saving info " + this.getClass().getName() + " to file (size = "
+                            + getAllTokens().size() + ") " + persistingLocation);
                 }
+                FastStringBuffer extra = new FastStringBuffer();
+                saveExtraInfo(extra);
+                TreeIO.dumpTreesToBinaryFile(persistingLocation, AbstractAdditionalTokensInfo.version,
+                        extra.toString(), this.topLevelInitialsToInfo, this.innerInitialsToInfo);
             }
         } catch (Exception e) {
             Log.log(e);
@@ -719,32 +1025,11 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected abstract File getPersistingFolder();
 
-    protected void saveTo(OutputStreamWriter writer, FastStringBuffer tempBuf, File pathToSave) throws IOException {
-        synchronized (lock) {
-            if (DEBUG_ADDITIONAL_INFO) {
-                System.out.println("Saving info " + this.getClass().getName() + " to file (size = "
-                        + getAllTokens().size() + ") " + pathToSave);
-            }
-
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
-
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
-
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
-
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
-
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
-        }
+    /**
+     * Subclasses may override to add some text to be saved along with the trees (gotten back in
+     * TreeIO.BinaryTrees.extra when loading).
+     */
+    protected void saveExtraInfo(FastStringBuffer tempBuf) throws IOException {
     }
 
     /**
@@ -767,6 +1052,8 @@ public abstract class AbstractAdditionalTokensInfo {
             }
             this.topLevelInitialsToInfo = o1;
             this.innerInitialsToInfo = o2;
+            setsNotPublished.clear();
+            onChanged(true);
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -35,11 +35,9 @@ public abstract class AbstractInfo implements IInfo, Serializable {
     public final String moduleDeclared;
 
     public AbstractInfo(String name, String moduleDeclared, String path) {
-        synchronized (ObjectsPool.lock) {
-            this.name = ObjectsPool.internUnsynched(name);
-            this.moduleDeclared = ObjectsPool.internUnsynched(moduleDeclared);
-            this.path = ObjectsPool.internUnsynched(path);
-        }
+        this.name = ObjectsPool.intern(name);
+        this.moduleDeclared = ObjectsPool.intern(moduleDeclared);
+        this.path = ObjectsPool.intern(path);
     }
 
     /**
@@ -254,6 +254,20 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
         return ret;
     }
 
+    /**
+     * @return the best maxResults tokens matching the qualifier (best matches first).
+     * @see AbstractAdditionalTokensInfo#getTokensMatching(String, int, int, TokensNameIndex.Matches)
+     */
+    public static List<IInfo> getTokensMatching(String qualifier, IPythonNature nature, int getWhat,
+            int minMatchKind, int maxResults) throws MisconfigurationException {
+        TokensNameIndex.Matches matches = new TokensNameIndex.Matches(maxResults);
+        List<AbstractAdditionalTokensInfo> additionalInfo = getAdditionalInfo(nature);
+        for (AbstractAdditionalTokensInfo info : additionalInfo) {
+            info.getTokensMatching(qualifier, getWhat, minMatchKind, matches);
+        }
+        return matches.getInfos();
+    }
+
     /**
      * @param project the project we want to get info on
      * @return a list of the additional info for the project + referencing projects
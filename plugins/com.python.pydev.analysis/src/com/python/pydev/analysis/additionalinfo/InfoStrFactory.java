@@ -106,16 +106,14 @@ public class InfoStrFactory {
 
         HashMap<Integer, String> map = new HashMap<Integer, String>();
         map.put(0, null);
-        synchronized (ObjectsPool.lock) {
-            while (linesIt.hasNext()) {
-                String line = linesIt.next().trim();
-                int i = StringUtils.rFind(line, '=');
-                if (i > 0) {
-                    String token = line.substring(0, i);
-                    String value = line.substring(i + 1);
-
-                    map.put(Integer.parseInt(value), ObjectsPool.internUnsynched(token));
-                }
+        while (linesIt.hasNext()) {
+            String line = linesIt.next().trim();
+            int i = StringUtils.rFind(line, '=');
+            if (i > 0) {
+                String token = line.substring(0, i);
+                String value = line.substring(i + 1);
+
+                map.put(Integer.parseInt(value), ObjectsPool.intern(token));
             }
         }
 
@@ -0,0 +1,535 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An immutable index over the names of some tokens which is able to answer prefix, camel-case (i.e.: gTSW matching
+ * getTokensStartingWith or g_t_s matching get_tokens_starting) and subsequence queries without going through all the
+ * names.
+ *
+ * - Prefix matches are found with a binary search in the sorted names.
+ * - Camel-case matches are found through the names which have the initials of 2 consecutive humps of the pattern
+ * (in the same order) among the initials of their humps.
+ * - Subsequence matches are found among the names starting with the first char of the pattern.
+ *
+ * Results are ranked (see {@link Matches}).
+ */
+public final class TokensNameIndex {
+
+    public static final int MATCH_NONE = 0;
+    public static final int MATCH_SUBSEQUENCE = 1;
+    public static final int MATCH_CAMEL_CASE = 2;
+    public static final int MATCH_PREFIX = 3;
+    public static final int MATCH_EXACT = 4;
+
+    /**
+     * Only the initials of the first humps of a name are indexed (names with more humps are always checked).
+     */
+    private static final int MAX_HUMPS_TO_INDEX = 8;
+
+    /**
+     * Marker used in the key for the initial of the first hump.
+     */
+    private static final char FIRST_HUMP = 0;
+
+    /**
+     * Sorted by the lower case name (and then by the name).
+     */
+    private final String[] names;
+    private final String[] lowerNames;
+    private final IInfo[][] infos;
+
+    /**
+     * Bit mask with the chars available in each name (see getCharsMask).
+     */
+    private final long[] charsMasks;
+
+    /**
+     * Key: 2 hump initials (see getHumpsKey) -> sorted indexes of the names with those humps in that order.
+     */
+    private final Map<Integer, int[]> humpsToNames;
+
+    /**
+     * Indexes of the names with more than MAX_HUMPS_TO_INDEX humps.
+     */
+    private final int[] namesWithManyHumps;
+
+    public static final TokensNameIndex EMPTY = create(Collections.<IInfo> emptyList());
+
+    private TokensNameIndex(String[] names, String[] lowerNames, IInfo[][] infos, long[] charsMasks,
+            Map<Integer, int[]> humpsToNames, int[] namesWithManyHumps) {
+        this.names = names;
+        this.lowerNames = lowerNames;
+        this.infos = infos;
+        this.charsMasks = charsMasks;
+        this.humpsToNames = humpsToNames;
+        this.namesWithManyHumps = namesWithManyHumps;
+    }
+
+    /**
+     * Collects matches keeping only the best ones (the higher the match kind, the better; for the same kind, shorter
+     * names come first).
+     */
+    public static final class Matches {
+
+        private static final class Match {
+            private final int kind;
+            private final String name;
+            private final IInfo info;
+
+            private Match(int kind, String name, IInfo info) {
+                this.kind = kind;
+                this.name = name;
+                this.info = info;
+            }
+        }
+
+        /**
+         * Negative if m1 is better than m2.
+         */
+        private static final Comparator<Match> BEST_FIRST = new Comparator<Match>() {
+
+            public int compare(Match m1, Match m2) {
+                if (m1.kind != m2.kind) {
+                    return m1.kind > m2.kind ? -1 : 1;
+                }
+                int len1 = m1.name.length();
+                int len2 = m2.name.length();
+                if (len1 != len2) {
+                    return len1 < len2 ? -1 : 1;
+                }
+                return m1.name.compareTo(m2.name);
+            }
+        };
+
+        private final int maxResults;
+
+        /**
+         * The worst match is the head (so that it's the one removed when a better match is found).
+         */
+        private final PriorityQueue<Match> queue = new PriorityQueue<Match>(11, Collections.reverseOrder(BEST_FIRST));
+
+        /**
+         * @param maxResults the maximum number of infos kept (Integer.MAX_VALUE to keep all).
+         */
+        public Matches(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        public void add(int kind, String name, IInfo info) {
+            Match match = new Match(kind, name, info);
+            if (queue.size() < maxResults) {
+                queue.add(match);
+
+            } else if (maxResults > 0 && BEST_FIRST.compare(match, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(match);
+            }
+        }
+
+        /**
+         * @return the infos matched (the best matches first).
+         */
+        public List<IInfo> getInfos() {
+            Match[] matches = queue.toArray(new Match[queue.size()]);
+            Arrays.sort(matches, BEST_FIRST);
+            List<IInfo> ret = new ArrayList<IInfo>(matches.length);
+            for (Match match : matches) {
+                ret.add(match.info);
+            }
+            return ret;
+        }
+
+        public int size() {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Creates the index for the given infos.
+     */
+    public static TokensNameIndex create(Iterable<IInfo> allInfos) {
+        HashMap<String, List<IInfo>> nameToInfos = new HashMap<String, List<IInfo>>();
+        for (IInfo info : allInfos) {
+            String name = info.getName();
+            if (name == null) {
+                continue;
+            }
+            List<IInfo> list = nameToInfos.get(name);
+            if (list == null) {
+                list = new ArrayList<IInfo>(1);
+                nameToInfos.put(name, list);
+            }
+            list.add(info);
+        }
+
+        //Each entry is: lower case name, name.
+        String[][] sorted = new String[nameToInfos.size()][];
+        int len = 0;
+        for (String name : nameToInfos.keySet()) {
+            sorted[len++] = new String[] { name.toLowerCase(), name };
+        }
+        Arrays.sort(sorted, new Comparator<String[]>() {
+
+            public int compare(String[] o1, String[] o2) {
+                int c = o1[0].compareTo(o2[0]);
+                if (c != 0) {
+                    return c;
+                }
+                return o1[1].compareTo(o2[1]);
+            }
+        });
+
+        String[] names = new String[len];
+        String[] lowerNames = new String[len];
+        IInfo[][] infos = new IInfo[len][];
+        long[] charsMasks = new long[len];
+        HashMap<Integer, IntList> humpsToNamesList = new HashMap<Integer, IntList>();
+        IntList namesWithManyHumps = new IntList();
+        char[] initials = new char[MAX_HUMPS_TO_INDEX];
+
+        for (int i = 0; i < len; i++) {
+            String name = sorted[i][1];
+            names[i] = name;
+            lowerNames[i] = sorted[i][0];
+            List<IInfo> list = nameToInfos.get(name);
+            infos[i] = list.toArray(new IInfo[list.size()]);
+            charsMasks[i] = getCharsMask(lowerNames[i]);
+
+            int humps = 0;
+            for (int hump = nextHumpStart(name, 0); hump >= 0; hump = nextHumpStart(name, hump + 1)) {
+                if (humps == MAX_HUMPS_TO_INDEX) {
+                    namesWithManyHumps.add(i);
+                    break;
+                }
+                initials[humps] = Character.toLowerCase(name.charAt(hump));
+                humps++;
+            }
+            if (humps == 0) {
+                continue;
+            }
+
+            addToHumps(humpsToNamesList, getHumpsKey(FIRST_HUMP, initials[0]), i);
+            for (int j = 0; j < humps; j++) {
+                for (int k = j + 1; k < humps; k++) {
+                    addToHumps(humpsToNamesList, getHumpsKey(initials[j], initials[k]), i);
+                }
+            }
+        }
+
+        HashMap<Integer, int[]> humpsToNames = new HashMap<Integer, int[]>(humpsToNamesList.size());
+        for (Map.Entry<Integer, IntList> entry : humpsToNamesList.entrySet()) {
+            humpsToNames.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return new TokensNameIndex(names, lowerNames, infos, charsMasks, humpsToNames, namesWithManyHumps.toArray());
+    }
+
+    private static void addToHumps(HashMap<Integer, IntList> humpsToNames, Integer key, int nameIndex) {
+        IntList list = humpsToNames.get(key);
+        if (list == null) {
+            list = new IntList();
+            humpsToNames.put(key, list);
+        }
+        //The same pair may appear more than once in a name (but names are visited in order).
+        if (list.size == 0 || list.data[list.size - 1] != nameIndex) {
+            list.add(nameIndex);
+        }
+    }
+
+    /**
+     * @return the number of different names in the index.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Adds the infos whose name matches the pattern to the passed matches.
+     *
+     * @param minMatchKind the minimum match kind accepted (i.e.: MATCH_CAMEL_CASE to accept camel-case, prefix and
+     * exact matches).
+     */
+    public void getMatches(String pattern, int minMatchKind, Matches matches) {
+        if (pattern.length() == 0 || names.length == 0) {
+            return;
+        }
+        String lowerPattern = pattern.toLowerCase();
+        BitSet checked = new BitSet(names.length);
+
+        //Prefix matches (and exact matches).
+        int[] range = getPrefixRange(lowerPattern);
+        for (int i = range[0]; i < range[1]; i++) {
+            checked.set(i);
+            addMatch(i, names[i].equals(pattern) ? MATCH_EXACT : MATCH_PREFIX, minMatchKind, matches);
+        }
+        if (minMatchKind > MATCH_CAMEL_CASE) {
+            return;
+        }
+
+        //Camel-case matches: candidates are the ones in the smallest list for the humps of the pattern.
+        int[] candidates = getCamelCaseCandidates(pattern);
+        if (candidates != null) {
+            checkCandidates(candidates, pattern, lowerPattern, minMatchKind, matches, checked);
+        }
+        checkCandidates(namesWithManyHumps, pattern, lowerPattern, minMatchKind, matches, checked);
+
+        if (minMatchKind > MATCH_SUBSEQUENCE) {
+            return;
+        }
+
+        //Subsequence matches: must start with the same char.
+        range = getPrefixRange(lowerPattern.substring(0, 1));
+        long patternMask = getCharsMask(lowerPattern);
+        for (int i = range[0]; i < range[1]; i++) {
+            if (checked.get(i) || (charsMasks[i] & patternMask) != patternMask) {
+                continue;
+            }
+            checked.set(i);
+            addMatch(i, getMatchKind(pattern, lowerPattern, names[i], lowerNames[i]), minMatchKind, matches);
+        }
+    }
+
+    private void checkCandidates(int[] candidates, String pattern, String lowerPattern, int minMatchKind,
+            Matches matches, BitSet checked) {
+        for (int i : candidates) {
+            if (checked.get(i)) {
+                continue;
+            }
+            checked.set(i);
+            addMatch(i, getMatchKind(pattern, lowerPattern, names[i], lowerNames[i]), minMatchKind, matches);
+        }
+    }
+
+    private void addMatch(int nameIndex, int kind, int minMatchKind, Matches matches) {
+        if (kind == MATCH_NONE || kind < minMatchKind) {
+            return;
+        }
+        String name = names[nameIndex];
+        for (IInfo info : infos[nameIndex]) {
+            matches.add(kind, name, info);
+        }
+    }
+
+    /**
+     * @return the names which may be a camel-case match for the pattern (or null if there's no possible match).
+     */
+    private int[] getCamelCaseCandidates(String pattern) {
+        char previous = FIRST_HUMP;
+        int[] smallest = null;
+        int len = pattern.length();
+        for (int i = 0; i < len; i++) {
+            if (!isPatternHumpStart(pattern, i)) {
+                continue;
+            }
+            char initial = Character.toLowerCase(pattern.charAt(i));
+            int[] found = humpsToNames.get(getHumpsKey(previous, initial));
+            if (found == null) {
+                return null;
+            }
+            if (smallest == null || found.length < smallest.length) {
+                smallest = found;
+            }
+            previous = initial;
+        }
+        return smallest;
+    }
+
+    /**
+     * @return the [start, end) indexes of the names starting with the given (lower case) prefix.
+     */
+    private int[] getPrefixRange(String lowerPrefix) {
+        int start = getFirstIndexGreaterOrEqual(lowerPrefix);
+        int end = getFirstIndexGreaterOrEqual(lowerPrefix + '\uffff');
+        return new int[] { start, end };
+    }
+
+    private int getFirstIndexGreaterOrEqual(String lower) {
+        int low = 0;
+        int high = lowerNames.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lowerNames[mid].compareTo(lower) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the kind of match (MATCH_XXX constants) of the name for the given pattern.
+     */
+    public static int getMatchKind(String pattern, String name) {
+        return getMatchKind(pattern, pattern.toLowerCase(), name, name.toLowerCase());
+    }
+
+    private static int getMatchKind(String pattern, String lowerPattern, String name, String lowerName) {
+        if (name.equals(pattern)) {
+            return MATCH_EXACT;
+        }
+        if (lowerName.startsWith(lowerPattern)) {
+            return MATCH_PREFIX;
+        }
+        if (camelCaseMatch(pattern, name)) {
+            return MATCH_CAMEL_CASE;
+        }
+        if (subsequenceMatch(lowerPattern, lowerName)) {
+            return MATCH_SUBSEQUENCE;
+        }
+        return MATCH_NONE;
+    }
+
+    /**
+     * Each hump of the pattern (which starts at an upper case char or after an '_') must match the start of a hump
+     * in the name (in the same order). The first hump of the pattern must match the first hump of the name.
+     */
+    public static boolean camelCaseMatch(String pattern, String name) {
+        int patternLen = pattern.length();
+        int hump = nextHumpStart(name, 0);
+        boolean first = true;
+        int i = 0;
+        while (i < patternLen) {
+            if (pattern.charAt(i) == '_') {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < patternLen && !isPatternHumpStart(pattern, end)) {
+                end++;
+            }
+            int len = end - i;
+            while (pattern.charAt(i + len - 1) == '_') {
+                len--;
+            }
+            while (hump >= 0 && !name.regionMatches(true, hump, pattern, i, len)) {
+                if (first) {
+                    return false;
+                }
+                hump = nextHumpStart(name, hump + 1);
+            }
+            if (hump < 0) {
+                return false;
+            }
+            first = false;
+            hump = nextHumpStart(name, hump + len);
+            i = end;
+        }
+        return !first;
+    }
+
+    /**
+     * The name must start with the first char of the pattern and have all the other chars in the same order.
+     */
+    private static boolean subsequenceMatch(String lowerPattern, String lowerName) {
+        int nameLen = lowerName.length();
+        if (nameLen == 0 || lowerName.charAt(0) != lowerPattern.charAt(0)) {
+            return false;
+        }
+        int j = 1;
+        int patternLen = lowerPattern.length();
+        for (int i = 1; i < patternLen; i++) {
+            char c = lowerPattern.charAt(i);
+            while (j < nameLen && lowerName.charAt(j) != c) {
+                j++;
+            }
+            if (j == nameLen) {
+                return false;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    private static boolean isPatternHumpStart(String pattern, int i) {
+        char c = pattern.charAt(i);
+        if (c == '_') {
+            return false;
+        }
+        return i == 0 || Character.isUpperCase(c) || pattern.charAt(i - 1) == '_';
+    }
+
+    /**
+     * @return the index of the first hump starting at or after the given index (or -1 if there's none).
+     *
+     * A hump starts at the first char, at an upper case char after a lower case char (or followed by a lower case
+     * char), at a digit after a non-digit or after an '_'.
+     */
+    private static int nextHumpStart(String name, int from) {
+        int len = name.length();
+        for (int i = from; i < len; i++) {
+            char c = name.charAt(i);
+            if (c == '_') {
+                continue;
+            }
+            if (i == 0) {
+                return i;
+            }
+            char prev = name.charAt(i - 1);
+            if (prev == '_') {
+                return i;
+            }
+            if (Character.isUpperCase(c)) {
+                if (!Character.isUpperCase(prev) || (i + 1 < len && Character.isLowerCase(name.charAt(i + 1)))) {
+                    return i;
+                }
+            } else if (Character.isDigit(c) && !Character.isDigit(prev)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Integer getHumpsKey(char c1, char c2) {
+        return (c1 << 16) | c2;
+    }
+
+    /**
+     * @return a mask with a bit for each letter (a-z), one for digits and one for anything else.
+     */
+    private static long getCharsMask(String lower) {
+        long mask = 0;
+        int len = lower.length();
+        for (int i = 0; i < len; i++) {
+            char c = lower.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (c >= '0' && c <= '9') {
+                mask |= 1L << 26;
+            } else {
+                mask |= 1L << 27;
+            }
+        }
+        return mask;
+    }
+
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        private void add(int i) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = i;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -6,10 +6,24 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -22,92 +36,20 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.utils.PlatformUtils;
 
 /**
+ * Saves and restores the trees with the IInfo.
+ * 
+ * The trees are saved in a binary format (see: {@link #dumpTreesToBinaryFile(File, int, String, SortedMap, SortedMap)})
+ * which is memory-mapped when loaded and whose sets are only materialized when accessed. The text format is
+ * only read (loadTreeFrom/loadDictFrom) to restore info saved by previous versions.
+ * 
  * @author Fabio
  *
  */
 public class TreeIO {
 
-    /**
-     * Tree is written as:
-     * line 1= tree size
-     * cub|2|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
-     */
-    public static void dumpTreeToBuffer(SortedMap<String, Set<IInfo>> tree, FastStringBuffer tempBuf,
-            Map<String, Integer> strToInt) {
-        Set<Entry<String, Set<IInfo>>> entrySet = tree.entrySet();
-        Iterator<Entry<String, Set<IInfo>>> it = entrySet.iterator();
-        tempBuf.append(entrySet.size());
-        tempBuf.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Set<IInfo>> next = it.next();
-            tempBuf.append(next.getKey());
-            Set<IInfo> value = next.getValue();
-
-            tempBuf.append('|');
-            tempBuf.append(value.size());
-            tempBuf.append('|');
-
-            Iterator<IInfo> it2 = value.iterator();
-            Integer integer;
-            while (it2.hasNext()) {
-                IInfo info = it2.next();
-                tempBuf.append(info.getName());
-                tempBuf.append('!');
-
-                String path = info.getPath();
-                if (path != null) {
-                    integer = strToInt.get(path);
-                    if (integer == null) {
-                        integer = strToInt.size() + 1;
-                        strToInt.put(path, integer);
-                    }
-                    tempBuf.append(integer);
-                    tempBuf.append('&');
-                }
-
-                String modName = info.getDeclaringModuleName();
-
-                integer = strToInt.get(modName);
-                if (integer == null) {
-                    integer = strToInt.size() + 1;
-                    strToInt.put(modName, integer);
-                }
-
-                int v = integer << 3;
-                v |= info.getType();
-                tempBuf.append(v); //Write a single for name+type
-
-                tempBuf.append('@');
-            }
-            tempBuf.append('\n');
-        }
-        tempBuf.append("-- END TREE\n");
-    }
-
-    /**
-     * Dict format is the following:
-     * -- START DICTIONARY
-     * dictionary size
-     * name=integer
-     */
-    public static void dumpDictToBuffer(Map<String, Integer> strToInt, FastStringBuffer buf2) {
-        Iterator<Entry<String, Integer>> it = strToInt.entrySet().iterator();
-
-        buf2.append("-- START DICTIONARY\n");
-        buf2.append(strToInt.size());
-        buf2.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Integer> next = it.next();
-            buf2.append(next.getValue());
-            buf2.append('=');
-            buf2.append(next.getKey());
-            buf2.append('\n');
-        }
-        buf2.append("-- END DICTIONARY\n");
-    }
-
     /**
      * @author Fabio
      *
@@ -307,4 +249,433 @@ public class TreeIO {
             }
         }
     }
+
+    /**
+     * Identifies a file saved with dumpTreesToBinaryFile ("PYDT").
+     */
+    public static final int BINARY_MAGIC = 0x50594454;
+
+    /**
+     * 1: string table + 2 trees (key, first record, records len) + records (name, path, module << 3 | type)
+     */
+    private static final int BINARY_VERSION = 1;
+
+    private static final int BINARY_ENTRY_SIZE = 12;
+
+    private static final int BINARY_RECORD_SIZE = 12;
+
+    /**
+     * Used when writing the binary format.
+     */
+    private static final class IntArray {
+        private int[] values = new int[1024];
+        private int size;
+
+        private void add(int v) {
+            if (size == values.length) {
+                int[] newValues = new int[size * 2];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            values[size++] = v;
+        }
+    }
+
+    private static int getStringIndex(Map<String, Integer> strToIndex, String str) {
+        Integer i = strToIndex.get(str);
+        if (i == null) {
+            i = strToIndex.size();
+            strToIndex.put(str, i);
+        }
+        return i;
+    }
+
+    private static void addTreeToBinary(SortedMap<String, Set<IInfo>> tree, Map<String, Integer> strToIndex,
+            IntArray entries, IntArray records) {
+        for (Entry<String, Set<IInfo>> entry : tree.entrySet()) {
+            Set<IInfo> value = entry.getValue();
+            entries.add(getStringIndex(strToIndex, entry.getKey()));
+            entries.add(records.size / 3);
+            entries.add(value.size());
+            //Note: data is read only once as the set may be materialized by a reader in another thread meanwhile.
+            BinaryData data = value instanceof LazyInfoSet ? ((LazyInfoSet) value).data : null;
+            if (data != null) {
+                //Still not materialized: copy the records without creating the IInfo.
+                LazyInfoSet lazy = (LazyInfoSet) value;
+                ByteBuffer buf = data.buf;
+                for (int i = 0; i < lazy.recordsLen; i++) {
+                    int pos = data.recordsStart + (lazy.firstRecord + i) * BINARY_RECORD_SIZE;
+                    records.add(getStringIndex(strToIndex, data.getString(buf.getInt(pos))));
+                    int pathIndex = buf.getInt(pos + 4);
+                    records.add(pathIndex < 0 ? -1 : getStringIndex(strToIndex, data.getString(pathIndex)));
+                    int v = buf.getInt(pos + 8);
+                    records.add((getStringIndex(strToIndex, data.getString(v >> 3)) << 3) | (v & 0x07));
+                }
+                continue;
+            }
+            for (IInfo info : value) {
+                records.add(getStringIndex(strToIndex, info.getName()));
+                String path = info.getPath();
+                records.add(path == null ? -1 : getStringIndex(strToIndex, path));
+                records.add((getStringIndex(strToIndex, info.getDeclaringModuleName()) << 3) | info.getType());
+            }
+        }
+    }
+
+    /**
+     * Writes the trees in a binary format:
+     * 
+     * int magic, int binary version, int info version
+     * int extra len, extra bytes (utf-8)
+     * int strings len, int[strings len + 1] offsets in the strings blob, int blob len, blob (utf-8)
+     * for each tree: int entries len, entries (int key string, int first record, int records len)
+     * int records len, records (int name string, int path string or -1, int module string << 3 | type)
+     * 
+     * The file is written to a temporary file and then moved to the target (so that a previous version which
+     * is memory-mapped is never changed in-place).
+     * 
+     * @param extra any additional text to be saved (may be gotten back in the BinaryTrees loaded).
+     */
+    public static void dumpTreesToBinaryFile(File file, int infoVersion, String extra,
+            SortedMap<String, Set<IInfo>> tree1, SortedMap<String, Set<IInfo>> tree2) throws IOException {
+        Map<String, Integer> strToIndex = new LinkedHashMap<String, Integer>();
+        IntArray entries1 = new IntArray();
+        IntArray entries2 = new IntArray();
+        IntArray records = new IntArray();
+        addTreeToBinary(tree1, strToIndex, entries1, records);
+        addTreeToBinary(tree2, strToIndex, entries2, records);
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                64 * 1024));
+        try {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeInt(infoVersion);
+
+            byte[] extraBytes = extra.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(extraBytes.length);
+            out.write(extraBytes);
+
+            List<byte[]> strings = new ArrayList<byte[]>(strToIndex.size());
+            for (String str : strToIndex.keySet()) {
+                strings.add(str.getBytes(StandardCharsets.UTF_8));
+            }
+            out.writeInt(strings.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : strings) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : strings) {
+                out.write(bytes);
+            }
+
+            for (IntArray entries : new IntArray[] { entries1, entries2 }) {
+                out.writeInt(entries.size / 3);
+                for (int i = 0; i < entries.size; i++) {
+                    out.writeInt(entries.values[i]);
+                }
+            }
+            out.writeInt(records.size / 3);
+            for (int i = 0; i < records.size; i++) {
+                out.writeInt(records.values[i]);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return whether the given file was saved with dumpTreesToBinaryFile.
+     */
+    public static boolean isBinaryFile(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] b = new byte[4];
+            if (in.read(b) != 4) {
+                return false;
+            }
+            return ByteBuffer.wrap(b).getInt() == BINARY_MAGIC;
+        }
+    }
+
+    /**
+     * The contents loaded from a binary file.
+     */
+    public static final class BinaryTrees {
+        public final int infoVersion;
+        public final String extra;
+        public final PyPublicTreeMap<String, Set<IInfo>> tree1;
+        public final PyPublicTreeMap<String, Set<IInfo>> tree2;
+
+        private BinaryTrees(int infoVersion, String extra, PyPublicTreeMap<String, Set<IInfo>> tree1,
+                PyPublicTreeMap<String, Set<IInfo>> tree2) {
+            this.infoVersion = infoVersion;
+            this.extra = extra;
+            this.tree1 = tree1;
+            this.tree2 = tree2;
+        }
+    }
+
+    /**
+     * The data shared by the lazy sets of a loaded file (strings are only decoded when first requested).
+     */
+    private static final class BinaryData {
+        private final ByteBuffer buf;
+        private final int stringOffsetsStart;
+        private final int stringsBlobStart;
+        private final int recordsStart;
+        private final String[] strings;
+
+        private BinaryData(ByteBuffer buf, int stringOffsetsStart, int stringsBlobStart, int recordsStart,
+                int stringsLen) {
+            this.buf = buf;
+            this.stringOffsetsStart = stringOffsetsStart;
+            this.stringsBlobStart = stringsBlobStart;
+            this.recordsStart = recordsStart;
+            this.strings = new String[stringsLen];
+        }
+
+        private String getString(int i) {
+            if (i < 0) {
+                return null;
+            }
+            String ret = strings[i];
+            if (ret == null) {
+                int start = buf.getInt(stringOffsetsStart + i * 4);
+                int end = buf.getInt(stringOffsetsStart + (i + 1) * 4);
+                byte[] bytes = new byte[end - start];
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = buf.get(stringsBlobStart + start + j);
+                }
+                //Shared with the strings of other loaded files (i.e.: module names of other projects).
+                ret = ObjectsPool.intern(new String(bytes, StandardCharsets.UTF_8));
+                strings[i] = ret;
+            }
+            return ret;
+        }
+
+        private IInfo getInfo(int record) {
+            int pos = recordsStart + record * BINARY_RECORD_SIZE;
+            String infoName = getString(buf.getInt(pos));
+            String path = getString(buf.getInt(pos + 4));
+            int v = buf.getInt(pos + 8);
+            int type = v & 0x07;
+            String moduleDeclared = getString(v >> 3);
+            switch (type) {
+                case IInfo.CLASS_WITH_IMPORT_TYPE:
+                    return new ClassInfo(infoName, moduleDeclared, path, false);
+                case IInfo.METHOD_WITH_IMPORT_TYPE:
+                    return new FuncInfo(infoName, moduleDeclared, path, false);
+                case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                    return new AttrInfo(infoName, moduleDeclared, path, false);
+                case IInfo.NAME_WITH_IMPORT_TYPE:
+                    return new NameInfo(infoName, moduleDeclared, path, false);
+                case IInfo.MOD_IMPORT_TYPE:
+                    return new ModInfo(moduleDeclared, false);
+                default:
+                    Log.log("Unexpected type: " + type);
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * A set which only creates its IInfo (from the binary data) when it's first accessed.
+     * 
+     * Note: the set may be read by many threads at once (readers access the sets in the published snapshot of
+     * AbstractAdditionalTokensInfo without locking), so, its creation is done under the lock of the set (and it's
+     * created only once). Changes to the set aren't thread-safe (as in the other sets in the trees, a set which
+     * is part of a published snapshot must not be changed).
+     */
+    private static final class LazyInfoSet extends AbstractSet<IInfo> {
+
+        //Volatile: the set may be created by any thread reading the index (and data is read without the lock when
+        //the tree is saved).
+        private volatile BinaryData data;
+        private final int firstRecord;
+        private final int recordsLen;
+        private volatile HashSet<IInfo> set;
+
+        private LazyInfoSet(BinaryData data, int firstRecord, int recordsLen) {
+            this.data = data;
+            this.firstRecord = firstRecord;
+            this.recordsLen = recordsLen;
+        }
+
+        private HashSet<IInfo> getSet() {
+            HashSet<IInfo> current = set;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                current = set;
+                if (current == null) { //Check again: it may have been created by another thread.
+                    BinaryData currentData = data;
+                    current = new HashSet<IInfo>(recordsLen);
+                    for (int i = 0; i < recordsLen; i++) {
+                        IInfo info = currentData.getInfo(firstRecord + i);
+                        if (info != null) {
+                            current.add(info);
+                        }
+                    }
+                    set = current;
+                    data = null; //Not needed anymore (release it so that the buffer may be collected).
+                }
+                return current;
+            }
+        }
+
+        @Override
+        public Iterator<IInfo> iterator() {
+            return getSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            HashSet<IInfo> current = set;
+            if (current == null) {
+                return recordsLen;
+            }
+            return current.size();
+        }
+
+        @Override
+        public boolean add(IInfo e) {
+            return getSet().add(e);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return getSet().remove(o);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return getSet().contains(o);
+        }
+
+        @Override
+        public void clear() {
+            getSet().clear();
+        }
+    }
+
+    private static PyPublicTreeMap<String, Set<IInfo>> loadBinaryTree(BinaryData data, ByteBuffer buf, int pos,
+            int entriesLen) {
+        final List<Entry> entries = new ArrayList<Entry>(entriesLen);
+        for (int i = 0; i < entriesLen; i++) {
+            int entryPos = pos + i * BINARY_ENTRY_SIZE;
+            String key = data.getString(buf.getInt(entryPos));
+            entries.add(new LazyMapEntry(key, new LazyInfoSet(data, buf.getInt(entryPos + 4),
+                    buf.getInt(entryPos + 8))));
+        }
+        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
+        try {
+            tree.buildFromSorted(entriesLen, entries.iterator(), null, null);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        return tree;
+    }
+
+    private static final class LazyMapEntry implements Map.Entry {
+
+        private final String key;
+        private final LazyInfoSet set;
+
+        public LazyMapEntry(String key, LazyInfoSet set) {
+            this.key = key;
+            this.set = set;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return set;
+        }
+
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Loads a file saved with dumpTreesToBinaryFile.
+     * 
+     * The file is memory-mapped (or fully read at once on Windows, where a mapped file can't be replaced while the
+     * mapping is alive) and the sets in the trees are only materialized when accessed.
+     */
+    public static BinaryTrees loadTreesFromBinaryFile(File file) throws IOException {
+        ByteBuffer buf;
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too big: " + file);
+            }
+            if (PlatformUtils.isWindowsPlatform()) {
+                buf = ByteBuffer.allocate((int) size);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf) < 0) {
+                        throw new IOException("Unexpected end of file: " + file);
+                    }
+                }
+                buf.flip();
+            } else {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        if (buf.getInt(0) != BINARY_MAGIC) {
+            throw new IOException("Not a binary info file: " + file);
+        }
+        if (buf.getInt(4) != BINARY_VERSION) {
+            throw new IOException("Unexpected binary version: " + buf.getInt(4) + " in: " + file);
+        }
+        int infoVersion = buf.getInt(8);
+
+        int pos = 12;
+        int extraLen = buf.getInt(pos);
+        pos += 4;
+        byte[] extraBytes = new byte[extraLen];
+        buf.position(pos);
+        buf.get(extraBytes);
+        pos += extraLen;
+        String extra = new String(extraBytes, StandardCharsets.UTF_8);
+
+        int stringsLen = buf.getInt(pos);
+        pos += 4;
+        int stringOffsetsStart = pos;
+        pos += (stringsLen + 1) * 4;
+        int blobLen = buf.getInt(pos);
+        pos += 4;
+        int stringsBlobStart = pos;
+        pos += blobLen;
+
+        int entries1Len = buf.getInt(pos);
+        pos += 4;
+        int entries1Start = pos;
+        pos += entries1Len * BINARY_ENTRY_SIZE;
+        int entries2Len = buf.getInt(pos);
+        pos += 4;
+        int entries2Start = pos;
+        pos += entries2Len * BINARY_ENTRY_SIZE;
+
+        int recordsLen = buf.getInt(pos);
+        pos += 4;
+        int recordsStart = pos;
+        if (recordsStart + (long) recordsLen * BINARY_RECORD_SIZE != buf.limit()) {
+            throw new IOException("Binary info file is corrupted (unexpected size): " + file);
+        }
+
+        BinaryData data = new BinaryData(buf, stringOffsetsStart, stringsBlobStart, recordsStart, stringsLen);
+        return new BinaryTrees(infoVersion, extra, loadBinaryTree(data, buf, entries1Start, entries1Len),
+                loadBinaryTree(data, buf, entries2Start, entries2Len));
+    }
 }
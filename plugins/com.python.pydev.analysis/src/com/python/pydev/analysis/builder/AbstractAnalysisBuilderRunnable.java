@@ -6,6 +6,9 @@
  */
 package com.python.pydev.analysis.builder;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -47,10 +50,23 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
     final protected boolean forceAnalysis;
     final protected int analysisCause;
     final protected KeyForAnalysisRunnable key;
-    final private Object lock = new Object();
+
+    /**
+     * Released when the run finishes (so that a runnable which supersedes this one may start right away).
+     */
+    final private CountDownLatch runFinishedLatch = new CountDownLatch(1);
+
+    private static final AtomicLong supersededCount = new AtomicLong();
+    private static final AtomicLong supersedeTotalWaitNanos = new AtomicLong();
+    private static final AtomicLong supersedeMaxWaitNanos = new AtomicLong();
 
     protected IPythonNature nature;
     protected volatile boolean runFinished = false;
+
+    /**
+     * Set when this runnable was dropped from the pool (superseded by a newer one) without running.
+     */
+    private volatile boolean supersededBeforeRun = false;
     private IAnalysisBuilderRunnable oldAnalysisBuilderThread;
     private long documentTime;
     private long resourceModificationStamp;
@@ -91,10 +107,75 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         return runFinished;
     }
 
+    public void waitRunFinished() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                runFinishedLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; //keep on waiting (but restore the interrupted state afterwards).
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        IAnalysisBuilderRunnable old = this.oldAnalysisBuilderThread;
+        if (supersededBeforeRun && old != null) {
+            //This one never ran: the one it superseded may still be running.
+            old.waitRunFinished();
+        }
+    }
+
+    /**
+     * Called by the pool when a newer runnable for the same module was scheduled before this one started (so, this
+     * one won't run).
+     */
+    public void onSuperseded() {
+        stopAnalysis();
+        logOperationCancelled();
+        supersededBeforeRun = true;
+        try {
+            AnalysisBuilderRunnableFactory.removeFromThreads(key, this);
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            this.nature = null;
+            runFinished = true;
+            runFinishedLatch.countDown();
+        }
+    }
+
+    private static void onSupersedeWaitFinished(long waitedNanos) {
+        supersededCount.incrementAndGet();
+        supersedeTotalWaitNanos.addAndGet(waitedNanos);
+        while (true) {
+            long max = supersedeMaxWaitNanos.get();
+            if (waitedNanos <= max || supersedeMaxWaitNanos.compareAndSet(max, waitedNanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of times an analysis waited for a previous analysis of the same module to finish and
+     * how long it waited (for diagnosis).
+     */
+    public static String getSupersedeStats() {
+        long count = supersededCount.get();
+        long avgMillis = count > 0 ? supersedeTotalWaitNanos.get() / count / 1000000 : 0;
+        return "Superseded analysis: count=" + count + ", avgWaitMillis=" + avgMillis + ", maxWaitMillis="
+                + (supersedeMaxWaitNanos.get() / 1000000);
+    }
+
     public String getModuleName() {
         return moduleName;
     }
 
+    public KeyForAnalysisRunnable getKey() {
+        return key;
+    }
+
     public String getAnalysisCauseStr() {
         String analysisCauseStr;
         if (analysisCause == ANALYSIS_CAUSE_BUILDER) {
@@ -130,19 +211,12 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
                     //just to make sure that the analysis of the existing runnable had a request for stopping already
                     oldAnalysisBuilderThread.stopAnalysis();
 
-                    int attempts = 0;
-                    while (!oldAnalysisBuilderThread.getRunFinished()) {
-                        attempts += 1;
-                        synchronized (lock) {
-                            try {
-                                Thread.sleep(50);
-                            } catch (InterruptedException e) {
-                                //ignore
-                            }
-                        }
-                    }
+                    long initialNanos = System.nanoTime();
+                    oldAnalysisBuilderThread.waitRunFinished();
+                    long waitedNanos = System.nanoTime() - initialNanos;
+                    onSupersedeWaitFinished(waitedNanos);
                     if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
-                        Log.toLogFile(this, "Starting analysis after attempts: " + attempts);
+                        Log.toLogFile(this, "Starting analysis after waiting (millis): " + (waitedNanos / 1000000));
                     }
                 }
                 //that's all we need it for... we can already dispose of it.
@@ -166,6 +240,7 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
                 Log.log(e);
             } finally {
                 runFinished = true;
+                runFinishedLatch.countDown();
             }
 
             dispose();
@@ -231,8 +231,13 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
             //ok, let's do it
             OccurrencesAnalyzer analyzer = new OccurrencesAnalyzer();
             checkStop();
+            //Only reuse the results of definitions which didn't change when analyzing as the user types (a builder
+            //request does the full analysis, which also refreshes the information kept for later requests).
+            long initialAnalysisNanos = System.nanoTime();
             IMessage[] messages = analyzer.analyzeDocument(nature, module, analysisPreferences, document,
-                    this.internalCancelMonitor, DefaultIndentPrefs.get(this.resource));
+                    this.internalCancelMonitor, DefaultIndentPrefs.get(this.resource),
+                    key.projectName + ":" + key.moduleName, analysisCause == ANALYSIS_CAUSE_PARSER);
+            AnalysisMarkersBatcher.addAnalysisTime(System.nanoTime() - initialAnalysisNanos);
 
             checkStop();
             if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -252,7 +257,9 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                         || !analyzeOnlyActiveEditor
                         || (analyzeOnlyActiveEditor && (!PyDevBuilderPrefPage.getRemoveErrorsWhenEditorIsClosed() || PyEdit
                                 .isEditorOpenForResource(r)))) {
-                    runner.setMarkers(r, document, messages, this.internalCancelMonitor);
+                    //Markers from the builder are batched (the user isn't waiting for those).
+                    runner.setMarkers(r, document, messages, this.internalCancelMonitor,
+                            analysisCause == ANALYSIS_CAUSE_BUILDER);
                 } else {
                     if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
                         Log.toLogFile(this, "Skipped adding markers for module: " + moduleName
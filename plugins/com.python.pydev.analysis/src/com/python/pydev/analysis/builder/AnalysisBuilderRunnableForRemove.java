@@ -11,6 +11,7 @@ import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.logging.DebugSettings;
 
+import com.python.pydev.analysis.IncrementalAnalysisCache;
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
 
@@ -41,6 +42,7 @@ public class AnalysisBuilderRunnableForRemove extends AbstractAnalysisBuilderRun
             Log.toLogFile(this, "Removing additional info from: " + moduleName);
         }
         removeInfoForModule(moduleName, nature, isFullBuild);
+        IncrementalAnalysisCache.remove(key.projectName + ":" + key.moduleName);
     }
 
     /**
@@ -19,7 +19,7 @@ import org.python.pydev.builder.PyDevBuilderVisitor;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.concurrency.RunnableAsJobsPool;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyCodeCompletionVisitor;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -183,7 +183,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
             return;
         }
 
-        execRunnable(moduleName, runnable, forceAnalyzeInThisThread);
+        execRunnable(moduleName, resource, runnable, forceAnalyzeInThisThread);
     }
 
     /**
@@ -191,12 +191,20 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
      * or schedule it as a job.
      * @param forceAnalyzeInThisThread 
      */
-    private void execRunnable(final String moduleName, final IAnalysisBuilderRunnable runnable,
+    private void execRunnable(final String moduleName, IResource resource, final IAnalysisBuilderRunnable runnable,
             boolean forceAnalyzeInThisThread) {
         if (isFullBuild() || forceAnalyzeInThisThread) {
             runnable.run();
         } else {
-            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
+            //Analysis requested from the editor (parser) has precedence over the one from the builder (and the
+            //editor where the user is working has precedence over other editors).
+            int priority = RunnableAsJobsPool.PRIORITY_BACKGROUND;
+            if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER) {
+                priority = FocusedEditorPyEditListener.isFocused(resource) ? RunnableAsJobsPool.PRIORITY_INTERACTIVE
+                        : RunnableAsJobsPool.PRIORITY_DEFAULT;
+            }
+            RunnableAsJobsPool.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName, priority,
+                    runnable.getKey());
         }
     }
 
@@ -237,7 +245,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
                 return;
             }
 
-            execRunnable(moduleName, runnable, false);
+            execRunnable(moduleName, resource, runnable, false);
         }
     }
 
@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.python.pydev.core.log.Log;
+
+/**
+ * Applies the analysis markers to the resources.
+ *
+ * Instead of removing all the markers of a resource and creating new ones, the existing markers are compared with
+ * the new ones and only the delta is applied (usually most of the markers don't change among analysis requests).
+ *
+ * Requests from the builder are batched: many resources are updated inside the same workspace runnable (so, a
+ * single resource change notification is generated for the whole batch). Requests from the editor are applied
+ * right away (but still as a delta).
+ */
+public final class AnalysisMarkersBatcher {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * The time to wait for more requests before applying a batch.
+     */
+    private static final int BATCH_DELAY_MILLIS = 250;
+
+    /**
+     * If this number of resources is pending, the batch is applied right away.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final class PendingUpdate {
+
+        private final IResource resource;
+        private final List<Map<String, Object>> markers;
+        private final long stamp;
+
+        private PendingUpdate(IResource resource, List<Map<String, Object>> markers, long stamp) {
+            this.resource = resource;
+            this.markers = markers;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final Object lock = new Object();
+
+    /**
+     * Only the last update of a resource is kept (access synchronized with the lock).
+     */
+    private static final Map<IResource, PendingUpdate> pending = new LinkedHashMap<IResource, PendingUpdate>();
+
+    /**
+     * The stamp of the last update applied to a resource (access synchronized with the lock). Used so that an
+     * older update doesn't override a newer one (so, it's only kept while the resource has unapplied updates).
+     */
+    private static final Map<IResource, Long> lastAppliedStamp = new HashMap<IResource, Long>();
+
+    /**
+     * The number of updates of a resource which were requested and still weren't applied (access synchronized with
+     * the lock).
+     */
+    private static final Map<IResource, Integer> unappliedCount = new HashMap<IResource, Integer>();
+
+    private static long nextStamp;
+
+    // Metrics
+    private static final AtomicLong analysisNanos = new AtomicLong();
+    private static final AtomicLong analyzedResources = new AtomicLong();
+    private static final AtomicLong markersApplyNanos = new AtomicLong();
+    private static final AtomicLong updatedResources = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong markersCreated = new AtomicLong();
+    private static final AtomicLong markersDeleted = new AtomicLong();
+    private static final AtomicLong markersKept = new AtomicLong();
+
+    private static final Job flushJob = new Job("PyDev: Update analysis markers") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            try {
+                flush(monitor);
+            } catch (Throwable e) {
+                Log.log(e);
+            }
+            return Status.OK_STATUS;
+        }
+    };
+
+    static {
+        flushJob.setSystem(true);
+        flushJob.setPriority(Job.DECORATE);
+    }
+
+    private AnalysisMarkersBatcher() {
+    }
+
+    /**
+     * Schedules the given markers to be set in the resource in the next batch.
+     */
+    public static void scheduleMarkers(IResource resource, List<Map<String, Object>> markers) {
+        int size;
+        synchronized (lock) {
+            if (pending.put(resource, new PendingUpdate(resource, markers, nextStamp++)) == null) {
+                addUnapplied(resource);
+            }
+            size = pending.size();
+        }
+        if (size >= MAX_BATCH_SIZE) {
+            flushJob.schedule();
+            flushJob.wakeUp();
+        } else if (size == 1) {
+            flushJob.schedule(BATCH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Sets the given markers in the resource right away (any pending update for the resource is discarded).
+     */
+    public static void setMarkers(IResource resource, List<Map<String, Object>> markers, IProgressMonitor monitor) {
+        PendingUpdate update;
+        synchronized (lock) {
+            if (pending.remove(resource) == null) {
+                addUnapplied(resource);
+            }
+            update = new PendingUpdate(resource, markers, nextStamp++);
+        }
+        List<PendingUpdate> updates = new ArrayList<PendingUpdate>(1);
+        updates.add(update);
+        apply(updates, monitor);
+    }
+
+    /**
+     * Applies all the pending updates.
+     */
+    public static void flush(IProgressMonitor monitor) {
+        List<PendingUpdate> updates;
+        synchronized (lock) {
+            if (pending.size() == 0) {
+                return;
+            }
+            updates = new ArrayList<PendingUpdate>(pending.values());
+            pending.clear();
+        }
+        batches.incrementAndGet();
+        apply(updates, monitor);
+    }
+
+    private static void apply(final List<PendingUpdate> updates, IProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        long initialNanos = System.nanoTime();
+        IWorkspaceRunnable r = new IWorkspaceRunnable() {
+
+            public void run(IProgressMonitor monitor) throws CoreException {
+                for (PendingUpdate update : updates) {
+                    synchronized (lock) {
+                        Long last = lastAppliedStamp.get(update.resource);
+                        if (last != null && last > update.stamp) {
+                            continue; //A newer update was already applied.
+                        }
+                        lastAppliedStamp.put(update.resource, update.stamp);
+                    }
+                    try {
+                        applyDelta(update.resource, update.markers);
+                    } catch (Exception e) {
+                        //If the resource doesn't exist anymore, there's no need to log it.
+                        if (update.resource.exists()) {
+                            Log.log(e);
+                        }
+                    }
+                }
+            }
+        };
+
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        ISchedulingRule rule = null;
+        for (PendingUpdate update : updates) {
+            rule = MultiRule.combine(rule, workspace.getRuleFactory().markerRule(update.resource));
+        }
+        try {
+            workspace.run(r, rule, IWorkspace.AVOID_UPDATE, monitor);
+        } catch (Exception e) {
+            Log.log(e);
+        } finally {
+            synchronized (lock) {
+                for (PendingUpdate update : updates) {
+                    removeUnapplied(update.resource);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - initialNanos;
+        markersApplyNanos.addAndGet(elapsed);
+        updatedResources.addAndGet(updates.size());
+        if (DEBUG) {
+            System.out.println("Applied markers for " + updates.size() + " resources in " + (elapsed / 1000000)
+                    + " millis.");
+        }
+    }
+
+    /**
+     * Removes the markers which are no longer valid and creates the ones which don't exist.
+     */
+    private static void applyDelta(IResource resource, List<Map<String, Object>> markers) throws CoreException {
+        if (!resource.exists()) {
+            return;
+        }
+        //Note: the same marker may appear more than once (so, we count them).
+        Map<Map<String, Object>, Integer> toCreate = new HashMap<Map<String, Object>, Integer>(markers.size());
+        for (Map<String, Object> marker : markers) {
+            Integer count = toCreate.get(marker);
+            toCreate.put(marker, count == null ? 1 : count + 1);
+        }
+
+        IMarker[] existing = resource.findMarkers(AnalysisRunner.PYDEV_ANALYSIS_PROBLEM_MARKER, true,
+                IResource.DEPTH_ZERO);
+        List<IMarker> toDelete = new ArrayList<IMarker>();
+        int kept = 0;
+        for (IMarker marker : existing) {
+            Map<String, Object> attributes = marker.getAttributes();
+            Integer count = attributes != null ? toCreate.get(attributes) : null;
+            if (count == null) {
+                toDelete.add(marker);
+            } else {
+                kept++;
+                if (count == 1) {
+                    toCreate.remove(attributes);
+                } else {
+                    toCreate.put(attributes, count - 1);
+                }
+            }
+        }
+
+        if (toDelete.size() > 0) {
+            resource.getWorkspace().deleteMarkers(toDelete.toArray(new IMarker[toDelete.size()]));
+        }
+        int created = 0;
+        for (Map.Entry<Map<String, Object>, Integer> entry : toCreate.entrySet()) {
+            for (int i = entry.getValue(); i > 0; i--) {
+                IMarker marker = resource.createMarker(AnalysisRunner.PYDEV_ANALYSIS_PROBLEM_MARKER);
+                marker.setAttributes(entry.getKey());
+                created++;
+            }
+        }
+        markersCreated.addAndGet(created);
+        markersDeleted.addAndGet(toDelete.size());
+        markersKept.addAndGet(kept);
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private static void addUnapplied(IResource resource) {
+        Integer count = unappliedCount.get(resource);
+        unappliedCount.put(resource, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private static void removeUnapplied(IResource resource) {
+        Integer count = unappliedCount.get(resource);
+        if (count == null || count <= 1) {
+            //Nothing else to be applied: no need to keep its stamp.
+            unappliedCount.remove(resource);
+            lastAppliedStamp.remove(resource);
+        } else {
+            unappliedCount.put(resource, count - 1);
+        }
+    }
+
+    /**
+     * Removes any pending update for the given resource (i.e.: its markers were removed).
+     */
+    public static void removePending(IResource resource) {
+        synchronized (lock) {
+            if (pending.remove(resource) != null) {
+                removeUnapplied(resource);
+            }
+            if (unappliedCount.containsKey(resource)) {
+                //Updates being applied must not set the markers again.
+                lastAppliedStamp.put(resource, nextStamp++);
+            }
+        }
+    }
+
+    /**
+     * Meant to be used in tests!
+     *
+     * @return the number of entries kept to track the updates of resources.
+     */
+    /*default*/static int getTrackedResourcesCount() {
+        synchronized (lock) {
+            return lastAppliedStamp.size() + unappliedCount.size();
+        }
+    }
+
+    /**
+     * Registers the time spent analyzing a resource (to compare with the time spent on markers).
+     */
+    public static void addAnalysisTime(long nanos) {
+        analysisNanos.addAndGet(nanos);
+        analyzedResources.incrementAndGet();
+    }
+
+    /**
+     * @return a description of the time spent analyzing vs applying markers (for diagnosis).
+     */
+    public static String getStats() {
+        int pendingSize;
+        synchronized (lock) {
+            pendingSize = pending.size();
+        }
+        return "AnalysisMarkersBatcher[analyzedResources=" + analyzedResources.get() + ", analysisMillis="
+                + (analysisNanos.get() / 1000000) + ", updatedResources=" + updatedResources.get() + ", batches="
+                + batches.get() + ", markersMillis=" + (markersApplyNanos.get() / 1000000) + ", created="
+                + markersCreated.get() + ", deleted=" + markersDeleted.get() + ", kept=" + markersKept.get()
+                + ", pending=" + pendingSize + "]";
+    }
+}
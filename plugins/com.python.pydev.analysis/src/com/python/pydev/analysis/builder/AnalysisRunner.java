@@ -12,6 +12,7 @@ package com.python.pydev.analysis.builder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -79,6 +80,7 @@ public class AnalysisRunner {
         }
 
         try {
+            AnalysisMarkersBatcher.removePending(resource);
             resource.deleteMarkers(PYDEV_ANALYSIS_PROBLEM_MARKER, true, IResource.DEPTH_ZERO);
         } catch (CoreException e) {
             //ok, if it is a resource exception, it may have happened because the resource does not exist anymore
@@ -99,24 +101,40 @@ public class AnalysisRunner {
      * @param document the document
      * @param messages the messages to add
      * @param monitor monitor to check if we should stop the process.
-     * @param existing these are the existing markers. After this method, the list will contain only the ones that
-     * should be removed.
      */
     public void setMarkers(IResource resource, IDocument document, IMessage[] messages, IProgressMonitor monitor) {
+        setMarkers(resource, document, messages, monitor, false);
+    }
+
+    /**
+     * Same as setMarkers, but if batch is true, the markers are set later on along with the markers of other
+     * resources (see: AnalysisMarkersBatcher).
+     */
+    public void setMarkers(IResource resource, IDocument document, IMessage[] messages, IProgressMonitor monitor,
+            boolean batch) {
         if (resource == null) {
             return;
         }
         try {
-            //Timer timer = new Timer();
-            //System.out.println("Start creating markers");
             ArrayList<MarkerInfo> lst = generateMarkers(document, messages, monitor);
 
             if (monitor.isCanceled()) {
                 return;
             }
 
-            PyMarkerUtils.replaceMarkers(lst, resource, AnalysisRunner.PYDEV_ANALYSIS_PROBLEM_MARKER, true, monitor);
-            //timer.printDiff("Time to put markers: "+lst.size());
+            //The positions must be computed now (as the document may change later on).
+            List<Map<String, Object>> markers = new ArrayList<Map<String, Object>>(lst.size());
+            for (MarkerInfo markerInfo : lst) {
+                HashMap<String, Object> asMap = markerInfo.getAsMap();
+                if (asMap != null) {
+                    markers.add(asMap);
+                }
+            }
+            if (batch) {
+                AnalysisMarkersBatcher.scheduleMarkers(resource, markers);
+            } else {
+                AnalysisMarkersBatcher.setMarkers(resource, markers, monitor);
+            }
         } catch (Exception e) {
             Log.log("Error when setting markers on: " + resource, e);
         }
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.lang.ref.WeakReference;
+import java.util.ListResourceBundle;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.string.TextSelectionUtils;
+import org.python.pydev.shared_ui.editor.BaseEditor;
+import org.python.pydev.shared_ui.editor.IPyEditListener;
+import org.python.pydev.shared_ui.editor.IPyEditListener2;
+
+/**
+ * Keeps track of the editor where the user is working (the last one which had its cursor changed) so that its
+ * analysis has precedence over the analysis of other editors.
+ */
+public class FocusedEditorPyEditListener implements IPyEditListener, IPyEditListener2 {
+
+    private static volatile WeakReference<BaseEditor> focusedEditor = new WeakReference<BaseEditor>(null);
+
+    /**
+     * @return whether the given resource is the one in the editor where the user is working.
+     */
+    public static boolean isFocused(IResource resource) {
+        BaseEditor edit = focusedEditor.get();
+        if (edit == null || resource == null) {
+            return false;
+        }
+        IFile file = edit.getIFile();
+        return file != null && file.equals(resource);
+    }
+
+    public void handleCursorPositionChanged(BaseEditor edit, TextSelectionUtils ps) {
+        if (focusedEditor.get() != edit) {
+            focusedEditor = new WeakReference<BaseEditor>(edit);
+        }
+    }
+
+    public void onDispose(BaseEditor edit, IProgressMonitor monitor) {
+        if (focusedEditor.get() == edit) {
+            focusedEditor = new WeakReference<BaseEditor>(null);
+        }
+    }
+
+    public void onSave(BaseEditor edit, IProgressMonitor monitor) {
+
+    }
+
+    public void onCreateActions(ListResourceBundle resources, BaseEditor edit, IProgressMonitor monitor) {
+
+    }
+
+    public void onSetDocument(IDocument document, BaseEditor edit, IProgressMonitor monitor) {
+
+    }
+
+}
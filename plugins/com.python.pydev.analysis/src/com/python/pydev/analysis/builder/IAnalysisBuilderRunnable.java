@@ -6,9 +6,9 @@
  */
 package com.python.pydev.analysis.builder;
 
-import org.python.pydev.core.concurrency.IRunnableWithMonitor;
+import org.python.pydev.core.concurrency.ISupersedableRunnable;
 
-public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
+public interface IAnalysisBuilderRunnable extends ISupersedableRunnable {
 
     public static final int ANALYSIS_CAUSE_BUILDER = 1;
     public static final int ANALYSIS_CAUSE_PARSER = 2;
@@ -41,6 +41,11 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
 
     boolean getRunFinished();
 
+    /**
+     * Blocks until the run of this runnable finishes (returns right away if it already finished).
+     */
+    void waitRunFinished();
+
     String getModuleName();
 
     String getAnalysisCauseStr();
@@ -48,4 +53,9 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
     long getDocumentTime();
 
     long getResourceModificationStamp();
+
+    /**
+     * @return the key (project and module) for which this runnable was created.
+     */
+    KeyForAnalysisRunnable getKey();
 }
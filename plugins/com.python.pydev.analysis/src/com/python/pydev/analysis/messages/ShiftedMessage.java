@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.messages;
+
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.IToken;
+
+/**
+ * A message whose position was already resolved (in a previous version of the document) and which is only moved
+ * by some lines (used to reuse messages of code which didn't change among analysis requests).
+ */
+public final class ShiftedMessage implements IMessage {
+
+    private final IMessage original;
+    private final int startLine;
+    private final int startCol;
+    private final int endLine;
+    private final int endCol;
+
+    /**
+     * Resolves the position of the given message in the given document.
+     */
+    public ShiftedMessage(IMessage original, IDocument doc) {
+        this.startLine = original.getStartLine(doc);
+        this.startCol = original.getStartCol(doc);
+        this.endLine = original.getEndLine(doc);
+        this.endCol = original.getEndCol(doc);
+        if (original instanceof ShiftedMessage) {
+            original = ((ShiftedMessage) original).original;
+        }
+        this.original = original;
+    }
+
+    private ShiftedMessage(IMessage original, int startLine, int startCol, int endLine, int endCol) {
+        this.original = original;
+        this.startLine = startLine;
+        this.startCol = startCol;
+        this.endLine = endLine;
+        this.endCol = endCol;
+    }
+
+    /**
+     * @return a new message with the same contents moved by the given number of lines.
+     */
+    public ShiftedMessage shift(int lines) {
+        return new ShiftedMessage(original, startLine + lines, startCol, endLine < 0 ? endLine : endLine + lines,
+                endCol);
+    }
+
+    public int getSeverity() {
+        return original.getSeverity();
+    }
+
+    public int getType() {
+        return original.getType();
+    }
+
+    public int getStartLine(IDocument doc) {
+        return startLine;
+    }
+
+    public int getStartCol(IDocument doc) {
+        return startCol;
+    }
+
+    public int getEndLine(IDocument doc) {
+        return endLine;
+    }
+
+    public int getEndCol(IDocument doc) {
+        return endCol;
+    }
+
+    public String getMessage() {
+        return original.getMessage();
+    }
+
+    public List<String> getAdditionalInfo() {
+        return original.getAdditionalInfo();
+    }
+
+    public void addAdditionalInfo(String info) {
+        original.addAdditionalInfo(info);
+    }
+
+    public Object getShortMessage() {
+        return original.getShortMessage();
+    }
+
+    public IToken getGenerator() {
+        return original.getGenerator();
+    }
+
+    @Override
+    public String toString() {
+        return original.toString();
+    }
+}
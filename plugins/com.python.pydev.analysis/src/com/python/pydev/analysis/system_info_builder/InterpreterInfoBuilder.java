@@ -12,7 +12,7 @@
 ******************************************************************************/
 package com.python.pydev.analysis.system_info_builder;
 
-import java.util.List;
+import java.io.File;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -20,14 +20,12 @@ import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.log.Log;
-import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure;
-import org.python.pydev.editor.codecompletion.revisited.ModulesManager;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathDiscovery;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.editor.codecompletion.revisited.SystemModulesManager;
 import org.python.pydev.logging.DebugSettings;
 import org.python.pydev.shared_core.string.StringUtils;
-import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.ui.pythonpathconf.IInterpreterInfoBuilder;
 import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
 
@@ -53,32 +51,41 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
 
         PythonPathHelper pythonPathHelper = new PythonPathHelper();
         pythonPathHelper.setPythonPath(info.libs);
-        ModulesFoundStructure modulesFound = pythonPathHelper.getModulesFoundStructure(null, monitor);
-        ret = checkEarlyReturn(monitor, info);
-        if (ret != BuilderResult.OK) {
-            return ret;
-        }
-
-        SystemModulesManager modulesManager = (SystemModulesManager) info.getModulesManager();
-        PyPublicTreeMap<ModulesKey, ModulesKey> keysFound = ModulesManager.buildKeysFromModulesFound(monitor,
-                modulesFound);
-
-        if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
-            Log.toLogFile(
-                    this,
-                    StringUtils.format("Found: %s modules",
-                            keysFound.size()));
+        try {
+            //Keep a snapshot so that only the directories/zips which changed are listed in the next run.
+            pythonPathHelper.setDiscoverySnapshotFile(new File(info.getIoDirectory(),
+                    PythonPathDiscovery.SNAPSHOT_FILE_NAME));
+        } catch (Exception e) {
+            Log.log(e);
         }
+        PythonPathDiscovery.Result discovery = pythonPathHelper.findModules(null, monitor);
         ret = checkEarlyReturn(monitor, info);
         if (ret != BuilderResult.OK) {
             return ret;
         }
 
+        SystemModulesManager modulesManager = (SystemModulesManager) info.getModulesManager();
         IInterpreterManager manager = info.getModulesManager().getInterpreterManager();
         try {
             AbstractAdditionalDependencyInfo additionalSystemInfo;
             additionalSystemInfo = AdditionalSystemInterpreterInfo.getAdditionalSystemInfo(manager,
                     info.getExecutableOrJar());
+
+            //Update the modules manager itself (only the modules added/removed are applied if it's in sync with the
+            //previous discovery). Note: the builtins are added by the modules manager.
+            if (modulesManager.updateKeys(discovery, monitor)) {
+                if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
+                    if (discovery.addedKeys != null) {
+                        Log.toLogFile(this, StringUtils.format("Discovery delta. Added: %s Removed: %s",
+                                discovery.addedKeys, discovery.removedKeys));
+                    } else {
+                        Log.toLogFile(this, "All the modules updated (no discovery delta available).");
+                    }
+                }
+                modulesManager.save();
+            }
+
+            PyPublicTreeMap<ModulesKey, ModulesKey> keysFound = discovery.getKeys(monitor);
             String[] builtins = info.getBuiltins();
             //Note: consider builtins at this point: we do this only at this point and not in the regular process
             //(which would be the dialog where the interpreter is configured) because this can be a slow process
@@ -91,19 +98,11 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
                     keysFound.put(k, k);
                 }
             }
-
-            // Important: do the diff only after the builtins are added (otherwise the modules manager may become wrong)!
-            Tuple<List<ModulesKey>, List<ModulesKey>> diffModules = modulesManager.diffModules(keysFound);
-
-            if (diffModules.o1.size() > 0 || diffModules.o2.size() > 0) {
-                if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
-                    Log.toLogFile(this, StringUtils.format(
-                            "Diff modules. Added: %s Removed: %s", diffModules.o1,
-                            diffModules.o2));
-                }
-
-                //Update the modules manager itself (just pass all the keys as that should be fast)
-                modulesManager.updateKeysAndSave(keysFound);
+            if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
+                Log.toLogFile(
+                        this,
+                        StringUtils.format("Found: %s modules",
+                                keysFound.size()));
             }
             additionalSystemInfo.updateKeysIfNeededAndSave(keysFound, info, monitor);
         } catch (MisconfigurationException e) {
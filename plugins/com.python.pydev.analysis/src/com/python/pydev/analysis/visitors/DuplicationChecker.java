@@ -109,4 +109,12 @@ public final class DuplicationChecker {
         endScope(NodeUtils.getRepresentationString(node));
     }
 
+    /**
+     * A definition whose contents were not visited (but which should still be considered when checking
+     * for duplications in the current scope).
+     */
+    public void onSkippedDefinition(String name) {
+        stack.peek().put(name, name);
+    }
+
 }
@@ -9,8 +9,10 @@
  */
 package com.python.pydev.analysis.visitors;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -44,6 +46,7 @@ import org.python.pydev.parser.jython.ast.Str;
 import org.python.pydev.parser.jython.ast.While;
 import org.python.pydev.parser.jython.ast.Yield;
 import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.shared_core.callbacks.ICallbackListener;
 import org.python.pydev.shared_core.structure.FastStack;
 import org.python.pydev.shared_core.structure.Tuple;
@@ -102,6 +105,52 @@ public final class OccurrencesVisitor extends AbstractScopeAnalyzerVisitor {
         this.noSelfChecker = new NoSelfChecker(this);
     }
 
+    /**
+     * Top-level definitions whose contents shouldn't be visited (because the messages from a previous analysis
+     * are still valid for them). See: setDefinitionsToSkip.
+     */
+    private Set<SimpleNode> definitionsToSkip;
+
+    /**
+     * The names referenced in the definitions skipped.
+     */
+    private Collection<String> skippedDefinitionsReferences;
+
+    /**
+     * Sets top-level definitions whose contents shouldn't be visited (only the name they define is added to the
+     * module scope).
+     *
+     * @param definitions the ClassDef/FunctionDef nodes to be skipped (compared by identity).
+     * @param referencedNames the names (possibly dotted) referenced inside the skipped definitions (those are
+     * marked as used in the module scope at the end of the analysis).
+     */
+    public void setDefinitionsToSkip(Set<SimpleNode> definitions, Collection<String> referencedNames) {
+        this.definitionsToSkip = definitions;
+        this.skippedDefinitionsReferences = referencedNames;
+    }
+
+    @Override
+    public Object visitFunctionDef(FunctionDef node) throws Exception {
+        if (definitionsToSkip != null && definitionsToSkip.contains(node)) {
+            unhandled_node(node);
+            addToNamesToIgnore(node, false, true);
+            duplicationChecker.onSkippedDefinition(NodeUtils.getRepresentationString(node));
+            return null;
+        }
+        return super.visitFunctionDef(node);
+    }
+
+    @Override
+    public Object visitClassDef(ClassDef node) throws Exception {
+        if (definitionsToSkip != null && definitionsToSkip.contains(node)) {
+            unhandled_node(node);
+            addToNamesToIgnore(node, true, true);
+            duplicationChecker.onSkippedDefinition(NodeUtils.getRepresentationString(node));
+            return null;
+        }
+        return super.visitClassDef(node);
+    }
+
     private int isInTestScope = 0;
 
     @Override
@@ -302,6 +351,14 @@ public final class OccurrencesVisitor extends AbstractScopeAnalyzerVisitor {
      * @param m
      */
     protected void onLastScope(ScopeItems m) {
+        if (skippedDefinitionsReferences != null) {
+            //The module-level tokens used in skipped definitions must still be marked as used.
+            for (String rep : skippedDefinitionsReferences) {
+                for (Found found : find(m, rep)) {
+                    found.setUsed(true);
+                }
+            }
+        }
         for (Found n : probablyNotDefined) {
             String rep = n.getSingle().tok.getRepresentation();
             Map<String, Tuple<IToken, Found>> lastInStack = m.namesToIgnore;
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.editor.autoedit.TestIndentPrefs;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
+
+import com.python.pydev.analysis.messages.IMessage;
+
+/**
+ * Checks that the analysis which reuses the messages of unchanged definitions gives the same messages as a full
+ * analysis of the same contents.
+ */
+public class IncrementalAnalysisCacheTest extends AnalysisTestsBase {
+
+    private static final String KEY = "IncrementalAnalysisCacheTest:mod1";
+
+    public static void main(String[] args) {
+        try {
+            IncrementalAnalysisCacheTest test = new IncrementalAnalysisCacheTest();
+            test.setUp();
+            test.testBodyOnlyEdit();
+            test.tearDown();
+            System.out.println("finished");
+
+            junit.textui.TestRunner.run(IncrementalAnalysisCacheTest.class);
+            System.out.println("finished all");
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        System.exit(0);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        prefs.severityForArgumentsMismatch = IMarker.SEVERITY_ERROR;
+        IncrementalAnalysisCache.clear();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        IncrementalAnalysisCache.clear();
+        super.tearDown();
+    }
+
+    private SourceModule createModule(Document document) {
+        try {
+            return (SourceModule) AbstractModule.createModuleFromDoc(null, null, document, nature, true);
+        } catch (MisconfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String analyze(Document document, SourceModule module, String incrementalKey, boolean reuse) {
+        IMessage[] messages = new OccurrencesAnalyzer().analyzeDocument(nature, module, prefs, document,
+                new NullProgressMonitor(), new TestIndentPrefs(true, 4), incrementalKey, reuse);
+        List<String> ret = new ArrayList<String>();
+        for (IMessage message : messages) {
+            ret.add(message.getMessage() + " (" + message.getSeverity() + ") " + message.getStartLine(document) + ":"
+                    + message.getStartCol(document) + "-" + message.getEndLine(document) + ":"
+                    + message.getEndCol(document));
+        }
+        Collections.sort(ret);
+        return ret.toString();
+    }
+
+    /**
+     * Does a full analysis of the initial contents (which is kept as the base for the next analysis) and then checks
+     * for each edit that the analysis reusing the previous results gives the same messages as a full analysis.
+     *
+     * @return the number of definitions which were not visited again in each edit.
+     */
+    private List<Integer> checkEdits(String initial, String... edits) {
+        Document document = new Document(initial);
+        analyze(document, createModule(document), KEY, false);
+
+        List<Integer> skipped = new ArrayList<Integer>();
+        for (String edit : edits) {
+            document = new Document(edit);
+            String full = analyze(document, createModule(document), null, false);
+
+            SourceModule module = createModule(document);
+            List<IncrementalAnalysisCache.TopLevelStatement> statements = IncrementalAnalysisCache
+                    .computeStatements(module.getAst(), edit);
+            IncrementalAnalysisCache.Plan plan = statements != null ? IncrementalAnalysisCache.createPlan(KEY,
+                    statements) : null;
+            skipped.add(plan != null ? plan.definitionsToSkip.size() : 0);
+
+            assertEquals("Different messages for:\n" + edit, full, analyze(document, module, KEY, true));
+        }
+        return skipped;
+    }
+
+    public void testBodyOnlyEdit() throws Exception {
+        String initial = "" +
+                "import os\n" +
+                "\n" +
+                "def f(a):\n" +
+                "    b = 1\n" +
+                "    return a\n" +
+                "\n" +
+                "def g():\n" +
+                "    return undefined_name\n" +
+                "\n" +
+                "class C(object):\n" +
+                "    def m(self, x):\n" +
+                "        unused = 10\n" +
+                "        return os.path\n";
+        String edit1 = initial.replace("    b = 1\n", "    b = 1\n    c = undefined2\n\n");
+        String edit2 = edit1.replace("    c = undefined2\n", "    c = a\n    return c\n");
+        assertEquals(Arrays.asList(2, 2), checkEdits(initial, edit1, edit2));
+    }
+
+    public void testAddedRemovedAndRenamedDefs() throws Exception {
+        String initial = "" +
+                "def f():\n" +
+                "    pass\n" +
+                "\n" +
+                "def g():\n" +
+                "    return f()\n" +
+                "\n" +
+                "def h():\n" +
+                "    return undefined_name\n";
+        String added = "" +
+                "def k(a):\n" +
+                "    return a\n" +
+                "\n" +
+                initial;
+        String removed = added.replace("" +
+                "def h():\n" +
+                "    return undefined_name\n", "");
+        String renamed = removed.replace("def f():", "def f2():");
+        String calledWithArgs = renamed.replace("def f2():", "def f(a, b):");
+        assertEquals(Arrays.asList(3, 3, 1, 1), checkEdits(initial, added, removed, renamed, calledWithArgs));
+    }
+
+    public void testDuplicatedDefinition() throws Exception {
+        String initial = "" +
+                "def f():\n" +
+                "    pass\n" +
+                "\n" +
+                "def g():\n" +
+                "    pass\n";
+        String duplicated = initial + "\n" +
+                "def f():\n" +
+                "    pass\n";
+        checkEdits(initial, duplicated, initial);
+    }
+
+    public void testChangedGlobals() throws Exception {
+        String initial = "" +
+                "CONST = 1\n" +
+                "\n" +
+                "def f():\n" +
+                "    return CONST\n" +
+                "\n" +
+                "def g():\n" +
+                "    return 2\n";
+        String removed = initial.replace("CONST = 1\n", "");
+        String readded = "CONST = 2\n" + removed;
+        assertEquals(Arrays.asList(1, 1), checkEdits(initial, removed, readded));
+
+        //A 'global' in a changed definition: everything is analyzed again.
+        String withGlobal = readded.replace("    return 2\n", "    global CONST\n    CONST = 3\n");
+        String withGlobal2 = withGlobal.replace("CONST = 3", "CONST = 4\n    return undefined_name");
+        assertEquals(Arrays.asList(0, 0), checkEdits(readded, withGlobal, withGlobal2));
+    }
+
+    public void testWildImports() throws Exception {
+        String initial = "" +
+                "from os import *\n" +
+                "\n" +
+                "def f():\n" +
+                "    return path\n" +
+                "\n" +
+                "def g():\n" +
+                "    return 1\n";
+        String bodyEdit = initial.replace("    return 1\n", "    return sep\n");
+        String removedWildImport = bodyEdit.replace("from os import *\n", "");
+        String readdedWildImport = "from os.path import *\n" + removedWildImport;
+        assertEquals(Arrays.asList(1, 0, 0), checkEdits(initial, bodyEdit, removedWildImport, readdedWildImport));
+    }
+
+    public void testAll() throws Exception {
+        String initial = "" +
+                "import os\n" +
+                "import sys\n" +
+                "__all__ = ['os']\n" +
+                "\n" +
+                "def f():\n" +
+                "    return 1\n" +
+                "\n" +
+                "def g():\n" +
+                "    return undefined_name\n";
+        String changedAll = initial.replace("__all__ = ['os']", "__all__ = ['os', 'sys']");
+        String removedAll = changedAll.replace("__all__ = ['os', 'sys']\n", "");
+        String allWithDef = removedAll.replace("import sys\n", "import sys\n__all__ = ['f', 'sys']\n");
+        assertEquals(Arrays.asList(2, 2, 2), checkEdits(initial, changedAll, removedAll, allWithDef));
+    }
+}
@@ -138,6 +138,28 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
         assertEquals(1, tokensStartingWith.size());
     }
 
+    public void testChangesInBatchOnlyVisibleAtEnd() {
+        info.add(new FuncInfo("met1", "mod1", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        Collection<IInfo> before = info.getTokensStartingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(1, before.size());
+
+        info.startBatch();
+        try {
+            info.add(new FuncInfo("met2", "mod2", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+            info.removeInfoFromModule("mod1", false);
+            assertEquals(1, info.getTokensStartingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+            assertEquals("met1", info.getTokensEqualTo("met1", AbstractAdditionalTokensInfo.TOP_LEVEL).iterator()
+                    .next().getName());
+        } finally {
+            info.endBatch();
+        }
+
+        Collection<IInfo> after = info.getTokensStartingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(1, after.size());
+        assertEquals("met2", after.iterator().next().getName());
+        assertEquals("met1", before.iterator().next().getName());
+    }
+
     public void testAddFunc() {
         FuncInfo info2 = new FuncInfo(((NameTok) createFuncDef("met1").name).id, "mod1", null);
         info.add(info2, AbstractAdditionalTokensInfo.TOP_LEVEL);
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TokensNameIndexTest extends TestCase {
+
+    private TokensNameIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        List<IInfo> infos = new ArrayList<IInfo>();
+        for (String name : new String[] { "getTokensStartingWith", "getTokensEqualTo", "get_tokens_starting",
+                "getTestServerWindow", "gets", "GetTokens", "HTTPServer", "tokens", "__init__" }) {
+            infos.add(new FuncInfo(name, "mod1", null, false));
+        }
+        infos.add(new FuncInfo("gets", "mod2", null, false));
+        index = TokensNameIndex.create(infos);
+    }
+
+    private List<String> getNames(String pattern, int minMatchKind, int maxResults) {
+        TokensNameIndex.Matches matches = new TokensNameIndex.Matches(maxResults);
+        index.getMatches(pattern, minMatchKind, matches);
+        List<String> ret = new ArrayList<String>();
+        for (IInfo info : matches.getInfos()) {
+            ret.add(info.getName());
+        }
+        return ret;
+    }
+
+    public void testPrefix() throws Exception {
+        assertEquals(9, index.size());
+        List<String> names = getNames("getT", TokensNameIndex.MATCH_PREFIX, Integer.MAX_VALUE);
+        assertEquals("[GetTokens, getTokensEqualTo, getTestServerWindow, getTokensStartingWith]", names.toString());
+
+        names = getNames("gets", TokensNameIndex.MATCH_PREFIX, Integer.MAX_VALUE);
+        assertEquals("[gets, gets]", names.toString());
+    }
+
+    public void testCamelCase() throws Exception {
+        List<String> names = getNames("gTSW", TokensNameIndex.MATCH_CAMEL_CASE, Integer.MAX_VALUE);
+        assertEquals("[getTestServerWindow, getTokensStartingWith]", names.toString());
+
+        //Humps are matched ignoring the case.
+        names = getNames("getTS", TokensNameIndex.MATCH_CAMEL_CASE, Integer.MAX_VALUE);
+        assertEquals("[getTestServerWindow, get_tokens_starting, getTokensStartingWith]", names.toString());
+
+        names = getNames("g_t_s", TokensNameIndex.MATCH_CAMEL_CASE, Integer.MAX_VALUE);
+        assertEquals("[getTestServerWindow, get_tokens_starting, getTokensStartingWith]", names.toString());
+
+        names = getNames("HS", TokensNameIndex.MATCH_CAMEL_CASE, Integer.MAX_VALUE);
+        assertEquals("[HTTPServer]", names.toString());
+
+        names = getNames("in", TokensNameIndex.MATCH_CAMEL_CASE, Integer.MAX_VALUE);
+        assertEquals("[__init__]", names.toString());
+
+        assertTrue(TokensNameIndex.camelCaseMatch("gTE", "getTokensEqualTo"));
+        assertFalse(TokensNameIndex.camelCaseMatch("TE", "getTokensEqualTo"));
+        assertFalse(TokensNameIndex.camelCaseMatch("gTW", "getTokensEqualTo"));
+    }
+
+    public void testSubsequenceAndRanking() throws Exception {
+        List<String> names = getNames("gtsw", TokensNameIndex.MATCH_SUBSEQUENCE, Integer.MAX_VALUE);
+        assertEquals("[getTestServerWindow, getTokensStartingWith]", names.toString());
+
+        names = getNames("gets", TokensNameIndex.MATCH_SUBSEQUENCE, Integer.MAX_VALUE);
+        assertEquals("[gets, gets, GetTokens, getTokensEqualTo, getTestServerWindow, get_tokens_starting, "
+                + "getTokensStartingWith]", names.toString());
+
+        //Only the best ones are kept.
+        names = getNames("gTS", TokensNameIndex.MATCH_SUBSEQUENCE, 2);
+        assertEquals("[getTestServerWindow, get_tokens_starting]", names.toString());
+
+        assertEquals(TokensNameIndex.MATCH_EXACT, TokensNameIndex.getMatchKind("gets", "gets"));
+        assertEquals(TokensNameIndex.MATCH_NONE, TokensNameIndex.getMatchKind("xyz", "gets"));
+    }
+}
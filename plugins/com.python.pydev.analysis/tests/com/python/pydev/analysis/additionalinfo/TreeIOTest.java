@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+
+import junit.framework.TestCase;
+
+public class TreeIOTest extends TestCase {
+
+    private File file;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(TreeIOTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("tree_io_test", ".pydevinfo");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private static Set<IInfo> createSet(IInfo... infos) {
+        Set<IInfo> set = new HashSet<IInfo>();
+        for (IInfo info : infos) {
+            set.add(info);
+        }
+        return set;
+    }
+
+    public void testBinaryRoundTrip() throws Exception {
+        PyPublicTreeMap<String, Set<IInfo>> tree1 = new PyPublicTreeMap<String, Set<IInfo>>();
+        PyPublicTreeMap<String, Set<IInfo>> tree2 = new PyPublicTreeMap<String, Set<IInfo>>();
+        tree1.put("bar", createSet(new FuncInfo("bar", "mod1", null), new ClassInfo("Bar", "mod2", null)));
+        tree1.put("mod", createSet(new ModInfo("pack.mod")));
+        tree2.put("méth", createSet(new FuncInfo("méth", "mod1", "Bar"), new AttrInfo("attr", "mod1", "Bar.méth"),
+                new NameInfo("name", "mod2", "Bar")));
+
+        assertFalse(TreeIO.isBinaryFile(file));
+        TreeIO.dumpTreesToBinaryFile(file, 4, "extra\ntext", tree1, tree2);
+        assertTrue(TreeIO.isBinaryFile(file));
+
+        TreeIO.BinaryTrees loaded = TreeIO.loadTreesFromBinaryFile(file);
+        assertEquals(4, loaded.infoVersion);
+        assertEquals("extra\ntext", loaded.extra);
+        assertEquals(tree1.keySet(), loaded.tree1.keySet());
+        assertEquals(2, loaded.tree1.get("bar").size()); //Size available without materializing.
+        assertEquals(tree1.get("bar"), new HashSet<IInfo>(loaded.tree1.get("bar")));
+        assertEquals(tree1.get("mod"), new HashSet<IInfo>(loaded.tree1.get("mod")));
+
+        //Saving again without accessing some sets must keep them (copied as records) and must replace the file.
+        Set<IInfo> loadedSet = loaded.tree2.get("méth");
+        TreeIO.dumpTreesToBinaryFile(file, 4, "", loaded.tree1, loaded.tree2);
+        assertEquals(tree2.get("méth"), new HashSet<IInfo>(loadedSet));
+
+        TreeIO.BinaryTrees loaded2 = TreeIO.loadTreesFromBinaryFile(file);
+        assertEquals("", loaded2.extra);
+        assertEquals(tree2.get("méth"), new HashSet<IInfo>(loaded2.tree2.get("méth")));
+
+        loaded2.tree2.get("méth").add(new ClassInfo("Other", "mod3", null));
+        assertEquals(4, loaded2.tree2.get("méth").size());
+    }
+
+    public void testConcurrentMaterialization() throws Exception {
+        PyPublicTreeMap<String, Set<IInfo>> tree1 = new PyPublicTreeMap<String, Set<IInfo>>();
+        final Set<IInfo> expected = new HashSet<IInfo>();
+        for (int i = 0; i < 500; i++) {
+            expected.add(new FuncInfo("func" + i, "mod" + i, null));
+        }
+        tree1.put("func", expected);
+        TreeIO.dumpTreesToBinaryFile(file, 4, "", tree1, new PyPublicTreeMap<String, Set<IInfo>>());
+
+        //Readers access the same (still not materialized) set at once.
+        final Set<IInfo> loadedSet = TreeIO.loadTreesFromBinaryFile(file).tree1.get("func");
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        assertEquals(expected, new HashSet<IInfo>(loadedSet));
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), errors);
+        assertEquals(500, loadedSet.size());
+    }
+}
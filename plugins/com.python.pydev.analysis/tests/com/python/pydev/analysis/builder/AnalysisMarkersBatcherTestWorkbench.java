@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.Path;
+import org.python.pydev.editor.codecompletion.revisited.javaintegration.AbstractWorkbenchTestCase;
+import org.python.pydev.shared_core.callbacks.ICallback;
+
+public class AnalysisMarkersBatcherTestWorkbench extends AbstractWorkbenchTestCase {
+
+    private IFile file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        //Not a python file (so, it's not analyzed while the test runs).
+        file = initFile.getParent().getFile(new Path("markers_batcher.txt"));
+        if (!file.exists()) {
+            file.create(new ByteArrayInputStream("".getBytes()), true, null);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (file != null && file.exists()) {
+            file.delete(true, null);
+        }
+        super.tearDown();
+    }
+
+    private static Map<String, Object> createMarker(String message, int line) {
+        Map<String, Object> ret = new HashMap<String, Object>();
+        ret.put(IMarker.MESSAGE, message);
+        ret.put(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+        ret.put(IMarker.LINE_NUMBER, line);
+        return ret;
+    }
+
+    private List<String> getMessages() throws Exception {
+        List<String> ret = new ArrayList<String>();
+        for (IMarker marker : file.findMarkers(AnalysisRunner.PYDEV_ANALYSIS_PROBLEM_MARKER, true,
+                IResource.DEPTH_ZERO)) {
+            ret.add((String) marker.getAttribute(IMarker.MESSAGE));
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private long getMarkerId(String message) throws Exception {
+        for (IMarker marker : file.findMarkers(AnalysisRunner.PYDEV_ANALYSIS_PROBLEM_MARKER, true,
+                IResource.DEPTH_ZERO)) {
+            if (message.equals(marker.getAttribute(IMarker.MESSAGE))) {
+                return marker.getId();
+            }
+        }
+        return -1;
+    }
+
+    private void waitUpdatesApplied() {
+        goToIdleLoopUntilCondition(new ICallback<Boolean, Object>() {
+
+            @Override
+            public Boolean call(Object arg) {
+                return AnalysisMarkersBatcher.getTrackedResourcesCount() == 0;
+            }
+        });
+    }
+
+    public void testSetMarkersAppliesDelta() throws Exception {
+        AnalysisMarkersBatcher.setMarkers(file, Arrays.asList(createMarker("a", 1), createMarker("b", 2)), null);
+        assertEquals(Arrays.asList("a", "b"), getMessages());
+        long idA = getMarkerId("a");
+
+        //The marker which didn't change is kept.
+        AnalysisMarkersBatcher.setMarkers(file, Arrays.asList(createMarker("a", 1), createMarker("c", 3)), null);
+        assertEquals(Arrays.asList("a", "c"), getMessages());
+        assertEquals(idA, getMarkerId("a"));
+
+        //The same marker may appear more than once.
+        AnalysisMarkersBatcher.setMarkers(file, Arrays.asList(createMarker("a", 1), createMarker("a", 1)), null);
+        assertEquals(Arrays.asList("a", "a"), getMessages());
+
+        //Nothing is kept for the resource after the updates are applied.
+        assertEquals(0, AnalysisMarkersBatcher.getTrackedResourcesCount());
+    }
+
+    public void testScheduleMarkers() throws Exception {
+        //Only the last scheduled update is applied.
+        AnalysisMarkersBatcher.scheduleMarkers(file, Arrays.asList(createMarker("a", 1)));
+        AnalysisMarkersBatcher.scheduleMarkers(file, Arrays.asList(createMarker("b", 1)));
+        AnalysisMarkersBatcher.flush(null);
+        waitUpdatesApplied();
+        assertEquals(Arrays.asList("b"), getMessages());
+
+        //Removing the markers discards the pending update.
+        AnalysisMarkersBatcher.scheduleMarkers(file, Arrays.asList(createMarker("c", 1)));
+        AnalysisRunner.deleteMarkers(file);
+        AnalysisMarkersBatcher.flush(null);
+        waitUpdatesApplied();
+        assertEquals(new ArrayList<String>(), getMessages());
+        assertEquals(0, AnalysisMarkersBatcher.getTrackedResourcesCount());
+    }
+}
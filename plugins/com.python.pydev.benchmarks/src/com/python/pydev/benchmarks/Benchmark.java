@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+/**
+ * A benchmark to be run by the BenchmarkRunner.
+ *
+ * The runner calls setUp() once, then calls run() repeatedly (first in warmup iterations and then in measurement
+ * iterations) and then tearDown().
+ */
+public abstract class Benchmark {
+
+    /**
+     * @return the name used to identify this benchmark in the results (must be stable across releases so that the
+     * results can be compared).
+     */
+    public abstract String getName();
+
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Runs a single operation.
+     *
+     * @return some object created in the operation (the runner consumes it so that the work done can't be
+     * eliminated by the JIT).
+     */
+    public abstract Object run() throws Exception;
+
+    public void tearDown() throws Exception {
+    }
+}
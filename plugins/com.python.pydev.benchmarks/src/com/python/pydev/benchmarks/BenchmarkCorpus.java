@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * The python files used as the input for the benchmarks.
+ *
+ * By default the files in the 'corpus' folder of this plugin are used (the folder may be changed with
+ * -Dpydev.benchmarks.corpus=<folder>).
+ */
+public final class BenchmarkCorpus {
+
+    public static final class CorpusFile {
+
+        public final String moduleName;
+        public final File file;
+        public final String contents;
+
+        private CorpusFile(String moduleName, File file, String contents) {
+            this.moduleName = moduleName;
+            this.file = file;
+            this.contents = contents;
+        }
+
+        /**
+         * @return a new document with the contents of the file.
+         */
+        public IDocument createDocument() {
+            return new Document(contents);
+        }
+    }
+
+    private static List<CorpusFile> files;
+
+    private BenchmarkCorpus() {
+    }
+
+    public static synchronized List<CorpusFile> getFiles() {
+        if (files == null) {
+            File dir = new File(System.getProperty("pydev.benchmarks.corpus", "corpus"));
+            File[] pyFiles = dir.listFiles();
+            if (pyFiles == null) {
+                throw new RuntimeException("Unable to find the benchmarks corpus at: " + dir.getAbsolutePath()
+                        + " (use -Dpydev.benchmarks.corpus=<folder> to specify it).");
+            }
+            Arrays.sort(pyFiles);
+            List<CorpusFile> lst = new ArrayList<CorpusFile>();
+            for (File f : pyFiles) {
+                String name = f.getName();
+                if (f.isFile() && name.endsWith(".py")) {
+                    lst.add(new CorpusFile(name.substring(0, name.length() - 3), f, FileUtils.getFileContents(f)));
+                }
+            }
+            if (lst.size() == 0) {
+                throw new RuntimeException("No .py files found in: " + dir.getAbsolutePath());
+            }
+            files = lst;
+        }
+        return files;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Runs the benchmarks for the hot paths of the parser, code analysis and code completion.
+ *
+ * Each benchmark has some warmup iterations (whose results are discarded) and then some measurement iterations. In
+ * each iteration the operation of the benchmark is run repeatedly for a given time and the number of operations per
+ * second is computed (the result is the mean of the measurement iterations along with the standard deviation).
+ *
+ * Usage (run as a java application with the classpath of this plugin -- note that the test classes of the other
+ * plugins are needed, as the analysis benchmark uses the same setup used by the tests):
+ *
+ * BenchmarkRunner [-w warmupIterations] [-i measurementIterations] [-t iterationMillis] [-o resultsFile.csv]
+ * [benchmarkNameFilter...]
+ *
+ * The results are printed and, if -o is given, appended to the results file (as csv) so that the results of
+ * different releases can be compared.
+ */
+public class BenchmarkRunner {
+
+    private int warmupIterations = 5;
+    private int measurementIterations = 10;
+    private long iterationMillis = 1000;
+
+    /**
+     * The results of the benchmarks are consumed here (so that the JIT can't eliminate the work done).
+     */
+    private volatile int sink;
+
+    public static final class Result {
+
+        public final String name;
+        public final double opsPerSecond;
+        public final double stdDev;
+        public final int iterations;
+
+        private Result(String name, double opsPerSecond, double stdDev, int iterations) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.stdDev = stdDev;
+            this.iterations = iterations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-60s %15.3f ops/s  +- %12.3f", name, opsPerSecond, stdDev);
+        }
+    }
+
+    /**
+     * @return all the available benchmarks.
+     */
+    public static List<Benchmark> createBenchmarks() {
+        List<Benchmark> ret = new ArrayList<Benchmark>();
+        for (int grammarVersion : IGrammarVersionProvider.grammarVersions) {
+            ret.add(new PyParserBenchmark(grammarVersion));
+        }
+        ret.add(new FastParserBenchmark());
+        ret.add(new FastDefinitionsParserBenchmark());
+        ret.add(new ScopeAnalysisBenchmark());
+        ret.add(new TokensStartingWithBenchmark(false, false));
+        ret.add(new TokensStartingWithBenchmark(true, false));
+        ret.add(new TokensStartingWithBenchmark(false, true));
+        ret.add(new TokensStartingWithBenchmark(true, true));
+        ret.add(new PyPublicTreeMapBenchmark(PyPublicTreeMapBenchmark.OPERATION_PUT));
+        ret.add(new PyPublicTreeMapBenchmark(PyPublicTreeMapBenchmark.OPERATION_GET));
+        ret.add(new PyPublicTreeMapBenchmark(PyPublicTreeMapBenchmark.OPERATION_SUBMAP));
+        ret.add(new FastStringBufferBenchmark(FastStringBufferBenchmark.OPERATION_APPEND));
+        ret.add(new FastStringBufferBenchmark(FastStringBufferBenchmark.OPERATION_REPLACE));
+        return ret;
+    }
+
+    public Result run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                runIteration(benchmark);
+            }
+            double[] results = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                results[i] = runIteration(benchmark);
+            }
+            double mean = 0;
+            for (double d : results) {
+                mean += d;
+            }
+            mean /= results.length;
+
+            double variance = 0;
+            for (double d : results) {
+                variance += (d - mean) * (d - mean);
+            }
+            double stdDev = results.length > 1 ? Math.sqrt(variance / (results.length - 1)) : 0;
+            return new Result(benchmark.getName(), mean, stdDev, results.length);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * @return the number of operations per second in this iteration.
+     */
+    private double runIteration(Benchmark benchmark) throws Exception {
+        long ops = 0;
+        int consumed = 0;
+        long initial = System.nanoTime();
+        long deadline = initial + iterationMillis * 1000000L;
+        long now;
+        do {
+            Object result = benchmark.run();
+            consumed += System.identityHashCode(result);
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        sink += consumed;
+        return ops / ((now - initial) / 1000000000.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String resultsFile = null;
+        List<String> filters = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-w")) {
+                runner.warmupIterations = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-i")) {
+                runner.measurementIterations = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (arg.equals("-t")) {
+                runner.iterationMillis = Long.parseLong(args[++i]);
+            } else if (arg.equals("-o")) {
+                resultsFile = args[++i];
+            } else {
+                filters.add(arg);
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>();
+        for (Benchmark benchmark : createBenchmarks()) {
+            if (!matches(benchmark.getName(), filters)) {
+                continue;
+            }
+            Result result = runner.run(benchmark);
+            System.out.println(result);
+            results.add(result);
+        }
+
+        if (resultsFile != null) {
+            File f = new File(resultsFile);
+            FastStringBuffer buf = new FastStringBuffer();
+            if (f.exists()) {
+                buf.append(FileUtils.getFileContents(f));
+            } else {
+                buf.append("benchmark,opsPerSecond,stdDev,iterations,javaVersion\n");
+            }
+            String javaVersion = System.getProperty("java.version");
+            for (Result result : results) {
+                buf.append(result.name).append(',').append(result.opsPerSecond).append(',').append(result.stdDev)
+                        .append(',').append(result.iterations).append(',').append(javaVersion).append('\n');
+            }
+            FileUtils.writeStrToFile(buf.toString(), f);
+        }
+    }
+
+    private static boolean matches(String name, List<String> filters) {
+        if (filters.size() == 0) {
+            return true;
+        }
+        for (String filter : filters) {
+            if (name.contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.List;
+
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
+
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Gets the definitions of all the files in the corpus with the FastDefinitionsParser.
+ */
+public class FastDefinitionsParserBenchmark extends Benchmark {
+
+    private List<CorpusFile> files;
+
+    @Override
+    public String getName() {
+        return "FastDefinitionsParser.parse";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        files = BenchmarkCorpus.getFiles();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        Object last = null;
+        for (CorpusFile f : files) {
+            last = FastDefinitionsParser.parse(f.contents, f.moduleName);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.parser.fastparser.FastParser;
+
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Gets the classes and functions of all the files in the corpus with the FastParser.
+ */
+public class FastParserBenchmark extends Benchmark {
+
+    private final List<IDocument> docs = new ArrayList<IDocument>();
+
+    @Override
+    public String getName() {
+        return "FastParser.parseClassesAndFunctions";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            docs.add(f.createDocument());
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        Object last = null;
+        for (IDocument doc : docs) {
+            last = FastParser.parseClassesAndFunctions(doc);
+        }
+        return last;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        docs.clear();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Common FastStringBuffer operations using the lines in the corpus.
+ */
+public class FastStringBufferBenchmark extends Benchmark {
+
+    public static final int OPERATION_APPEND = 0;
+    public static final int OPERATION_REPLACE = 1;
+
+    private final int operation;
+    private final List<String> lines = new ArrayList<String>();
+    private String contents;
+
+    public FastStringBufferBenchmark(int operation) {
+        this.operation = operation;
+    }
+
+    @Override
+    public String getName() {
+        return operation == OPERATION_APPEND ? "FastStringBuffer.append" : "FastStringBuffer.replaceAll";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            lines.addAll(StringUtils.splitInLines(f.contents));
+            buf.append(f.contents);
+        }
+        contents = buf.toString();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        if (operation == OPERATION_APPEND) {
+            FastStringBuffer buf = new FastStringBuffer();
+            int i = 0;
+            for (String line : lines) {
+                buf.append(i).append(':').append(' ').append(line);
+                i++;
+            }
+            return buf.toString();
+        }
+        FastStringBuffer buf = new FastStringBuffer(contents, 0);
+        buf.replaceAll("self", "this");
+        return buf.toString();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        lines.clear();
+        contents = null;
+    }
+}
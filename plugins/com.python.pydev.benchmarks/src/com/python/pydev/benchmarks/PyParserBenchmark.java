@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Parses all the files in the corpus with the given grammar (note that files with a syntax which isn't valid for
+ * the grammar still exercise the error recovery).
+ */
+public class PyParserBenchmark extends Benchmark {
+
+    private final int grammarVersion;
+    private final List<IDocument> docs = new ArrayList<IDocument>();
+
+    public PyParserBenchmark(int grammarVersion) {
+        this.grammarVersion = grammarVersion;
+    }
+
+    @Override
+    public String getName() {
+        return "PyParser.reparseDocument (grammar "
+                + IGrammarVersionProvider.grammarVersionToRep.get(grammarVersion) + ")";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            docs.add(f.createDocument());
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        Object last = null;
+        for (IDocument doc : docs) {
+            ParseOutput output = PyParser.reparseDocument(new ParserInfo(doc, grammarVersion));
+            last = output.ast;
+        }
+        return last;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        docs.clear();
+    }
+}
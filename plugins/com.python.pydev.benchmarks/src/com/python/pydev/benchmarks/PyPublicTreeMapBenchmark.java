@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Operations in a PyPublicTreeMap whose keys are the identifiers found in the corpus.
+ */
+public class PyPublicTreeMapBenchmark extends Benchmark {
+
+    public static final int OPERATION_PUT = 0;
+    public static final int OPERATION_GET = 1;
+    public static final int OPERATION_SUBMAP = 2;
+
+    /**
+     * The number of times each identifier is added (with a different suffix).
+     */
+    private static final int COPIES = 5;
+
+    private final int operation;
+    private final List<String> keys = new ArrayList<String>();
+    private final List<String> prefixes = new ArrayList<String>();
+    private PyPublicTreeMap<String, String> map;
+
+    public PyPublicTreeMapBenchmark(int operation) {
+        this.operation = operation;
+    }
+
+    @Override
+    public String getName() {
+        switch (operation) {
+            case OPERATION_PUT:
+                return "PyPublicTreeMap.put";
+            case OPERATION_GET:
+                return "PyPublicTreeMap.get";
+            default:
+                return "PyPublicTreeMap.subMap";
+        }
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            collectIdentifiers(f.contents);
+        }
+        int size = keys.size();
+        for (int copy = 1; copy < COPIES; copy++) {
+            for (int i = 0; i < size; i++) {
+                keys.add(keys.get(i) + copy);
+            }
+        }
+        for (int i = 0; i < keys.size(); i += 50) {
+            String key = keys.get(i);
+            prefixes.add(key.substring(0, Math.min(key.length(), 2)));
+        }
+        map = createMap();
+    }
+
+    private void collectIdentifiers(String contents) {
+        int len = contents.length();
+        int i = 0;
+        while (i < len) {
+            char c = contents.charAt(i);
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < len && Character.isJavaIdentifierPart(contents.charAt(i))) {
+                    i++;
+                }
+                keys.add(contents.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private PyPublicTreeMap<String, String> createMap() {
+        PyPublicTreeMap<String, String> ret = new PyPublicTreeMap<String, String>();
+        for (String key : keys) {
+            ret.put(key, key);
+        }
+        return ret;
+    }
+
+    @Override
+    public Object run() throws Exception {
+        switch (operation) {
+            case OPERATION_PUT:
+                return createMap();
+
+            case OPERATION_GET:
+                String last = null;
+                for (String key : keys) {
+                    last = map.get(key);
+                }
+                return last;
+
+            default:
+                int found = 0;
+                for (String prefix : prefixes) {
+                    SortedMap<String, String> subMap = map.subMap(prefix, prefix + '\uffff');
+                    for (Map.Entry<String, String> entry : subMap.entrySet()) {
+                        if (entry.getValue() != null) {
+                            found++;
+                        }
+                    }
+                }
+                return found;
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        keys.clear();
+        prefixes.clear();
+        map = null;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.plugin.nature.PythonNature;
+
+import com.python.pydev.analysis.AnalysisTestsBase;
+import com.python.pydev.analysis.IAnalysisPreferences;
+import com.python.pydev.analysis.visitors.OccurrencesVisitor;
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Runs the scope analysis (AbstractScopeAnalyzerVisitor through the OccurrencesVisitor) in all the files of the
+ * corpus.
+ *
+ * Uses the same interpreter configuration used in the analysis tests (see: TestDependent).
+ */
+public class ScopeAnalysisBenchmark extends Benchmark {
+
+    /**
+     * Provides access to the setup done for the analysis tests.
+     */
+    private static final class AnalysisSetup extends AnalysisTestsBase {
+
+        private PythonNature getNature() {
+            return nature;
+        }
+
+        private IAnalysisPreferences getPrefs() {
+            return prefs;
+        }
+    }
+
+    private AnalysisSetup setup;
+    private final List<SourceModule> modules = new ArrayList<SourceModule>();
+    private final List<IDocument> docs = new ArrayList<IDocument>();
+
+    @Override
+    public String getName() {
+        return "AbstractScopeAnalyzerVisitor (OccurrencesVisitor)";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        setup = new AnalysisSetup();
+        setup.setUp();
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            IDocument doc = f.createDocument();
+            docs.add(doc);
+            modules.add(AbstractModule.createModuleFromDoc(f.moduleName, null, doc, setup.getNature(), true));
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        PythonNature nature = setup.getNature();
+        Object last = null;
+        for (int i = 0; i < modules.size(); i++) {
+            SourceModule module = modules.get(i);
+            OccurrencesVisitor visitor = new OccurrencesVisitor(nature, module.getName(), module,
+                    setup.getPrefs(), docs.get(i), new NullProgressMonitor());
+            if (nature.startRequests()) {
+                try {
+                    module.getAst().accept(visitor);
+                } finally {
+                    nature.endRequests();
+                }
+            }
+            last = visitor.getMessages();
+        }
+        return last;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        modules.clear();
+        docs.clear();
+        setup.tearDown();
+    }
+}
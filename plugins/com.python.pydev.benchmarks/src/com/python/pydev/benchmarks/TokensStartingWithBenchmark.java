@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
+import com.python.pydev.analysis.additionalinfo.IInfo;
+import com.python.pydev.analysis.additionalinfo.TokensNameIndex;
+import com.python.pydev.benchmarks.BenchmarkCorpus.CorpusFile;
+
+/**
+ * Queries the tokens starting with some prefixes in an index filled with the definitions of the corpus (added
+ * multiple times, as different modules, so that the index has a size closer to a real index).
+ * 
+ * When created with concurrentIndexing == true, a thread keeps on removing and re-adding modules to the index while
+ * the queries are done (to measure the completion latency while modules are being indexed).
+ * 
+ * When created with matching == true, camel-case queries are done with getTokensMatching (which uses the name index)
+ * instead of getTokensStartingWith.
+ */
+public class TokensStartingWithBenchmark extends Benchmark {
+
+    /**
+     * The number of times each file in the corpus is added to the index.
+     */
+    private static final int COPIES = 200;
+
+    private static final int MAX_QUERIES = 200;
+
+    /**
+     * Same as the completions (see CtxParticipant).
+     */
+    private static final int MAX_TOKENS_MATCHED = 500;
+
+    private static final class BenchmarkTokensInfo extends AbstractAdditionalTokensInfo {
+
+        @Override
+        protected File getPersistingLocation() {
+            return null;
+        }
+
+        @Override
+        protected File getPersistingFolder() {
+            return null;
+        }
+
+        @Override
+        public List<ModulesKey> getModulesWithToken(IProject project, String token, IProgressMonitor monitor) {
+            return new ArrayList<ModulesKey>();
+        }
+    }
+
+    private final boolean concurrentIndexing;
+    private final boolean matching;
+    private BenchmarkTokensInfo info;
+    private final List<String> queries = new ArrayList<String>();
+    private final List<Tuple<String, SimpleNode>> modules = new ArrayList<Tuple<String, SimpleNode>>();
+    private Thread indexingThread;
+    private volatile boolean stopIndexing;
+
+    public TokensStartingWithBenchmark(boolean concurrentIndexing, boolean matching) {
+        this.concurrentIndexing = concurrentIndexing;
+        this.matching = matching;
+    }
+
+    @Override
+    public String getName() {
+        String name = matching ? "AbstractAdditionalTokensInfo.getTokensMatching"
+                : "AbstractAdditionalTokensInfo.getTokensStartingWith";
+        if (concurrentIndexing) {
+            return name + " (concurrent indexing)";
+        }
+        return name;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        info = new BenchmarkTokensInfo();
+        for (CorpusFile f : BenchmarkCorpus.getFiles()) {
+            SimpleNode ast = (SimpleNode) PyParser.reparseDocument(new ParserInfo(f.createDocument(),
+                    IGrammarVersionProvider.LATEST_GRAMMAR_VERSION)).ast;
+            if (ast == null) {
+                continue;
+            }
+            for (int i = 0; i < COPIES; i++) {
+                info.addAstInfo(ast, new ModulesKey("copy" + i + "." + f.moduleName, null), false);
+            }
+            modules.add(new Tuple<String, SimpleNode>("copy0." + f.moduleName, ast));
+        }
+
+        //Use prefixes (with 1 to 4 chars) or the camel-case abbreviation of the names in the index as the queries.
+        int i = 0;
+        for (IInfo token : info.getAllTokens()) {
+            i++;
+            if (i % 7 != 0) {
+                continue;
+            }
+            String name = token.getName();
+            if (matching) {
+                queries.add(getCamelCaseAbbreviation(name));
+                if (queries.size() >= MAX_QUERIES) {
+                    break;
+                }
+                continue;
+            }
+            int len = Math.min(name.length(), (i % 4) + 1);
+            queries.add(name.substring(0, len));
+            if (queries.size() >= MAX_QUERIES) {
+                break;
+            }
+        }
+
+        if (concurrentIndexing) {
+            stopIndexing = false;
+            indexingThread = new Thread() {
+                @Override
+                public void run() {
+                    while (!stopIndexing) {
+                        for (Tuple<String, SimpleNode> module : modules) {
+                            info.removeInfoFromModule(module.o1, false);
+                            info.addAstInfo(module.o2, new ModulesKey(module.o1, null), false);
+                        }
+                    }
+                }
+            };
+            indexingThread.setDaemon(true);
+            indexingThread.start();
+        }
+    }
+
+    /**
+     * @return the first char of each hump (i.e.: gTSW for getTokensStartingWith or g_t_s for get_tokens_starting).
+     */
+    private static String getCamelCaseAbbreviation(String name) {
+        StringBuilder buf = new StringBuilder();
+        int len = name.length();
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            if (i == 0 || Character.isUpperCase(c)) {
+                buf.append(c);
+            } else if (c == '_' && i + 1 < len && name.charAt(i + 1) != '_') {
+                buf.append(c).append(name.charAt(i + 1));
+                i++;
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        if (matching) {
+            List<IInfo> last = null;
+            for (String query : queries) {
+                TokensNameIndex.Matches matches = new TokensNameIndex.Matches(MAX_TOKENS_MATCHED);
+                info.getTokensMatching(query, AbstractAdditionalTokensInfo.TOP_LEVEL
+                        | AbstractAdditionalTokensInfo.INNER, TokensNameIndex.MATCH_CAMEL_CASE, matches);
+                last = matches.getInfos();
+            }
+            return last;
+        }
+        Collection<IInfo> last = null;
+        for (String query : queries) {
+            last = info.getTokensStartingWith(query, AbstractAdditionalTokensInfo.TOP_LEVEL
+                    | AbstractAdditionalTokensInfo.INNER);
+        }
+        return last;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (indexingThread != null) {
+            stopIndexing = true;
+            indexingThread.join();
+            indexingThread = null;
+        }
+        info = null;
+        queries.clear();
+        modules.clear();
+    }
+}
@@ -43,6 +43,7 @@ import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.IInfo;
+import com.python.pydev.analysis.additionalinfo.TokensNameIndex;
 import com.python.pydev.analysis.ui.AutoImportsPreferencesPage;
 import com.python.pydev.codecompletion.ui.CodeCompletionPreferencesPage;
 
@@ -53,6 +54,12 @@ import com.python.pydev.codecompletion.ui.CodeCompletionPreferencesPage;
  */
 public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevCompletionParticipant2 {
 
+    /**
+     * The maximum number of tokens gotten from the indexes for a completion (only the best matches are kept, so that
+     * a short qualifier in a big interpreter doesn't create lots of proposals).
+     */
+    private static final int MAX_TOKENS_MATCHED = 500;
+
     // Console completions ---------------------------------------------------------------------------------------------
 
     /**
@@ -108,8 +115,10 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
             }
         }
 
-        Collection<IInfo> tokensStartingWith = additionalInfoForProject.getTokensStartingWith(qual,
-                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        TokensNameIndex.Matches matches = new TokensNameIndex.Matches(MAX_TOKENS_MATCHED);
+        additionalInfoForProject.getTokensMatching(qual, AbstractAdditionalTokensInfo.TOP_LEVEL,
+                TokensNameIndex.MATCH_CAMEL_CASE, matches);
+        Collection<IInfo> tokensStartingWith = matches.getInfos();
 
         FastStringBuffer realImportRep = new FastStringBuffer();
         FastStringBuffer displayString = new FastStringBuffer();
@@ -125,10 +134,6 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
             }
 
             String rep = info.getName();
-            String lowerRep = rep.toLowerCase();
-            if (!lowerRep.startsWith(lowerQual)) {
-                continue;
-            }
 
             if (addAutoImport) {
                 realImportRep.clear();
@@ -176,8 +181,10 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
             String initialModule = request.resolveModule();
 
-            List<IInfo> tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual,
-                    request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL);
+            //Prefix and camel-case matches (best ones first).
+            List<IInfo> tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensMatching(qual,
+                    request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL, TokensNameIndex.MATCH_CAMEL_CASE,
+                    MAX_TOKENS_MATCHED);
 
             FastStringBuffer realImportRep = new FastStringBuffer();
             FastStringBuffer displayString = new FastStringBuffer();
@@ -200,8 +207,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
                 }
 
                 String rep = info.getName();
-                String lowerRep = rep.toLowerCase();
-                if (!lowerRep.startsWith(lowerQual) || importedNames.contains(rep)) {
+                if (importedNames.contains(rep)) {
                     continue;
                 }
 
@@ -4,7 +4,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.CompositeChange;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.concurrency.RunnableAsJobsPool;
 
 public final class PyCompositeChange extends CompositeChange {
     private boolean makeUndo;
@@ -16,12 +16,12 @@ public final class PyCompositeChange extends CompositeChange {
 
     @Override
     public Change perform(IProgressMonitor pm) throws CoreException {
-        RunnableAsJobsPoolThread.getSingleton().pushStopThreads();
+        RunnableAsJobsPool.getSingleton().pushStopThreads();
         Change ret;
         try {
             ret = super.perform(pm);
         } finally {
-            RunnableAsJobsPoolThread.getSingleton().popStopThreads();
+            RunnableAsJobsPool.getSingleton().popStopThreads();
         }
         if (makeUndo) {
             return ret;
@@ -15,12 +15,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.python.pydev.core.FullRepIterable;
 import org.python.pydev.core.ICompletionCache;
 import org.python.pydev.core.IDefinition;
 import org.python.pydev.core.IModule;
@@ -36,6 +38,10 @@ import org.python.pydev.editor.model.ItemPointer;
 import org.python.pydev.editor.refactoring.PyRefactoringFindDefinition;
 import org.python.pydev.editor.refactoring.RefactoringRequest;
 import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.aliasType;
 import org.python.pydev.parser.jython.ast.exprType;
 import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
@@ -188,14 +194,15 @@ public class RefactorerFinds {
             SourceModule m = module;
             request.communicateWork("Analyzing:" + m.getName());
 
-            Iterator<ASTEntry> entries = EasyASTIteratorVisitor.createClassIterator(m.getAst());
+            EasyASTIteratorVisitor visitor = EasyASTIteratorVisitor.create(m.getAst());
+            Map<String, String> importAliases = getImportAliases(visitor);
+            Iterator<ASTEntry> entries = visitor.getClassesIterator();
 
             while (entries.hasNext()) {
                 ASTEntry entry = entries.next();
                 //we're checking for those that have model.name as a parent
                 ClassDef def = (ClassDef) entry.node;
-                List<String> parentNames = NodeUtils.getParentNames(def, true);
-                if (parentNames.contains(toFindOnRound.name)) {
+                if (hasParent(def, toFindOnRound.name, importAliases)) {
                     HierarchyNodeModel newNode = new HierarchyNodeModel(module, def);
                     if (allFound.containsKey(newNode) == false) {
                         toFindOnRound.children.add(newNode);
@@ -211,6 +218,51 @@ public class RefactorerFinds {
         }
     }
 
+    /**
+     * @return a map with the alias -> name imported (i.e.: from m import Base as B maps B -> Base and
+     * import pack.mod as m maps m -> pack.mod).
+     */
+    private Map<String, String> getImportAliases(EasyASTIteratorVisitor visitor) {
+        Map<String, String> importAliases = new HashMap<String, String>();
+        Iterator<ASTEntry> imports = visitor.getIterator(new Class[] { Import.class, ImportFrom.class });
+        while (imports.hasNext()) {
+            ASTEntry entry = imports.next();
+            aliasType[] names;
+            if (entry.node instanceof ImportFrom) {
+                names = ((ImportFrom) entry.node).names;
+            } else {
+                names = ((Import) entry.node).names;
+            }
+            for (aliasType alias : names) {
+                if (alias.asname != null) {
+                    importAliases.put(((NameTok) alias.asname).id, ((NameTok) alias.name).id);
+                }
+            }
+        }
+        return importAliases;
+    }
+
+    /**
+     * @return true if the given class has a base with the passed name (considering that the base may be an alias
+     * to the imported name).
+     */
+    private boolean hasParent(ClassDef def, String name, Map<String, String> importAliases) {
+        for (String parentName : NodeUtils.getParentNames(def, false)) {
+            if (FullRepIterable.getLastPart(parentName).equals(name)) {
+                return true;
+            }
+            int dotIndex = parentName.indexOf('.');
+            String target = importAliases.get(dotIndex < 0 ? parentName : parentName.substring(0, dotIndex));
+            if (target != null) {
+                String resolved = dotIndex < 0 ? target : target + parentName.substring(dotIndex);
+                if (FullRepIterable.getLastPart(resolved).equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private HashSet<SourceModule> findLikelyModulesWithChildren(RefactoringRequest request, HierarchyNodeModel model,
             List<AbstractAdditionalDependencyInfo> infoForProject) {
         //get the modules that are most likely to have that declaration.
@@ -227,7 +279,10 @@ public class RefactorerFinds {
                 List<ModulesKey> modules;
                 try {
                     request.pushMonitor(new SubProgressMonitor(monitor, 90));
-                    modules = additionalInfo.getModulesWithToken(request.nature.getProject(), model.name, monitor);
+                    //Only the modules with a class which has the model as a base are needed (the class hierarchy
+                    //index answers that without reading all the modules which just reference the name).
+                    modules = additionalInfo.getModulesWithSubclasses(request.nature.getProject(), model.name,
+                            monitor);
                     monitor.setTaskName("Searching: " + model.name);
                     if (monitor.isCanceled()) {
                         throw new OperationCanceledException();
@@ -10,7 +10,15 @@
  */
 package com.python.pydev.refactoring.wizards.rename;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -41,6 +49,12 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     public static final boolean DEBUG_FILTERED_MODULES = false || PyFindAllOccurrences.DEBUG_FIND_REFERENCES;
 
+    /**
+     * Maximum number of modules (per analysis thread) which may be pending at a given time (i.e.: being analyzed
+     * or analyzed but still not merged). Bounds the number of modules/results kept in memory at once.
+     */
+    private static final int MAX_PENDING_MODULES_PER_THREAD = 4;
+
     /**
      * May be used by subclasses
      */
@@ -167,6 +181,8 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
             }
 
             int total = references.size();
+            int nThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = null;
             try {
                 request.pushMonitor(new SubProgressMonitor(request.getMonitor(), 10));
                 request.getMonitor().beginTask("Analyzing references found", total);
@@ -182,45 +198,26 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
                             continue;
                         }
                         try {
-                            for (ModulesKey key : file.o1) {
-                                IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
-                                        .getModulesManager();
-
-                                request.checkCancelled();
-                                String modName = key.name;
-
-                                if (modName != null) {
-                                    if (!request.moduleName.equals(modName)) {
-                                        //we've already checked the module from the request...
-
-                                        request.checkCancelled();
-                                        IModule module = modulesManager
-                                                .getModuleInDirectManager(modName, nature, false);
-
-                                        if (module instanceof SourceModule) {
-
-                                            SourceModule sourceModule = (SourceModule) module;
-                                            if (sourceModule.getAst() == null) {
-                                                status.addWarning("Unable to get AST for: " + modName);
-                                                continue;
-                                            }
-                                            request.checkCancelled();
-                                            List<ASTEntry> entryOccurrences = getOccurrencesInOtherModule(status,
-                                                    request, request.initialName, (SourceModule) module, nature);
-
-                                            if (entryOccurrences.size() > 0) {
-                                                addOccurrences(entryOccurrences, key.file, modName);
-                                            }
-                                        }
+                            if (executor == null && nThreads > 1) {
+                                executor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+
+                                    public Thread newThread(Runnable r) {
+                                        Thread t = new Thread(r, "PyDev: Analyze references");
+                                        t.setDaemon(true);
+                                        return t;
                                     }
-                                }
+                                });
                             }
+                            analyzeModules(status, request, nature, file.o1, executor, nThreads);
                         } finally {
                             nature.endRequests();
                         }
                     }
                 }
             } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
                 request.popMonitor().done();
             }
         } catch (OperationCanceledException e) {
@@ -233,6 +230,115 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     }
 
+    /**
+     * Analyzes the given modules (in parallel if an executor is given) and adds the occurrences found.
+     * 
+     * The results are merged in the order of the passed keys (so, the result is the same as if the modules were
+     * analyzed serially) and only up to nThreads * MAX_PENDING_MODULES_PER_THREAD modules may be pending at once.
+     */
+    private void analyzeModules(RefactoringStatus status, final RefactoringRequest request,
+            final PythonNature nature, List<ModulesKey> keys, ExecutorService executor, int nThreads)
+            throws Exception {
+        final IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
+                .getModulesManager();
+
+        List<ModulesKey> toAnalyze = new ArrayList<ModulesKey>(keys.size());
+        for (ModulesKey key : keys) {
+            //we've already checked the module from the request...
+            if (key.name != null && !request.moduleName.equals(key.name)) {
+                toAnalyze.add(key);
+            }
+        }
+
+        if (executor == null || toAnalyze.size() <= 1) {
+            for (ModulesKey key : toAnalyze) {
+                mergeAnalysis(status, key, analyzeModule(request, modulesManager, nature, key.name));
+            }
+            return;
+        }
+
+        int maxPending = nThreads * MAX_PENDING_MODULES_PER_THREAD;
+        ArrayDeque<Future<ModuleAnalysis>> pending = new ArrayDeque<Future<ModuleAnalysis>>(maxPending);
+        int nextToSubmit = 0;
+        try {
+            for (ModulesKey key : toAnalyze) {
+                while (nextToSubmit < toAnalyze.size() && pending.size() < maxPending) {
+                    final String modName = toAnalyze.get(nextToSubmit).name;
+                    pending.add(executor.submit(new Callable<ModuleAnalysis>() {
+
+                        public ModuleAnalysis call() throws Exception {
+                            return analyzeModule(request, modulesManager, nature, modName);
+                        }
+                    }));
+                    nextToSubmit++;
+                }
+                request.checkCancelled();
+                mergeAnalysis(status, key, getAnalysis(pending.removeFirst()));
+            }
+        } finally {
+            //Only pending if cancelled or some error happened.
+            for (Future<ModuleAnalysis> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return the result of the given analysis (rethrowing the error if the analysis failed).
+     */
+    private ModuleAnalysis getAnalysis(Future<ModuleAnalysis> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new OperationCanceledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The results of analyzing a module (the status is kept separate as the analysis may be done in another thread).
+     */
+    private static final class ModuleAnalysis {
+
+        private final RefactoringStatus status = new RefactoringStatus();
+
+        private List<ASTEntry> entryOccurrences;
+    }
+
+    /**
+     * Gets the occurrences in the module with the given name (may be called from multiple threads at once).
+     */
+    private ModuleAnalysis analyzeModule(RefactoringRequest request, IProjectModulesManager modulesManager,
+            PythonNature nature, String modName) {
+        ModuleAnalysis analysis = new ModuleAnalysis();
+        request.checkCancelled();
+        IModule module = modulesManager.getModuleInDirectManager(modName, nature, false);
+
+        if (module instanceof SourceModule) {
+            SourceModule sourceModule = (SourceModule) module;
+            if (sourceModule.getAst() == null) {
+                analysis.status.addWarning("Unable to get AST for: " + modName);
+                return analysis;
+            }
+            request.checkCancelled();
+            analysis.entryOccurrences = getOccurrencesInOtherModule(analysis.status, request, request.initialName,
+                    sourceModule, nature);
+        }
+        return analysis;
+    }
+
+    private void mergeAnalysis(RefactoringStatus status, ModulesKey key, ModuleAnalysis analysis) {
+        status.merge(analysis.status);
+        if (analysis.entryOccurrences != null && analysis.entryOccurrences.size() > 0) {
+            addOccurrences(analysis.entryOccurrences, key.file, key.name);
+        }
+    }
+
     /**
      * This method is called for each module that may have some reference to the definition
      * we're looking for. 
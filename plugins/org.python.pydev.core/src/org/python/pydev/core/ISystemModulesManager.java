@@ -43,5 +43,8 @@ public interface ISystemModulesManager extends IModulesManager {
 
     public abstract IInterpreterManager getInterpreterManager();
 
-    public abstract File getCompiledModuleCacheFile(String name);
+    /**
+     * @return the directory where the tokens of compiled modules are cached.
+     */
+    public abstract File getCompiledModulesCacheDir();
 }
\ No newline at end of file
@@ -9,18 +9,23 @@
  */
 package org.python.pydev.core;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This pool is to be regarded as a way to have less object instances for a given class,
  * so, if you have tons of equal strings, you could pass them here and make them be the same
- * to save memory. Note that it is created with weak-references for both, the key and the value,
+ * to save memory. Note that it is created with weak-references for the strings,
  * so, it should be safe to assume that it will be available for garbage collecting once
  * no other place has a reference to the same string.
  * 
+ * The pool is backed by a concurrent (striped) map, so, interning doesn't need any lock (entries whose
+ * strings were garbage-collected are removed as new strings are interned).
+ * 
  * Still, use this with care...
  */
 public final class ObjectsPool {
@@ -28,7 +33,118 @@ public final class ObjectsPool {
     private ObjectsPool() {
     }
 
-    private static final Map<String, WeakReference<String>> weakHashMap = new WeakHashMap<String, WeakReference<String>>();
+    /**
+     * Number of stripes in the map (the number of threads which may add to it without contention).
+     */
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    /**
+     * The key in the map (which has a weak reference to the interned string).
+     */
+    private static final class WeakKey extends WeakReference<String> {
+
+        private final int hash;
+
+        private WeakKey(String referent, ReferenceQueue<String> queue) {
+            super(referent, queue);
+            this.hash = referent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            String s = get();
+            if (s == null) {
+                return false; //garbage-collected: only equal to itself (so that it can be removed).
+            }
+            if (obj instanceof WeakKey) {
+                return s.equals(((WeakKey) obj).get());
+            }
+            if (obj instanceof LookupKey) {
+                return s.equals(((LookupKey) obj).string);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Used to do a lookup in the map without creating a weak reference.
+     */
+    private static final class LookupKey {
+
+        private final String string;
+
+        private LookupKey(String string) {
+            this.string = string;
+        }
+
+        @Override
+        public int hashCode() {
+            return string.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WeakKey) {
+                return string.equals(((WeakKey) obj).get());
+            }
+            if (obj instanceof LookupKey) {
+                return string.equals(((LookupKey) obj).string);
+            }
+            return false;
+        }
+    }
+
+    private static final ConcurrentHashMap<Object, WeakKey> pool = new ConcurrentHashMap<Object, WeakKey>(1024,
+            0.75f, CONCURRENCY_LEVEL);
+    private static final ReferenceQueue<String> collectedQueue = new ReferenceQueue<String>();
+
+    /**
+     * The statistics are kept in striped counters (each thread updates the counters in the stripe related to its id,
+     * so, threads interning concurrently usually don't contend on the same counters).
+     */
+    private static final int STATS_STRIPES = 16;
+
+    /**
+     * Longs per stripe (so that each stripe is in its own 64-byte cache line).
+     */
+    private static final int STATS_STRIPE_LEN = 8;
+
+    private static final int STAT_HITS = 0;
+    private static final int STAT_MISSES = 1;
+    private static final int STAT_SAVED_CHARS = 2;
+
+    private static final AtomicLongArray stats = new AtomicLongArray(STATS_STRIPES * STATS_STRIPE_LEN);
+
+    private static int getStatsStripe() {
+        return ((int) Thread.currentThread().getId() & (STATS_STRIPES - 1)) * STATS_STRIPE_LEN;
+    }
+
+    private static void onHit(int savedLen) {
+        int stripe = getStatsStripe();
+        stats.incrementAndGet(stripe + STAT_HITS);
+        stats.addAndGet(stripe + STAT_SAVED_CHARS, savedLen);
+    }
+
+    private static long getStat(int stat) {
+        long ret = 0;
+        for (int i = 0; i < STATS_STRIPES; i++) {
+            ret += stats.get(i * STATS_STRIPE_LEN + stat);
+        }
+        return ret;
+    }
+
+    /**
+     * Interning doesn't need to be synchronized anymore (kept only for backward compatibility).
+     */
+    @Deprecated
     public static final Object lock = new Object();
 
     /**
@@ -38,64 +154,99 @@ public final class ObjectsPool {
         if (o == null) {
             return null;
         }
-        synchronized (lock) {
-            WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-            if (w == null) {
-                //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
-                //passed, it'll create a new array only with the parts we want.
-                o = new String(o);
-                //garbage collected or still not there...
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
+        removeCollected();
+
+        WeakKey existing = pool.get(new LookupKey(o));
+        if (existing != null) {
+            String ret = existing.get();
+            if (ret != null) {
+                onHit(o.length());
+                return ret;
+            }
+        }
 
-            } else {
-                final String ret = w.get();
-                if (ret == null && o != null) {
-                    //garbage collected just in time hum?
-                    o = new String(o);
-                    weakHashMap.put(o, new WeakReference<String>(o));
-                    return o;
-
-                } else {
-                    return ret;
-                }
+        //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
+        //passed, it'll create a new array only with the parts we want.
+        o = new String(o);
+        WeakKey key = new WeakKey(o, collectedQueue);
+        while (true) {
+            existing = pool.putIfAbsent(key, key);
+            if (existing == null) {
+                stats.incrementAndGet(getStatsStripe() + STAT_MISSES);
+                return o;
+            }
+            String ret = existing.get();
+            if (ret != null) {
+                //Added by some other thread in the meanwhile.
+                onHit(o.length());
+                return ret;
             }
+            //garbage collected just in time hum? (it's not equal to the new one anymore, so, try again)
         }
     }
 
     /**
-     * Same thing as intern, but the client is responsible for synchronizing on the lock object of this class!
-     * 
-     * Note that this should be done on a fast process where many objects will be added (but only on fast processes
-     * that want to avoid synchronizing at each step).
+     * Same thing as intern (kept for backward compatibility: no synchronization is needed anymore).
      */
     public static String internUnsynched(String o) {
-        if (o == null) {
-            return null;
+        return intern(o);
+    }
+
+    /**
+     * Interns all the strings in the passed array (the array is changed in-place).
+     */
+    public static void internAll(String[] strings) {
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = intern(strings[i]);
         }
-        WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-        if (w == null) {
-            //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
-            //passed, it'll create a new array only with the parts we want.
-            o = new String(o);
-            //garbage collected or still not there...
-            weakHashMap.put(o, new WeakReference<String>(o));
-            return o;
-
-        } else {
-            final String ret = w.get();
-            if (ret == null && o != null) {
-                //garbage collected just in time hum?
-                o = new String(o);
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
+    }
 
-            } else {
-                return ret;
-            }
+    private static void removeCollected() {
+        Reference<? extends String> ref;
+        while ((ref = collectedQueue.poll()) != null) {
+            pool.remove(ref, ref);
         }
     }
 
+    /**
+     * @return the number of strings currently in the pool (including ones which may have been just collected).
+     */
+    public static int size() {
+        removeCollected();
+        return pool.size();
+    }
+
+    /**
+     * @return the number of times intern returned a string which was already in the pool.
+     */
+    public static long getHits() {
+        return getStat(STAT_HITS);
+    }
+
+    /**
+     * @return the number of times intern had to add a new string to the pool.
+     */
+    public static long getMisses() {
+        return getStat(STAT_MISSES);
+    }
+
+    /**
+     * @return the hit rate (from 0 to 1) of the calls to intern.
+     */
+    public static double getHitRate() {
+        long h = getStat(STAT_HITS);
+        long total = h + getStat(STAT_MISSES);
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    /**
+     * @return an estimate of the bytes saved by returning a string from the pool (i.e.: the size of the chars of the
+     * strings which could be garbage-collected because an existing one was returned).
+     */
+    public static long getSavedBytes() {
+        return getStat(STAT_SAVED_CHARS) * 2;
+    }
+
     /**
      * Class used to store items interned locally in a map (without weak references)
      */
@@ -103,6 +254,21 @@ public final class ObjectsPool {
 
         private static final long serialVersionUID = 1L;
 
+        private final boolean internGlobally;
+
+        public ObjectsPoolMap() {
+            this(false);
+        }
+
+        /**
+         * @param internGlobally if true, strings not found in this map are interned in the global pool before
+         * being added (i.e.: to bulk-intern strings which will be kept around -- such as strings from a cache being
+         * loaded -- paying for the global pool only once per different string).
+         */
+        public ObjectsPoolMap(boolean internGlobally) {
+            this.internGlobally = internGlobally;
+        }
+
     }
 
     /**
@@ -118,6 +284,11 @@ public final class ObjectsPool {
         if (existing != null) {
             return existing;
         }
+        if (mapWithInternedStrings.internGlobally) {
+            existing = intern(string);
+            mapWithInternedStrings.put(existing, existing);
+            return existing;
+        }
         mapWithInternedStrings.put(string, string);
         return string;
 
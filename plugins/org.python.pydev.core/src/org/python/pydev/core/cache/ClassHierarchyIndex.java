@@ -0,0 +1,687 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.python.pydev.core.FullRepIterable;
+import org.python.pydev.core.ObjectsPool;
+import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * An index with the edges base class -> subclass found in each module (so that the subclasses of a class may be
+ * found without having to search all the modules for the name of the class).
+ *
+ * The base is kept as written in the class definition (i.e.: 'Base' or 'mod.Base') and also as the name imported if
+ * it's an import alias in the module, and it's looked up by its last part. As the base may still be re-exported or
+ * computed, the edges are a superset of the actual ones and clients must still verify the candidates found.
+ *
+ * As the {@link TokensIndex}, each module is registered with a stamp (which should be checked with
+ * {@link #isUpToDate(String, long)}) and the index is persisted in a binary file which is lazily loaded on the first
+ * access.
+ */
+public final class ClassHierarchyIndex {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * 1: initial version (module, stamp, class/base pairs)
+     * 2: aliases, expressions in bases and type() calls are also considered
+     */
+    private static final int VERSION = 2;
+
+    private static final class ModuleEntry {
+
+        private final long stamp;
+
+        /**
+         * Tuples with the class name and the base (as written).
+         */
+        private final List<Tuple<String, String>> classesAndBases;
+
+        private ModuleEntry(long stamp, List<Tuple<String, String>> classesAndBases) {
+            this.stamp = stamp;
+            this.classesAndBases = classesAndBases;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    private final Map<String, ModuleEntry> moduleToEntry = new HashMap<String, ModuleEntry>();
+
+    /**
+     * Last part of the base -> modules with a class with that base.
+     */
+    private final Map<String, Set<String>> baseToModules = new HashMap<String, Set<String>>();
+
+    private File persistFile;
+
+    private boolean loaded;
+
+    /**
+     * Whether something changed since the last load/save.
+     */
+    private boolean dirty;
+
+    /**
+     * @param persistFile the file where this index should be persisted (may be null if it shouldn't be persisted).
+     */
+    public ClassHierarchyIndex(File persistFile) {
+        this.persistFile = persistFile;
+    }
+
+    public void setPersistFile(File persistFile) {
+        synchronized (lock) {
+            if (this.persistFile == null || !this.persistFile.equals(persistFile)) {
+                this.persistFile = persistFile;
+                clearUnsynched();
+                loaded = false;
+            }
+        }
+    }
+
+    /**
+     * Registers the classes/bases found in the given module (any previous information on the module is discarded).
+     *
+     * @param stamp the stamp that identifies the version of the contents (i.e.: lastModified of the file).
+     * @param classesAndBases the class names and bases found (see {@link #extractClassesAndBases(char[], int, List)}).
+     */
+    public void indexModule(String moduleName, long stamp, List<Tuple<String, String>> classesAndBases) {
+        synchronized (lock) {
+            ensureLoaded();
+            addUnsynched(moduleName, new ModuleEntry(stamp, classesAndBases));
+            dirty = true;
+        }
+    }
+
+    private void addUnsynched(String moduleName, ModuleEntry entry) {
+        removeUnsynched(moduleName);
+        moduleToEntry.put(moduleName, entry);
+        for (Tuple<String, String> classAndBase : entry.classesAndBases) {
+            String base = FullRepIterable.getLastPart(classAndBase.o2);
+            Set<String> modules = baseToModules.get(base);
+            if (modules == null) {
+                modules = new HashSet<String>(2);
+                baseToModules.put(base, modules);
+            }
+            modules.add(moduleName);
+        }
+    }
+
+    /**
+     * Removes the information on the given module.
+     */
+    public void remove(String moduleName) {
+        synchronized (lock) {
+            ensureLoaded();
+            if (removeUnsynched(moduleName)) {
+                dirty = true;
+            }
+        }
+    }
+
+    private boolean removeUnsynched(String moduleName) {
+        ModuleEntry entry = moduleToEntry.remove(moduleName);
+        if (entry == null) {
+            return false;
+        }
+        for (Tuple<String, String> classAndBase : entry.classesAndBases) {
+            String base = FullRepIterable.getLastPart(classAndBase.o2);
+            Set<String> modules = baseToModules.get(base);
+            if (modules != null) {
+                modules.remove(moduleName);
+                if (modules.size() == 0) {
+                    baseToModules.remove(base);
+                }
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            clearUnsynched();
+            loaded = true; //Nothing to load as we want it clear.
+            dirty = true;
+        }
+    }
+
+    private void clearUnsynched() {
+        moduleToEntry.clear();
+        baseToModules.clear();
+    }
+
+    /**
+     * @return true if the given module is indexed with the given stamp.
+     */
+    public boolean isUpToDate(String moduleName, long stamp) {
+        synchronized (lock) {
+            ensureLoaded();
+            ModuleEntry entry = moduleToEntry.get(moduleName);
+            return entry != null && entry.stamp == stamp;
+        }
+    }
+
+    /**
+     * @param className the name of the class (if dotted, only its last part is considered).
+     * @return the names of the modules which have a class with a base with the given name.
+     */
+    public Set<String> getModulesWithSubclassesOf(String className) {
+        String base = FullRepIterable.getLastPart(className);
+        synchronized (lock) {
+            ensureLoaded();
+            Set<String> modules = baseToModules.get(base);
+            if (modules == null) {
+                return new HashSet<String>(0);
+            }
+            return new HashSet<String>(modules);
+        }
+    }
+
+    /**
+     * @return true if any of the passed classes/bases has a base with the given name.
+     */
+    public static boolean hasSubclassOf(List<Tuple<String, String>> classesAndBases, String className) {
+        String base = FullRepIterable.getLastPart(className);
+        for (Tuple<String, String> classAndBase : classesAndBases) {
+            if (FullRepIterable.getLastPart(classAndBase.o2).equals(base)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            ensureLoaded();
+            return moduleToEntry.size();
+        }
+    }
+
+    /**
+     * Saves the index to its persist file (only if something changed).
+     */
+    public void save() {
+        synchronized (lock) {
+            if (persistFile == null || !dirty || !loaded) {
+                return;
+            }
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        persistFile), 64 * 1024));
+                try {
+                    out.writeInt(VERSION);
+                    out.writeInt(moduleToEntry.size());
+                    for (Entry<String, ModuleEntry> entry : moduleToEntry.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        ModuleEntry moduleEntry = entry.getValue();
+                        out.writeLong(moduleEntry.stamp);
+                        out.writeInt(moduleEntry.classesAndBases.size());
+                        for (Tuple<String, String> classAndBase : moduleEntry.classesAndBases) {
+                            out.writeUTF(classAndBase.o1);
+                            out.writeUTF(classAndBase.o2);
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+                dirty = false;
+                if (DEBUG) {
+                    System.out.println("Class hierarchy index - saved: " + moduleToEntry.size() + " modules to: "
+                            + persistFile);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (persistFile == null || !persistFile.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(persistFile),
+                    64 * 1024));
+            try {
+                if (in.readInt() != VERSION) {
+                    return; //Just start from scratch.
+                }
+                ObjectsPoolMap objectsPoolMap = new ObjectsPoolMap(true);
+                int modulesLen = in.readInt();
+                for (int i = 0; i < modulesLen; i++) {
+                    String moduleName = ObjectsPool.internLocal(objectsPoolMap, in.readUTF());
+                    long stamp = in.readLong();
+                    int len = in.readInt();
+                    List<Tuple<String, String>> classesAndBases = new ArrayList<Tuple<String, String>>(len);
+                    for (int j = 0; j < len; j++) {
+                        String className = ObjectsPool.internLocal(objectsPoolMap, in.readUTF());
+                        String base = ObjectsPool.internLocal(objectsPoolMap, in.readUTF());
+                        classesAndBases.add(new Tuple<String, String>(className, base));
+                    }
+                    addUnsynched(moduleName, new ModuleEntry(stamp, classesAndBases));
+                }
+            } finally {
+                in.close();
+            }
+            if (DEBUG) {
+                System.out.println("Class hierarchy index - loaded: " + moduleToEntry.size() + " modules from: "
+                        + persistFile);
+            }
+        } catch (Exception e) {
+            Log.log("Error loading class hierarchy index (it'll be recreated): " + persistFile, e);
+            clearUnsynched();
+        }
+    }
+
+    /**
+     * Maximum size of a logical line (i.e.: class definition with the bases in many lines) which is analyzed.
+     */
+    private static final int MAX_LOGICAL_LINE_LEN = 4096;
+
+    /**
+     * Adds to the passed list the class names and bases (i.e.: class A(B, mod.C) adds (A, B) and (A, mod.C)) found in
+     * the given contents.
+     *
+     * Note that no parsing is done (so, contents in strings may also be gotten), but the edges gotten are meant to be
+     * a superset of the actual ones:
+     * - a base imported with an alias (from m import Base as B or import m as n) also adds an edge to the imported name;
+     * - a base which is an expression (i.e.: with_metaclass(Meta, Base)) adds an edge to each name in the expression;
+     * - classes created with type('X', (Base,), {}) are also considered.
+     * Keyword arguments (i.e.: metaclass=M) and comments are skipped.
+     */
+    public static void extractClassesAndBases(char[] contents, int length,
+            List<Tuple<String, String>> into) {
+        List<Tuple<String, String>> found = new ArrayList<Tuple<String, String>>();
+        Map<String, String> aliases = new HashMap<String, String>();
+        FastStringBuffer line = new FastStringBuffer();
+        List<String> args = new ArrayList<String>();
+        int i = 0;
+        while (i < length) {
+            //At the start of a line: skip the indentation.
+            while (i < length && (contents[i] == ' ' || contents[i] == '\t')) {
+                i++;
+            }
+            if (startsWithKeyword(contents, length, i, "class") || startsWithKeyword(contents, length, i, "from")
+                    || startsWithKeyword(contents, length, i, "import") || lineHasTypeCall(contents, length, i)) {
+                i = readLogicalLine(contents, length, i, line);
+                String logicalLine = line.toString();
+                if (logicalLine.startsWith("class")) {
+                    addClassBases(logicalLine, args, found);
+                } else if (logicalLine.startsWith("from")) {
+                    addFromImportAliases(logicalLine, aliases);
+                } else if (logicalLine.startsWith("import")) {
+                    addImportAliases(logicalLine, aliases);
+                } else {
+                    addTypeCallBases(logicalLine, args, found);
+                }
+            }
+            //Go to the next line.
+            while (i < length && contents[i] != '\n' && contents[i] != '\r') {
+                i++;
+            }
+            i++;
+        }
+
+        //Resolve the aliases (keeping the base as written too).
+        for (Tuple<String, String> classAndBase : found) {
+            addIfNotThere(into, classAndBase);
+            String base = classAndBase.o2;
+            int dotIndex = base.indexOf('.');
+            String target = aliases.get(dotIndex < 0 ? base : base.substring(0, dotIndex));
+            if (target != null) {
+                addIfNotThere(into, new Tuple<String, String>(classAndBase.o1, dotIndex < 0 ? target : target
+                        + base.substring(dotIndex)));
+            }
+        }
+    }
+
+    private static void addIfNotThere(List<Tuple<String, String>> into, Tuple<String, String> classAndBase) {
+        if (!into.contains(classAndBase)) {
+            into.add(classAndBase);
+        }
+    }
+
+    private static boolean startsWithKeyword(char[] contents, int length, int i, String keyword) {
+        int len = keyword.length();
+        if (i + len >= length) {
+            return false;
+        }
+        for (int j = 0; j < len; j++) {
+            if (contents[i + j] != keyword.charAt(j)) {
+                return false;
+            }
+        }
+        char c = contents[i + len];
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * @return whether the line starting at the given position has a 'type(' call.
+     */
+    private static boolean lineHasTypeCall(char[] contents, int length, int i) {
+        for (; i + 4 < length && contents[i] != '\n' && contents[i] != '\r'; i++) {
+            if (contents[i] == 't' && contents[i + 1] == 'y' && contents[i + 2] == 'p' && contents[i + 3] == 'e'
+                    && contents[i + 4] == '(' && (i == 0 || !Character.isJavaIdentifierPart(contents[i - 1]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the logical line starting at the given position (joining the lines while inside brackets or after a
+     * backslash and skipping comments).
+     *
+     * @return the position where the reading stopped (at the end of the last line read).
+     */
+    private static int readLogicalLine(char[] contents, int length, int i, FastStringBuffer buf) {
+        buf.clear();
+        int level = 0;
+        while (i < length && buf.length() < MAX_LOGICAL_LINE_LEN) {
+            char c = contents[i];
+            switch (c) {
+                case '#':
+                    while (i + 1 < length && contents[i + 1] != '\n' && contents[i + 1] != '\r') {
+                        i++;
+                    }
+                    break;
+
+                case '\'':
+                case '"':
+                    buf.append(c);
+                    while (i + 1 < length && contents[i + 1] != '\n' && contents[i + 1] != '\r') {
+                        i++;
+                        buf.append(contents[i]);
+                        if (contents[i] == '\\' && i + 1 < length) {
+                            i++;
+                            buf.append(contents[i]);
+                        } else if (contents[i] == c) {
+                            break;
+                        }
+                    }
+                    break;
+
+                case '\\':
+                    if (i + 1 < length && (contents[i + 1] == '\n' || contents[i + 1] == '\r')) {
+                        i++;
+                        if (contents[i] == '\r' && i + 1 < length && contents[i + 1] == '\n') {
+                            i++;
+                        }
+                        buf.append(' ');
+                    } else {
+                        buf.append(c);
+                    }
+                    break;
+
+                case '\r':
+                case '\n':
+                    if (level == 0) {
+                        return i;
+                    }
+                    buf.append(' ');
+                    break;
+
+                case '(':
+                case '[':
+                case '{':
+                    level++;
+                    buf.append(c);
+                    break;
+
+                case ')':
+                case ']':
+                case '}':
+                    if (level > 0) {
+                        level--;
+                    }
+                    buf.append(c);
+                    break;
+
+                default:
+                    buf.append(c);
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Adds to the passed list the top-level arguments of the call whose '(' is at the given position.
+     *
+     * @return false if the closing ')' was not found.
+     */
+    private static boolean splitArguments(String line, int openParen, List<String> args) {
+        args.clear();
+        int level = 0;
+        int start = openParen + 1;
+        int len = line.length();
+        for (int j = start; j < len; j++) {
+            char c = line.charAt(j);
+            switch (c) {
+                case '\'':
+                case '"':
+                    j = skipString(line, j);
+                    break;
+
+                case '(':
+                case '[':
+                case '{':
+                    level++;
+                    break;
+
+                case ')':
+                case ']':
+                case '}':
+                    if (level == 0) {
+                        if (c == ')') {
+                            args.add(line.substring(start, j).trim());
+                            return true;
+                        }
+                        return false;
+                    }
+                    level--;
+                    break;
+
+                case ',':
+                    if (level == 0) {
+                        args.add(line.substring(start, j).trim());
+                        start = j + 1;
+                    }
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the position of the quote which closes the string started at the given position.
+     */
+    private static int skipString(String line, int j) {
+        char quote = line.charAt(j);
+        int len = line.length();
+        for (j++; j < len; j++) {
+            char c = line.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == quote) {
+                return j;
+            }
+        }
+        return len;
+    }
+
+    private static void addClassBases(String line, List<String> args, List<Tuple<String, String>> found) {
+        int len = line.length();
+        int j = 5; //After 'class'
+        while (j < len && Character.isWhitespace(line.charAt(j))) {
+            j++;
+        }
+        int nameStart = j;
+        while (j < len && Character.isJavaIdentifierPart(line.charAt(j))) {
+            j++;
+        }
+        String className = line.substring(nameStart, j);
+        while (j < len && Character.isWhitespace(line.charAt(j))) {
+            j++;
+        }
+        if (className.length() == 0 || j >= len || line.charAt(j) != '(' || !splitArguments(line, j, args)) {
+            return;
+        }
+        for (String arg : args) {
+            if (arg.length() == 0 || isKeywordArgument(arg)) {
+                continue;
+            }
+            if (isDottedName(arg)) {
+                found.add(new Tuple<String, String>(className, arg));
+            } else {
+                //Some expression: consider any name in it (i.e.: with_metaclass(Meta, Base), Generic[T]).
+                addNamesInExpression(className, arg, found);
+            }
+        }
+    }
+
+    /**
+     * Handles: X = type('X', (Base,), {})
+     */
+    private static void addTypeCallBases(String line, List<String> args, List<Tuple<String, String>> found) {
+        for (int j = line.indexOf("type("); j != -1; j = line.indexOf("type(", j + 1)) {
+            if (j > 0 && (Character.isJavaIdentifierPart(line.charAt(j - 1)) || line.charAt(j - 1) == '.')) {
+                continue;
+            }
+            if (!splitArguments(line, j + 4, args) || args.size() != 3) {
+                continue;
+            }
+            String className = null;
+            String beforeCall = line.substring(0, j).trim();
+            if (beforeCall.endsWith("=") && !beforeCall.endsWith("==")) {
+                className = beforeCall.substring(0, beforeCall.length() - 1).trim();
+            } else {
+                String nameArg = args.get(0);
+                if (nameArg.length() > 2) {
+                    className = nameArg.substring(1, nameArg.length() - 1);
+                }
+            }
+            if (className != null && isDottedName(className) && className.indexOf('.') == -1) {
+                addNamesInExpression(className, args.get(1), found);
+            }
+        }
+    }
+
+    /**
+     * Handles: from mod import Base as B, Other as O
+     */
+    private static void addFromImportAliases(String line, Map<String, String> aliases) {
+        int importIndex = line.indexOf(" import ");
+        if (importIndex == -1) {
+            return;
+        }
+        String module = line.substring(4, importIndex).trim();
+        for (String imported : line.substring(importIndex + 8).replace('(', ' ').replace(')', ' ').split(",")) {
+            String[] parts = imported.trim().split("\\s+");
+            if (parts.length == 3 && parts[1].equals("as")) {
+                aliases.put(parts[2], module.endsWith(".") ? module + parts[0] : module + "." + parts[0]);
+            }
+        }
+    }
+
+    /**
+     * Handles: import pack.mod as m
+     */
+    private static void addImportAliases(String line, Map<String, String> aliases) {
+        for (String imported : line.substring(6).split(",")) {
+            String[] parts = imported.trim().split("\\s+");
+            if (parts.length == 3 && parts[1].equals("as")) {
+                aliases.put(parts[2], parts[0]);
+            }
+        }
+    }
+
+    private static boolean isKeywordArgument(String arg) {
+        int len = arg.length();
+        int j = 0;
+        while (j < len && Character.isJavaIdentifierPart(arg.charAt(j))) {
+            j++;
+        }
+        if (j == 0) {
+            return false;
+        }
+        while (j < len && Character.isWhitespace(arg.charAt(j))) {
+            j++;
+        }
+        return j < len && arg.charAt(j) == '=' && (j + 1 >= len || arg.charAt(j + 1) != '=');
+    }
+
+    private static boolean isDottedName(String s) {
+        int len = s.length();
+        if (len == 0 || !Character.isJavaIdentifierStart(s.charAt(0)) || s.charAt(len - 1) == '.') {
+            return false;
+        }
+        for (int j = 1; j < len; j++) {
+            char c = s.charAt(j);
+            if (!Character.isJavaIdentifierPart(c) && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds an edge from the class to each (dotted) name in the given expression (contents in strings are skipped).
+     */
+    private static void addNamesInExpression(String className, String expression,
+            List<Tuple<String, String>> found) {
+        int len = expression.length();
+        for (int j = 0; j < len; j++) {
+            char c = expression.charAt(j);
+            if (c == '\'' || c == '"') {
+                j = skipString(expression, j);
+
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = j;
+                while (j + 1 < len
+                        && (Character.isJavaIdentifierPart(expression.charAt(j + 1)) || expression.charAt(j + 1) == '.')) {
+                    j++;
+                }
+                String name = expression.substring(start, j + 1);
+                while (name.endsWith(".")) {
+                    name = name.substring(0, name.length() - 1);
+                }
+                if (name.length() > 0) {
+                    found.add(new Tuple<String, String>(className, name));
+                }
+
+            } else if (Character.isJavaIdentifierPart(c)) {
+                //A number: skip it.
+                while (j + 1 < len && Character.isJavaIdentifierPart(expression.charAt(j + 1))) {
+                    j++;
+                }
+            }
+        }
+    }
+}
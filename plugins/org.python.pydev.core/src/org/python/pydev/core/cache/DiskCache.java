@@ -6,17 +6,28 @@
  */
 package org.python.pydev.core.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.ObjectsPool;
 import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.io.ExtendedByteArrayOutputStream;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
@@ -30,6 +41,14 @@ import org.python.pydev.shared_core.string.StringUtils;
  * so, a 'miss' in memory will try to get it from the disk (and a miss from the disk will mean there is no such key).
  * 
  * -- And yes, the cache itself is Serializable! 
+ * 
+ * Besides the keys, a value may be stored for each key (see: {@link #putValue(String, long, byte[])}). The values
+ * are kept in an append-only segment file in the folder to persist (only the location of the values is kept in
+ * memory) and are identified by the key name and a hash of the contents from which the value was generated, so,
+ * a value may be reused as long as the contents don't change (even if the file is touched).
+ * 
+ * The segment is a sequence of records (name, contents hash, value length, value bytes) and only the last record
+ * for a name is valid. When there are too many invalid records, the segment is compacted.
  */
 public final class DiskCache implements Serializable {
 
@@ -52,6 +71,47 @@ public final class DiskCache implements Serializable {
      */
     private Map<CompleteIndexKey, CompleteIndexKey> keys = new HashMap<CompleteIndexKey, CompleteIndexKey>();
 
+    private static final String VALUES_SEGMENT_FILENAME = "values.segment";
+
+    private static final int VALUES_SEGMENT_VERSION = 1;
+
+    /**
+     * Only compact the segment if the bytes wasted are more than this (and more than the bytes used).
+     */
+    private static final long MIN_WASTED_BYTES_TO_COMPACT = 1024 * 1024;
+
+    /**
+     * Where the value for some key is in the segment.
+     */
+    private static final class ValueLocation {
+
+        private final long contentsHash;
+        private final long offset;
+        private final int len;
+        private final int recordLen;
+
+        private ValueLocation(long contentsHash, long offset, int len, int recordLen) {
+            this.contentsHash = contentsHash;
+            this.offset = offset;
+            this.len = len;
+            this.recordLen = recordLen;
+        }
+    }
+
+    /**
+     * Lazily loaded from the values segment (null if still not loaded).
+     */
+    private transient Map<String, ValueLocation> valueLocations;
+
+    /**
+     * Opened on demand to read/append values.
+     */
+    private transient RandomAccessFile valuesSegment;
+
+    private transient long wastedBytes;
+
+    private transient long usedBytes;
+
     /**
      * Custom deserialization is needed.
      */
@@ -71,6 +131,10 @@ public final class DiskCache implements Serializable {
      * Writes this cache in a format that may later be restored with loadFrom.
      */
     public void writeTo(FastStringBuffer tempBuf) {
+        synchronized (lock) {
+            //Values are already in the disk: just make sure that what was written is flushed and compacted if needed.
+            flushValues();
+        }
         tempBuf.append("-- START DISKCACHE\n");
         tempBuf.append(folderToPersist);
         tempBuf.append('\n');
@@ -191,6 +255,13 @@ public final class DiskCache implements Serializable {
                 System.out.println("Disk cache - Removing: " + key);
             }
             keys.remove(key);
+            if (valueLocations != null) {
+                ValueLocation removed = valueLocations.remove(key.key.name);
+                if (removed != null) {
+                    usedBytes -= removed.recordLen;
+                    wastedBytes += removed.recordLen;
+                }
+            }
         }
     }
 
@@ -208,6 +279,9 @@ public final class DiskCache implements Serializable {
 
     /**
      * Clear the whole cache.
+     * 
+     * Note: the values are kept (as they're only used if the contents hash matches, they're still valid and may
+     * be reused when the keys are re-added).
      */
     public void clear() {
         synchronized (lock) {
@@ -227,6 +301,266 @@ public final class DiskCache implements Serializable {
         }
     }
 
+    /**
+     * Stores a value for the given key name (replacing any previous value).
+     * 
+     * @param contentsHash a hash of the contents from which the value was generated.
+     */
+    public void putValue(String name, long contentsHash, byte[] value) {
+        synchronized (lock) {
+            try {
+                Map<String, ValueLocation> locations = getValueLocations();
+                RandomAccessFile segment = getValuesSegment();
+                long offset = segment.length();
+                segment.seek(offset);
+
+                ExtendedByteArrayOutputStream record = new ExtendedByteArrayOutputStream(value.length + name.length()
+                        + 20);
+                DataOutputStream out = new DataOutputStream(record);
+                out.writeUTF(name);
+                out.writeLong(contentsHash);
+                out.writeInt(value.length);
+                out.write(value);
+                out.flush();
+                int recordLen = record.size();
+                segment.write(record.getInternalBytesArray(), 0, recordLen);
+
+                ValueLocation location = new ValueLocation(contentsHash, offset + recordLen - value.length,
+                        value.length, recordLen);
+                ValueLocation old = locations.put(name, location);
+                if (old != null) {
+                    usedBytes -= old.recordLen;
+                    wastedBytes += old.recordLen;
+                }
+                usedBytes += recordLen;
+            } catch (IOException e) {
+                Log.log(e);
+                closeValuesSegment();
+            }
+        }
+    }
+
+    /**
+     * @return the value stored for the given name or null if there's no value for it or if it was generated
+     * from contents with a different hash.
+     */
+    public byte[] getValue(String name, long contentsHash) {
+        synchronized (lock) {
+            try {
+                ValueLocation location = getValueLocations().get(name);
+                if (location == null || location.contentsHash != contentsHash) {
+                    return null;
+                }
+                RandomAccessFile segment = getValuesSegment();
+                byte[] value = new byte[location.len];
+                segment.seek(location.offset);
+                segment.readFully(value);
+                return value;
+            } catch (IOException e) {
+                Log.log(e);
+                closeValuesSegment();
+                valueLocations = null; //Reload it on next access.
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A hash to be used to identify the contents from which values are generated.
+     */
+    public static long hashContents(char[] contents, int len) {
+        //FNV-1a (64 bits) mixed with the length.
+        long hash = 0xcbf29ce484222325L ^ len;
+        for (int i = 0; i < len; i++) {
+            hash ^= contents[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return false if the end of the stream was reached before skipping the given number of bytes.
+     */
+    private static boolean skipFully(DataInputStream in, int len) throws IOException {
+        while (len > 0) {
+            long skipped = in.skip(len);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            len -= skipped;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes used to write the string with DataOutput.writeUTF (without the 2 bytes of the len).
+     */
+    private static int utfLen(String str) {
+        int len = str.length();
+        int utfLen = 0;
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                utfLen++;
+            } else if (c > 0x07FF) {
+                utfLen += 3;
+            } else {
+                utfLen += 2;
+            }
+        }
+        return utfLen;
+    }
+
+    private File getValuesSegmentFile() {
+        return new File(folderToPersist, VALUES_SEGMENT_FILENAME);
+    }
+
+    private RandomAccessFile getValuesSegment() throws IOException {
+        if (valuesSegment == null) {
+            File file = getValuesSegmentFile();
+            boolean isNew = !file.exists() || file.length() == 0;
+            valuesSegment = new RandomAccessFile(file, "rw");
+            if (isNew) {
+                valuesSegment.setLength(0);
+                valuesSegment.writeInt(VALUES_SEGMENT_VERSION);
+            }
+        }
+        return valuesSegment;
+    }
+
+    private void closeValuesSegment() {
+        if (valuesSegment != null) {
+            try {
+                valuesSegment.close();
+            } catch (IOException e) {
+                Log.log(e);
+            }
+            valuesSegment = null;
+        }
+    }
+
+    /**
+     * @return the location of the values (scanning the segment if they're still not loaded).
+     */
+    private Map<String, ValueLocation> getValueLocations() throws IOException {
+        if (valueLocations != null) {
+            return valueLocations;
+        }
+        Map<String, ValueLocation> locations = new HashMap<String, ValueLocation>();
+        wastedBytes = 0;
+        usedBytes = 0;
+        File file = getValuesSegmentFile();
+        long fileLen = file.length();
+        if (file.exists() && fileLen > 0) {
+            long validLen = 0;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try {
+                if (in.readInt() != VALUES_SEGMENT_VERSION) {
+                    throw new IOException("Unexpected values segment version.");
+                }
+                long offset = 4;
+                validLen = offset;
+                while (true) {
+                    String name;
+                    long contentsHash;
+                    int len;
+                    try {
+                        name = in.readUTF();
+                        contentsHash = in.readLong();
+                        len = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    int headerLen = 2 + utfLen(name) + 8 + 4;
+                    if (len < 0 || offset + headerLen + len > fileLen || !skipFully(in, len)) {
+                        break; //Incomplete record (i.e.: crashed while writing): discard it.
+                    }
+                    int recordLen = headerLen + len;
+                    ValueLocation old = locations.put(name, new ValueLocation(contentsHash, offset + headerLen,
+                            len, recordLen));
+                    if (old != null) {
+                        usedBytes -= old.recordLen;
+                        wastedBytes += old.recordLen;
+                    }
+                    usedBytes += recordLen;
+                    offset += recordLen;
+                    validLen = offset;
+                }
+            } catch (IOException e) {
+                Log.log("Error reading values segment (it'll be recreated): " + file, e);
+                in.close();
+                closeValuesSegment();
+                file.delete();
+                valueLocations = new HashMap<String, ValueLocation>();
+                return valueLocations;
+            } finally {
+                in.close();
+            }
+            if (validLen != fileLen) {
+                getValuesSegment().setLength(validLen);
+            }
+        }
+        if (DEBUG) {
+            System.out.println("Disk cache - values loaded: " + locations.size());
+        }
+        valueLocations = locations;
+        return valueLocations;
+    }
+
+    /**
+     * Compacts the values segment if needed (rewrites it only with the valid records).
+     */
+    private void flushValues() {
+        if (valueLocations == null) {
+            return; //Nothing was changed (as it wasn't even loaded).
+        }
+        if (wastedBytes < MIN_WASTED_BYTES_TO_COMPACT || wastedBytes < usedBytes) {
+            return;
+        }
+        File file = getValuesSegmentFile();
+        File tempFile = new File(folderToPersist, VALUES_SEGMENT_FILENAME + ".tmp");
+        try {
+            RandomAccessFile segment = getValuesSegment();
+            Map<String, ValueLocation> newLocations = new HashMap<String, ValueLocation>();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                    64 * 1024));
+            try {
+                out.writeInt(VALUES_SEGMENT_VERSION);
+                long offset = 4;
+                for (Entry<String, ValueLocation> entry : valueLocations.entrySet()) {
+                    ValueLocation location = entry.getValue();
+                    byte[] value = new byte[location.len];
+                    segment.seek(location.offset);
+                    segment.readFully(value);
+
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(location.contentsHash);
+                    out.writeInt(value.length);
+                    out.write(value);
+                    int headerLen = location.recordLen - location.len;
+                    newLocations.put(entry.getKey(), new ValueLocation(location.contentsHash, offset + headerLen,
+                            location.len, location.recordLen));
+                    offset += location.recordLen;
+                }
+            } finally {
+                out.close();
+            }
+            closeValuesSegment();
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace: " + file + " with: " + tempFile);
+            }
+            valueLocations = newLocations;
+            wastedBytes = 0;
+        } catch (IOException e) {
+            Log.log(e);
+            closeValuesSegment();
+            valueLocations = null;
+        }
+    }
+
     public void setFolderToPersist(String folderToPersist) {
         synchronized (lock) {
             File file = new File(folderToPersist);
@@ -236,6 +570,10 @@ public final class DiskCache implements Serializable {
             if (DEBUG) {
                 System.out.println("Disk cache - persist :" + folderToPersist);
             }
+            if (!folderToPersist.equals(this.folderToPersist)) {
+                closeValuesSegment();
+                valueLocations = null;
+            }
             this.folderToPersist = folderToPersist;
         }
     }
@@ -0,0 +1,420 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.python.pydev.core.ObjectsPool;
+import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.docutils.PySelection;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * An inverted index which maps identifiers to the modules where they appear (identifier -> posting list of modules).
+ *
+ * Each module is registered with a stamp (usually the lastModified of the file or zip it was read from), so, clients
+ * must check with {@link #isUpToDate(String, long)} whether the information for a module may still be trusted
+ * before using the results of {@link #getModulesWithAnyToken(Collection)}.
+ *
+ * Internally, modules are referenced by an int id in the posting lists. When a module is removed or re-indexed its
+ * previous id is just marked as dead (so, we don't need to keep the tokens of each module to update the postings)
+ * and the postings are compacted once there are too many dead ids.
+ *
+ * The index is persisted in a binary file which is lazily loaded on the first access.
+ */
+public final class TokensIndex {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * 1: initial version (module table + postings)
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Only compact if we have at least this number of dead ids (and more dead than live ids).
+     */
+    private static final int MIN_DEAD_TO_COMPACT = 500;
+
+    /**
+     * A growable list of ints (used for the posting lists).
+     */
+    private static final class IntList {
+
+        private int[] ids;
+        private int size;
+
+        private IntList(int initialCapacity) {
+            ids = new int[initialCapacity];
+        }
+
+        private void add(int id) {
+            if (size == ids.length) {
+                int[] newIds = new int[size < 4 ? 4 : size * 2];
+                System.arraycopy(ids, 0, newIds, 0, size);
+                ids = newIds;
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * Module name for each id (null if the id is dead).
+     */
+    private final ArrayList<String> idToModule = new ArrayList<String>();
+
+    /**
+     * Stamp for each id.
+     */
+    private long[] idToStamp = new long[16];
+
+    /**
+     * Only live modules are here.
+     */
+    private final Map<String, Integer> moduleToId = new HashMap<String, Integer>();
+
+    /**
+     * The actual inverted index.
+     */
+    private final Map<String, IntList> tokenToIds = new HashMap<String, IntList>();
+
+    private int deadIds;
+
+    private File persistFile;
+
+    private boolean loaded;
+
+    /**
+     * Whether something changed since the last load/save.
+     */
+    private boolean dirty;
+
+    /**
+     * @param persistFile the file where this index should be persisted (may be null if it shouldn't be persisted).
+     */
+    public TokensIndex(File persistFile) {
+        this.persistFile = persistFile;
+    }
+
+    public void setPersistFile(File persistFile) {
+        synchronized (lock) {
+            if (this.persistFile == null || !this.persistFile.equals(persistFile)) {
+                this.persistFile = persistFile;
+                clearUnsynched();
+                loaded = false;
+            }
+        }
+    }
+
+    /**
+     * Registers the tokens found in the given module (any previous information on the module is discarded).
+     *
+     * @param stamp the stamp that identifies the version of the contents (i.e.: lastModified of the file).
+     * @param tokens the tokens found (see {@link #extractTokens(char[], int, Set)}).
+     */
+    public void indexModule(String moduleName, long stamp, Collection<String> tokens) {
+        synchronized (lock) {
+            ensureLoaded();
+            removeUnsynched(moduleName);
+            compactIfNeededUnsynched();
+
+            int id = idToModule.size();
+            idToModule.add(moduleName);
+            if (id == idToStamp.length) {
+                long[] newStamps = new long[id * 2];
+                System.arraycopy(idToStamp, 0, newStamps, 0, id);
+                idToStamp = newStamps;
+            }
+            idToStamp[id] = stamp;
+            moduleToId.put(moduleName, id);
+
+            for (String token : tokens) {
+                IntList list = tokenToIds.get(token);
+                if (list == null) {
+                    list = new IntList(2);
+                    tokenToIds.put(token, list);
+                }
+                list.add(id);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes the information on the given module.
+     */
+    public void remove(String moduleName) {
+        synchronized (lock) {
+            ensureLoaded();
+            if (removeUnsynched(moduleName)) {
+                dirty = true;
+                compactIfNeededUnsynched();
+            }
+        }
+    }
+
+    private boolean removeUnsynched(String moduleName) {
+        Integer id = moduleToId.remove(moduleName);
+        if (id != null) {
+            idToModule.set(id, null);
+            deadIds++;
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            clearUnsynched();
+            loaded = true; //Nothing to load as we want it clear.
+            dirty = true;
+        }
+    }
+
+    private void clearUnsynched() {
+        idToModule.clear();
+        moduleToId.clear();
+        tokenToIds.clear();
+        idToStamp = new long[16];
+        deadIds = 0;
+    }
+
+    /**
+     * @return true if the given module is indexed with the given stamp.
+     */
+    public boolean isUpToDate(String moduleName, long stamp) {
+        synchronized (lock) {
+            ensureLoaded();
+            Integer id = moduleToId.get(moduleName);
+            return id != null && idToStamp[id] == stamp;
+        }
+    }
+
+    /**
+     * @return the names of the modules which have any of the passed tokens.
+     */
+    public Set<String> getModulesWithAnyToken(Collection<String> tokens) {
+        Set<String> ret = new HashSet<String>();
+        synchronized (lock) {
+            ensureLoaded();
+            for (String token : tokens) {
+                IntList list = tokenToIds.get(token);
+                if (list == null) {
+                    continue;
+                }
+                int[] ids = list.ids;
+                for (int i = 0; i < list.size; i++) {
+                    String moduleName = idToModule.get(ids[i]);
+                    if (moduleName != null) {
+                        ret.add(moduleName);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            ensureLoaded();
+            return moduleToId.size();
+        }
+    }
+
+    private void compactIfNeededUnsynched() {
+        if (deadIds > MIN_DEAD_TO_COMPACT && deadIds > moduleToId.size()) {
+            compactUnsynched();
+        }
+    }
+
+    /**
+     * Renumbers the live ids and removes the dead ids from the postings.
+     */
+    private void compactUnsynched() {
+        int size = idToModule.size();
+        int[] oldToNew = new int[size];
+        ArrayList<String> newIdToModule = new ArrayList<String>(moduleToId.size());
+        long[] newIdToStamp = new long[Math.max(16, moduleToId.size())];
+        for (int i = 0; i < size; i++) {
+            String moduleName = idToModule.get(i);
+            if (moduleName == null) {
+                oldToNew[i] = -1;
+            } else {
+                int newId = newIdToModule.size();
+                oldToNew[i] = newId;
+                newIdToModule.add(moduleName);
+                newIdToStamp[newId] = idToStamp[i];
+                moduleToId.put(moduleName, newId);
+            }
+        }
+
+        Iterator<IntList> it = tokenToIds.values().iterator();
+        while (it.hasNext()) {
+            IntList list = it.next();
+            int[] ids = list.ids;
+            int newSize = 0;
+            for (int i = 0; i < list.size; i++) {
+                int newId = oldToNew[ids[i]];
+                if (newId != -1) {
+                    ids[newSize++] = newId;
+                }
+            }
+            if (newSize == 0) {
+                it.remove();
+            } else {
+                list.size = newSize;
+            }
+        }
+        idToModule.clear();
+        idToModule.addAll(newIdToModule);
+        idToStamp = newIdToStamp;
+        deadIds = 0;
+    }
+
+    /**
+     * Saves the index to its persist file (only if something changed).
+     */
+    public void save() {
+        synchronized (lock) {
+            if (persistFile == null || !dirty || !loaded) {
+                return;
+            }
+            compactUnsynched();
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        persistFile), 64 * 1024));
+                try {
+                    out.writeInt(VERSION);
+                    int modulesLen = idToModule.size();
+                    out.writeInt(modulesLen);
+                    for (int i = 0; i < modulesLen; i++) {
+                        out.writeUTF(idToModule.get(i));
+                        out.writeLong(idToStamp[i]);
+                    }
+                    out.writeInt(tokenToIds.size());
+                    for (Entry<String, IntList> entry : tokenToIds.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        IntList list = entry.getValue();
+                        out.writeInt(list.size);
+                        int[] ids = list.ids;
+                        for (int i = 0; i < list.size; i++) {
+                            out.writeInt(ids[i]);
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+                dirty = false;
+                if (DEBUG) {
+                    System.out.println("Tokens index - saved: " + moduleToId.size() + " modules to: " + persistFile);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (persistFile == null || !persistFile.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(persistFile),
+                    64 * 1024));
+            try {
+                if (in.readInt() != VERSION) {
+                    return; //Just start from scratch.
+                }
+                ObjectsPoolMap objectsPoolMap = new ObjectsPoolMap(true);
+                int modulesLen = in.readInt();
+                idToStamp = new long[Math.max(16, modulesLen)];
+                for (int i = 0; i < modulesLen; i++) {
+                    String moduleName = ObjectsPool.internLocal(objectsPoolMap, in.readUTF());
+                    idToModule.add(moduleName);
+                    idToStamp[i] = in.readLong();
+                    moduleToId.put(moduleName, i);
+                }
+                int tokensLen = in.readInt();
+                for (int i = 0; i < tokensLen; i++) {
+                    String token = in.readUTF();
+                    int len = in.readInt();
+                    IntList list = new IntList(Math.max(2, len));
+                    for (int j = 0; j < len; j++) {
+                        int id = in.readInt();
+                        if (id < 0 || id >= modulesLen) {
+                            throw new IOException("Invalid module id in tokens index: " + id);
+                        }
+                        list.add(id);
+                    }
+                    tokenToIds.put(token, list);
+                }
+            } finally {
+                in.close();
+            }
+            if (DEBUG) {
+                System.out.println("Tokens index - loaded: " + moduleToId.size() + " modules from: " + persistFile);
+            }
+        } catch (Exception e) {
+            Log.log("Error loading tokens index (it'll be recreated): " + persistFile, e);
+            clearUnsynched();
+        }
+    }
+
+    /**
+     * Adds to the passed set all the identifiers found in the given contents (keywords are skipped).
+     *
+     * Note that no parsing is done, so, identifiers in comments and strings are also gotten.
+     */
+    public static void extractTokens(char[] contents, int length, Set<String> into) {
+        FastStringBuffer temp = new FastStringBuffer();
+        for (int i = 0; i < length; i++) {
+            char c = contents[i];
+            if (Character.isJavaIdentifierStart(c)) {
+                temp.clear();
+                temp.append(c);
+                i++;
+                for (; i < length; i++) {
+                    c = contents[i];
+                    if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                        break; //Fast forward through the most common case...
+                    }
+                    if (Character.isJavaIdentifierPart(c)) {
+                        temp.append(c);
+                    } else {
+                        break;
+                    }
+                }
+                String str = temp.toString();
+                if (!PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
+                    into.add(str);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.concurrency;
+
+/**
+ * A runnable which is notified when it's dropped from the RunnableAsJobsPool because a newer runnable was scheduled
+ * with the same key before it started.
+ */
+public interface ISupersedableRunnable extends IRunnableWithMonitor {
+
+    /**
+     * Called (instead of run()) when the runnable is superseded. Must be fast (and must not block).
+     */
+    void onSuperseded();
+
+}
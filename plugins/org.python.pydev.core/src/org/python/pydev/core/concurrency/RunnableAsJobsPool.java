@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.concurrency;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.MathUtils;
+import org.python.pydev.core.log.Log;
+
+/**
+ * This is a pool where we can register runnables to run -- and it'll let only X runnables run at the same time.
+ *
+ * The runnables are kept in a priority queue (so, i.e.: the analysis of the editor being edited doesn't have to wait
+ * for the runnables scheduled by the builder) which is consumed by at most X worker jobs (eclipse jobs which keep
+ * running runnables while there's something in the queue).
+ *
+ * Runnables scheduled with the same key while a previous one is still in the queue are coalesced in a single entry
+ * (which keeps the highest priority of the runnables): only the latest runnable is run (the ones superseded are
+ * dropped -- and notified if they're an ISupersedableRunnable).
+ */
+public class RunnableAsJobsPool {
+
+    /**
+     * Runnables related to what the user is doing right now (i.e.: the editor being edited).
+     */
+    public static final int PRIORITY_INTERACTIVE = 0;
+
+    public static final int PRIORITY_DEFAULT = 1;
+
+    /**
+     * Runnables for which the user isn't waiting (i.e.: builder).
+     */
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    /**
+     * An entry in the queue.
+     */
+    private static final class PoolEntry implements Comparable<PoolEntry> {
+
+        /**
+         * The latest runnable scheduled for this entry.
+         */
+        private IRunnableWithMonitor runnable;
+        private final Object key;
+        private final long seq;
+        private final long scheduledNanos;
+        private String name;
+        private int priority;
+
+        private PoolEntry(IRunnableWithMonitor runnable, String name, int priority, Object key, long seq) {
+            this.runnable = runnable;
+            this.name = name;
+            this.priority = priority;
+            this.key = key;
+            this.seq = seq;
+            this.scheduledNanos = System.nanoTime();
+        }
+
+        @Override
+        public int compareTo(PoolEntry o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+
+    /**
+     * Lock to access the fields below.
+     */
+    private final Object lock = new Object();
+
+    private final PriorityQueue<PoolEntry> queue = new PriorityQueue<PoolEntry>();
+
+    /**
+     * Entries in the queue which may still be coalesced.
+     */
+    private final Map<Object, PoolEntry> pendingByKey = new HashMap<Object, PoolEntry>();
+
+    private final int maxWorkers;
+
+    private int runningWorkers;
+
+    private int stopThreads;
+
+    private long nextSeq;
+
+    // Metrics (also accessed with the lock)
+    private long scheduledCount;
+    private long coalescedCount;
+    private long executedCount;
+    private long maxQueueSize;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize the maximum number of runnables that can run at the same time.
+     */
+    public RunnableAsJobsPool(int maxSize) {
+        this.maxWorkers = maxSize;
+    }
+
+    /**
+     * While there's some stop registered, no new runnables will be started (the ones already running will
+     * still finish).
+     */
+    public void pushStopThreads() {
+        synchronized (lock) {
+            stopThreads += 1;
+        }
+    }
+
+    public void popStopThreads() {
+        synchronized (lock) {
+            stopThreads -= 1;
+            Assert.isTrue(stopThreads >= 0);
+            if (stopThreads == 0) {
+                startWorkersUnsynched();
+            }
+        }
+    }
+
+    public void scheduleToRun(final IRunnableWithMonitor runnable, final String name) {
+        scheduleToRun(runnable, name, PRIORITY_DEFAULT, null);
+    }
+
+    /**
+     * @param priority one of the PRIORITY_* constants.
+     * @param key if not null, the runnable will replace a runnable with the same key that's still in the queue
+     * (i.e.: not started), so, only the latest runnable scheduled for a key is run.
+     */
+    public void scheduleToRun(final IRunnableWithMonitor runnable, final String name, int priority, Object key) {
+        IRunnableWithMonitor superseded;
+        synchronized (lock) {
+            scheduledCount++;
+            PoolEntry existing = key != null ? pendingByKey.get(key) : null;
+            if (existing == null) {
+                PoolEntry entry = new PoolEntry(runnable, name, priority, key, nextSeq++);
+                queue.add(entry);
+                if (key != null) {
+                    pendingByKey.put(key, entry);
+                }
+                if (queue.size() > maxQueueSize) {
+                    maxQueueSize = queue.size();
+                }
+                startWorkersUnsynched();
+                return;
+            }
+            coalescedCount++;
+            superseded = existing.runnable;
+            existing.runnable = runnable;
+            existing.name = name;
+            if (priority < existing.priority) {
+                //Position in the queue changes.
+                queue.remove(existing);
+                existing.priority = priority;
+                queue.add(existing);
+            }
+        }
+        if (superseded instanceof ISupersedableRunnable) {
+            try {
+                ((ISupersedableRunnable) superseded).onSuperseded();
+            } catch (RuntimeException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void startWorkersUnsynched() {
+        if (stopThreads > 0) {
+            return;
+        }
+        int queueSize = queue.size();
+        while (runningWorkers < maxWorkers && runningWorkers < queueSize) {
+            runningWorkers++;
+            Job workerJob = new WorkerJob();
+            workerJob.setPriority(Job.INTERACTIVE);
+            workerJob.schedule();
+        }
+    }
+
+    /**
+     * A job which keeps on running runnables from the queue while there's something available.
+     */
+    private final class WorkerJob extends Job {
+
+        private WorkerJob() {
+            super("PyDev: Run scheduled");
+        }
+
+        @Override
+        public IStatus run(IProgressMonitor monitor) {
+            while (true) {
+                PoolEntry entry;
+                IRunnableWithMonitor runnable;
+                int remaining;
+                synchronized (lock) {
+                    if (stopThreads > 0 || queue.isEmpty()) {
+                        runningWorkers--;
+                        return Status.OK_STATUS;
+                    }
+                    entry = queue.poll();
+                    if (entry.key != null) {
+                        pendingByKey.remove(entry.key);
+                    }
+                    runnable = entry.runnable;
+                    entry.runnable = null; //make sure it'll be available for garbage collection ASAP.
+                    remaining = queue.size();
+                    long waitNanos = System.nanoTime() - entry.scheduledNanos;
+                    totalWaitNanos += waitNanos;
+                    if (waitNanos > maxWaitNanos) {
+                        maxWaitNanos = waitNanos;
+                    }
+                }
+
+                String name = entry.name;
+                if (remaining > 1) {
+                    name += " (" + remaining + " scheduled)";
+                }
+                setName(name);
+
+                long initialNanos = System.nanoTime();
+                boolean handled = false;
+                try {
+                    runnable.setMonitor(monitor);
+                    runnable.run();
+                    handled = true;
+                } catch (RuntimeException e) {
+                    handled = true;
+                    if (CorePlugin.getDefault() != null) {
+                        //Only log if eclipse still didn't shutdown.
+                        Log.log(e);
+                    }
+                } finally {
+                    if (!handled) {
+                        //An Error was thrown (and will be reported by the job): release the worker slot so that
+                        //the remaining entries are still run.
+                        synchronized (lock) {
+                            runningWorkers--;
+                            startWorkersUnsynched();
+                        }
+                    }
+                }
+                long runNanos = System.nanoTime() - initialNanos;
+                runnable = null;
+
+                synchronized (lock) {
+                    executedCount++;
+                    totalRunNanos += runNanos;
+                    if (monitor.isCanceled()) {
+                        //The user cancelled this job: the monitor can't be reused for the next runnables.
+                        runningWorkers--;
+                        startWorkersUnsynched();
+                        return Status.OK_STATUS;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Meant to be used in tests!
+     */
+    public void waitToFinishCurrent() {
+        final Object lock = new Object();
+        final boolean[] finished = new boolean[] { false };
+
+        IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
+
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    finished[0] = true;
+                    lock.notifyAll();
+                }
+            }
+
+            @Override
+            public void setMonitor(IProgressMonitor monitor) {
+            }
+        };
+        //I.e.: we'll schedule a job to wait until all the currently scheduled jobs are run.
+        scheduleToRun(runnable, "Wait to run all currently scheduled jobs", PRIORITY_BACKGROUND, null);
+        synchronized (lock) {
+            while (!finished[0]) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries waiting to be run.
+     */
+    public int getQueueSize() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return a description of the metrics of this pool (for diagnosis).
+     */
+    public String getStats() {
+        synchronized (lock) {
+            long avgWaitMillis = executedCount > 0 ? totalWaitNanos / executedCount / 1000000 : 0;
+            long avgRunMillis = executedCount > 0 ? totalRunNanos / executedCount / 1000000 : 0;
+            return "RunnableAsJobsPool[queueSize=" + queue.size() + ", maxQueueSize=" + maxQueueSize
+                    + ", runningWorkers=" + runningWorkers + ", scheduled=" + scheduledCount + ", coalesced="
+                    + coalescedCount + ", executed=" + executedCount + ", avgWaitMillis=" + avgWaitMillis
+                    + ", maxWaitMillis=" + (maxWaitNanos / 1000000) + ", avgRunMillis=" + avgRunMillis + "]";
+        }
+    }
+
+    private static RunnableAsJobsPool singleton;
+
+    /**
+     * @return a singleton to be shared across multiple clases. Note that this class
+     * may still have locally created instances (so, its constructor is not private as
+     * is usual for singletons).
+     */
+    public synchronized static RunnableAsJobsPool getSingleton() {
+        if (singleton == null) {
+            //if a problem happens getting the number of processors (although it shouldn't happen), use 6
+            int maxSize = 6;
+
+            try {
+                int availableProcessors = Runtime.getRuntime().availableProcessors();
+                if (availableProcessors <= 1) {
+                    maxSize = 3;
+
+                } else {
+                    //note that we create more threads than processes because some are very likely to
+                    //be disk-bound processes (but with a logarithmic function, because we don't want
+                    //to add up too fast as the number of processors increase because of the amount of memory
+                    //it'd consume).
+                    //
+                    //The progression we get with this formula is below.
+                    //
+                    //2: 4
+                    //3: 6
+                    //4: 8
+                    //5: 10
+                    //6: 11
+                    //7: 13
+                    //8: 14
+                    //9: 16
+                    //10: 17
+                    //11: 18
+                    //12: 19
+                    //13: 21
+                    //14: 22
+                    //15: 23
+                    //16: 24
+                    //17: 25
+                    //18: 27
+                    //19: 28
+                    maxSize = (int) (availableProcessors + Math.round(MathUtils.log(availableProcessors, 1.4)));
+                }
+            } catch (Throwable e) {
+            }
+
+            singleton = new RunnableAsJobsPool(maxSize);
+        }
+        return singleton;
+    }
+
+}
@@ -251,33 +251,31 @@ public final class PyStringUtils {
      * Empty strings are also never added.
      */
     public static void splitWithIntern(String string, char toSplit, Collection<String> addTo) {
-        synchronized (ObjectsPool.lock) {
-            int len = string.length();
+        int len = string.length();
 
-            int last = 0;
+        int last = 0;
 
-            char c = 0;
+        char c = 0;
 
-            for (int i = 0; i < len; i++) {
-                c = string.charAt(i);
-                if (c == toSplit) {
-                    if (last != i) {
-                        addTo.add(ObjectsPool.internUnsynched(string.substring(last, i)));
-                    }
-                    while (c == toSplit && i < len - 1) {
-                        i++;
-                        c = string.charAt(i);
-                    }
-                    last = i;
+        for (int i = 0; i < len; i++) {
+            c = string.charAt(i);
+            if (c == toSplit) {
+                if (last != i) {
+                    addTo.add(ObjectsPool.intern(string.substring(last, i)));
                 }
+                while (c == toSplit && i < len - 1) {
+                    i++;
+                    c = string.charAt(i);
+                }
+                last = i;
             }
-            if (c != toSplit) {
-                if (last == 0 && len > 0) {
-                    addTo.add(ObjectsPool.internUnsynched(string)); //it is equal to the original (no char to split)
+        }
+        if (c != toSplit) {
+            if (last == 0 && len > 0) {
+                addTo.add(ObjectsPool.intern(string)); //it is equal to the original (no char to split)
 
-                } else if (last < len) {
-                    addTo.add(ObjectsPool.internUnsynched(string.substring(last, len)));
-                }
+            } else if (last < len) {
+                addTo.add(ObjectsPool.intern(string.substring(last, len)));
             }
         }
     }
@@ -6,8 +6,13 @@
  */
 package org.python.pydev.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+
 /**
  * @author fabioz
  *
@@ -25,6 +30,7 @@ public class ObjectsPoolTest extends TestCase {
     public void testObjectsPool() throws Exception {
         String intern = ObjectsPool.intern(new String("foo"));
         assertSame(ObjectsPool.intern(new String("foo")), intern);
+        assertNull(ObjectsPool.intern(null));
 
         //        Timer t = new Timer();
         //        synchronized (ObjectsPool.lock){
@@ -34,4 +40,64 @@ public class ObjectsPoolTest extends TestCase {
         //        }
         //        t.printDiff();
     }
+
+    public void testStats() throws Exception {
+        long hits = ObjectsPool.getHits();
+        long misses = ObjectsPool.getMisses();
+        long savedBytes = ObjectsPool.getSavedBytes();
+
+        String intern = ObjectsPool.intern(new String("testStats"));
+        assertEquals(misses + 1, ObjectsPool.getMisses());
+        assertSame(intern, ObjectsPool.intern(new String("testStats")));
+        assertEquals(hits + 1, ObjectsPool.getHits());
+        assertEquals(savedBytes + ("testStats".length() * 2), ObjectsPool.getSavedBytes());
+        assertTrue(ObjectsPool.getHitRate() > 0);
+    }
+
+    public void testInternAll() throws Exception {
+        String intern = ObjectsPool.intern(new String("bar"));
+        String[] strings = new String[] { new String("bar"), null, new String("bar") };
+        ObjectsPool.internAll(strings);
+        assertSame(intern, strings[0]);
+        assertNull(strings[1]);
+        assertSame(intern, strings[2]);
+    }
+
+    public void testInternLocalGlobally() throws Exception {
+        String intern = ObjectsPool.intern(new String("testInternLocal"));
+
+        ObjectsPoolMap map = new ObjectsPoolMap();
+        assertNotSame(intern, ObjectsPool.internLocal(map, new String("testInternLocal")));
+
+        map = new ObjectsPoolMap(true);
+        assertSame(intern, ObjectsPool.internLocal(map, new String("testInternLocal")));
+        assertSame(intern, ObjectsPool.internLocal(map, new String("testInternLocal")));
+    }
+
+    public void testConcurrentIntern() throws Exception {
+        final int numberOfStrings = 1000;
+        final String[][] results = new String[4][numberOfStrings];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < results.length; t++) {
+            final String[] threadResults = results[t];
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < numberOfStrings; i++) {
+                        threadResults[i] = ObjectsPool.intern(new String("concurrent" + i));
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 1; t < results.length; t++) {
+            for (int i = 0; i < numberOfStrings; i++) {
+                assertSame(results[0][i], results[t][i]);
+            }
+        }
+    }
 }
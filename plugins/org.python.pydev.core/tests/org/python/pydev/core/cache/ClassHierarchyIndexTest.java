@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class ClassHierarchyIndexTest extends TestCase {
+
+    private File file;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ClassHierarchyIndexTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("class_hierarchy_index_test", ".index");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private List<Tuple<String, String>> extract(String contents) {
+        List<Tuple<String, String>> classesAndBases = new ArrayList<Tuple<String, String>>();
+        char[] chars = contents.toCharArray();
+        ClassHierarchyIndex.extractClassesAndBases(chars, chars.length, classesAndBases);
+        return classesAndBases;
+    }
+
+    private String extractAsStr(String contents) {
+        List<String> ret = new ArrayList<String>();
+        for (Tuple<String, String> classAndBase : extract(contents)) {
+            ret.add(classAndBase.o1 + "(" + classAndBase.o2 + ")");
+        }
+        return ret.toString();
+    }
+
+    public void testExtractClassesAndBases() throws Exception {
+        assertEquals("[A(B), A(mod.C)]", extractAsStr("class A(B, mod.C):\n    pass"));
+        assertEquals("[A(B), Inner(A)]",
+                extractAsStr("class A(\n    B,\n    metaclass=M):\n    class Inner(A): pass\nclass D: pass"));
+        assertEquals("[]", extractAsStr("myclass = A(B)\nclass F():\n    pass"));
+
+        //Names in expressions are all considered.
+        assertEquals("[E(get_base), E(object)]", extractAsStr("class E(get_base(), object):\n    pass"));
+        assertEquals("[G(six.with_metaclass), G(Meta), G(Base)]",
+                extractAsStr("class G(six.with_metaclass(Meta, Base)):\n    pass"));
+    }
+
+    public void testExtractWithComments() throws Exception {
+        assertEquals("[A(B), A(C)]", extractAsStr("class A(B,  # comment with ) and (\n    C):\n    pass"));
+        assertEquals("[A(B), A(C)]", extractAsStr("class A(B, \\\n    C): #class X(Y)\n    pass"));
+        assertEquals("[A(B)]", extractAsStr("class A(B): # class X(Y)\n    '''\n    class Z(C\n'''"));
+    }
+
+    public void testExtractAliasedImports() throws Exception {
+        assertEquals("[X(B), X(m.Base)]", extractAsStr("from m import Base as B\nclass X(B):\n    pass"));
+        assertEquals("[X(B), X(m.Base), Y(O), Y(..n.Other)]",
+                extractAsStr("from m import (Base as B,\n   Something)\nfrom .. import n\n"
+                        + "from ..n import Other as O\nclass X(B): pass\nclass Y(O): pass"));
+        assertEquals("[X(n.Base), X(pack.mod.Base)]",
+                extractAsStr("class X(n.Base):\n    pass\nimport os, pack.mod as n"));
+    }
+
+    public void testExtractTypeCalls() throws Exception {
+        assertEquals("[X(Base)]", extractAsStr("X = type('X', (Base,), {})"));
+        assertEquals("[Y(Base), Y(mod.Other)]", extractAsStr("call(type(\"Y\", (Base, mod.Other), dict(a=1)))"));
+        assertEquals("[]", extractAsStr("if type(x) == int:\n    pass\nobj.type(a, b, c)"));
+    }
+
+    public void testIndex() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex(file);
+        index.indexModule("mod1", 10, extract("class A(Base): pass"));
+        index.indexModule("mod2", 20, extract("class B(pack.Base): pass\nclass C(A): pass"));
+
+        assertTrue(index.isUpToDate("mod1", 10));
+        assertFalse(index.isUpToDate("mod1", 11));
+        assertFalse(index.isUpToDate("mod3", 10));
+
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "mod2")), index.getModulesWithSubclassesOf("Base"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), index.getModulesWithSubclassesOf("mod1.A"));
+        assertTrue(ClassHierarchyIndex.hasSubclassOf(extract("class B(pack.Base): pass"), "Base"));
+        assertTrue(ClassHierarchyIndex.hasSubclassOf(extract("from m import Base as B\nclass X(B): pass"), "Base"));
+        assertFalse(ClassHierarchyIndex.hasSubclassOf(extract("class B(pack.Base): pass"), "B"));
+
+        //Re-index: mod1 no longer has a subclass of Base.
+        index.indexModule("mod1", 11, extract("class A(object): pass"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), index.getModulesWithSubclassesOf("Base"));
+
+        index.remove("mod2");
+        assertEquals(0, index.getModulesWithSubclassesOf("Base").size());
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex(file);
+        for (int i = 0; i < 100; i++) {
+            index.indexModule("mod" + i, i, extract("class A" + i + "(Base): pass"));
+        }
+        index.indexModule("empty", 5, extract("a = 10"));
+        index.save();
+
+        ClassHierarchyIndex loaded = new ClassHierarchyIndex(file);
+        assertEquals(101, loaded.size());
+        assertTrue(loaded.isUpToDate("mod99", 99));
+        assertTrue(loaded.isUpToDate("empty", 5));
+        assertEquals(100, loaded.getModulesWithSubclassesOf("Base").size());
+    }
+}
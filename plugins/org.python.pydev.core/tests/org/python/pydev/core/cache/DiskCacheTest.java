@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class DiskCacheTest extends TestCase {
+
+    private File baseDir;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DiskCacheTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = File.createTempFile("disk_cache_test", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = baseDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        baseDir.delete();
+        super.tearDown();
+    }
+
+    private static long hash(String contents) {
+        char[] chars = contents.toCharArray();
+        return DiskCache.hashContents(chars, chars.length);
+    }
+
+    public void testValues() throws Exception {
+        DiskCache cache = new DiskCache(baseDir, ".test");
+        cache.putValue("mod1", hash("a"), new byte[] { 1, 2, 3 });
+        cache.putValue("mod2", hash("b"), new byte[] { 4 });
+
+        assertNull(cache.getValue("mod1", hash("b")));
+        assertEquals(3, cache.getValue("mod1", hash("a")).length);
+
+        cache.putValue("mod1", hash("c"), new byte[] { 5, 6 });
+        assertNull(cache.getValue("mod1", hash("a")));
+        assertEquals(6, cache.getValue("mod1", hash("c"))[1]);
+
+        cache.remove(new CompleteIndexKey("mod2"));
+        assertNull(cache.getValue("mod2", hash("b")));
+
+        //Restore from the disk in a new cache.
+        cache.writeTo(new FastStringBuffer());
+        DiskCache cache2 = new DiskCache(baseDir, ".test");
+        assertEquals(6, cache2.getValue("mod1", hash("c"))[1]);
+        assertNull(cache2.getValue("mod1", hash("a")));
+        assertEquals(4, cache2.getValue("mod2", hash("b"))[0]); //Removal only in memory (same contents still valid).
+    }
+
+    public void testIncompleteRecordDiscarded() throws Exception {
+        DiskCache cache = new DiskCache(baseDir, ".test");
+        cache.add(new CompleteIndexKey("mod1"));
+        cache.clear();
+        assertEquals(0, cache.keys().size());
+
+        cache.putValue("mod1", hash("a"), new byte[] { 1, 2, 3 });
+        cache.putValue("mod2", hash("b"), new byte[100]);
+        cache.writeTo(new FastStringBuffer());
+
+        File segment = new File(baseDir, "values.segment");
+        RandomAccessFile f = new RandomAccessFile(segment, "rw");
+        try {
+            f.setLength(f.length() - 10);
+        } finally {
+            f.close();
+        }
+        DiskCache cache2 = new DiskCache(baseDir, ".test");
+        assertEquals(3, cache2.getValue("mod1", hash("a")).length);
+        assertNull(cache2.getValue("mod2", hash("b")));
+    }
+
+    public void testCompact() throws Exception {
+        DiskCache cache = new DiskCache(baseDir, ".test");
+        byte[] value = new byte[1024];
+        for (int i = 0; i < 3000; i++) {
+            value[0] = (byte) i;
+            cache.putValue("mod" + (i % 10), hash("a" + i), value);
+        }
+        File segment = new File(baseDir, "values.segment");
+        assertTrue(segment.length() > 3000 * 1024);
+        cache.writeTo(new FastStringBuffer());
+        assertTrue(segment.length() < 20 * 1024);
+
+        assertEquals((byte) 2999, cache.getValue("mod9", hash("a2999"))[0]);
+        DiskCache cache2 = new DiskCache(baseDir, ".test");
+        assertEquals((byte) 2990, cache2.getValue("mod0", hash("a2990"))[0]);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class TokensIndexTest extends TestCase {
+
+    private File file;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(TokensIndexTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("tokens_index_test", ".index");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private Set<String> extract(String contents) {
+        Set<String> tokens = new HashSet<String>();
+        char[] chars = contents.toCharArray();
+        TokensIndex.extractTokens(chars, chars.length, tokens);
+        return tokens;
+    }
+
+    public void testExtractTokens() throws Exception {
+        assertEquals(new HashSet<String>(Arrays.asList("foo", "bar", "a", "b")),
+                extract("def foo(a, b):\n    return bar(a)+b # class"));
+    }
+
+    public void testIndex() throws Exception {
+        TokensIndex index = new TokensIndex(file);
+        index.indexModule("mod1", 10, extract("a = foo()"));
+        index.indexModule("mod2", 20, extract("b = bar()"));
+
+        assertTrue(index.isUpToDate("mod1", 10));
+        assertFalse(index.isUpToDate("mod1", 11));
+        assertFalse(index.isUpToDate("mod3", 10));
+
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), index.getModulesWithAnyToken(Arrays.asList("foo")));
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "mod2")),
+                index.getModulesWithAnyToken(Arrays.asList("foo", "bar")));
+
+        //Re-index: foo is no longer there.
+        index.indexModule("mod1", 11, extract("a = bar()"));
+        assertEquals(0, index.getModulesWithAnyToken(Arrays.asList("foo")).size());
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "mod2")),
+                index.getModulesWithAnyToken(Arrays.asList("bar")));
+
+        index.remove("mod2");
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), index.getModulesWithAnyToken(Arrays.asList("bar")));
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        TokensIndex index = new TokensIndex(file);
+        for (int i = 0; i < 2000; i++) {
+            index.indexModule("mod" + i, i, extract("a" + i + " = common()"));
+        }
+        for (int i = 0; i < 1500; i++) {
+            index.remove("mod" + i); //Forces compacting the ids.
+        }
+        index.save();
+
+        TokensIndex loaded = new TokensIndex(file);
+        assertEquals(500, loaded.size());
+        assertTrue(loaded.isUpToDate("mod1999", 1999));
+        assertFalse(loaded.isUpToDate("mod1", 1));
+        assertEquals(500, loaded.getModulesWithAnyToken(Arrays.asList("common")).size());
+        assertEquals(new HashSet<String>(Arrays.asList("mod1600")),
+                loaded.getModulesWithAnyToken(Arrays.asList("a1600")));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.concurrency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+public class RunnableAsJobsPoolTest extends TestCase {
+
+    private final List<String> ran = new ArrayList<String>();
+    private final List<String> superseded = new ArrayList<String>();
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(RunnableAsJobsPoolTest.class);
+    }
+
+    private ISupersedableRunnable createRunnable(final String name) {
+        return new ISupersedableRunnable() {
+
+            @Override
+            public void run() {
+                synchronized (ran) {
+                    ran.add(name);
+                }
+            }
+
+            @Override
+            public void setMonitor(IProgressMonitor monitor) {
+            }
+
+            @Override
+            public void onSuperseded() {
+                synchronized (superseded) {
+                    superseded.add(name);
+                }
+            }
+        };
+    }
+
+    public void testPriorityOrdering() throws Exception {
+        RunnableAsJobsPool pool = new RunnableAsJobsPool(1);
+        pool.pushStopThreads();
+        pool.scheduleToRun(createRunnable("background1"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, null);
+        pool.scheduleToRun(createRunnable("default1"), "", RunnableAsJobsPool.PRIORITY_DEFAULT, null);
+        pool.scheduleToRun(createRunnable("interactive1"), "", RunnableAsJobsPool.PRIORITY_INTERACTIVE, null);
+        pool.scheduleToRun(createRunnable("background2"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, null);
+        pool.scheduleToRun(createRunnable("interactive2"), "", RunnableAsJobsPool.PRIORITY_INTERACTIVE, null);
+        assertEquals(5, pool.getQueueSize());
+        pool.popStopThreads();
+        pool.waitToFinishCurrent();
+
+        //Same priority: the order in which they were scheduled is kept.
+        assertEquals(Arrays.asList("interactive1", "interactive2", "default1", "background1", "background2"), ran);
+    }
+
+    public void testKeyCoalescing() throws Exception {
+        RunnableAsJobsPool pool = new RunnableAsJobsPool(1);
+        pool.pushStopThreads();
+        pool.scheduleToRun(createRunnable("mod1-a"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, "mod1");
+        pool.scheduleToRun(createRunnable("mod2-a"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, "mod2");
+        pool.scheduleToRun(createRunnable("mod1-b"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, "mod1");
+        //The priority of the coalesced entry is raised.
+        pool.scheduleToRun(createRunnable("mod1-c"), "", RunnableAsJobsPool.PRIORITY_INTERACTIVE, "mod1");
+        pool.scheduleToRun(createRunnable("no-key"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, null);
+        assertEquals(3, pool.getQueueSize());
+        assertEquals(Arrays.asList("mod1-a", "mod1-b"), superseded);
+        pool.popStopThreads();
+        pool.waitToFinishCurrent();
+
+        //Only the latest runnable for a key is run.
+        assertEquals(Arrays.asList("mod1-c", "mod2-a", "no-key"), ran);
+
+        //After it started, a new runnable with the same key is scheduled again.
+        pool.scheduleToRun(createRunnable("mod1-d"), "", RunnableAsJobsPool.PRIORITY_BACKGROUND, "mod1");
+        pool.waitToFinishCurrent();
+        assertEquals(Arrays.asList("mod1-c", "mod2-a", "no-key", "mod1-d"), ran);
+        assertEquals(2, superseded.size());
+    }
+
+    public void testErrorReleasesWorker() throws Exception {
+        RunnableAsJobsPool pool = new RunnableAsJobsPool(1);
+        pool.pushStopThreads();
+        pool.scheduleToRun(new IRunnableWithMonitor() {
+
+            @Override
+            public void run() {
+                throw new AssertionError("Expected in test");
+            }
+
+            @Override
+            public void setMonitor(IProgressMonitor monitor) {
+            }
+        }, "", RunnableAsJobsPool.PRIORITY_INTERACTIVE, null);
+        pool.scheduleToRun(createRunnable("after-error"), "", RunnableAsJobsPool.PRIORITY_DEFAULT, null);
+        pool.popStopThreads();
+
+        //The worker which got the error must be replaced (otherwise this would wait forever).
+        pool.waitToFinishCurrent();
+        assertEquals(Arrays.asList("after-error"), ran);
+    }
+}
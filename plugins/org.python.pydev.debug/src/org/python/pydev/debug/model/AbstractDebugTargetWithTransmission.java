@@ -11,6 +11,7 @@ import java.net.Socket;
 
 import org.eclipse.core.runtime.PlatformObject;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.CommandLatencyStats;
 import org.python.pydev.debug.model.remote.DebuggerReader;
 import org.python.pydev.debug.model.remote.DebuggerWriter;
 
@@ -50,6 +51,17 @@ public class AbstractDebugTargetWithTransmission extends PlatformObject {
         }
     }
 
+    /**
+     * @return the round-trip latency of the commands sent to the debugger (or null if not connected).
+     */
+    public CommandLatencyStats getCommandLatencyStats() {
+        DebuggerReader r = reader;
+        if (r != null) {
+            return r.getLatencyStats();
+        }
+        return null;
+    }
+
     public void postCommand(AbstractDebuggerCommand cmd) {
         if (writer != null) {
             writer.postCommand(cmd);
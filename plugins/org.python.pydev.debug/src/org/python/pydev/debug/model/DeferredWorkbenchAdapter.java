@@ -7,6 +7,7 @@
 package org.python.pydev.debug.model;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.ui.DeferredDebugElementWorkbenchAdapter;
 import org.eclipse.ui.progress.IDeferredWorkbenchAdapter;
 import org.eclipse.ui.progress.IElementCollector;
@@ -35,6 +36,8 @@ public class DeferredWorkbenchAdapter extends DeferredDebugElementWorkbenchAdapt
             return true;
         } else if (parent instanceof PyStackFrame) {
             return true;
+        } else if (parent instanceof PyVariablesPage) {
+            return true;
         }
         return false;
     }
@@ -72,7 +75,7 @@ public class DeferredWorkbenchAdapter extends DeferredDebugElementWorkbenchAdapt
                 GetVariableCommand variableCommand = variableCollection.getVariableCommand(target);
                 variableCommand.setCompletionListener(this);
                 target.postCommand(variableCommand);
-                return waitForCommand();
+                return waitForCommand(variableCommand);
             }
             return new Object[0];
 
@@ -86,10 +89,18 @@ public class DeferredWorkbenchAdapter extends DeferredDebugElementWorkbenchAdapt
                 GetVariableCommand variableCommand = f.getFrameCommand(target);
                 variableCommand.setCompletionListener(this);
                 target.postCommand(variableCommand);
-                return waitForCommand();
+                return waitForCommand(variableCommand);
             }
             return new Object[0];
 
+        } else if (o instanceof PyVariablesPage) {
+            try {
+                return ((PyVariablesPage) o).getVariables();
+            } catch (DebugException e) {
+                Log.log(e);
+                return new Object[0];
+            }
+
         } else if (o instanceof PyVariable) {
             return new Object[0];
 
@@ -98,20 +109,24 @@ public class DeferredWorkbenchAdapter extends DeferredDebugElementWorkbenchAdapt
         }
     }
 
-    private PyVariable[] waitForCommand() {
+    private PyVariable[] waitForCommand(AbstractDebuggerCommand cmd) {
         try {
             // VariablesView does not deal well with children changing asynchronously.
             // it causes unneeded scrolling, because view preserves selection instead
             // of visibility.
             // I try to minimize the occurrence here, by giving pydevd time to complete the
             // task before we are forced to do asynchronous notification.
-            int i = 500; //up to 5 seconds
-            while (--i > 0 && commandVariables == null) {
+            long timeout = 5000; //up to 5 seconds
+            long step = 100; //wakes up only to check if the request was canceled (the response itself wakes us).
+            while (timeout > 0 && commandVariables == null) {
                 if (this.monitor != null && this.monitor.isCanceled() == true) {
                     //canceled request... let's return
                     return new PyVariable[0];
                 }
-                Thread.sleep(10); //10 millis
+                if (cmd.waitForResponse(Math.min(step, timeout))) {
+                    break;
+                }
+                timeout -= step;
             }
         } catch (InterruptedException e) {
             Log.log(e);
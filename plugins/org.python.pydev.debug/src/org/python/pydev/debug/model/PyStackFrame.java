@@ -403,10 +403,9 @@ public class PyStackFrame extends PlatformObject implements IStackFrame, IVariab
 
     public String getFileContents() {
         if (fileContents == null) {
-            // send the command, and then busy-wait
+            // send the command, and then wait for the response
             GetFileContentsCommand cmd = new GetFileContentsCommand(target, this.path.toOSString());
 
-            final Object lock = new Object();
             final String[] response = new String[1];
 
             cmd.setCompletionListener(new ICommandResponseListener() {
@@ -417,30 +416,14 @@ public class PyStackFrame extends PlatformObject implements IStackFrame, IVariab
                     } catch (CoreException e) {
                         response[0] = "";
                     }
-                    try {
-                        synchronized (lock) {
-                            lock.notify();
-                        }
-                    } catch (Exception e) {
-                        //ignore
-                    }
                 }
             });
 
             target.postCommand(cmd);
-            int timeout = PySourceLocatorPrefs.getFileContentsTimeout();
-            long initialTimeMillis = System.currentTimeMillis();
-            while (response[0] == null) {
-                synchronized (lock) {
-                    try {
-                        lock.wait(50);
-                    } catch (Exception e) {
-                        //ignore
-                    }
-                }
-                if (System.currentTimeMillis() - initialTimeMillis > timeout) {
-                    break;
-                }
+            try {
+                cmd.waitForResponse(PySourceLocatorPrefs.getFileContentsTimeout());
+            } catch (InterruptedException e) {
+                //ignore
             }
             fileContents = response[0];
         }
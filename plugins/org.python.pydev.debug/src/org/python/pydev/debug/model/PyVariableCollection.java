@@ -30,6 +30,12 @@ import org.python.pydev.debug.model.remote.ICommandResponseListener;
  */
 public class PyVariableCollection extends PyVariable implements ICommandResponseListener, IVariableLocator {
 
+    /**
+     * Max number of variables created when the contents of a container arrive (the others are created on demand
+     * through a PyVariablesPage).
+     */
+    public static final int VARIABLES_PAGE_SIZE = 100;
+
     PyVariable[] variables = new PyVariable[0];
     IVariable[] waitVariables = null;
 
@@ -95,7 +101,7 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
         PyVariable[] tempVariables = new PyVariable[0];
         try {
             String payload = ((GetVariableCommand) cmd).getResponse();
-            tempVariables = XMLUtils.XMLToVariables(target, locator, payload);
+            tempVariables = XMLUtils.XMLToVariables(target, locator, payload, VARIABLES_PAGE_SIZE);
         } catch (CoreException e) {
             tempVariables = new PyVariable[1];
             tempVariables[0] = new PyVariable(target, "Error", "pydev ERROR", "Could not resolve variable", locator);
@@ -115,7 +121,7 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
             return getWaitVariables();
         }
 
-        // send the command, and then busy-wait
+        // send the command, and then wait for the response
         GetVariableCommand cmd = getVariableCommand(target);
         cmd.setCompletionListener(this);
         networkState = NETWORK_REQUEST_NOT_ARRIVED;
@@ -127,10 +133,7 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
             // of visibility.
             // I try to minimize the occurrence here, by giving pydevd time to complete the
             // task before we are forced to do asynchronous notification.
-            int i = 10;
-            while (--i > 0 && networkState != NETWORK_REQUEST_ARRIVED) {
-                Thread.sleep(50);
-            }
+            cmd.waitForResponse(500);
 
         } catch (InterruptedException e) {
             Log.log(e);
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.util.List;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IVariable;
+
+/**
+ * The variables of a container which weren't created yet (shown as the last child of containers with many items).
+ *
+ * Its children are the next page of variables (plus another page if there are still more entries).
+ */
+public class PyVariablesPage extends PyVariable {
+
+    private final List<String[]> entries;
+    private final int start;
+    private final int pageSize;
+
+    /**
+     * Lazily created (access synchronized on this).
+     */
+    private PyVariable[] variables;
+
+    /**
+     * @param entries the (still url-encoded) attributes of the variables received from the debugger.
+     * @param start the index of the first entry in this page.
+     */
+    public PyVariablesPage(AbstractDebugTarget target, IVariableLocator locator, List<String[]> entries, int start,
+            int pageSize) {
+        super(target, "...", "", (entries.size() - start) + " more items", locator);
+        this.entries = entries;
+        this.start = start;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public IVariable[] getVariables() throws DebugException {
+        synchronized (this) {
+            if (variables == null) {
+                variables = XMLUtils.createVariables(target, locator, entries, start, pageSize);
+            }
+            return variables;
+        }
+    }
+
+    @Override
+    public boolean hasVariables() throws DebugException {
+        return true;
+    }
+
+    @Override
+    public boolean supportsValueModification() {
+        return false;
+    }
+
+    @Override
+    public String getPyDBLocation() {
+        //The children are accessed through the container (this is not an actual variable in the debugger).
+        return locator.getPyDBLocation();
+    }
+}
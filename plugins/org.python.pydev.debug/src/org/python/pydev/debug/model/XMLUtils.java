@@ -13,6 +13,7 @@ package org.python.pydev.debug.model;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
@@ -33,6 +34,7 @@ import org.python.pydev.debug.newconsole.EvaluateDebugConsoleExpression;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -60,6 +62,14 @@ public class XMLUtils {
         return parser;
     }
 
+    /**
+     * Parses the payload directly from its chars (without encoding it to bytes to be decoded again by the parser).
+     */
+    private static void parse(SAXParser parser, String payload, DefaultHandler handler) throws SAXException,
+            IOException {
+        parser.parse(new InputSource(new StringReader(payload)), handler);
+    }
+
     private static String decode(String value) {
         if (value != null) {
             try {
@@ -102,7 +112,7 @@ public class XMLUtils {
         try {
             SAXParser parser = getSAXParser();
             XMLToThreadInfo info = new XMLToThreadInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(parser, payload, info);
             return info.threads.toArray(new PyThread[0]);
 
         } catch (CoreException e) {
@@ -119,10 +129,16 @@ public class XMLUtils {
      * <var name="self" type="ObjectType" value="<DeepThread>"/>
      */
     static PyVariable createVariable(AbstractDebugTarget target, IVariableLocator locator, Attributes attributes) {
+        return createVariable(target, locator, attributes.getValue("name"), attributes.getValue("type"),
+                attributes.getValue("value"), attributes.getValue("isContainer"));
+    }
+
+    /**
+     * Creates a variable from the attributes (still url-encoded) received in the XML.
+     */
+    static PyVariable createVariable(AbstractDebugTarget target, IVariableLocator locator, String name, String type,
+            String value, String isContainer) {
         PyVariable var;
-        String name = attributes.getValue("name");
-        String type = attributes.getValue("type");
-        String value = attributes.getValue("value");
         try {
             if (value != null) {
                 value = URLDecoder.decode(value, "UTF-8");
@@ -137,7 +153,6 @@ public class XMLUtils {
         } catch (Exception e) {
             Log.log(e);
         }
-        String isContainer = attributes.getValue("isContainer");
         if ("True".equals(isContainer)) {
             var = new PyVariableCollection(target, name, type, value, locator);
         } else {
@@ -260,11 +275,11 @@ public class XMLUtils {
             XMLToStackInfo info = null;
             try {
                 info = new XMLToStackInfo(target);
-                parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+                parse(parser, payload, info);
             } catch (SAXParseException e) {
                 info = new XMLToStackInfo(target);
                 FastStringBuffer buf2 = fixXml(payload);
-                parser.parse(new ByteArrayInputStream(buf2.getBytes()), info);
+                parse(parser, buf2.toString(), info);
                 Log.log("Received wrong xml which was fixed but indicates problem in the debugger in the server-side (please report error):\n"
                         + payload, e);
             }
@@ -330,39 +345,66 @@ public class XMLUtils {
     /**
      * Processes CMD_GET_VARIABLE return
      *
+     * Only the attributes are kept (the variables are created later on, so that a container with many items
+     * only creates the variables actually shown).
      */
     static class XMLToVariableInfo extends DefaultHandler {
-        private AbstractDebugTarget target;
-        private IVariableLocator locator;
-        public List<PyVariable> vars;
+        public List<String[]> entries;
 
-        public XMLToVariableInfo(AbstractDebugTarget target, IVariableLocator locator) {
-            this.target = target;
-            this.locator = locator;
-            vars = new ArrayList<PyVariable>();
+        public XMLToVariableInfo() {
+            entries = new ArrayList<String[]>();
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
             // <var name="self" type="ObjectType" value="<DeepThread>"/>
-            // create a local variable, and add it to locals
+            // keep the (still encoded) attributes to create the variable later
             if (qName.equals("var")) {
-                vars.add(createVariable(target, locator, attributes));
+                entries.add(new String[] { attributes.getValue("name"), attributes.getValue("type"),
+                        attributes.getValue("value"), attributes.getValue("isContainer") });
             }
         }
     }
 
+    /**
+     * Creates the variables for the given entries (as gathered in XMLToVariableInfo).
+     *
+     * @param pageSize if there are more entries than this, only pageSize variables are created and a PyVariablesPage
+     * is added as the last variable to create the others on demand.
+     */
+    static PyVariable[] createVariables(AbstractDebugTarget target, IVariableLocator locator, List<String[]> entries,
+            int start, int pageSize) {
+        int size = entries.size() - start;
+        boolean paged = size > pageSize;
+        if (paged) {
+            size = pageSize;
+        }
+        PyVariable[] vars = new PyVariable[paged ? size + 1 : size];
+        for (int i = 0; i < size; i++) {
+            String[] entry = entries.get(start + i);
+            vars[i] = createVariable(target, locator, entry[0], entry[1], entry[2], entry[3]);
+        }
+        if (paged) {
+            vars[size] = new PyVariablesPage(target, locator, entries, start + size, pageSize);
+        }
+        return vars;
+    }
+
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
+        return XMLToVariables(target, locator, payload, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param pageSize the maximum number of variables created (the others are available in a PyVariablesPage).
+     */
+    public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload,
+            int pageSize) throws CoreException {
         try {
             SAXParser parser = getSAXParser();
-            XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
-            PyVariable[] vars = new PyVariable[info.vars.size()];
-            for (int i = 0; i < info.vars.size(); i++) {
-                vars[i] = info.vars.get(i);
-            }
-            return vars;
+            XMLToVariableInfo info = new XMLToVariableInfo();
+            parse(parser, payload, info);
+            return createVariables(target, locator, info.entries, 0, pageSize);
         } catch (CoreException e) {
             throw e;
         } catch (SAXException e) {
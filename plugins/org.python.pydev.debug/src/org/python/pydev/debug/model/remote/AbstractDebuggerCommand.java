@@ -10,6 +10,9 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
@@ -36,6 +39,7 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  *     else
  *         cmd.processErrorResponse()
  *
+ *  waitForResponse() may be used to block until the response arrives (or the connection is closed).
  */
 public abstract class AbstractDebuggerCommand {
 
@@ -91,6 +95,19 @@ public abstract class AbstractDebuggerCommand {
     protected ICommandResponseListener responseListener;
     int sequence;
 
+    /**
+     * Command code written to the debugger and when it was written (set by the DebuggerWriter, used to compute the
+     * round-trip latency).
+     */
+    volatile int outgoingCode;
+    volatile long sentNanos;
+
+    /**
+     * Released when the response arrives (or when it won't arrive anymore because the connection was closed).
+     */
+    private final CountDownLatch responseLatch = new CountDownLatch(1);
+    private volatile boolean responseArrived;
+
     public AbstractDebuggerCommand(AbstractDebugTarget debugger) {
         this.target = debugger;
         this.responseListener = null;
@@ -137,15 +154,36 @@ public abstract class AbstractDebuggerCommand {
      * Called when command completes, if needResponse was true
      */
     public final void processResponse(int cmdCode, String payload) {
-        if (cmdCode / 100 == 9) {
-            processErrorResponse(cmdCode, payload);
-        } else {
-            processOKResponse(cmdCode, payload);
+        responseArrived = true;
+        try {
+            if (cmdCode / 100 == 9) {
+                processErrorResponse(cmdCode, payload);
+            } else {
+                processOKResponse(cmdCode, payload);
+            }
+
+            if (responseListener != null) {
+                responseListener.commandComplete(this);
+            }
+        } finally {
+            responseLatch.countDown();
         }
+    }
 
-        if (responseListener != null) {
-            responseListener.commandComplete(this);
-        }
+    /**
+     * Called when the connection is closed before the response arrives (so that no one waits for it).
+     */
+    final void responseAborted() {
+        responseLatch.countDown();
+    }
+
+    /**
+     * Blocks until the response for this command arrives (only valid for commands which need a response).
+     *
+     * @return true if the response was processed and false on a timeout or if the connection was closed.
+     */
+    public boolean waitForResponse(long timeoutMillis) throws InterruptedException {
+        return responseLatch.await(timeoutMillis, TimeUnit.MILLISECONDS) && responseArrived;
     }
 
     /**
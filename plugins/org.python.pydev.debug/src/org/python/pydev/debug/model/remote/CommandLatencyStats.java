@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Round-trip latency (from the command being written to its response being received) for each command code
+ * sent to the debugger.
+ */
+public final class CommandLatencyStats {
+
+    /**
+     * The latency for one command code.
+     */
+    public static final class Entry {
+
+        public final int cmdCode;
+        public final long count;
+        public final double averageMillis;
+        public final double maxMillis;
+
+        private Entry(int cmdCode, long count, double averageMillis, double maxMillis) {
+            this.cmdCode = cmdCode;
+            this.count = count;
+            this.averageMillis = averageMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "cmd=" + cmdCode + " count=" + count + " avg=" + averageMillis + "ms max=" + maxMillis + "ms";
+        }
+    }
+
+    /**
+     * Values: count, total nanos, max nanos (access synchronized on the map).
+     */
+    private final Map<Integer, long[]> cmdCodeToTimes = new TreeMap<Integer, long[]>();
+
+    void record(int cmdCode, long nanos) {
+        synchronized (cmdCodeToTimes) {
+            long[] times = cmdCodeToTimes.get(cmdCode);
+            if (times == null) {
+                times = new long[3];
+                cmdCodeToTimes.put(cmdCode, times);
+            }
+            times[0]++;
+            times[1] += nanos;
+            if (nanos > times[2]) {
+                times[2] = nanos;
+            }
+        }
+    }
+
+    /**
+     * @return the latency of each command code (sorted by the command code).
+     */
+    public List<Entry> getEntries() {
+        synchronized (cmdCodeToTimes) {
+            List<Entry> ret = new ArrayList<Entry>(cmdCodeToTimes.size());
+            for (Map.Entry<Integer, long[]> entry : cmdCodeToTimes.entrySet()) {
+                long[] times = entry.getValue();
+                ret.add(new Entry(entry.getKey(), times[0], (times[1] / (double) times[0]) / 1000000.0,
+                        times[2] / 1000000.0));
+            }
+            return ret;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandLatencyStats" + getEntries();
+    }
+}
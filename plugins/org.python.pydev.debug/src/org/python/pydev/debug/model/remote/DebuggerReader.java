@@ -6,13 +6,14 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
 import java.net.URLDecoder;
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
@@ -41,19 +42,19 @@ public class DebuggerReader implements Runnable {
     private volatile boolean done = false;
 
     /**
-     * Lock object for sleeping.
+     * commands waiting for response. Their keys are the sequence ids
      */
-    private Object lock = new Object();
+    private final ConcurrentHashMap<Integer, AbstractDebuggerCommand> responseQueue = new ConcurrentHashMap<Integer, AbstractDebuggerCommand>();
 
     /**
-     * commands waiting for response. Their keys are the sequence ids
+     * round-trip latency of the commands which had a response
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private final CommandLatencyStats latencyStats = new CommandLatencyStats();
 
     /**
      * we read from this
      */
-    private InputStreamReader in;
+    private BufferedReader in;
 
     /**
      * that's the debugger that made us... we have to finish it when we are done
@@ -72,24 +73,38 @@ public class DebuggerReader implements Runnable {
         remote = (AbstractDebugTarget) r;
         socket = s;
         InputStream sin = socket.getInputStream();
-        in = new InputStreamReader(sin);
+        in = new BufferedReader(new InputStreamReader(sin));
     }
 
     /**
-     * mark things as done
+     * mark things as done (the commands still waiting for a response won't get it anymore)
      */
     public void done() {
         this.done = true;
+        abortPendingResponses();
+    }
+
+    private void abortPendingResponses() {
+        for (Integer sequence : new ArrayList<Integer>(responseQueue.keySet())) {
+            AbstractDebuggerCommand cmd = responseQueue.remove(sequence);
+            if (cmd != null) {
+                cmd.responseAborted();
+            }
+        }
     }
 
     /**
      * @param cmd
      */
     public void addToResponseQueue(AbstractDebuggerCommand cmd) {
-        int sequence = cmd.getSequence();
-        synchronized (responseQueue) {
-            responseQueue.put(new Integer(sequence), cmd);
-        }
+        responseQueue.put(cmd.getSequence(), cmd);
+    }
+
+    /**
+     * @return the round-trip latency of the commands sent through this connection.
+     */
+    public CommandLatencyStats getLatencyStats() {
+        return latencyStats;
     }
 
     /**
@@ -103,10 +118,7 @@ public class DebuggerReader implements Runnable {
             String payload = URLDecoder.decode(cmdParsed[2], "UTF-8");
 
             // is there a response waiting
-            AbstractDebuggerCommand cmd;
-            synchronized (responseQueue) {
-                cmd = (AbstractDebuggerCommand) responseQueue.remove(new Integer(seqCode));
-            }
+            AbstractDebuggerCommand cmd = responseQueue.remove(seqCode);
 
             if (cmd == null) {
                 if (remote != null) {
@@ -115,6 +127,10 @@ public class DebuggerReader implements Runnable {
                     PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
                 }
             } else {
+                long sentNanos = cmd.sentNanos;
+                if (sentNanos != 0) {
+                    latencyStats.record(cmd.outgoingCode, System.nanoTime() - sentNanos);
+                }
                 cmd.processResponse(cmdCode, payload);
             }
         } catch (Exception e) {
@@ -136,12 +152,11 @@ public class DebuggerReader implements Runnable {
                 if (DEBUG) {
                     System.err.println("receive cmd: " + cmdLine);
                 }
-                if (cmdLine != null && cmdLine.trim().length() > 0) {
+                if (cmdLine == null) {
+                    done = true; //the client finished
+                } else if (cmdLine.trim().length() > 0) {
                     processCommand(cmdLine);
                 }
-                synchronized (lock) {
-                    Thread.sleep(50);
-                }
             } catch (Exception e1) {
                 done = true;
                 //that's ok, it means that the client finished
@@ -159,24 +174,17 @@ public class DebuggerReader implements Runnable {
                 done = true;
             }
         }
+        abortPendingResponses();
     }
 
     /**
-     * Implemented our own: with the BufferedReader, when the socket was closed, it still appeared stuck in the method.
-     * 
-     * @return a line that was read from the debugger.
+     * Blocks until a line is available (the socket is closed when the debugger is terminated, which makes the read
+     * fail if it's still blocked).
+     *
+     * @return a line that was read from the debugger or null if the stream was closed.
      * @throws IOException
      */
     private String readLine() throws IOException {
-        StringBuffer contents = new StringBuffer();
-        int i;
-        while ((i = in.read()) != -1) {
-            char c = (char) i;
-            if (c == '\n' || c == '\r') {
-                return contents.toString();
-            }
-            contents.append(c);
-        }
-        throw new IOException("Done");
+        return in.readLine();
     }
 }
@@ -6,17 +6,21 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.python.pydev.core.log.Log;
 
 /**
  * Writer writes debugger commands to the network. Use postCommand to put new
  * ones in queue.
+ *
+ * The writer blocks until some command is posted and then writes all the pending commands with a single flush.
  */
 public class DebuggerWriter implements Runnable {
 
@@ -26,11 +30,11 @@ public class DebuggerWriter implements Runnable {
     private Socket socket;
 
     /**
-     * a list of RemoteDebuggerCommands
+     * the RemoteDebuggerCommands to be written
      */
-    private List<AbstractDebuggerCommand> cmdQueue = new ArrayList<AbstractDebuggerCommand>();
+    private final LinkedBlockingQueue<AbstractDebuggerCommand> cmdQueue = new LinkedBlockingQueue<AbstractDebuggerCommand>();
 
-    private OutputStreamWriter out;
+    private BufferedWriter out;
 
     /**
      * Volatile, as multiple threads may ask it to be 'done'
@@ -38,68 +42,103 @@ public class DebuggerWriter implements Runnable {
     private volatile boolean done = false;
 
     /**
-     * Lock object for sleeping.
+     * The thread running this writer (interrupted when it's done so that it stops waiting for commands).
      */
-    private Object lock = new Object();
+    private volatile Thread writerThread;
 
     public DebuggerWriter(Socket s) throws IOException {
         socket = s;
-        out = new OutputStreamWriter(s.getOutputStream(), "utf-8");
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), "utf-8"));
     }
 
     /**
      * Add command for processing
      */
     public void postCommand(AbstractDebuggerCommand cmd) {
-        synchronized (cmdQueue) {
-            cmdQueue.add(cmd);
-        }
+        cmdQueue.add(cmd);
     }
 
     public void done() {
         this.done = true;
+        Thread t = writerThread;
+        if (t != null) {
+            t.interrupt();
+        }
     }
 
     /**
      * Loops and writes commands to the output
      */
     public void run() {
-        while (!done) {
-            AbstractDebuggerCommand cmd = null;
-            synchronized (cmdQueue) {
-                if (cmdQueue.size() > 0) {
-                    cmd = cmdQueue.remove(0);
+        writerThread = Thread.currentThread();
+        List<AbstractDebuggerCommand> batch = new ArrayList<AbstractDebuggerCommand>();
+        try {
+            while (!done) {
+                try {
+                    batch.add(cmdQueue.take());
+                    cmdQueue.drainTo(batch);
+                    write(batch);
+                    batch.clear();
+                } catch (InterruptedException | IOException e) {
+                    done = true;
+                } catch (Throwable e1) {
+                    Log.log(e1); //Unexpected error (but not done).
+                    batch.clear();
+                }
+                if ((socket == null) || !socket.isConnected()) {
+                    done = true;
                 }
             }
-            try {
-                if (cmd != null) {
-                    String outgoing;
-                    try {
-                        outgoing = cmd.getOutgoing();
-                        if (outgoing == null) {
-                            continue;
-                        }
-                    } catch (Throwable e) {
-                        Log.log(e);
-                        continue;
-                    }
+        } finally {
+            writerThread = null;
+            //Commands not sent won't have a response.
+            cmdQueue.drainTo(batch);
+            for (AbstractDebuggerCommand cmd : batch) {
+                cmd.responseAborted();
+            }
+        }
+    }
 
-                    cmd.aboutToSend();
-                    out.write(outgoing);
-                    out.write("\n");
-                    out.flush();
-                }
-                synchronized (lock) {
-                    Thread.sleep(100);
+    /**
+     * Writes the given commands and flushes the output once at the end.
+     */
+    private void write(List<AbstractDebuggerCommand> batch) throws IOException {
+        int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            AbstractDebuggerCommand cmd = batch.get(i);
+            String outgoing;
+            try {
+                outgoing = cmd.getOutgoing();
+                if (outgoing == null) {
+                    continue;
                 }
-            } catch (InterruptedException | IOException e) {
-                done = true;
-            } catch (Throwable e1) {
-                Log.log(e1); //Unexpected error (but not done).
+            } catch (Throwable e) {
+                Log.log(e);
+                continue;
             }
-            if ((socket == null) || !socket.isConnected()) {
-                done = true;
+
+            cmd.outgoingCode = getCmdCode(outgoing);
+            cmd.sentNanos = System.nanoTime();
+            cmd.aboutToSend();
+            out.write(outgoing);
+            out.write("\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the command code in the start of the given outgoing message (or -1 if it's not there).
+     */
+    static int getCmdCode(String outgoing) {
+        int code = 0;
+        int len = outgoing.length();
+        for (int i = 0; i < len; i++) {
+            char c = outgoing.charAt(i);
+            if (c < '0' || c > '9') {
+                return i > 0 && c == '\t' ? code : -1;
             }
+            code = code * 10 + (c - '0');
         }
+        return -1;
     }
 }
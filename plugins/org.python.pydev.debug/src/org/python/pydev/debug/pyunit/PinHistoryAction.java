@@ -61,7 +61,7 @@ public class PinHistoryAction extends Action {
                 if (currentTestRun != null) {
                     worked = true;
                     onRunSelected.call(currentTestRun);
-                    this.currentTestRun = currentTestRun;
+                    setPinnedRun(currentTestRun);
                     this.setImageDescriptor(PydevDebugPlugin.getImageCache().getDescriptor("icons/pin_arrow.png"));
                     this.setToolTipText("Currently pin: " + currentTestRun.name + ". Click again to unpin.");
                 }
@@ -72,10 +72,30 @@ public class PinHistoryAction extends Action {
                 this.setImageDescriptor(PydevDebugPlugin.getImageCache().getDescriptor("icons/pin.png"));
                 this.setInitialTooltipText();
                 this.setChecked(false);
-                currentTestRun = null;
+                setPinnedRun(null);
                 onRunSelected.call(currentTestRun);
             }
         }
     }
 
+    /**
+     * The pinned run keeps its outputs even if it's removed from the view (until it's unpinned).
+     */
+    private void setPinnedRun(PyUnitTestRun testRun) {
+        if (this.currentTestRun != null && this.currentTestRun != testRun) {
+            this.currentTestRun.setPinned(false);
+        }
+        this.currentTestRun = testRun;
+        if (testRun != null) {
+            testRun.setPinned(true);
+        }
+    }
+
+    /**
+     * Called when the view is disposed (the pinned run is released).
+     */
+    /*default*/void dispose() {
+        setPinnedRun(null);
+    }
+
 }
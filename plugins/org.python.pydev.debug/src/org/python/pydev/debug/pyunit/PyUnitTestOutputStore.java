@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.pyunit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.core.log.Log;
+
+/**
+ * Keeps the outputs (captured output and error contents) of the tests of a test run in a temporary file, so that
+ * runs with many tests with a verbose output don't need to keep all of it in memory (contents are only read back
+ * when requested -- i.e.: when a test is selected in the view).
+ *
+ * Small contents are still kept in memory.
+ *
+ * The file is removed when the store is disposed (i.e.: when the test run is removed from the view).
+ */
+final class PyUnitTestOutputStore {
+
+    /**
+     * Contents with up to this number of chars are kept in memory.
+     */
+    public static int MAX_CHARS_IN_MEMORY = 256;
+
+    /**
+     * The location of some contents in the file.
+     */
+    private static final class StoredContents {
+
+        private final long offset;
+        private final int length;
+
+        private StoredContents(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+
+    /**
+     * If true we weren't able to create the file (or the store was already disposed) and contents are kept in memory.
+     */
+    private boolean keepInMemory;
+
+    /**
+     * @return an object from where the contents may be gotten later on with {@link #load(Object)}.
+     */
+    public synchronized Object store(String contents) {
+        if (contents == null || contents.length() <= MAX_CHARS_IN_MEMORY || keepInMemory) {
+            return contents;
+        }
+        try {
+            if (randomAccessFile == null) {
+                file = File.createTempFile("pyunit_output", ".tmp");
+                randomAccessFile = new RandomAccessFile(file, "rw");
+            }
+            byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+            long offset = randomAccessFile.length();
+            randomAccessFile.seek(offset);
+            randomAccessFile.write(bytes);
+            return new StoredContents(offset, bytes.length);
+        } catch (IOException e) {
+            Log.log("Unable to store test output in temporary file (keeping it in memory).", e);
+            keepInMemory = true;
+            return contents;
+        }
+    }
+
+    /**
+     * @param stored the object returned from {@link #store(String)}.
+     */
+    public synchronized String load(Object stored) {
+        if (!(stored instanceof StoredContents)) {
+            return (String) stored;
+        }
+        if (randomAccessFile == null) {
+            return ""; //already disposed
+        }
+        StoredContents storedContents = (StoredContents) stored;
+        byte[] bytes = new byte[storedContents.length];
+        try {
+            randomAccessFile.seek(storedContents.offset);
+            randomAccessFile.readFully(bytes);
+        } catch (IOException e) {
+            Log.log(e);
+            return "";
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes and removes the file used to store the contents.
+     */
+    public synchronized void dispose() {
+        keepInMemory = true; //Anything stored afterwards (i.e.: the run is still going on) is kept in memory.
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                //ignore
+            }
+            randomAccessFile = null;
+            file.delete();
+            file = null;
+        }
+    }
+}
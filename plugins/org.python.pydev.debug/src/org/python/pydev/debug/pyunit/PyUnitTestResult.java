@@ -35,11 +35,16 @@ public class PyUnitTestResult {
     public final String status;
     public final String location;
     public final String test;
-    public final String capturedOutput;
-    public final String errorContents;
     public final String time;
     private WeakReference<PyUnitTestRun> testRun;
 
+    /**
+     * The captured output and error contents (may be stored in disk: use the related getters to get them).
+     */
+    private final Object capturedOutput;
+    private final Object errorContents;
+    private final PyUnitTestOutputStore outputStore;
+
     public final String STATUS_OK = "ok";
     public final String STATUS_SKIP = "skip";
     public final String STATUS_FAIL = "fail";
@@ -53,8 +58,9 @@ public class PyUnitTestResult {
         this.status = status;
         this.location = location;
         this.test = test;
-        this.capturedOutput = capturedOutput;
-        this.errorContents = errorContents;
+        this.outputStore = testRun.getOutputStore();
+        this.capturedOutput = outputStore.store(capturedOutput);
+        this.errorContents = outputStore.store(errorContents);
         this.time = time;
         this.index = testRun.getNextTestIndex();
     }
@@ -63,6 +69,20 @@ public class PyUnitTestResult {
         return this.testRun.get();
     }
 
+    /**
+     * Note: may need to read the contents from the disk.
+     */
+    public String getCapturedOutput() {
+        return outputStore.load(capturedOutput);
+    }
+
+    /**
+     * Note: may need to read the contents from the disk.
+     */
+    public String getErrorContents() {
+        return outputStore.load(errorContents);
+    }
+
     public boolean isOk() {
         return STATUS_OK.equals(this.status);
     }
@@ -78,13 +98,15 @@ public class PyUnitTestResult {
     @Override
     public String toString() {
         int fixedContentsLen = 50;
+        String errorContents = getErrorContents();
+        String capturedOutput = getCapturedOutput();
         FastStringBuffer buf = new FastStringBuffer(this.test.length() + this.status.length() + this.time.length()
-                + this.location.length() + this.errorContents.length() + this.capturedOutput.length()
+                + this.location.length() + errorContents.length() + capturedOutput.length()
                 + fixedContentsLen);
 
         return buf.append(this.test).append(" Status: ").append(this.status).append(" Time: ").append(this.time)
-                .append("\n\n").append("File: ").append(this.location).append("\n\n").append(this.errorContents)
-                .append("\n\n").append(this.capturedOutput).append("\n\n").toString();
+                .append("\n\n").append("File: ").append(this.location).append("\n\n").append(errorContents)
+                .append("\n\n").append(capturedOutput).append("\n\n").toString();
     }
 
     public void open() {
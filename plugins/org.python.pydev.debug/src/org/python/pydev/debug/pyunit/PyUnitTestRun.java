@@ -31,6 +31,13 @@ public class PyUnitTestRun {
     private IPyUnitLaunch pyUnitLaunch;
     private int nextIndex = 0;
     private String totalTime; //null while not set.
+    private final PyUnitTestOutputStore outputStore = new PyUnitTestOutputStore();
+
+    /**
+     * The outputs are only disposed when the run was removed from the view and it's not pinned.
+     */
+    private boolean pinned;
+    private boolean removed;
 
     public PyUnitTestRun(IPyUnitLaunch server) {
         synchronized (lock) {
@@ -154,6 +161,30 @@ public class PyUnitTestRun {
         }
     }
 
+    /**
+     * @return the place where the outputs of the tests of this run are kept.
+     */
+    /*default*/PyUnitTestOutputStore getOutputStore() {
+        return outputStore;
+    }
+
+    /*default*/synchronized void setPinned(boolean pinned) {
+        this.pinned = pinned;
+        if (!pinned && removed) {
+            outputStore.dispose();
+        }
+    }
+
+    /**
+     * Called when the run is removed from the view (disposes its outputs unless it's pinned).
+     */
+    /*default*/synchronized void onRemoved() {
+        removed = true;
+        if (!pinned) {
+            outputStore.dispose();
+        }
+    }
+
     public synchronized String getNextTestIndex() {
         return Integer.toString(++nextIndex);
     }
@@ -172,6 +172,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
     private Label fStatus;
     private Composite fCounterComposite;
     private IPropertyChangeListener prefListener;
+    private PinHistoryAction pinHistory;
 
     /**
      * Whether we should show only errors or not.
@@ -400,7 +401,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
 
         toolBar.add(new Separator());
         toolBar.add(new HistoryAction(this));
-        PinHistoryAction pinHistory = new PinHistoryAction(this);
+        pinHistory = new PinHistoryAction(this);
         toolBar.add(pinHistory);
         toolBar.add(new RestorePinHistoryAction(this, pinHistory));
 
@@ -466,9 +467,26 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
             PydevPrefs.getChainedPrefStore().removePropertyChangeListener(prefListener);
             this.prefListener = null;
         }
+        if (this.pinHistory != null) {
+            this.pinHistory.dispose();
+            this.pinHistory = null;
+        }
+        disposeAllRuns();
         super.dispose();
     }
 
+    /**
+     * Removes all the test runs (disposing their outputs).
+     */
+    private static void disposeAllRuns() {
+        synchronized (lockServerListeners) {
+            for (PyUnitViewServerListener listener : serverListeners) {
+                listener.getTestRun().onRemoved();
+            }
+            serverListeners.clear();
+        }
+    }
+
     public static PyUnitViewServerListener registerPyUnitServer(final IPyUnitServer pyUnitServer) {
         return registerPyUnitServer(pyUnitServer, true);
     }
@@ -538,7 +556,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         synchronized (lockServerListeners) {
 
             if (serverListeners.size() + 1 > MAX_RUNS_TO_KEEP) {
-                serverListeners.remove(0);
+                serverListeners.remove(0).getTestRun().onRemoved();
             }
             serverListeners.add(serverListener);
         }
@@ -569,6 +587,25 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         notifyTest(result, true);
     }
 
+    /**
+     * Notifies that a batch of test results has been added (the tree is only redrawn and the counters updated once).
+     */
+    /*default*/void notifyTests(List<PyUnitTestResult> results) {
+        if (this.disposed) {
+            return;
+        }
+
+        tree.setRedraw(false);
+        try {
+            for (PyUnitTestResult result : results) {
+                notifyTest(result, false);
+            }
+        } finally {
+            tree.setRedraw(true);
+        }
+        updateCountersAndBar();
+    }
+
     /*default*/void notifyTestStarted(PyUnitTestStarted result) {
         if (this.disposed) {
             return;
@@ -786,19 +823,23 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         tempOnSelectResult.clear();
 
         boolean addedErrors = false;
+        String errorContents = null;
         if (result != null) {
-            if (result.errorContents != null && result.errorContents.length() > 0) {
+            //Only loaded now (may be stored in the disk).
+            errorContents = result.getErrorContents();
+            String capturedOutput = result.getCapturedOutput();
+            if (errorContents != null && errorContents.length() > 0) {
                 addedErrors = true;
                 tempOnSelectResult.append(ERRORS_HEADER);
-                tempOnSelectResult.append(result.errorContents);
+                tempOnSelectResult.append(errorContents);
             }
 
-            if (result.capturedOutput != null && result.capturedOutput.length() > 0) {
+            if (capturedOutput != null && capturedOutput.length() > 0) {
                 if (tempOnSelectResult.length() > 0) {
                     tempOnSelectResult.append("\n");
                 }
                 tempOnSelectResult.append(CAPTURED_OUTPUT_HEADER);
-                tempOnSelectResult.append(result.capturedOutput);
+                tempOnSelectResult.append(capturedOutput);
             }
         }
         String string = tempOnSelectResult.toString();
@@ -815,7 +856,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
                 range.foreground = errorTextAttribute.getForeground();
             }
             range.start = ERRORS_HEADER.length();
-            range.length = result.errorContents.length();
+            range.length = errorContents.length();
             testOutputText.setStyleRange(range);
         }
 
@@ -972,6 +1013,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
                         removedCurrent = true;
                     }
                     it.remove();
+                    next.onRemoved();
                 }
             }
             if (removedCurrent) {
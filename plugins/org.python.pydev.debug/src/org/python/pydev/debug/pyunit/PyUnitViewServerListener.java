@@ -8,6 +8,7 @@ package org.python.pydev.debug.pyunit;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -30,6 +31,30 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
 
     private LinkedList<ICallback0<Object>> notifications = new LinkedList<ICallback0<Object>>();
 
+    /**
+     * Whether the update job is already scheduled (access synchronized on notifications).
+     */
+    private boolean updateScheduled = false;
+
+    /**
+     * Notification for a test result (consecutive results are passed to the view in a single batch).
+     */
+    private final class TestResultNotification implements ICallback0<Object> {
+
+        private final PyUnitTestResult result;
+
+        private TestResultNotification(PyUnitTestResult result) {
+            this.result = result;
+        }
+
+        public Object call() {
+            List<PyUnitTestResult> results = new ArrayList<PyUnitTestResult>(1);
+            results.add(result);
+            notifyResults(results);
+            return null;
+        }
+    }
+
     private Job updateJob = new UIJob("Update unittest view") {
 
         @Override
@@ -38,18 +63,49 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
             synchronized (notifications) {
                 arrayList = new ArrayList<ICallback0<Object>>(notifications);
                 notifications.clear();
+                updateScheduled = false;
             }
+            List<PyUnitTestResult> results = new ArrayList<PyUnitTestResult>();
             for (ICallback0<Object> iCallback0 : arrayList) {
                 try {
+                    if (iCallback0 instanceof TestResultNotification) {
+                        results.add(((TestResultNotification) iCallback0).result);
+                        continue;
+                    }
+                    if (results.size() > 0) {
+                        notifyResults(results);
+                        results = new ArrayList<PyUnitTestResult>();
+                    }
                     iCallback0.call();
                 } catch (Exception e) {
                     Log.log(e);
                 }
             }
+            if (results.size() > 0) {
+                try {
+                    notifyResults(results);
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
             return Status.OK_STATUS;
         }
     };
 
+    /**
+     * Must be called in the UI thread.
+     */
+    private void notifyResults(List<PyUnitTestResult> results) {
+        for (PyUnitTestResult result : results) {
+            testRun.addResult(result);
+        }
+        synchronized (lockView) {
+            if (view != null) {
+                view.notifyTests(results);
+            }
+        }
+    }
+
     private final PyUnitTestRun testRun;
 
     public PyUnitViewServerListener(IPyUnitServer pyUnitServer, IPyUnitLaunch pyUnitLaunch) {
@@ -59,27 +115,31 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
         updateJob.setSystem(true);
     }
 
-    public static int TIMEOUT = 25;
+    /**
+     * Notifications are passed to the view at most once in this interval (in millis), regardless of how many
+     * notifications arrive in the meantime.
+     */
+    public static int TIMEOUT = 100;
     public static int JOBS_PRIORITY = Job.SHORT;
     private boolean finishedNotified = false;
 
     public void notifyTest(final String status, final String location, final String test, final String capturedOutput,
             final String errorContents, final String time) {
+        //Created out of the UI thread as the outputs may be written to the disk.
+        PyUnitTestResult result = new PyUnitTestResult(testRun, status, location, test, capturedOutput,
+                errorContents, time);
         synchronized (notifications) {
-            notifications.add(new ICallback0<Object>() {
+            notifications.add(new TestResultNotification(result));
+        }
+        scheduleUpdate();
+    }
 
-                public Object call() {
-                    PyUnitTestResult result = new PyUnitTestResult(testRun, status, location, test, capturedOutput,
-                            errorContents, time);
-                    testRun.addResult(result);
-                    synchronized (lockView) {
-                        if (view != null) {
-                            view.notifyTest(result);
-                        }
-                    }
-                    return null;
-                }
-            });
+    private void scheduleUpdate() {
+        synchronized (notifications) {
+            if (updateScheduled) {
+                return;
+            }
+            updateScheduled = true;
         }
         updateJob.schedule(TIMEOUT);
     }
@@ -100,7 +160,7 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
                 }
             });
         }
-        updateJob.schedule(TIMEOUT);
+        scheduleUpdate();
     }
 
     public void notifyFinished(final String totalTime) {
@@ -124,7 +184,7 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
                 });
             }
         }
-        updateJob.schedule(TIMEOUT);
+        scheduleUpdate();
     }
 
     public void notifyDispose() {
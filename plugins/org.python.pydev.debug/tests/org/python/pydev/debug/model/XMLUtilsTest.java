@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import junit.framework.TestCase;
+
+import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+public class XMLUtilsTest extends TestCase {
+
+    private static String createPayload(int vars) {
+        FastStringBuffer buf = new FastStringBuffer("<xml>", vars * 60);
+        for (int i = 0; i < vars; i++) {
+            buf.append("<var name=\"item%20").append(i).append("\" type=\"int\" value=\"int%3A%20").append(i)
+                    .append("\" />");
+        }
+        buf.append("<var name=\"last\" type=\"dict\" value=\"%7B%7D\" isContainer=\"True\" />");
+        return buf.append("</xml>").toString();
+    }
+
+    public void testXMLToVariables() throws Exception {
+        PyVariable[] vars = XMLUtils.XMLToVariables(null, null, createPayload(2));
+        assertEquals(3, vars.length);
+        assertEquals("item 0", vars[0].getName());
+        assertEquals("int: 0", vars[0].getValueString());
+        assertTrue(vars[2] instanceof PyVariableCollection);
+        assertEquals("{}", vars[2].getValueString());
+    }
+
+    public void testXMLToVariablesPaged() throws Exception {
+        PyVariable[] vars = XMLUtils.XMLToVariables(null, null, createPayload(24), 10);
+        assertEquals(11, vars.length);
+        assertEquals("item 9", vars[9].getName());
+
+        PyVariablesPage page = (PyVariablesPage) vars[10];
+        assertEquals("15 more items", page.getValueString());
+        IVariable[] pageVars = page.getVariables();
+        assertEquals(11, pageVars.length);
+        assertEquals("item 10", pageVars[0].getName());
+        assertSame(pageVars, page.getVariables());
+
+        pageVars = ((PyVariablesPage) pageVars[10]).getVariables();
+        assertEquals(5, pageVars.length);
+        assertEquals("item 20", pageVars[0].getName());
+        assertEquals("last", pageVars[4].getName());
+        assertTrue(pageVars[4] instanceof PyVariableCollection);
+    }
+}
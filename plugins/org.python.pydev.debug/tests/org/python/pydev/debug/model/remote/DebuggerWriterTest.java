@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class DebuggerWriterTest extends TestCase {
+
+    public void testGetCmdCode() throws Exception {
+        assertEquals(AbstractDebuggerCommand.CMD_GET_VARIABLE, DebuggerWriter.getCmdCode(AbstractDebuggerCommand
+                .makeCommand(AbstractDebuggerCommand.CMD_GET_VARIABLE, 3, "pid1\tFRAME")));
+        assertEquals(501, DebuggerWriter.getCmdCode("501\t1\t"));
+        assertEquals(-1, DebuggerWriter.getCmdCode("\t1\t"));
+        assertEquals(-1, DebuggerWriter.getCmdCode("50a\t1\t"));
+        assertEquals(-1, DebuggerWriter.getCmdCode("501"));
+    }
+
+    public void testLatencyStats() throws Exception {
+        CommandLatencyStats stats = new CommandLatencyStats();
+        stats.record(114, 2000000);
+        stats.record(110, 1000000);
+        stats.record(110, 3000000);
+
+        List<CommandLatencyStats.Entry> entries = stats.getEntries();
+        assertEquals(2, entries.size());
+
+        CommandLatencyStats.Entry entry = entries.get(0);
+        assertEquals(110, entry.cmdCode);
+        assertEquals(2, entry.count);
+        assertEquals(2.0, entry.averageMillis, 0.001);
+        assertEquals(3.0, entry.maxMillis, 0.001);
+
+        entry = entries.get(1);
+        assertEquals(114, entry.cmdCode);
+        assertEquals(1, entry.count);
+    }
+}
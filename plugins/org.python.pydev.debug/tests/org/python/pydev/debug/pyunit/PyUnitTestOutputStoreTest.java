@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.pyunit;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class PyUnitTestOutputStoreTest extends TestCase {
+
+    private static String createContents(char c, int len) {
+        char[] chars = new char[len];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        PyUnitTestOutputStore store = new PyUnitTestOutputStore();
+        try {
+            Object small = store.store("small");
+            assertEquals("small", small);
+            assertNull(store.store(null));
+
+            String big1 = createContents('a', PyUnitTestOutputStore.MAX_CHARS_IN_MEMORY + 1);
+            String big2 = createContents('\u00e7', PyUnitTestOutputStore.MAX_CHARS_IN_MEMORY * 3);
+            Object stored1 = store.store(big1);
+            Object stored2 = store.store(big2);
+            assertFalse(stored1 instanceof String);
+
+            assertEquals(big2, store.load(stored2));
+            assertEquals(big1, store.load(stored1));
+            assertEquals("small", store.load(small));
+            assertNull(store.load(null));
+        } finally {
+            store.dispose();
+        }
+    }
+
+    public void testDispose() throws Exception {
+        PyUnitTestOutputStore store = new PyUnitTestOutputStore();
+        String big = createContents('a', PyUnitTestOutputStore.MAX_CHARS_IN_MEMORY + 1);
+        Object stored = store.store(big);
+        assertEquals(big, store.load(stored));
+        store.dispose();
+        assertEquals("", store.load(stored));
+
+        //After disposed, contents are kept in memory (no new file is created).
+        Object storedAfterDispose = store.store(big);
+        assertSame(big, storedAfterDispose);
+        assertEquals(big, store.load(storedAfterDispose));
+    }
+
+    public void testRunOutputsDisposedWhenRemovedAndNotPinned() throws Exception {
+        String big = createContents('a', PyUnitTestOutputStore.MAX_CHARS_IN_MEMORY + 1);
+
+        PyUnitTestRun testRun = new PyUnitTestRun(null);
+        Object stored = testRun.getOutputStore().store(big);
+        testRun.onRemoved();
+        assertEquals("", testRun.getOutputStore().load(stored));
+
+        //A pinned run keeps its outputs until it's unpinned.
+        PyUnitTestRun pinnedRun = new PyUnitTestRun(null);
+        stored = pinnedRun.getOutputStore().store(big);
+        pinnedRun.setPinned(true);
+        pinnedRun.onRemoved();
+        assertEquals(big, pinnedRun.getOutputStore().load(stored));
+        pinnedRun.setPinned(false);
+        assertEquals("", pinnedRun.getOutputStore().load(stored));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.pyunit;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.python.pydev.editor.codecompletion.revisited.javaintegration.AbstractWorkbenchTestCase;
+import org.python.pydev.shared_core.callbacks.ICallback;
+
+public class PyUnitViewServerListenerTestWorkbench extends AbstractWorkbenchTestCase {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(PyUnitViewServerListenerTestWorkbench.class.getName());
+
+        suite.addTestSuite(PyUnitViewServerListenerTestWorkbench.class);
+
+        if (suite.countTestCases() == 0) {
+            throw new Error("There are no test cases to run");
+        } else {
+            return suite;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        //no need for default setup
+        closeWelcomeView();
+    }
+
+    public void testNotificationsReachTestRun() throws Exception {
+        IPyUnitServer pyUnitServer = new IPyUnitServer() {
+
+            public void registerOnNotifyTest(IPyUnitServerListener pyUnitViewServerListener) {
+            }
+
+            public IPyUnitLaunch getPyUnitLaunch() {
+                return null;
+            }
+        };
+        final PyUnitViewServerListener listener = new PyUnitViewServerListener(pyUnitServer, null);
+        final PyUnitTestRun testRun = listener.getTestRun();
+
+        listener.notifyStartTest("d:/temp/a.py", "TestCase.testMet1");
+        goToIdleLoopUntilCondition(new ICallback<Boolean, Object>() {
+
+            public Boolean call(Object arg) {
+                return testRun.getTestsRunning().size() == 1;
+            }
+        });
+
+        //Many notifications in a row are passed in batches (and in the order they arrived).
+        for (int i = 0; i < 50; i++) {
+            listener.notifyTest(i % 10 == 0 ? "fail" : "ok", "d:/temp/a.py", "TestCase.testMet" + i, "", "", "0.1");
+        }
+        listener.notifyFinished("1.5");
+        goToIdleLoopUntilCondition(new ICallback<Boolean, Object>() {
+
+            public Boolean call(Object arg) {
+                return testRun.getFinished();
+            }
+        });
+
+        List<PyUnitTestResult> results = testRun.getSharedResultsList();
+        assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("TestCase.testMet" + i, results.get(i).test);
+        }
+        assertEquals(5, testRun.getNumberOfFailures());
+        assertEquals("1.5", testRun.getTotalTime());
+    }
+}
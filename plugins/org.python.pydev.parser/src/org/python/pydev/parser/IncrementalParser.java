@@ -0,0 +1,830 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.grammar26.PythonGrammar26;
+import org.python.pydev.parser.grammar27.PythonGrammar27;
+import org.python.pydev.parser.jython.FastCharStream;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SpecialStr;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.aliasType;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.LowMemoryArrayList;
+
+/**
+ * Reparses only the top-level statements affected by an edit and splices them into the Module of the previous parse.
+ *
+ * The document is split in chunks: each chunk starts at a line in the column 0 which starts a new top-level statement
+ * (i.e.: not inside a string, parenthesis or line continuation and not an else/elif/except/finally nor the def/class
+ * after a decorator). The chunks changed by the edit are parsed in isolation and the statements of the unchanged
+ * chunks are reused (the ones after the edit are copied with their lines shifted if the number of lines changed, as
+ * the previous AST may still be referenced by clients).
+ *
+ * As the comments between top-level statements may be attached to the previous or to the next statement, the chunks
+ * around such comments are also reparsed (the chunk before comments is parsed just as a context and its nodes are
+ * discarded).
+ *
+ * Whenever the edit can't be handled (i.e.: errors in the parse, the structure of the chunks changed, future imports
+ * changed) null is returned and a full parse must be done (whose result must be passed to record()).
+ */
+final class IncrementalParser {
+
+    /**
+     * Just for tests: when true, the result of each incremental parse is compared to the result of a full parse (if
+     * they don't match, the error is logged and null is returned so that a full parse is done).
+     */
+    public static boolean CONSISTENCY_CHECK = false;
+
+    /**
+     * Number of incremental parses which didn't match the full parse (only computed with CONSISTENCY_CHECK).
+     */
+    private static volatile int consistencyFailures;
+
+    /**
+     * The text of the last parse (only the first 'length' chars are valid).
+     */
+    private char[] text;
+    private int length;
+    private int grammarVersion;
+
+    /**
+     * The module of the last parse (null if there's no valid state for an incremental parse).
+     */
+    private Module module;
+    private Chunks chunks;
+
+    /**
+     * The line of the first 'from __future__ import print_function' (or -1 if there's none).
+     */
+    private int printFunctionLine;
+
+    /**
+     * Number of parses which were done incrementally (mostly for tests).
+     */
+    private int incrementalParses;
+
+    /**
+     * The start (offset and line) of each top-level chunk, whether it ends with comment-only lines and the index of
+     * the first top-level statement of each chunk (firstStmt[size] is the number of statements).
+     */
+    private static final class Chunks {
+
+        int size;
+        int[] offsets = new int[32];
+        int[] lines = new int[32];
+        boolean[] trailingComment = new boolean[32];
+        int[] firstStmt;
+
+        /**
+         * Whether the text ended in a state where a new top-level statement could start.
+         */
+        boolean endsAtTopLevel;
+
+        void add(int offset, int line) {
+            if (size == offsets.length) {
+                int newLength = size * 2;
+                int[] newOffsets = new int[newLength];
+                System.arraycopy(offsets, 0, newOffsets, 0, size);
+                offsets = newOffsets;
+                int[] newLines = new int[newLength];
+                System.arraycopy(lines, 0, newLines, 0, size);
+                lines = newLines;
+                boolean[] newTrailing = new boolean[newLength];
+                System.arraycopy(trailingComment, 0, newTrailing, 0, size);
+                trailingComment = newTrailing;
+            }
+            offsets[size] = offset;
+            lines[size] = line;
+            size++;
+        }
+
+        /**
+         * @return the index of the chunk which contains the given offset.
+         */
+        int chunkOfOffset(int offset) {
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsets[mid] <= offset) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Maps each statement to the chunk which contains its begin line (the lines of the chunks and statements must
+         * be in the same coordinates).
+         *
+         * @return false if some chunk has no statement (in which case the chunks can't be used).
+         */
+        boolean mapStatements(stmtType[] body) {
+            int[] first = new int[size + 1];
+            int chunk = 0;
+            int inChunk = 0;
+            for (int i = 0; i < body.length; i++) {
+                int line = body[i].beginLine;
+                if (line < lines[chunk]) {
+                    return false;
+                }
+                while (chunk + 1 < size && line >= lines[chunk + 1]) {
+                    if (inChunk == 0) {
+                        return false;
+                    }
+                    chunk++;
+                    first[chunk] = i;
+                    inChunk = 0;
+                }
+                inChunk++;
+            }
+            if (inChunk == 0 || chunk != size - 1) {
+                return false;
+            }
+            first[size] = body.length;
+            firstStmt = first;
+            return true;
+        }
+    }
+
+    public static int getConsistencyFailures() {
+        return consistencyFailures;
+    }
+
+    public synchronized int getIncrementalParses() {
+        return incrementalParses;
+    }
+
+    /**
+     * Forgets the last parse (the next parse must be a full parse).
+     */
+    public synchronized void clear() {
+        module = null;
+        chunks = null;
+    }
+
+    /**
+     * Keeps the result of a full parse (without errors) so that the next parse may be incremental.
+     */
+    public synchronized void record(char[] newText, int newLength, int grammarVersion, Module newModule) {
+        clear();
+        Chunks newChunks = lex(newText, 0, newLength);
+        if (!newChunks.endsAtTopLevel || !newChunks.mapStatements(newModule.body)) {
+            return;
+        }
+        setText(newText, newLength);
+        this.grammarVersion = grammarVersion;
+        this.module = newModule;
+        this.chunks = newChunks;
+        this.printFunctionLine = -1;
+        if (indexOf(newText, 0, newLength, "__future__") != -1) {
+            this.printFunctionLine = findPrintFunctionLine(newModule.body);
+        }
+    }
+
+    /**
+     * @return the module for the new text or null if it couldn't be parsed incrementally (in which case a full parse
+     * must be done).
+     */
+    public synchronized Module parse(char[] newText, int newLength, int grammarVersion) {
+        Module oldModule = this.module;
+        if (oldModule == null || grammarVersion != this.grammarVersion) {
+            return null;
+        }
+        try {
+            Module ret = doParse(newText, newLength);
+            if (ret != null && CONSISTENCY_CHECK && !checkConsistency(ret, newText, newLength)) {
+                ret = null;
+            }
+            if (ret == null) {
+                clear();
+            }
+            return ret;
+        } catch (Throwable e) {
+            Log.log(e);
+            clear();
+            return null;
+        }
+    }
+
+    private Module doParse(char[] newText, int newLength) throws Exception {
+        char[] oldText = this.text;
+        int oldLength = this.length;
+        Chunks old = this.chunks;
+        stmtType[] oldBody = this.module.body;
+        if (oldLength == 0) {
+            return null;
+        }
+
+        int maxPrefix = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < maxPrefix && oldText[prefix] == newText[prefix]) {
+            prefix++;
+        }
+        if (prefix == oldLength && prefix == newLength) {
+            return this.module; //Nothing changed.
+        }
+        int suffix = 0;
+        while (suffix < oldLength - prefix && suffix < newLength - prefix
+                && oldText[oldLength - 1 - suffix] == newText[newLength - 1 - suffix]) {
+            suffix++;
+        }
+        int oldChangeEnd = oldLength - suffix;
+        int charsDelta = newLength - oldLength;
+
+        //The changed chunks (in the old text).
+        int changeStart = Math.min(prefix, oldLength - 1);
+        int firstChanged = old.chunkOfOffset(changeStart);
+        int lastChanged = old.chunkOfOffset(Math.max(changeStart, oldChangeEnd - 1));
+        if (firstChanged > 0 && prefix == old.offsets[firstChanged]) {
+            //Something added right before a chunk may actually belong to the previous one.
+            firstChanged--;
+        }
+        while (lastChanged + 1 < old.size && !isLineStart(newText, newLength, old.offsets[lastChanged + 1] + charsDelta)) {
+            lastChanged++;
+        }
+
+        //Comments between chunks may be attached to either side, so, the neighbours are also reparsed.
+        int freshStart = firstChanged;
+        if (freshStart > 0 && old.trailingComment[freshStart - 1]) {
+            freshStart--;
+        }
+        int parseStart = freshStart;
+        if (parseStart > 0 && old.trailingComment[parseStart - 1]) {
+            parseStart--;
+        }
+        int freshEnd = lastChanged;
+        if (freshEnd + 1 < old.size) {
+            int newEnd = old.offsets[freshEnd + 1] + charsDelta;
+            if (old.trailingComment[freshEnd] || hasTrailingComment(newText, old.offsets[firstChanged], newEnd)) {
+                freshEnd++;
+            }
+        }
+        int parseEnd = freshEnd;
+        if (parseEnd + 1 < old.size && old.trailingComment[parseEnd]) {
+            parseEnd++;
+        }
+
+        int regionStart = old.offsets[parseStart];
+        int oldRegionEnd = parseEnd + 1 < old.size ? old.offsets[parseEnd + 1] : oldLength;
+        int newRegionEnd = oldRegionEnd + charsDelta;
+        int regionLength = newRegionEnd - regionStart;
+        if (regionLength <= 0 || regionLength > newLength / 2) {
+            return null; //Not worth it (or everything was removed).
+        }
+        if (indexOf(newText, regionStart, newRegionEnd, "__future__") != -1
+                || indexOf(oldText, regionStart, oldRegionEnd, "__future__") != -1) {
+            return null; //Future imports change the tokenization of what comes afterwards.
+        }
+
+        //Parse the region in isolation.
+        char[] regionText = new char[regionLength];
+        System.arraycopy(newText, regionStart, regionText, 0, regionLength);
+        Chunks region = lex(regionText, 0, regionLength);
+        if (!region.endsAtTopLevel) {
+            return null;
+        }
+        int startContext = freshStart - parseStart;
+        int endContext = parseEnd - freshEnd;
+        if (region.size < startContext + endContext) {
+            return null;
+        }
+        int regionStartLine = old.lines[parseStart];
+        Module regionModule = parseRegion(regionText, regionStartLine);
+        if (regionModule == null || !region.mapStatements(regionModule.body)) {
+            return null;
+        }
+
+        int lineOffset = regionStartLine - 1;
+        int linesDelta = countLines(newText, regionStart, newRegionEnd) - countLines(oldText, regionStart, oldRegionEnd);
+
+        //Splice: statements before the fresh chunks are shared, the fresh ones come from the region parse and the
+        //ones afterwards are shared or copied (if their lines changed).
+        int regionStmtsStart = region.firstStmt[startContext];
+        int regionStmtsEnd = region.firstStmt[region.size - endContext];
+        int prefixStmts = old.firstStmt[freshStart];
+        int suffixStmtsStart = old.firstStmt[freshEnd + 1];
+        int suffixStmts = oldBody.length - suffixStmtsStart;
+
+        stmtType[] newBody = new stmtType[prefixStmts + (regionStmtsEnd - regionStmtsStart) + suffixStmts];
+        System.arraycopy(oldBody, 0, newBody, 0, prefixStmts);
+        int pos = prefixStmts;
+        for (int i = regionStmtsStart; i < regionStmtsEnd; i++) {
+            stmtType stmt = regionModule.body[i];
+            if (lineOffset != 0) {
+                shiftLines(stmt, lineOffset);
+            }
+            newBody[pos++] = stmt;
+        }
+        for (int i = suffixStmtsStart; i < oldBody.length; i++) {
+            stmtType stmt = oldBody[i];
+            if (linesDelta != 0) {
+                stmt = copyWithShiftedLines(stmt, linesDelta);
+                if (stmt == null) {
+                    return null;
+                }
+            }
+            newBody[pos++] = stmt;
+        }
+
+        Module newModule = new Module(newBody);
+        Module positionFrom = parseStart == 0 ? regionModule : this.module;
+        newModule.beginLine = positionFrom.beginLine;
+        newModule.beginColumn = positionFrom.beginColumn;
+        if (parseEnd == old.size - 1) {
+            //Comments at the end of the file may be added to the module.
+            IdentityHashMap<Object, Object> shiftedComments = new IdentityHashMap<Object, Object>();
+            newModule.specialsBefore = shiftSpecials(regionModule.specialsBefore, lineOffset, shiftedComments);
+            newModule.specialsAfter = shiftSpecials(regionModule.specialsAfter, lineOffset, shiftedComments);
+        } else {
+            newModule.specialsBefore = copySpecials(this.module.specialsBefore, linesDelta);
+            newModule.specialsAfter = copySpecials(this.module.specialsAfter, linesDelta);
+        }
+
+        //Update the chunks for the new text.
+        Chunks newChunks = new Chunks();
+        for (int i = 0; i < freshStart; i++) {
+            newChunks.add(old.offsets[i], old.lines[i]);
+            newChunks.trailingComment[i] = old.trailingComment[i];
+        }
+        for (int i = startContext; i < region.size - endContext; i++) {
+            newChunks.add(region.offsets[i] + regionStart, region.lines[i] + lineOffset);
+            newChunks.trailingComment[newChunks.size - 1] = region.trailingComment[i];
+        }
+        for (int i = freshEnd + 1; i < old.size; i++) {
+            newChunks.add(old.offsets[i] + charsDelta, old.lines[i] + linesDelta);
+            newChunks.trailingComment[newChunks.size - 1] = old.trailingComment[i];
+        }
+        newChunks.endsAtTopLevel = true;
+        if (!newChunks.mapStatements(newBody)) {
+            return null;
+        }
+
+        if (printFunctionLine >= regionStartLine) {
+            printFunctionLine += linesDelta;
+        }
+        setText(newText, newLength);
+        this.module = newModule;
+        this.chunks = newChunks;
+        this.incrementalParses++;
+        return newModule;
+    }
+
+    /**
+     * @return the module for the region (with lines starting at 1) or null if it had some error.
+     */
+    private Module parseRegion(char[] regionText, int regionStartLine) {
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, new FastCharStream(regionText,
+                regionText.length));
+        if (printFunctionLine != -1 && printFunctionLine < regionStartLine) {
+            if (grammar instanceof PythonGrammar26) {
+                ((PythonGrammar26) grammar).token_source.usePrintAsFunction = true;
+            } else if (grammar instanceof PythonGrammar27) {
+                ((PythonGrammar27) grammar).token_source.usePrintAsFunction = true;
+            }
+        }
+        try {
+            SimpleNode node = grammar.file_input();
+            if (grammar.getErrorOnParsing() != null || !(node instanceof Module)) {
+                return null;
+            }
+            return (Module) node;
+        } catch (Throwable e) {
+            return null; //Errors are reported by the full parse.
+        }
+    }
+
+    private void setText(char[] newText, int newLength) {
+        if (text == null || text.length < newLength) {
+            text = new char[newLength + (newLength / 8) + 64];
+        }
+        System.arraycopy(newText, 0, text, 0, newLength);
+        length = newLength;
+    }
+
+    // Lexing -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Splits the text in top-level chunks (the first chunk always starts at 'start', at line 1).
+     */
+    private static Chunks lex(char[] cs, int start, int end) {
+        Chunks ret = new Chunks();
+        ret.add(start, 1);
+
+        int line = 1;
+        int i = start;
+        boolean atLineStart = true;
+        boolean continuation = false;
+        boolean afterDecorator = false;
+        boolean startedStatement = false; //The first chunk also has the comments before its first statement.
+        int parens = 0;
+        char quote = 0;
+        boolean triple = false;
+
+        while (i < end) {
+            char c = cs[i];
+            if (quote != 0) {
+                if (c == '\\' && i + 1 < end) {
+                    i++;
+                    c = cs[i];
+                    if (c == '\r' || c == '\n') {
+                        if (c == '\r' && i + 1 < end && cs[i + 1] == '\n') {
+                            i++;
+                        }
+                        line++;
+                    }
+                } else if (c == quote) {
+                    if (!triple) {
+                        quote = 0;
+                    } else if (i + 2 < end && cs[i + 1] == quote && cs[i + 2] == quote) {
+                        quote = 0;
+                        i += 2;
+                    }
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && i + 1 < end && cs[i + 1] == '\n') {
+                        i++;
+                    }
+                    line++;
+                    if (!triple) {
+                        ret.endsAtTopLevel = false;
+                        return ret; //Unterminated string.
+                    }
+                }
+                i++;
+                continue;
+            }
+
+            if (atLineStart) {
+                atLineStart = false;
+                if (parens == 0 && !continuation && c != ' ' && c != '\t' && c != '\f' && c != '#' && c != '\r'
+                        && c != '\n') {
+                    if (!afterDecorator && startedStatement && !startsWithWord(cs, i, end, "else")
+                            && !startsWithWord(cs, i, end, "elif") && !startsWithWord(cs, i, end, "except")
+                            && !startsWithWord(cs, i, end, "finally")) {
+                        ret.trailingComment[ret.size - 1] = hasTrailingComment(cs, ret.offsets[ret.size - 1], i);
+                        ret.add(i, line);
+                    }
+                    afterDecorator = c == '@';
+                    startedStatement = true;
+                }
+                continuation = false;
+            }
+
+            switch (c) {
+                case '#':
+                    while (i + 1 < end && cs[i + 1] != '\r' && cs[i + 1] != '\n') {
+                        i++;
+                    }
+                    break;
+
+                case '\'':
+                case '"':
+                    quote = c;
+                    triple = i + 2 < end && cs[i + 1] == c && cs[i + 2] == c;
+                    if (triple) {
+                        i += 2;
+                    }
+                    break;
+
+                case '(':
+                case '[':
+                case '{':
+                    parens++;
+                    break;
+
+                case ')':
+                case ']':
+                case '}':
+                    if (parens > 0) {
+                        parens--;
+                    }
+                    break;
+
+                case '\\':
+                    if (i + 1 < end && (cs[i + 1] == '\r' || cs[i + 1] == '\n')) {
+                        continuation = true;
+                    }
+                    break;
+
+                case '\r':
+                case '\n':
+                    if (c == '\r' && i + 1 < end && cs[i + 1] == '\n') {
+                        i++;
+                    }
+                    line++;
+                    atLineStart = true;
+                    break;
+            }
+            i++;
+        }
+        ret.trailingComment[ret.size - 1] = hasTrailingComment(cs, ret.offsets[ret.size - 1], end);
+        ret.endsAtTopLevel = quote == 0 && parens == 0 && !continuation && !afterDecorator;
+        return ret;
+    }
+
+    /**
+     * @return whether the last non-empty line in the given range is a comment-only line (the end must be at the
+     * start of a line).
+     */
+    private static boolean hasTrailingComment(char[] cs, int start, int end) {
+        int i = end;
+        while (i > start) {
+            //Skip the new line of the previous line.
+            if (cs[i - 1] == '\n') {
+                i--;
+                if (i > start && cs[i - 1] == '\r') {
+                    i--;
+                }
+            } else if (cs[i - 1] == '\r') {
+                i--;
+            }
+            int lineEnd = i;
+            while (i > start && cs[i - 1] != '\r' && cs[i - 1] != '\n') {
+                i--;
+            }
+            for (int j = i; j < lineEnd; j++) {
+                char c = cs[j];
+                if (c == '#') {
+                    return true;
+                }
+                if (c != ' ' && c != '\t' && c != '\f') {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWithWord(char[] cs, int i, int end, String word) {
+        int len = word.length();
+        if (i + len > end) {
+            return false;
+        }
+        for (int j = 0; j < len; j++) {
+            if (cs[i + j] != word.charAt(j)) {
+                return false;
+            }
+        }
+        return i + len == end || !Character.isJavaIdentifierPart(cs[i + len]);
+    }
+
+    private static boolean isLineStart(char[] cs, int length, int offset) {
+        if (offset <= 0 || offset > length) {
+            return false;
+        }
+        char c = cs[offset - 1];
+        return c == '\n' || (c == '\r' && (offset == length || cs[offset] != '\n'));
+    }
+
+    private static int countLines(char[] cs, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            char c = cs[i];
+            if (c == '\n') {
+                lines++;
+            } else if (c == '\r') {
+                if (i + 1 < end && cs[i + 1] == '\n') {
+                    i++;
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int indexOf(char[] cs, int start, int end, String str) {
+        int len = str.length();
+        char first = str.charAt(0);
+        for (int i = start; i <= end - len; i++) {
+            if (cs[i] == first) {
+                int j = 1;
+                while (j < len && cs[i + j] == str.charAt(j)) {
+                    j++;
+                }
+                if (j == len) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // AST helpers --------------------------------------------------------------------------------------------------
+
+    /**
+     * Collects the nodes in the order they're traversed.
+     */
+    private static final class NodesCollector extends VisitorBase {
+
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            nodes.add(node);
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+    }
+
+    private static List<SimpleNode> collectNodes(SimpleNode node) throws Exception {
+        NodesCollector collector = new NodesCollector();
+        node.accept(collector);
+        return collector.nodes;
+    }
+
+    private static int findPrintFunctionLine(stmtType[] body) {
+        for (stmtType stmt : body) {
+            if (stmt instanceof ImportFrom) {
+                ImportFrom importFrom = (ImportFrom) stmt;
+                if (importFrom.module instanceof NameTok && "__future__".equals(((NameTok) importFrom.module).id)
+                        && importFrom.names != null) {
+                    for (aliasType alias : importFrom.names) {
+                        if (alias != null && alias.name instanceof NameTok
+                                && "print_function".equals(((NameTok) alias.name).id)) {
+                            return stmt.beginLine;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int shift(int line, int delta) {
+        return line > 0 ? line + delta : line;
+    }
+
+    /**
+     * Shifts the lines of a statement just created in a region parse (so, no one else references it).
+     */
+    private static void shiftLines(stmtType stmt, int delta) throws Exception {
+        IdentityHashMap<Object, Object> shiftedComments = new IdentityHashMap<Object, Object>();
+        for (SimpleNode node : collectNodes(stmt)) {
+            node.beginLine = shift(node.beginLine, delta);
+            node.specialsBefore = shiftSpecials(node.specialsBefore, delta, shiftedComments);
+            node.specialsAfter = shiftSpecials(node.specialsAfter, delta, shiftedComments);
+        }
+    }
+
+    private static List<Object> shiftSpecials(List<Object> specials, int delta,
+            IdentityHashMap<Object, Object> shiftedComments) {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new LowMemoryArrayList<Object>();
+        for (Object o : specials) {
+            if (o instanceof SpecialStr) {
+                SpecialStr s = (SpecialStr) o;
+                o = new SpecialStr(s.str, shift(s.beginLine, delta), s.beginCol);
+
+            } else if (o instanceof commentType && !shiftedComments.containsKey(o)) {
+                shiftedComments.put(o, o);
+                commentType comment = (commentType) o;
+                comment.beginLine = shift(comment.beginLine, delta);
+            }
+            ret.add(o);
+        }
+        return ret;
+    }
+
+    /**
+     * @return a copy of the given statement with its lines shifted (or null if it couldn't be copied).
+     */
+    private static stmtType copyWithShiftedLines(stmtType stmt, int delta) throws Exception {
+        stmtType copy = (stmtType) stmt.createCopy(true);
+        List<SimpleNode> original = collectNodes(stmt);
+        List<SimpleNode> copied = collectNodes(copy);
+        int size = original.size();
+        if (copied.size() != size) {
+            return null;
+        }
+        IdentityHashMap<SimpleNode, SimpleNode> originalToCopy = new IdentityHashMap<SimpleNode, SimpleNode>(size);
+        for (int i = 0; i < size; i++) {
+            SimpleNode o = original.get(i);
+            SimpleNode c = copied.get(i);
+            if (o.getClass() != c.getClass()) {
+                return null;
+            }
+            originalToCopy.put(o, c);
+            c.beginLine = shift(o.beginLine, delta);
+            c.beginColumn = o.beginColumn;
+            //createCopy only copies the comments (and not the other specials), so, recreate those.
+            c.specialsBefore = copySpecials(o.specialsBefore, delta);
+            c.specialsAfter = copySpecials(o.specialsAfter, delta);
+        }
+        for (int i = 0; i < size; i++) {
+            SimpleNode parent = original.get(i).parent;
+            if (parent != null) {
+                SimpleNode copiedParent = originalToCopy.get(parent);
+                copied.get(i).parent = copiedParent != null ? copiedParent : parent;
+            }
+        }
+        return copy;
+    }
+
+    private static List<Object> copySpecials(List<Object> specials, int delta) {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new LowMemoryArrayList<Object>();
+        for (Object o : specials) {
+            if (o instanceof SpecialStr) {
+                SpecialStr s = (SpecialStr) o;
+                ret.add(new SpecialStr(s.str, shift(s.beginLine, delta), s.beginCol));
+
+            } else if (o instanceof commentType) {
+                commentType comment = ((commentType) o).createCopy(true);
+                comment.beginLine = shift(comment.beginLine, delta);
+                ret.add(comment);
+
+            } else {
+                ret.add(o);
+            }
+        }
+        return ret;
+    }
+
+    // Consistency check --------------------------------------------------------------------------------------------
+
+    private boolean checkConsistency(Module incremental, char[] newText, int newLength) throws Exception {
+        char[] cs = new char[newLength];
+        System.arraycopy(newText, 0, cs, 0, newLength);
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, new FastCharStream(cs, newLength));
+        SimpleNode full = grammar.file_input();
+        if (grammar.getErrorOnParsing() == null && full.equals(incremental)) {
+            String expected = dump(full);
+            String found = dump(incremental);
+            if (expected.equals(found)) {
+                return true;
+            }
+            Log.log("Incremental parse does not match the full parse.\nExpected:\n" + expected + "\nFound:\n" + found);
+        } else {
+            Log.log("Incremental parse does not match the full parse (error: " + grammar.getErrorOnParsing() + ").");
+        }
+        consistencyFailures++;
+        return false;
+    }
+
+    /**
+     * @return a string with the class, position, specials and parent of each node.
+     */
+    static String dump(SimpleNode root) throws Exception {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (SimpleNode node : collectNodes(root)) {
+            dumpNode(buf, node);
+            if (node.parent != null) {
+                buf.append(" parent: ");
+                dumpNode(buf, node.parent);
+            }
+            dumpSpecials(buf, " before: ", node.specialsBefore);
+            dumpSpecials(buf, " after: ", node.specialsAfter);
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    private static void dumpNode(FastStringBuffer buf, SimpleNode node) {
+        buf.append(node.getClass().getSimpleName()).append('@').append(node.beginLine).append(':')
+                .append(node.beginColumn);
+    }
+
+    private static void dumpSpecials(FastStringBuffer buf, String prefix, List<Object> specials) {
+        if (specials == null || specials.size() == 0) {
+            return;
+        }
+        buf.append(prefix);
+        for (Object o : specials) {
+            if (o instanceof commentType) {
+                commentType comment = (commentType) o;
+                buf.append(comment.id).append('@').append(comment.beginLine).append(':').append(comment.beginColumn);
+            } else if (o instanceof SpecialStr) {
+                SpecialStr s = (SpecialStr) o;
+                buf.append(s.str).append('@').append(s.beginLine).append(':').append(s.beginCol);
+            } else {
+                buf.append(o.toString());
+            }
+            buf.append(", ");
+        }
+    }
+}
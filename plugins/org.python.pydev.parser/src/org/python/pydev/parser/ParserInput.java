@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.python.pydev.parser.jython.FastCharStream;
+import org.python.pydev.shared_core.string.StringUtils;
+
+/**
+ * The chars to be parsed (already considering the parser limitations: without the BOM and ending with a new line).
+ *
+ * The chars are copied from the document into the buffer in chunks (without creating an intermediary String for the
+ * whole document) and the buffer may be reused among parses (so, reparsing the document of an editor usually doesn't
+ * need to allocate a new buffer). The document modification stamp is checked after the copy (and the copy is redone
+ * if the document changed in the meanwhile).
+ */
+final class ParserInput {
+
+    /**
+     * Max number of buffers kept for reuse.
+     */
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    /**
+     * Buffers larger than this aren't kept for reuse (1M chars).
+     */
+    private static final int MAX_POOLED_BUFFER_LENGTH = 1024 * 1024;
+
+    /**
+     * Number of chars gotten from the document at once.
+     */
+    private static final int COPY_CHUNK_LENGTH = 8 * 1024;
+
+    /**
+     * Number of times the copy is tried if the document changes during the copy (afterwards the whole document
+     * contents are gotten in a single call).
+     */
+    private static final int MAX_COPY_ATTEMPTS = 2;
+
+    private static final Object lock = new Object();
+
+    /**
+     * Buffers available for reuse (access synchronized with the lock).
+     */
+    private static final List<SoftReference<char[]>> pooledBuffers = new ArrayList<SoftReference<char[]>>();
+
+    private char[] buffer;
+    private final int length;
+    private final boolean pooled;
+
+    private ParserInput(char[] buffer, int length, boolean pooled) {
+        this.buffer = buffer;
+        this.length = length;
+        this.pooled = pooled;
+    }
+
+    /**
+     * @param pooled if true, the buffer is gotten from the pool and release() must be called when the parse finishes
+     * (it's only safe to do so if nothing will reference the FastCharStream created for it after the parse).
+     */
+    public static ParserInput fromDocument(IDocument doc, boolean pooled) {
+        if (!(doc instanceof IDocumentExtension4)) {
+            return fromString(doc.get());
+        }
+        IDocumentExtension4 ext = (IDocumentExtension4) doc;
+        for (int attempt = 0; attempt < MAX_COPY_ATTEMPTS; attempt++) {
+            long stamp = ext.getModificationStamp();
+            if (stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+                break;
+            }
+            ParserInput input;
+            try {
+                input = copy(doc, pooled);
+            } catch (BadLocationException e) {
+                continue; //Changed while we were reading it.
+            }
+            if (ext.getModificationStamp() == stamp) {
+                return input;
+            }
+            //Changed while we were reading it (the copy may be torn).
+            input.release();
+        }
+        //Go to the regular (and safer) approach.
+        return fromString(doc.get());
+    }
+
+    /**
+     * Copies the document contents in chunks (callers must check that the document didn't change during the copy).
+     */
+    private static ParserInput copy(IDocument doc, boolean pooled) throws BadLocationException {
+        int docLen = doc.getLength();
+        int skipAtStart = 0;
+        if (docLen >= 1 && doc.getChar(0) == StringUtils.BOM_UNICODE.charAt(0)) {
+            skipAtStart = StringUtils.BOM_UNICODE.length();
+
+        } else if (docLen >= 3 && doc.getChar(0) == StringUtils.BOM_UTF8.charAt(0)
+                && doc.getChar(1) == StringUtils.BOM_UTF8.charAt(1)
+                && doc.getChar(2) == StringUtils.BOM_UTF8.charAt(2)) {
+            skipAtStart = StringUtils.BOM_UTF8.length();
+        }
+
+        //+1 for the new line that may be added at the end.
+        int maxLength = docLen - skipAtStart + 1;
+        char[] buffer = pooled ? borrowBuffer(maxLength) : new char[maxLength];
+        int length = 0;
+        try {
+            for (int offset = skipAtStart; offset < docLen; offset += COPY_CHUNK_LENGTH) {
+                int chunkLen = Math.min(COPY_CHUNK_LENGTH, docLen - offset);
+                doc.get(offset, chunkLen).getChars(0, chunkLen, buffer, length);
+                length += chunkLen;
+            }
+        } catch (BadLocationException e) {
+            if (pooled) {
+                releaseBuffer(buffer);
+            }
+            throw e;
+        }
+        if (length == 0 || (buffer[length - 1] != '\n' && buffer[length - 1] != '\r')) {
+            buffer[length++] = '\n';
+        }
+        return new ParserInput(buffer, length, pooled);
+    }
+
+    /**
+     * @return an input which doesn't reuse buffers.
+     */
+    private static ParserInput fromString(String startDoc) {
+        int length = startDoc.length();
+        int skipAtStart = 0;
+        if (startDoc.startsWith(StringUtils.BOM_UTF8)) {
+            skipAtStart = StringUtils.BOM_UTF8.length();
+        } else if (startDoc.startsWith(StringUtils.BOM_UNICODE)) {
+            skipAtStart = StringUtils.BOM_UNICODE.length();
+        }
+
+        int addAtEnd = 0;
+        if (!startDoc.endsWith("\n") && !startDoc.endsWith("\r")) {
+            addAtEnd = 1;
+        }
+
+        char[] charArray = new char[length - skipAtStart + addAtEnd];
+        startDoc.getChars(skipAtStart, length, charArray, 0);
+        if (addAtEnd > 0) {
+            charArray[charArray.length - 1] = '\n';
+        }
+        return new ParserInput(charArray, charArray.length, false);
+    }
+
+    /**
+     * @return true if there are only whitespaces to be parsed (same semantics of String.trim()).
+     */
+    public boolean isEmpty() {
+        char[] b = buffer;
+        for (int i = 0; i < length; i++) {
+            if (b[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the buffer with the chars (only the first getLength() chars are valid).
+     */
+    public char[] getChars() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public FastCharStream createCharStream() {
+        return new FastCharStream(buffer, length);
+    }
+
+    /**
+     * Makes the buffer available for reuse (this input may not be used anymore afterwards).
+     */
+    public void release() {
+        char[] b = buffer;
+        buffer = null;
+        if (pooled && b != null) {
+            releaseBuffer(b);
+        }
+    }
+
+    /**
+     * @return the smallest pooled buffer which can hold the given length (or a new one if there's none).
+     */
+    private static char[] borrowBuffer(int length) {
+        synchronized (lock) {
+            int found = -1;
+            char[] foundBuffer = null;
+            for (int i = pooledBuffers.size() - 1; i >= 0; i--) {
+                char[] b = pooledBuffers.get(i).get();
+                if (b == null) {
+                    pooledBuffers.remove(i); //Collected.
+                    if (found > i) {
+                        found--;
+                    }
+                    continue;
+                }
+                if (b.length >= length && (foundBuffer == null || b.length < foundBuffer.length)) {
+                    found = i;
+                    foundBuffer = b;
+                }
+            }
+            if (foundBuffer != null) {
+                pooledBuffers.remove(found);
+                return foundBuffer;
+            }
+        }
+        //Some slack so that the buffer can be reused while the document grows.
+        if (length <= MAX_POOLED_BUFFER_LENGTH) {
+            return new char[Math.min(MAX_POOLED_BUFFER_LENGTH, length + (length / 8) + 64)];
+        }
+        return new char[length];
+    }
+
+    private static void releaseBuffer(char[] buffer) {
+        if (buffer.length > MAX_POOLED_BUFFER_LENGTH) {
+            return;
+        }
+        synchronized (lock) {
+            if (pooledBuffers.size() < MAX_POOLED_BUFFERS) {
+                pooledBuffers.add(new SoftReference<char[]>(buffer));
+            } else {
+                //Replace the smallest one (larger buffers are more likely to be reused).
+                int smallest = -1;
+                int smallestLength = buffer.length;
+                for (int i = 0; i < pooledBuffers.size(); i++) {
+                    char[] b = pooledBuffers.get(i).get();
+                    int len = b == null ? -1 : b.length;
+                    if (len < smallestLength) {
+                        smallest = i;
+                        smallestLength = len;
+                    }
+                }
+                if (smallest != -1) {
+                    pooledBuffers.set(smallest, new SoftReference<char[]>(buffer));
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the pooled buffers (i.e.: when memory is low).
+     */
+    public static void clearPool() {
+        synchronized (lock) {
+            pooledBuffers.clear();
+        }
+    }
+}
@@ -52,7 +52,6 @@ import org.python.pydev.parser.jython.TokenMgrError;
 import org.python.pydev.parser.jython.ast.Module;
 import org.python.pydev.parser.jython.ast.stmtType;
 import org.python.pydev.shared_core.callbacks.ICallback;
-import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.model.ErrorDescription;
 import org.python.pydev.shared_core.model.ISimpleNode;
 import org.python.pydev.shared_core.out_of_memory.OnExpectedOutOfMemory;
@@ -71,7 +70,7 @@ import org.python.pydev.shared_core.structure.Tuple3;
  * PyParser uses org.python.parser to parse the document (lexical analysis) It
  * is attached to PyEdit (a view), and it listens to document changes On every
  * document change, the syntax tree is regenerated The reparsing of the document
- * is done on a ParsingThread
+ * is done by the ParsingExecutor (shared among parsers)
  *
  * Clients that need to know when new parse tree has been generated should
  * register as parseListeners.
@@ -90,6 +89,12 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public static boolean USE_FAST_STREAM = true;
 
+    /**
+     * Defines whether the editor reparses only the changed top-level statements (when possible) or always does a
+     * full parse.
+     */
+    public static boolean USE_INCREMENTAL_PARSE = true;
+
     /**
      * used to enable tracing in the grammar
      */
@@ -100,6 +105,11 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     private final IGrammarVersionProvider grammarVersionProvider;
 
+    /**
+     * Keeps the last parse of the document so that the next reparse may be incremental.
+     */
+    private final IncrementalParser incrementalParser = new IncrementalParser();
+
     public static String getGrammarVersionStr(int grammarVersion) {
         if (grammarVersion == IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_4) {
             return "grammar: Python 2.4";
@@ -269,7 +279,8 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true));
+        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true),
+                USE_INCREMENTAL_PARSE ? incrementalParser : null);
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -428,38 +439,12 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public final static List<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>> successfulParseListeners = new ArrayList<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>>();
 
-    /**
-     * Create the char array to parse based on the initial document and our parser limitations.
-     */
-    private static char[] createCharArrayToParse(String startDoc) {
-        int length = startDoc.length();
-        int skipAtStart = 0;
-        if (startDoc.startsWith(FileUtils.BOM_UTF8)) {
-            skipAtStart = FileUtils.BOM_UTF8.length();
-        } else if (startDoc.startsWith(FileUtils.BOM_UNICODE)) {
-            skipAtStart = FileUtils.BOM_UNICODE.length();
-        }
-
-        int addAtEnd = 0;
-        if (!startDoc.endsWith("\n") && !startDoc.endsWith("\r")) {
-            addAtEnd = 1;
-        }
-
-        char[] charArray = new char[length - skipAtStart + addAtEnd];
-        startDoc.getChars(skipAtStart, length, charArray, 0);
-        if (addAtEnd > 0) {
-            charArray[charArray.length - 1] = '\n';
-        }
-        return charArray;
-    }
-
     /**
      * Actually creates the grammar.
      * @param generateTree whether we should generate the AST or not.
      */
-    private static IGrammar createGrammar(boolean generateTree, int grammarVersion, char[] charArray) {
+    static IGrammar createGrammar(boolean generateTree, int grammarVersion, FastCharStream in) {
         IGrammar grammar;
-        FastCharStream in = new FastCharStream(charArray);
         switch (grammarVersion) {
             case IPythonNature.GRAMMAR_PYTHON_VERSION_2_4:
                 grammar = new PythonGrammar24(generateTree, in);
@@ -495,8 +480,9 @@ public class PyParser extends BaseParser implements IPyParser {
     public static Tuple<SimpleNode, IGrammar> reparseDocumentInternal(IDocument doc, boolean generateTree,
             int grammarVersion)
             throws ParseException {
-        char[] charArray = createCharArrayToParse(doc.get());
-        IGrammar grammar = createGrammar(generateTree, grammarVersion, charArray);
+        //Note: not pooled as the grammar (which references the buffer) is returned.
+        ParserInput input = ParserInput.fromDocument(doc, false);
+        IGrammar grammar = createGrammar(generateTree, grammarVersion, input.createCharStream());
         return new Tuple<SimpleNode, IGrammar>(grammar.file_input(), grammar); // parses the file
     }
 
@@ -505,6 +491,14 @@ public class PyParser extends BaseParser implements IPyParser {
      *         if we are able to recover from a reparse, we have both, the root and the error.
      */
     public static ParseOutput reparseDocument(ParserInfo info) {
+        return reparseDocument(info, null);
+    }
+
+    /**
+     * @param incrementalParser if given, it's used to parse only the changed top-level statements (if possible) and
+     * it's updated with the result of a full parse.
+     */
+    private static ParseOutput reparseDocument(ParserInfo info, IncrementalParser incrementalParser) {
         if (info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
             IDocument doc = info.document;
             return new ParseOutput(createCythonAst(doc), ((IDocumentExtension4) info.document).getModificationStamp());
@@ -516,50 +510,68 @@ public class PyParser extends BaseParser implements IPyParser {
         //right after that, at least any cache will check against the old stamp to be reconstructed (which is the main
         //reason for this stamp).
         long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
-        String startDoc = info.document.get();
-
-        if (startDoc.trim().length() == 0) {
-            //If empty, don't bother to parse!
-            return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
-        }
-        char[] charArray;
+        //The contents are copied directly from the document to a (reused) buffer: this is safe because nothing
+        //references the buffer after the parse (the tokens images and the AST have their own strings).
+        ParserInput input;
         try {
-            charArray = createCharArrayToParse(startDoc);
+            input = ParserInput.fromDocument(info.document, true);
         } catch (OutOfMemoryError e1) {
+            ParserInput.clearPool();
             OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
-            charArray = createCharArrayToParse(startDoc); //retry now with caches cleared...
+            input = ParserInput.fromDocument(info.document, true); //retry now with caches cleared...
+        }
+
+        if (input.isEmpty()) {
+            //If empty, don't bother to parse!
+            input.release();
+            if (incrementalParser != null) {
+                incrementalParser.clear();
+            }
+            return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
         }
 
-        startDoc = null; //it can be garbage-collected now.
+        if (incrementalParser != null && info.generateTree) {
+            Module module = incrementalParser.parse(input.getChars(), input.getLength(), info.grammarVersion);
+            if (module != null) {
+                input.release();
+                notifySuccessfulParseListeners(module, null, info);
+                return new ParseOutput(module, null, modifiedTime);
+            }
+        }
 
         Tuple<ISimpleNode, Throwable> returnVar = new Tuple<ISimpleNode, Throwable>(null, null);
         IGrammar grammar = null;
         try {
-            grammar = createGrammar(info.generateTree, info.grammarVersion, charArray);
+            grammar = createGrammar(info.generateTree, info.grammarVersion, input.createCharStream());
             SimpleNode newRoot;
             try {
                 newRoot = grammar.file_input();
             } catch (OutOfMemoryError e) {
+                ParserInput.clearPool();
                 OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
                 newRoot = grammar.file_input(); //retry now with caches cleared...
             }
             returnVar.o1 = newRoot;
 
             //only notify successful parses
-            if (successfulParseListeners.size() > 0) {
-                Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
+            notifySuccessfulParseListeners(returnVar.o1, returnVar.o2, info);
 
-                for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
+            returnVar.o2 = grammar.getErrorOnParsing();
+            if (incrementalParser != null) {
+                if (returnVar.o2 == null && newRoot instanceof Module) {
+                    incrementalParser.record(input.getChars(), input.getLength(), info.grammarVersion,
+                            (Module) newRoot);
+                } else {
+                    incrementalParser.clear();
                 }
             }
 
-            returnVar.o2 = grammar.getErrorOnParsing();
-
         } catch (Throwable e) {
             //ok, some error happened when trying the parse... let's go and clear the local info before doing
             //another parse.
+            if (incrementalParser != null) {
+                incrementalParser.clear();
+            }
             if (DEBUG_SHOW_PARSE_ERRORS) {
                 e.printStackTrace();
             }
@@ -589,6 +601,8 @@ public class PyParser extends BaseParser implements IPyParser {
                 Log.log(e);
             }
 
+        } finally {
+            input.release();
         }
 
         if (DEBUG_SHOW_PARSE_ERRORS) {
@@ -600,6 +614,17 @@ public class PyParser extends BaseParser implements IPyParser {
         return new ParseOutput(returnVar, modifiedTime);
     }
 
+    private static void notifySuccessfulParseListeners(ISimpleNode root, Throwable error, ParserInfo info) {
+        if (successfulParseListeners.size() > 0) {
+            Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(root,
+                    error, info);
+
+            for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+                callback.call(param);
+            }
+        }
+    }
+
     public static Tuple<ISimpleNode, Throwable> createCythonAst(IDocument doc) {
         List<stmtType> classesAndFunctions = FastParser.parseCython(doc);
         return new Tuple<ISimpleNode, Throwable>(new Module(
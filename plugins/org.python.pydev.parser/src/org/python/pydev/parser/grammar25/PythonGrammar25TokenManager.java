@@ -3441,18 +3441,14 @@ public final class PythonGrammar25TokenManager extends AbstractTokenManager impl
             else
                 curTokenImage = image.toString();
             t = Token.newToken(jjmatchedKind, curTokenImage);
-            t.beginLine = t.endLine = input_stream.bufline[input_stream.tokenBegin];
-            t.beginColumn = t.endColumn = input_stream.bufcolumn[input_stream.tokenBegin];
+            input_stream.setBeginEndCharsEqual(t);
         }
         else
         {
             String im = jjstrLiteralImages[jjmatchedKind];
             curTokenImage = (im == null) ? input_stream.GetImage() : im;
             t = Token.newToken(jjmatchedKind, curTokenImage);
-            t.beginLine = input_stream.bufline[input_stream.tokenBegin];
-            t.beginColumn = input_stream.bufcolumn[input_stream.tokenBegin];
-            t.endLine = input_stream.bufline[input_stream.bufpos];
-            t.endColumn = input_stream.bufcolumn[input_stream.bufpos];
+            input_stream.setBeginEndChars(t);
 
         }
 
@@ -17,18 +17,24 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  * initial implementation was highly inefficient when working only with a string (actually, if it was small, there would be no noticeable
  * delays, but if it became big, then the improvement would be HUGE).
  * 
- * It keeps the same semantics for line and column stuff (and shares the previous approach of keeping a buffer for this info).
- * If we wanted we could optimize it for also taking less memory, but as there is usually not so many concurrent parses, this 
- * is probably not worth it -- and it would probably be a little slower)
+ * It keeps the same semantics for line and column stuff, but instead of keeping the line and column for each char
+ * (which would need 2 ints for each char in the buffer), only the offset where each line starts is kept and the
+ * line is found with a binary search (with a fast path for the line last found, as the access is mostly sequential).
  */
 
 public final class FastCharStream {
 
     public final char[] buffer;
 
-    public final int bufline[];
+    /**
+     * The number of chars to be read from the buffer (the buffer may be larger than that if it's reused).
+     */
+    private final int length;
 
-    public final int bufcolumn[];
+    /**
+     * lineStarts[i] is the offset where the line i+1 starts (only the lines already read are available).
+     */
+    private int[] lineStarts;
 
     private boolean prevCharIsCR = false;
 
@@ -38,6 +44,11 @@ public final class FastCharStream {
 
     private int line = 1;
 
+    /**
+     * The line found in the last lookup (fast path for sequential access).
+     */
+    private int lastLookupLine = 1;
+
     public int bufpos = -1;
 
     private int updatePos;
@@ -49,9 +60,21 @@ public final class FastCharStream {
     private static final boolean DEBUG = false;
 
     public FastCharStream(char cs[]) {
+        this(cs, cs.length);
+    }
+
+    /**
+     * @param cs the buffer with the contents.
+     * @param length only chars from 0 to length in the buffer are considered.
+     */
+    public FastCharStream(char cs[], int length) {
+        if (length > cs.length || length < 0) {
+            throw new IllegalArgumentException("Invalid length: " + length + " (buffer length: " + cs.length + ")");
+        }
         this.buffer = cs;
-        this.bufline = new int[cs.length];
-        this.bufcolumn = new int[cs.length];
+        this.length = length;
+        this.lineStarts = new int[(length / 32) + 16]; //Guess ~32 chars/line (grows as needed).
+        //line 1 starts at offset 0 (already set).
     }
 
     public int getCurrentPos() {
@@ -67,7 +90,6 @@ public final class FastCharStream {
      * Don't forget to restore the level if eof was already found!
      */
     public void restoreLineColPos(final int endLine, final int endColumn) {
-        final int initialBufPos = bufpos;
         final int currLine = getEndLine();
 
         if (currLine < endLine) {
@@ -81,20 +103,28 @@ public final class FastCharStream {
             return;
         }
 
-        while ((getEndLine() != endLine || getEndColumn() != endColumn) && bufpos >= 0) {
-            bufpos--;
-        }
-
-        if (bufpos < 0 || getEndLine() != endLine) {
-            //we couldn't find it. Let's restore the position when we started it.
-            bufpos = initialBufPos;
-            Log.log("Couldn't backtrack to position: line" + endLine + " -- col:" + endColumn);
+        //As the line starts are known, we can go directly to the position (endLine <= currLine at this point).
+        if (endLine >= 1 && endColumn >= 1) {
+            int pos = lineStarts[endLine - 1] + endColumn - 1;
+            if (pos <= bufpos && lineOf(pos) == endLine) {
+                bufpos = pos;
+                return;
+            }
         }
+        //we couldn't find it (keep the current position).
+        Log.log("Couldn't backtrack to position: line" + endLine + " -- col:" + endColumn);
     }
 
     public final char readChar() throws IOException {
         try {
             bufpos++;
+            if (bufpos >= length) {
+                bufpos--;
+                if (ioException == null) {
+                    ioException = new IOException();
+                }
+                throw ioException;
+            }
             char r = this.buffer[bufpos];
 
             if (bufpos >= updatePos) {
@@ -106,6 +136,7 @@ public final class FastCharStream {
                 if (prevCharIsLF) {
                     prevCharIsLF = false;
                     line += (column = 1);
+                    addLineStart(bufpos);
 
                 } else if (prevCharIsCR) {
 
@@ -114,6 +145,7 @@ public final class FastCharStream {
                         prevCharIsLF = true;
                     } else {
                         line += (column = 1);
+                        addLineStart(bufpos);
                     }
                 }
 
@@ -124,9 +156,6 @@ public final class FastCharStream {
                     prevCharIsLF = true;
 
                 }
-
-                bufline[bufpos] = line;
-                bufcolumn[bufpos] = column;
                 //end UpdateLineCol
             }
 
@@ -140,20 +169,73 @@ public final class FastCharStream {
         }
     }
 
+    private void addLineStart(int pos) {
+        if (line > lineStarts.length) {
+            int[] newLineStarts = new int[lineStarts.length * 2];
+            System.arraycopy(lineStarts, 0, newLineStarts, 0, lineStarts.length);
+            lineStarts = newLineStarts;
+        }
+        lineStarts[line - 1] = pos;
+    }
+
+    /**
+     * @return the line (1-based) of the given position (which must have been already read).
+     */
+    private int lineOf(final int pos) {
+        final int[] starts = lineStarts;
+        final int lines = line;
+        int l = lastLookupLine;
+
+        //Fast path: same line, next line or previous line of the last lookup.
+        if (starts[l - 1] <= pos) {
+            if (l == lines || pos < starts[l]) {
+                return l;
+            }
+            if (l + 1 == lines || pos < starts[l + 1]) {
+                lastLookupLine = l + 1;
+                return l + 1;
+            }
+        } else if (l > 1 && starts[l - 2] <= pos) {
+            lastLookupLine = l - 1;
+            return l - 1;
+        }
+
+        if (pos < 0) {
+            throw new ArrayIndexOutOfBoundsException(pos);
+        }
+        //Binary search for the last line starting at or before the position.
+        int low = 0;
+        int high = lines - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= pos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        lastLookupLine = low + 1;
+        return low + 1;
+    }
+
+    private int columnOf(final int pos, final int line) {
+        return pos - lineStarts[line - 1] + 1;
+    }
+
     public final int getEndColumn() {
-        return bufcolumn[bufpos];
+        return columnOf(bufpos, lineOf(bufpos));
     }
 
     public final int getEndLine() {
-        return bufline[bufpos];
+        return lineOf(bufpos);
     }
 
     public final int getBeginColumn() {
-        return bufcolumn[tokenBegin];
+        return columnOf(tokenBegin, lineOf(tokenBegin));
     }
 
     public final int getBeginLine() {
-        return bufline[tokenBegin];
+        return lineOf(tokenBegin);
     }
 
     public final void backup(int amount) {
@@ -179,7 +261,7 @@ public final class FastCharStream {
         if (bufpos >= tokenBegin) {
             string = new String(buffer, tokenBegin, bufpos - tokenBegin + 1);
         } else {
-            string = new String(buffer, tokenBegin, buffer.length - tokenBegin + 1);
+            string = new String(buffer, tokenBegin, length - tokenBegin);
         }
 
         String existing = interned.get(string);
@@ -238,15 +320,18 @@ public final class FastCharStream {
     }
 
     public void setBeginEndCharsEqual(Token t) {
-        t.beginLine = t.endLine = bufline[tokenBegin];
-        t.beginColumn = t.endColumn = bufcolumn[tokenBegin];
+        int beginLine = lineOf(tokenBegin);
+        t.beginLine = t.endLine = beginLine;
+        t.beginColumn = t.endColumn = columnOf(tokenBegin, beginLine);
     }
 
     public void setBeginEndChars(Token t) {
-        t.beginLine = bufline[tokenBegin];
-        t.beginColumn = bufcolumn[tokenBegin];
-        t.endLine = bufline[bufpos];
-        t.endColumn = bufcolumn[bufpos];
+        int beginLine = lineOf(tokenBegin);
+        t.beginLine = beginLine;
+        t.beginColumn = columnOf(tokenBegin, beginLine);
+        int endLine = lineOf(bufpos);
+        t.endLine = endLine;
+        t.endColumn = columnOf(bufpos, endLine);
     }
 
 }
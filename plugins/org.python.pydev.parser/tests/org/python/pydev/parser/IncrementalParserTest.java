@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.jython.FastCharStream;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+
+public class IncrementalParserTest extends TestCase {
+
+    private static final String BASE = "" +
+            "'''Docstring\n" +
+            "of the module'''\n" +
+            "import os\n" +
+            "\n" +
+            "# comment before a\n" +
+            "a = 10\n" +
+            "\n" +
+            "\n" +
+            "def method(a, b=(1,\n" +
+            "2)):\n" +
+            "    '''doc'''\n" +
+            "    return a # end of line\n" +
+            "\n" +
+            "# comment between\n" +
+            "    # indented comment\n" +
+            "\n" +
+            "@decorator\n" +
+            "class Foo(object):\n" +
+            "\n" +
+            "    def m1(self):\n" +
+            "        if self:\n" +
+            "            pass\n" +
+            "        else:\n" +
+            "            x = '''\n" +
+            "string with a col 0 line\n" +
+            "'''\n" +
+            "\n" +
+            "    def m2(self):\n" +
+            "        pass\n" +
+            "\n" +
+            "if a:\n" +
+            "    b = 2\n" +
+            "elif b:\n" +
+            "    c = 3\n" +
+            "else:\n" +
+            "    c = 4\n" +
+            "\n" +
+            "try:\n" +
+            "    import sys\n" +
+            "except ImportError:\n" +
+            "    sys = None\n" +
+            "finally:\n" +
+            "    pass\n" +
+            "\n" +
+            "z = a + \\\n" +
+            "    1\n" +
+            "print z\n" +
+            "for i in range(10):\n" +
+            "    pass\n" +
+            "\n" +
+            "class Bar(object):\n" +
+            "    '''Some class with a longer body.'''\n" +
+            "\n" +
+            "    def __init__(self, a, b, c):\n" +
+            "        self.a = a\n" +
+            "        self.b = b\n" +
+            "        self.c = c\n" +
+            "\n" +
+            "    def compute(self):\n" +
+            "        return self.a * self.b + self.c\n" +
+            "\n" +
+            "def other_function(param1, param2):\n" +
+            "    result = []\n" +
+            "    for p in (param1, param2):\n" +
+            "        result.append(p)\n" +
+            "    return result\n" +
+            "# comment at the end\n";
+
+    private int initialFailures;
+    private IncrementalParser incrementalParser;
+    private String current;
+    private Module recorded;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        IncrementalParser.CONSISTENCY_CHECK = true;
+        initialFailures = IncrementalParser.getConsistencyFailures();
+        incrementalParser = new IncrementalParser();
+        current = BASE;
+        record(current);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IncrementalParser.CONSISTENCY_CHECK = false;
+        super.tearDown();
+    }
+
+    private static Module fullParse(String s) throws Exception {
+        char[] cs = s.toCharArray();
+        IGrammar grammar = PyParser.createGrammar(true, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7,
+                new FastCharStream(cs, cs.length));
+        SimpleNode node = grammar.file_input();
+        assertNull(grammar.getErrorOnParsing());
+        return (Module) node;
+    }
+
+    private void record(String s) throws Exception {
+        char[] cs = s.toCharArray();
+        recorded = fullParse(s);
+        incrementalParser.record(cs, cs.length, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, recorded);
+    }
+
+    private Module parse(String s) {
+        char[] cs = s.toCharArray();
+        return incrementalParser.parse(cs, cs.length, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+    }
+
+    /**
+     * Replaces the first occurrence of 'from' with 'to' and checks that the incremental parse was done (and that
+     * it matches the full parse).
+     */
+    private Module checkIncremental(String from, String to) throws Exception {
+        int i = current.indexOf(from);
+        assertTrue("Unable to find: " + from, i >= 0);
+        current = current.substring(0, i) + to + current.substring(i + from.length());
+        int parses = incrementalParser.getIncrementalParses();
+        Module module = parse(current);
+        assertNotNull("Expected incremental parse for:\n" + current, module);
+        assertEquals(parses + 1, incrementalParser.getIncrementalParses());
+        assertEquals(initialFailures, IncrementalParser.getConsistencyFailures());
+        assertEquals(IncrementalParser.dump(fullParse(current)), IncrementalParser.dump(module));
+        return module;
+    }
+
+    private void checkFullParseNeeded(String from, String to) throws Exception {
+        int i = current.indexOf(from);
+        assertTrue("Unable to find: " + from, i >= 0);
+        String s = current.substring(0, i) + to + current.substring(i + from.length());
+        assertNull(parse(s));
+        assertEquals(initialFailures, IncrementalParser.getConsistencyFailures());
+        //After a failure, a full parse is needed to restore the state.
+        assertNull(parse(current));
+        record(current);
+    }
+
+    public void testIncrementalEdits() throws Exception {
+        Module initial = recorded;
+        Module module = checkIncremental("a = 10\n", "a = 20\n");
+        //The statements which weren't changed are reused.
+        assertSame(initial.body[0], module.body[0]);
+        assertEquals(initial.body.length, module.body.length);
+
+        checkIncremental("    return a", "    a += 1\n    return a");
+        checkIncremental("    def m2(self):\n", "    def m3(self):\n        pass\n\n    def m2(self):\n");
+        checkIncremental("    c = 4\n", "    c = 5\n    d = 6\n");
+        checkIncremental("print z\n", "print z\nnew_stmt = 1\n");
+        checkIncremental("new_stmt = 1\n", "");
+        checkIncremental("# comment between\n", "# comment between\ny = 2\n# other comment\n");
+        checkIncremental("        return self.a", "        return self.b");
+        checkIncremental("# comment at the end\n", "# comment at the end\n# other\n");
+        checkIncremental("a = 20\n", "a = 20\nif a:\n    pass\n");
+        checkIncremental("z = a + \\\n    1\n", "z = (a +\n1)\n");
+    }
+
+    public void testLinesShiftedInReusedStatements() throws Exception {
+        Module initial = recorded;
+        int lastLine = initial.body[initial.body.length - 1].beginLine;
+
+        Module module = checkIncremental("import os\n", "import os\nimport sys\n\n");
+        assertEquals(initial.body.length + 1, module.body.length);
+        assertEquals(lastLine + 2, module.body[module.body.length - 1].beginLine);
+
+        //The previous AST must not be changed.
+        assertEquals(lastLine, initial.body[initial.body.length - 1].beginLine);
+    }
+
+    public void testFullParseNeeded() throws Exception {
+        //Syntax error.
+        checkFullParseNeeded("a = 10\n", "a = = 10\n");
+        //Unclosed parenthesis changes what comes afterwards.
+        checkFullParseNeeded("a = 10\n", "a = (10\n");
+        //Unclosed string.
+        checkFullParseNeeded("a = 10\n", "a = '''10\n");
+        //Future imports change the tokenization.
+        checkFullParseNeeded("import os\n", "from __future__ import print_function\n");
+        //A decorator without a function.
+        checkFullParseNeeded("a = 10\n", "@dec\n");
+        //Changing a statement into an else.
+        checkFullParseNeeded("print z\n", "else:\n    pass\n");
+
+        checkIncremental("a = 10\n", "a = 11\n");
+    }
+
+    public void testNothingChanged() throws Exception {
+        Module module = parse(current);
+        assertNotNull(module);
+        assertEquals(IncrementalParser.dump(fullParse(current)), IncrementalParser.dump(module));
+    }
+}
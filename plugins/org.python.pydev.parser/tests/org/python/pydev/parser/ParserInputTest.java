@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.python.pydev.parser.jython.FastCharStream;
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class ParserInputTest extends TestCase {
+
+    private String read(FastCharStream in) {
+        StringBuffer buf = new StringBuffer();
+        try {
+            while (true) {
+                buf.append(in.readChar());
+            }
+        } catch (Exception e) {
+            //eof
+        }
+        return buf.toString();
+    }
+
+    public void testFromDocument() throws Exception {
+        ParserInput input = ParserInput.fromDocument(new Document("a = 10"), false);
+        assertEquals("a = 10\n", read(input.createCharStream()));
+        assertFalse(input.isEmpty());
+
+        input = ParserInput.fromDocument(new Document("a = 10\r"), false);
+        assertEquals("a = 10\r", read(input.createCharStream()));
+
+        input = ParserInput.fromDocument(new Document(FileUtils.BOM_UTF8 + "a = 10\n"), false);
+        assertEquals("a = 10\n", read(input.createCharStream()));
+
+        input = ParserInput.fromDocument(new Document(FileUtils.BOM_UNICODE + "a = 10\n"), false);
+        assertEquals("a = 10\n", read(input.createCharStream()));
+
+        input = ParserInput.fromDocument(new Document(" \t\r\n "), false);
+        assertTrue(input.isEmpty());
+
+        input = ParserInput.fromDocument(new Document(""), false);
+        assertEquals("\n", read(input.createCharStream()));
+        assertTrue(input.isEmpty());
+    }
+
+    public void testPooledBufferReused() throws Exception {
+        ParserInput.clearPool();
+        ParserInput input = ParserInput.fromDocument(new Document("class A:\n    pass\n"), true);
+        char[] buffer = input.createCharStream().buffer;
+        input.release();
+
+        //A smaller document reuses the same buffer (only the chars of the new document are read).
+        input = ParserInput.fromDocument(new Document("b = 1"), true);
+        FastCharStream stream = input.createCharStream();
+        assertSame(buffer, stream.buffer);
+        assertEquals("b = 1\n", read(stream));
+        input.release();
+        ParserInput.clearPool();
+    }
+
+    public void testLargeDocument() throws Exception {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < 5000; i++) {
+            buf.append("a").append(i).append(" = ").append(i).append('\n');
+        }
+        String contents = buf.toString();
+        ParserInput input = ParserInput.fromDocument(new Document(contents), true);
+        assertEquals(contents, new String(input.getChars(), 0, input.getLength()));
+        input.release();
+        ParserInput.clearPool();
+    }
+
+    public void testDocumentChangedDuringCopy() throws Exception {
+        final StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < 5000; i++) {
+            buf.append("b").append(i).append(" = ").append(i).append('\n');
+        }
+        Document doc = new Document(buf.toString().replace('b', 'a')) {
+            private boolean changed;
+
+            @Override
+            public String get(int pos, int length) throws BadLocationException {
+                String ret = super.get(pos, length);
+                if (!changed && pos > 0) {
+                    //Change it after the first chunk was copied.
+                    changed = true;
+                    set(buf.toString());
+                }
+                return ret;
+            }
+        };
+        ParserInput input = ParserInput.fromDocument(doc, false);
+        assertEquals(buf.toString(), new String(input.getChars(), 0, input.getLength()));
+    }
+}
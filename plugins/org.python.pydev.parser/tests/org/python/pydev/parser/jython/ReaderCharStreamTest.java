@@ -219,6 +219,72 @@ public class ReaderCharStreamTest extends TestCase {
         assertEquals(1, in.getEndLine());
     }
 
+    public void testLineColWithMixedNewLines() throws Exception {
+        String s = "a\r\nbc\rd\n\n\r\r\nef\r";
+        char[] cs = s.toCharArray();
+        FastCharStream in = new FastCharStream(cs);
+
+        //Compute the expected line/col for each position.
+        int[] lines = new int[cs.length];
+        int[] cols = new int[cs.length];
+        int line = 1;
+        int col = 0;
+        for (int i = 0; i < cs.length; i++) {
+            col++;
+            if (i > 0 && (cs[i - 1] == '\n' || (cs[i - 1] == '\r' && cs[i] != '\n'))) {
+                line++;
+                col = 1;
+            }
+            lines[i] = line;
+            cols[i] = col;
+        }
+
+        for (int i = 0; i < cs.length; i++) {
+            assertEquals(cs[i], in.readChar());
+            assertEquals(lines[i], in.getEndLine());
+            assertEquals(cols[i], in.getEndColumn());
+        }
+
+        //Random access (backwards) must give the same results.
+        for (int i = cs.length - 1; i >= 0; i -= 3) {
+            in.restorePos(i);
+            assertEquals(lines[i], in.getEndLine());
+            assertEquals(cols[i], in.getEndColumn());
+        }
+        in.restorePos(cs.length - 1);
+        for (int i = 0; i < cs.length; i += 2) {
+            in.tokenBegin = i;
+            assertEquals(lines[i], in.getBeginLine());
+            assertEquals(cols[i], in.getBeginColumn());
+        }
+    }
+
+    public void testRestoreLineColPos() throws Exception {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < 200; i++) {
+            buf.append("line").append(i).append('\n');
+        }
+        char[] cs = buf.toString().toCharArray();
+        FastCharStream in = new FastCharStream(cs);
+        for (int i = 0; i < cs.length; i++) {
+            in.readChar();
+        }
+        assertEquals(200, in.getEndLine());
+
+        in.restoreLineColPos(10, 3);
+        assertEquals(10, in.getEndLine());
+        assertEquals(3, in.getEndColumn());
+        assertEquals('n', cs[in.getCurrentPos()]);
+
+        //Can't go to a later position.
+        in.restoreLineColPos(11, 1);
+        assertEquals(10, in.getEndLine());
+        assertEquals(3, in.getEndColumn());
+
+        in.restoreLineColPos(1, 1);
+        assertEquals(0, in.getCurrentPos());
+    }
+
     /**
      * @param in
      */
@@ -45,6 +45,13 @@ public class ExtendedByteArrayOutputStream extends ByteArrayOutputStream {
         return len;
     }
 
+    /**
+     * @return the internal array (note: only the first size() bytes are valid).
+     */
+    public byte[] getInternalBytesArray() {
+        return this.buf;
+    }
+
     public String readAndDelete() {
         String ret = new String(this.toByteArray());
         this.reset();
@@ -159,6 +159,16 @@ public abstract class BaseParserManager {
         }
     }
 
+    /**
+     * Gives priority to the parses of the parser of the given editor.
+     */
+    public void notifyEditorActivated(IBaseEditor edit) {
+        IParser parser = getParser(edit);
+        if (parser instanceof BaseParser) {
+            ((BaseParser) parser).scheduler.setActive();
+        }
+    }
+
     public synchronized void notifyEditorDisposed(IBaseEditor edit) {
         synchronized (lock) {
             //remove the listener from the parser
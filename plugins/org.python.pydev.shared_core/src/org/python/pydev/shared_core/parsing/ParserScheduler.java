@@ -11,12 +11,9 @@
  */
 package org.python.pydev.shared_core.parsing;
 
-public class ParserScheduler {
+import org.python.pydev.shared_core.log.Log;
 
-    /**
-     * used to do parsings in a thread - is null when not doing parsings
-     */
-    public volatile ParsingThread parsingThread;
+public class ParserScheduler {
 
     /**
      * indicates that currently nothing is happening
@@ -29,12 +26,12 @@ public class ParserScheduler {
     public static final int STATE_PARSE_LATER = 1;
 
     /**
-     * indicates if a thread is currently waiting for an elapse cycle to end
+     * indicates if a parse is currently waiting for an elapse cycle to end
      */
     public static final int STATE_WAITING_FOR_ELAPSE = 2;
 
     /**
-     * indicates if a thread is currently doing a parse action
+     * indicates if a parse is currently being done
      */
     public static final int STATE_DOING_PARSE = 3;
 
@@ -43,15 +40,24 @@ public class ParserScheduler {
      */
     volatile int state = STATE_WAITING;
 
+    private final Object lock = new Object();
+
     /**
-     * this is the exact time a parse later was requested
+     * The request which wasn't run yet (guarded by lock) -- a new request replaces it.
      */
-    private volatile long timeParseLaterRequested = 0;
+    private ParsingExecutor.ParseRequest pending;
 
     /**
-     * this is the exact time the last parse was requested
+     * Whether a parse is currently being done (guarded by lock).
      */
-    private volatile long timeLastParse = 0;
+    private boolean parsing;
+
+    /**
+     * A request which became ready while a parse was being done (it's run when that parse finishes).
+     */
+    private ParsingExecutor.ParseRequest readyWhileParsing;
+
+    private boolean disposed;
 
     private volatile IParser parser;
 
@@ -73,82 +79,108 @@ public class ParserScheduler {
      * @return false if we asked a forced reparse and it will not be scheduled because a reparse is already in action.
      */
     public boolean parseNow(boolean force, Object... argsToReparse) {
-        if (!force) {
-            if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_DOING_PARSE) {
-                //waiting or parse later
-                state = STATE_WAITING_FOR_ELAPSE; // the parser will reset it later
-                timeLastParse = System.currentTimeMillis();
-                checkCreateAndStartParsingThread();
-            } else {
-                //another request... we keep waiting until the user stops adding requests
-                boolean created = checkCreateAndStartParsingThread();
-                if (!created) {
-                    parsingThread.okToGo = false;
-                }
+        synchronized (lock) {
+            if (disposed) {
+                return true;
             }
-        } else {
-            ParsingThread parserThreadLocal = parsingThread; //if it dies suddenly, we don't want to get it as null...
-            if (state == ParserScheduler.STATE_DOING_PARSE) {
-                //a parse is already in action
-                return false;
+            if (!force) {
+                if (pending != null && pending.force) {
+                    return true; //the forced parse will already get the current contents
+                }
+                //another request... we keep waiting until the user stops adding requests
+                schedule(new ParsingExecutor.ParseRequest(this, false, getArgs(argsToReparse),
+                        parserManager.getElapseMillisBeforeAnalysis()), STATE_WAITING_FOR_ELAPSE);
+
             } else {
-                if (parserThreadLocal == null) {
-                    parserThreadLocal = new ParsingThread(parserManager, this, argsToReparse);
-                    parsingThread = parserThreadLocal;
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
-                    parserThreadLocal.start();
-                } else {
-                    //force it to run
-                    if (argsToReparse.length > 0) {
-                        parserThreadLocal.updateArgsToReparse(argsToReparse);
-                    }
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.interrupt();
+                if (parsing) {
+                    //a parse is already in action
+                    return false;
                 }
+                schedule(new ParsingExecutor.ParseRequest(this, true, getArgs(argsToReparse), 0),
+                        STATE_WAITING_FOR_ELAPSE);
             }
         }
         return true;
     }
 
+    public void parseLater() {
+        synchronized (lock) {
+            if (disposed || pending != null) {
+                return; //the pending parse will already get the current contents
+            }
+            //parses after 2 elapse cycles (the 1st to see if some parseNow will come and the 2nd as the parseNow).
+            schedule(new ParsingExecutor.ParseRequest(this, false, new Object[0],
+                    2L * parserManager.getElapseMillisBeforeAnalysis()), STATE_PARSE_LATER);
+        }
+    }
+
     /**
-     * @return whether we really created the thread (returns false if the thread already exists)
+     * @return the args to be used in a new request (if no args are passed, the args of the pending request are kept).
      */
-    private boolean checkCreateAndStartParsingThread() {
-        ParsingThread p = parsingThread;
-        if (p == null) {
-            p = new ParsingThread(parserManager, this);
-            p.setPriority(Thread.MIN_PRIORITY); //parsing is low priority
-            p.start();
-            parsingThread = p;
-            return true;
+    private Object[] getArgs(Object[] argsToReparse) {
+        if (argsToReparse.length == 0 && pending != null) {
+            return pending.argsToReparse;
         }
-        return false;
+        return argsToReparse;
     }
 
-    public void parseLater() {
-        if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_PARSE_LATER) {
-            state = STATE_PARSE_LATER;
-            //ok, the time for this request is:
-            timeParseLaterRequested = System.currentTimeMillis();
-            Thread thread = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        sleep(parserManager.getElapseMillisBeforeAnalysis());
-                    } catch (Exception e) {
-                        //that's ok
-                    }
-                    //ok, no parse happened while we were sleeping
-                    if (state == STATE_PARSE_LATER && timeLastParse < timeParseLaterRequested) {
-                        parseNow();
-                    }
+    /**
+     * Replaces the pending request with the new one. Must be called with the lock held.
+     */
+    private void schedule(ParsingExecutor.ParseRequest request, int newState) {
+        ParsingExecutor executor = ParsingExecutor.get();
+        if (pending != null) {
+            executor.cancel(pending, true);
+        }
+        pending = request;
+        if (!parsing) {
+            state = newState;
+        }
+        executor.schedule(request);
+    }
+
+    /**
+     * Called by the executor when the request should be run.
+     */
+    void runRequest(ParsingExecutor.ParseRequest request) {
+        synchronized (lock) {
+            if (request.cancelled || pending != request || disposed) {
+                return; //superseded
+            }
+            if (parsing) {
+                //only one parse at a time for a given parser
+                readyWhileParsing = request;
+                return;
+            }
+            pending = null;
+            parsing = true;
+            state = STATE_DOING_PARSE;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            reparseDocument(request.argsToReparse);
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            ParsingExecutor executor = ParsingExecutor.get();
+            executor.onParseFinished(request, startNanos);
+            synchronized (lock) {
+                parsing = false;
+                state = pending != null ? STATE_WAITING_FOR_ELAPSE : STATE_WAITING;
+                ParsingExecutor.ParseRequest next = readyWhileParsing;
+                readyWhileParsing = null;
+                if (next != null && next == pending) {
+                    executor.dispatch(next);
                 }
-            };
-            thread.setName("ParserScheduler");
-            thread.start();
+            }
         }
+    }
 
+    /**
+     * Makes the parses of this scheduler have priority over the others (i.e.: its editor is active).
+     */
+    public void setActive() {
+        ParsingExecutor.get().setActiveScheduler(this);
     }
 
     /**
@@ -164,9 +196,15 @@ public class ParserScheduler {
     }
 
     public void dispose() {
-        ParsingThread p = this.parsingThread;
-        if (p != null) {
-            p.dispose();
+        synchronized (lock) {
+            disposed = true;
+            ParsingExecutor executor = ParsingExecutor.get();
+            if (pending != null) {
+                executor.cancel(pending, false);
+                pending = null;
+            }
+            readyWhileParsing = null;
+            executor.clearActiveScheduler(this);
         }
         this.parser = null;
     }
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.Comparator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.pydev.shared_core.log.Log;
+
+/**
+ * Runs the parses requested by all the ParserSchedulers in a bounded pool of threads (instead of having a thread
+ * sleeping for each parse requested in each editor).
+ *
+ * Requests wait in a delay queue until the time to parse elapses and are then run by the pool (requests for the
+ * active editor go first, then forced requests and then the others in the order they became ready).
+ *
+ * Each ParserScheduler has at most one pending request: a new request replaces the pending one (so, superseded
+ * requests are dropped without being parsed).
+ */
+public final class ParsingExecutor {
+
+    /**
+     * A parse requested for some scheduler.
+     */
+    static final class ParseRequest implements Delayed, Runnable {
+
+        final ParserScheduler scheduler;
+        final boolean force;
+        final Object[] argsToReparse;
+        final long dueNanos;
+
+        /**
+         * When the request became ready to be parsed and its priority at that time (set by the dispatcher).
+         */
+        volatile long readyNanos;
+        volatile int priority;
+
+        /**
+         * Set when the request was superseded or the scheduler disposed.
+         */
+        volatile boolean cancelled;
+
+        ParseRequest(ParserScheduler scheduler, boolean force, Object[] argsToReparse, long delayMillis) {
+            this.scheduler = scheduler;
+            this.force = force;
+            this.argsToReparse = argsToReparse;
+            this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed o) {
+            long diff = dueNanos - ((ParseRequest) o).dueNanos;
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+
+        public void run() {
+            scheduler.runRequest(this);
+        }
+    }
+
+    /**
+     * Some statistics on the parses done (mostly for diagnosing the parser load).
+     */
+    public static final class Stats {
+
+        /**
+         * Requests waiting for the time to parse to elapse.
+         */
+        public final int delayed;
+
+        /**
+         * Requests ready to be parsed (waiting for a thread from the pool).
+         */
+        public final int ready;
+
+        /**
+         * Parses currently running.
+         */
+        public final int running;
+
+        public final long parses;
+
+        /**
+         * Requests dropped because a newer request for the same parser was done.
+         */
+        public final long superseded;
+
+        /**
+         * Average time from the request becoming ready to the parse start.
+         */
+        public final double averageQueueMillis;
+
+        public final double averageParseMillis;
+        public final long maxParseMillis;
+
+        private Stats(int delayed, int ready, int running, long parses, long superseded, double averageQueueMillis,
+                double averageParseMillis, long maxParseMillis) {
+            this.delayed = delayed;
+            this.ready = ready;
+            this.running = running;
+            this.parses = parses;
+            this.superseded = superseded;
+            this.averageQueueMillis = averageQueueMillis;
+            this.averageParseMillis = averageParseMillis;
+            this.maxParseMillis = maxParseMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "ParsingExecutor.Stats[delayed=" + delayed + ", ready=" + ready + ", running=" + running
+                    + ", parses=" + parses + ", superseded=" + superseded + ", averageQueueMillis="
+                    + averageQueueMillis + ", averageParseMillis=" + averageParseMillis + ", maxParseMillis="
+                    + maxParseMillis + "]";
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static ParsingExecutor instance;
+
+    /**
+     * @return the executor shared by all the parsers.
+     */
+    public static ParsingExecutor get() {
+        synchronized (lock) {
+            if (instance == null) {
+                int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+                instance = new ParsingExecutor(threads);
+            }
+            return instance;
+        }
+    }
+
+    private final DelayQueue<ParseRequest> delayed = new DelayQueue<ParseRequest>();
+    private final PriorityBlockingQueue<Runnable> ready;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * The scheduler of the parser of the editor which is currently active (its parses have priority).
+     */
+    private volatile ParserScheduler activeScheduler;
+
+    //Stats (guarded by statsLock)
+    private final Object statsLock = new Object();
+    private long parses;
+    private long superseded;
+    private long totalQueueNanos;
+    private long totalParseNanos;
+    private long maxParseNanos;
+
+    ParsingExecutor(int threads) {
+        ready = new PriorityBlockingQueue<Runnable>(16, new Comparator<Runnable>() {
+
+            public int compare(Runnable o1, Runnable o2) {
+                ParseRequest r1 = (ParseRequest) o1;
+                ParseRequest r2 = (ParseRequest) o2;
+                int diff = r1.priority - r2.priority;
+                if (diff != 0) {
+                    return diff;
+                }
+                long timeDiff = r1.readyNanos - r2.readyNanos;
+                return timeDiff < 0 ? -1 : (timeDiff > 0 ? 1 : 0);
+            }
+        });
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, ready, new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ParsingExecutor-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+
+        Thread dispatcher = new Thread("ParsingExecutor dispatcher") {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        dispatch(delayed.take());
+                    } catch (InterruptedException e) {
+                        //ignore
+                    } catch (Throwable e) {
+                        Log.log(e);
+                    }
+                }
+            }
+        };
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private int getPriority(ParseRequest request) {
+        if (request.scheduler == activeScheduler) {
+            return 0;
+        }
+        return request.force ? 1 : 2;
+    }
+
+    /**
+     * Adds a request to be run when its delay elapses.
+     */
+    void schedule(ParseRequest request) {
+        if (request.getDelay(TimeUnit.NANOSECONDS) <= 0) {
+            dispatch(request);
+        } else {
+            delayed.add(request);
+        }
+    }
+
+    /**
+     * Makes the request available to the pool.
+     */
+    void dispatch(ParseRequest request) {
+        if (request.cancelled) {
+            return;
+        }
+        request.readyNanos = System.nanoTime();
+        request.priority = getPriority(request);
+        pool.execute(request);
+    }
+
+    /**
+     * Removes a request which is no longer needed (it may still be run, but it'll be ignored as it's cancelled).
+     */
+    void cancel(ParseRequest request, boolean superseded) {
+        request.cancelled = true;
+        if (!delayed.remove(request)) {
+            ready.remove(request);
+        }
+        if (superseded) {
+            synchronized (statsLock) {
+                this.superseded++;
+            }
+        }
+    }
+
+    void setActiveScheduler(ParserScheduler scheduler) {
+        this.activeScheduler = scheduler;
+    }
+
+    void clearActiveScheduler(ParserScheduler scheduler) {
+        if (this.activeScheduler == scheduler) {
+            this.activeScheduler = null;
+        }
+    }
+
+    void onParseFinished(ParseRequest request, long startNanos) {
+        long endNanos = System.nanoTime();
+        long parseNanos = endNanos - startNanos;
+        synchronized (statsLock) {
+            parses++;
+            totalQueueNanos += startNanos - request.readyNanos;
+            totalParseNanos += parseNanos;
+            if (parseNanos > maxParseNanos) {
+                maxParseNanos = parseNanos;
+            }
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (statsLock) {
+            double averageQueueMillis = parses == 0 ? 0 : (totalQueueNanos / (double) parses) / 1000000.0;
+            double averageParseMillis = parses == 0 ? 0 : (totalParseNanos / (double) parses) / 1000000.0;
+            return new Stats(delayed.size(), ready.size(), pool.getActiveCount(), parses, superseded,
+                    averageQueueMillis, averageParseMillis, maxParseNanos / 1000000);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.editor.IBaseEditor;
+
+public class ParserSchedulerTest extends TestCase {
+
+    private static class ParserStub implements IParser {
+
+        private final List<Object[]> parses = new ArrayList<Object[]>();
+
+        public Object reparseDocument(Object... argsToReparse) {
+            synchronized (parses) {
+                parses.add(argsToReparse);
+                parses.notifyAll();
+            }
+            return null;
+        }
+
+        public int waitForParses(int expected, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (parses) {
+                while (parses.size() < expected) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    parses.wait(remaining);
+                }
+                return parses.size();
+            }
+        }
+
+        public void setDocument(IDocument document, Object input) {
+        }
+
+        public void notifySaved() {
+        }
+
+        public void removeParseListener(IParserObserver parserObserver) {
+        }
+
+        public void addParseListener(IParserObserver parserObserver) {
+        }
+
+        public void dispose() {
+        }
+
+        public void resetTimeoutPreferences(boolean useAnalysisOnlyOnDocSave) {
+        }
+
+        public boolean forceReparse(Object... argsToReparse) {
+            return false;
+        }
+    }
+
+    private BaseParserManager parserManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        parserManager = new BaseParserManager() {
+
+            @Override
+            protected IParser createParser(IBaseEditor edit) {
+                throw new RuntimeException("Not implemented");
+            }
+        };
+        parserManager.millisBeforeAnalysis = 100;
+    }
+
+    public void testSupersededRequestsDropped() throws Exception {
+        ParserStub parser = new ParserStub();
+        ParserScheduler scheduler = new ParserScheduler(parser, parserManager);
+        long superseded = ParsingExecutor.get().getStats().superseded;
+        for (int i = 0; i < 10; i++) {
+            scheduler.parseNow();
+            scheduler.parseLater();
+        }
+        assertEquals(1, parser.waitForParses(1, 5000));
+        Thread.sleep(300);
+        assertEquals(1, parser.waitForParses(1, 0));
+        assertTrue(ParsingExecutor.get().getStats().superseded >= superseded + 9);
+        scheduler.dispose();
+    }
+
+    public void testForcedParse() throws Exception {
+        ParserStub parser = new ParserStub();
+        ParserScheduler scheduler = new ParserScheduler(parser, parserManager);
+        parserManager.millisBeforeAnalysis = 60000;
+        scheduler.parseNow();
+        assertTrue(scheduler.parseNow(true, "arg"));
+        assertEquals(1, parser.waitForParses(1, 5000));
+        assertEquals("arg", parser.parses.get(0)[0]);
+
+        //A non-forced request doesn't delay the forced one (note: a forced request is refused while parsing).
+        while (!scheduler.parseNow(true)) {
+            Thread.sleep(10);
+        }
+        scheduler.parseNow();
+        assertEquals(2, parser.waitForParses(2, 5000));
+        scheduler.dispose();
+    }
+
+    public void testDispose() throws Exception {
+        ParserStub parser = new ParserStub();
+        ParserScheduler scheduler = new ParserScheduler(parser, parserManager);
+        scheduler.parseNow();
+        scheduler.dispose();
+        assertEquals(0, parser.waitForParses(1, 300));
+    }
+}
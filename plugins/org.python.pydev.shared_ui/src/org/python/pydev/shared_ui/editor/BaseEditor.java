@@ -270,6 +270,19 @@ public abstract class BaseEditor extends TextEditor implements IBaseEditor {
 
     }
 
+    @Override
+    public void setFocus() {
+        super.setFocus();
+        try {
+            BaseParserManager parserManager = getParserManager();
+            if (parserManager != null) {
+                parserManager.notifyEditorActivated(this);
+            }
+        } catch (Throwable e) {
+            Log.log(e);
+        }
+    }
+
     @Override
     protected void createNavigationActions() {
         super.createNavigationActions();
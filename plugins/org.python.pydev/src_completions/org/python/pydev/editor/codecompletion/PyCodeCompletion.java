@@ -379,7 +379,6 @@ public class PyCodeCompletion extends AbstractPyCodeCompletion {
             Log.log(e);
         }
 
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
         String charset = "utf-8";
         //                    if (viewer instanceof PySourceViewer) {
         //                        PySourceViewer pySourceViewer = (PySourceViewer) viewer;
@@ -390,6 +389,8 @@ public class PyCodeCompletion extends AbstractPyCodeCompletion {
         List<String> completePythonPath = astManager.getModulesManager().getCompletePythonPath(
                 nature.getProjectInterpreter(),
                 nature.getRelatedInterpreterManager());
+        //Only gotten now as a shell from the pool is reserved until the request is done.
+        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
         List<CompiledToken> completions;
         try {
             completions = shell.getJediCompletions(request.editorFile, ps,
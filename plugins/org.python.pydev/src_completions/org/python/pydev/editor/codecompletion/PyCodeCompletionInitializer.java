@@ -48,6 +48,8 @@ public class PyCodeCompletionInitializer extends AbstractPreferenceInitializer {
         //others
         node.putInt(PyCodeCompletionPreferencesPage.ATTEMPTS_CODECOMPLETION,
                 PyCodeCompletionPreferencesPage.DEFAULT_ATTEMPTS_CODECOMPLETION);
+        node.putInt(PyCodeCompletionPreferencesPage.SHELLS_POOL_SIZE,
+                PyCodeCompletionPreferencesPage.DEFAULT_SHELLS_POOL_SIZE);
         node.putInt(PyCodeCompletionPreferencesPage.AUTOCOMPLETE_DELAY,
                 PyCodeCompletionPreferencesPage.DEFAULT_AUTOCOMPLETE_DELAY);
         node.putInt(PyCodeCompletionPreferencesPage.ARGUMENTS_DEEP_ANALYSIS_N_CHARS,
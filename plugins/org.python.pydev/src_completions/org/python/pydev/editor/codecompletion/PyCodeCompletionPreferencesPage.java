@@ -37,6 +37,9 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
     public static final String ATTEMPTS_CODECOMPLETION = "ATTEMPTS_CODECOMPLETION";
     public static final int DEFAULT_ATTEMPTS_CODECOMPLETION = 5;
 
+    public static final String SHELLS_POOL_SIZE = "SHELLS_POOL_SIZE";
+    public static final int DEFAULT_SHELLS_POOL_SIZE = 2;
+
     public static final String AUTOCOMPLETE_ON_DOT = "AUTOCOMPLETE_ON_DOT";
     public static final boolean DEFAULT_AUTOCOMPLETE_ON_DOT = true;
 
@@ -86,6 +89,11 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         addField(new IntegerFieldEditor(ATTEMPTS_CODECOMPLETION,
                 "Maximum attempts to connect to shell (5 secs each):", p));
 
+        IntegerFieldEditor shellsPoolSizeFieldEditor = new IntegerFieldEditor(SHELLS_POOL_SIZE,
+                "Maximum number of shells for background requests:", p);
+        shellsPoolSizeFieldEditor.setValidRange(1, 8);
+        addField(shellsPoolSizeFieldEditor);
+
         addField(new IntegerFieldEditor(AUTOCOMPLETE_DELAY, "Autocompletion delay: ", p));
 
         String tooltip = WrapAndCaseUtils
@@ -176,6 +184,22 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         return ret;
     }
 
+    /**
+     * @return the maximum number of shells (for each interpreter) used for requests which are not done in the main
+     * thread (each shell is a separate process started only when needed).
+     */
+    public static int getShellsPoolSize() {
+        if (SharedCorePlugin.inTestMode()) {
+            return 1;
+        }
+
+        int ret = getPreferences().getInt(PyCodeCompletionPreferencesPage.SHELLS_POOL_SIZE);
+        if (ret < 1) {
+            ret = 1;
+        }
+        return ret;
+    }
+
     public static boolean isToAutocompleteOnDot() {
         return getPreferences().getBoolean(PyCodeCompletionPreferencesPage.AUTOCOMPLETE_ON_DOT);
     }
@@ -510,20 +510,81 @@ public abstract class ModulesManager implements IModulesManager {
         }
 
         pythonPathHelper.setPythonPath(pythonpath);
-        ModulesFoundStructure modulesFound = pythonPathHelper.getModulesFoundStructure(project, monitor);
-
-        PyPublicTreeMap<ModulesKey, ModulesKey> keys = buildKeysFromModulesFound(monitor, modulesFound);
-        onChangePythonpath(keys);
+        pythonPathHelper.setDiscoverySnapshotFile(getDiscoverySnapshotFile());
+        PythonPathDiscovery.Result discovery = pythonPathHelper.findModules(project, monitor);
+        updateKeys(discovery, monitor);
 
         synchronized (modulesKeysLock) {
             cache.clear();
-            //assign to instance variable
-            this.modulesKeys.clear();
-            this.modulesKeys.putAll(keys);
         }
 
     }
 
+    /**
+     * Updates the keys with the modules found in a discovery of the PYTHONPATH.
+     *
+     * If the keys are in sync with the snapshot of the previous discovery, only the modules added/removed since then
+     * are updated (otherwise, all the keys are replaced).
+     *
+     * @return whether the keys changed.
+     */
+    public boolean updateKeys(PythonPathDiscovery.Result discovery, IProgressMonitor monitor) {
+        boolean changed;
+        if (discovery.hadPreviousSnapshot && discovery.addedKeys != null && isInSyncWithDiscoverySnapshot()) {
+            changed = discovery.addedKeys.size() > 0 || discovery.removedKeys.size() > 0;
+            if (changed) {
+                synchronized (modulesKeysLock) {
+                    //Remove first: a module found in another file is both, removed and added.
+                    for (ModulesKey key : discovery.removedKeys) {
+                        this.modulesKeys.remove(key);
+                        cache.remove(key, this);
+                    }
+                    for (ModulesKey key : discovery.addedKeys) {
+                        //Also remove before putting: the map keeps the existing key if an equal one is there.
+                        this.modulesKeys.remove(key);
+                        this.modulesKeys.put(key, key);
+                        cache.remove(key, this);
+                    }
+                    onChangePythonpath(this.modulesKeys);
+                }
+            }
+        } else {
+            PyPublicTreeMap<ModulesKey, ModulesKey> keys = discovery.getKeys(monitor);
+            onChangePythonpath(keys);
+            changed = true;
+            synchronized (modulesKeysLock) {
+                cache.clear();
+                //assign to instance variable
+                this.modulesKeys.clear();
+                this.modulesKeys.putAll(keys);
+            }
+        }
+        onDiscoveryApplied(discovery, changed);
+        return changed;
+    }
+
+    /**
+     * @return whether the keys are the ones from the snapshot of the last discovery (in which case the modules
+     * added/removed in a new discovery may be applied directly).
+     */
+    protected boolean isInSyncWithDiscoverySnapshot() {
+        return false;
+    }
+
+    /**
+     * Subclasses may override to save the snapshot of the discovery applied.
+     */
+    protected void onDiscoveryApplied(PythonPathDiscovery.Result discovery, boolean changed) {
+    }
+
+    /**
+     * @return the file where the snapshot of the PYTHONPATH discovery should be kept (or null if it shouldn't be
+     * persisted).
+     */
+    protected File getDiscoverySnapshotFile() {
+        return null;
+    }
+
     /**
      * @return a tuple with the new keys to be added to the modules manager (i.e.: found in keysFound but not in the
      * modules manager) and the keys to be removed from the modules manager (i.e.: found in the modules manager but
@@ -1092,6 +1153,13 @@ public abstract class ModulesManager implements IModulesManager {
         ModulesManager.cache.clear();
     }
 
+    /**
+     * @return a description of the current state of the modules cache (size, hits, misses, evictions) for diagnosis.
+     */
+    public static String getCacheStats() {
+        return ModulesManager.cache.toString();
+    }
+
     /**
      * @see org.python.pydev.core.IProjectModulesManager#isInPythonPath(org.eclipse.core.resources.IResource, org.eclipse.core.resources.IProject)
      */
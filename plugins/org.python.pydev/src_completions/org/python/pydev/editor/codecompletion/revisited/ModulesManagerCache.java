@@ -6,71 +6,294 @@
  */
 package org.python.pydev.editor.codecompletion.revisited;
 
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
-import org.python.pydev.shared_core.cache.LRUCache;
+import org.python.pydev.editor.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
- * the memory at any time.
+ * This is a 'global' cache implementation (shared by all the managers).
+ *
+ * The cache is split in shards (each with its own lock and LRU order) so that threads accessing different
+ * modules don't contend for the same lock, and instead of a fixed number of modules it's bounded by the
+ * (estimated) memory used by the modules in it.
  */
 final class ModulesManagerCache {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * Must be a power of 2.
+     */
+    private static final int SHARDS = 16;
+
+    /**
+     * The estimated memory that all the modules in the cache may use (for all the managers).
+     *
+     * Can be changed with -Dpydev.modules.cache.max.weight=<bytes>
+     */
+    private static final long MAX_WEIGHT;
+
+    static {
+        long defaultWeight = Runtime.getRuntime().maxMemory() / 8;
+        defaultWeight = Math.max(32L * 1024 * 1024, Math.min(512L * 1024 * 1024, defaultWeight));
+        long maxWeight = defaultWeight;
+        String property = System.getProperty("pydev.modules.cache.max.weight");
+        if (property != null) {
+            try {
+                maxWeight = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                maxWeight = defaultWeight;
+            }
+        }
+        MAX_WEIGHT = maxWeight;
+    }
+
+    private static final int EMPTY_MODULE_WEIGHT = 256;
+
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Used for modules whose weight can't be estimated (i.e.: compiled modules or modules in zips).
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final int DEFAULT_MODULE_WEIGHT = 32 * 1024;
 
     /**
-     * The access to the cache is synchronized
+     * A source module in memory is usually about this times bigger than its contents (because of the AST).
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final int SOURCE_SIZE_MULTIPLIER = 20;
+
+    private static final class CacheEntry {
+
+        private final AbstractModule module;
+        private final long weight;
+
+        private CacheEntry(AbstractModule module, long weight) {
+            this.module = module;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Shard {
+
+        /**
+         * The access to the shard is synchronized on the shard itself.
+         */
+        private final LinkedHashMap<Tuple<ModulesKey, ModulesManager>, CacheEntry> map = new LinkedHashMap<Tuple<ModulesKey, ModulesManager>, CacheEntry>(
+                64, 0.75f, true);
+
+        private long weight;
+    }
+
+    private final Shard[] shards = new Shard[SHARDS];
+
+    private final long maxWeightPerShard;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        this(MAX_WEIGHT);
+    }
+
+    ModulesManagerCache(long maxWeight) {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+        maxWeightPerShard = Math.max(1, maxWeight / SHARDS);
+    }
+
+    private Shard getShard(Tuple<ModulesKey, ModulesManager> keyTuple) {
+        int h = keyTuple.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARDS - 1)];
+    }
+
+    /**
+     * Meant to be used in tests!
+     */
+    /*default*/int getShardIndex(ModulesKey key, ModulesManager modulesManager) {
+        Shard shard = getShard(new Tuple<ModulesKey, ModulesManager>(key, modulesManager));
+        for (int i = 0; i < SHARDS; i++) {
+            if (shards[i] == shard) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Meant to be used in tests!
+     */
+    /*default*/long getMaxShardWeight() {
+        long max = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                max = Math.max(max, shard.weight);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the estimated memory used by the given module.
+     */
+    private static long estimateWeight(AbstractModule module) {
+        if (module instanceof EmptyModule) {
+            return EMPTY_MODULE_WEIGHT;
+        }
+        if (module instanceof SourceModule) {
+            SourceModule sourceModule = (SourceModule) module;
+            File file = sourceModule.getFile();
+            if (file != null && sourceModule.zipFilePath == null) {
+                long length = file.length();
+                if (length > 0) {
+                    return length * SOURCE_SIZE_MULTIPLIER;
+                }
+            }
+        }
+        return DEFAULT_MODULE_WEIGHT;
     }
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Shard shard = getShard(keyTuple);
+        synchronized (shard) {
+            CacheEntry entry = shard.map.get(keyTuple);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.module;
+            }
+        }
+        misses.incrementAndGet();
+
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
+            if (!modulesManager.modulesKeys.containsKey(key)) {
+                return null;
+            }
+            ModulesKey realKey = modulesManager.modulesKeys.get(key); //get the 'real' key
+            synchronized (shard) {
+                //Check again: some other thread may have added it while we didn't have the lock.
+                CacheEntry entry = shard.map.get(keyTuple);
+                if (entry != null) {
+                    return entry.module;
                 }
+                AbstractModule obj = AbstractModule.createEmptyModule(realKey);
+                addUnsynched(shard, keyTuple, obj);
                 return obj;
             }
         }
     }
 
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Shard shard = getShard(keyTuple);
+        synchronized (shard) {
+            CacheEntry entry = shard.map.remove(keyTuple);
+            if (entry != null) {
+                shard.weight -= entry.weight;
             }
         }
     }
 
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        long weight = estimateWeight(n); //Computed out of the lock (may access the filesystem).
+        Shard shard = getShard(keyTuple);
+        synchronized (shard) {
+            addUnsynched(shard, keyTuple, n, weight);
+        }
+    }
+
+    private void addUnsynched(Shard shard, Tuple<ModulesKey, ModulesManager> keyTuple, AbstractModule n) {
+        addUnsynched(shard, keyTuple, n, estimateWeight(n));
+    }
+
+    private void addUnsynched(Shard shard, Tuple<ModulesKey, ModulesManager> keyTuple, AbstractModule n, long weight) {
+        CacheEntry old = shard.map.put(keyTuple, new CacheEntry(n, weight));
+        if (old != null) {
+            shard.weight -= old.weight;
+        }
+        shard.weight += weight;
+
+        //Evict the least recently used (but always keep the one just added).
+        if (shard.weight > maxWeightPerShard) {
+            Iterator<Map.Entry<Tuple<ModulesKey, ModulesManager>, CacheEntry>> it = shard.map.entrySet().iterator();
+            while (shard.weight > maxWeightPerShard && shard.map.size() > 1 && it.hasNext()) {
+                Map.Entry<Tuple<ModulesKey, ModulesManager>, CacheEntry> eldest = it.next();
+                if (eldest.getKey() == keyTuple) {
+                    continue;
+                }
+                it.remove();
+                shard.weight -= eldest.getValue().weight;
+                evictions.incrementAndGet();
+                if (DEBUG) {
+                    System.out.println("Evicted from modules cache: " + eldest.getKey().o1);
+                }
             }
         }
     }
 
     public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.map.clear();
+                shard.weight = 0;
+            }
         }
     }
-}
\ No newline at end of file
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of modules currently in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated memory used by the modules currently in the cache.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                weight += shard.weight;
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "ModulesManagerCache[size=" + size() + ", weight=" + getWeight() + ", maxWeight="
+                + (maxWeightPerShard * SHARDS) + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions="
+                + getEvictions() + "]";
+    }
+}
@@ -0,0 +1,728 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.FullRepIterable;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure.ZipContents;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.ui.filetypes.FileTypesPreferencesPage;
+
+/**
+ * Finds the modules available in the PYTHONPATH.
+ *
+ * The roots in the PYTHONPATH are walked in parallel (reading the attributes of the entries of a directory along
+ * with the listing, instead of asking each file whether it's a file or a directory).
+ *
+ * If a snapshot file is given, the contents found for each directory (along with its modification time) and each
+ * zip (along with its size and modification time) are persisted, so, in the next discovery, the directories which
+ * didn't change aren't listed again (only their modification time is checked) and the zips which didn't change
+ * aren't opened again. In this case, the modules added/removed since the last discovery are also reported.
+ *
+ * Note: the snapshot isn't saved by the discovery itself: it's saved by whoever applies the result (see:
+ * {@link Result#saveSnapshot()}), so that it's never ahead of what was actually applied.
+ */
+public final class PythonPathDiscovery {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * The name of the file used to keep the snapshot (in the folder where the information of an interpreter is kept).
+     */
+    public static final String SNAPSHOT_FILE_NAME = "pythonpath_snapshot.bin";
+
+    private static final int SNAPSHOT_MAGIC = 0x50595053;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final int KIND_NONE = 0;
+    private static final int KIND_DIR = 1;
+    private static final int KIND_ZIP = 2;
+
+    /**
+     * The result of a discovery.
+     */
+    public static final class Result {
+
+        public final ModulesFoundStructure modulesFound;
+
+        /**
+         * Whether there was a snapshot from a previous discovery (if there wasn't, all the keys are reported as
+         * added).
+         */
+        public final boolean hadPreviousSnapshot;
+
+        /**
+         * Modules found now which weren't found (or were found in another file) in the previous discovery.
+         *
+         * null if the delta isn't available (no snapshot is used or the discovery was cancelled).
+         */
+        public final List<ModulesKey> addedKeys;
+
+        /**
+         * Modules found in the previous discovery which weren't found (or were found in another file) now.
+         *
+         * null if the delta isn't available (no snapshot is used or the discovery was cancelled).
+         */
+        public final List<ModulesKey> removedKeys;
+
+        /**
+         * The discovery which created this result and the roots found (null if the snapshot can't be saved: i.e.:
+         * the discovery was cancelled or the modules weren't found by the discovery).
+         */
+        private final PythonPathDiscovery discovery;
+        private final List<RootSnapshot> found;
+
+        private PyPublicTreeMap<ModulesKey, ModulesKey> keys;
+
+        private Result(ModulesFoundStructure modulesFound, boolean hadPreviousSnapshot,
+                PyPublicTreeMap<ModulesKey, ModulesKey> keys, List<ModulesKey> addedKeys,
+                List<ModulesKey> removedKeys, PythonPathDiscovery discovery, List<RootSnapshot> found) {
+            this.modulesFound = modulesFound;
+            this.hadPreviousSnapshot = hadPreviousSnapshot;
+            this.keys = keys;
+            this.addedKeys = addedKeys;
+            this.removedKeys = removedKeys;
+            this.discovery = discovery;
+            this.found = found;
+        }
+
+        /**
+         * @return the keys for the modules found (built only once: callers may change the returned map).
+         */
+        public synchronized PyPublicTreeMap<ModulesKey, ModulesKey> getKeys(IProgressMonitor monitor) {
+            if (keys == null) {
+                keys = ModulesManager.buildKeysFromModulesFound(monitor, modulesFound);
+            }
+            return keys;
+        }
+
+        /**
+         * Saves the snapshot of this discovery (to be used as the base of the next discovery).
+         *
+         * @return whether the snapshot was saved.
+         */
+        public boolean saveSnapshot() {
+            if (found == null) {
+                return false;
+            }
+            return discovery.saveSnapshot(found);
+        }
+
+        /**
+         * Removes the snapshot of the previous discovery (so, the next discovery will report all the modules as
+         * added).
+         */
+        public void deleteSnapshot() {
+            if (discovery.snapshotFile != null) {
+                discovery.snapshotFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return a result for modules which weren't found by this discovery (so, without a delta and whose snapshot
+     * can't be saved).
+     */
+    public Result createResult(ModulesFoundStructure modulesFound) {
+        return new Result(modulesFound, false, null, null, null, this, null);
+    }
+
+    /**
+     * What's in a directory.
+     */
+    private static final class DirEntry {
+
+        private final long mtime;
+        private final boolean hasInit;
+
+        /**
+         * The names of the files which are valid modules (only filled if it has an __init__ or if it's a root).
+         */
+        private final String[] files;
+
+        /**
+         * The names of the sub-directories (only filled if it has an __init__ or if it's a root).
+         */
+        private final String[] subdirs;
+
+        private DirEntry(long mtime, boolean hasInit, String[] files, String[] subdirs) {
+            this.mtime = mtime;
+            this.hasInit = hasInit;
+            this.files = files;
+            this.subdirs = subdirs;
+        }
+    }
+
+    /**
+     * What was found in a root of the PYTHONPATH.
+     */
+    private static final class RootSnapshot {
+
+        private final String root;
+        private final int kind;
+
+        /**
+         * For directories: path relative to the root (with '/') -> entry ("" is the root itself).
+         */
+        private final Map<String, DirEntry> dirs = new HashMap<String, DirEntry>();
+
+        // For zips
+        private long zipSize;
+        private long zipMtime;
+        private int zipContentsType;
+        private String[] zipPaths;
+
+        private RootSnapshot(String root, int kind) {
+            this.root = root;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Only passes on the cancel request (the actual monitor isn't accessed from multiple threads).
+     */
+    private static final class CancelOnlyMonitor extends NullProgressMonitor {
+
+        private final IProgressMonitor monitor;
+
+        private CancelOnlyMonitor(IProgressMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return monitor.isCanceled();
+        }
+    }
+
+    private final File snapshotFile;
+
+    // Metrics
+    private final AtomicInteger dirsListed = new AtomicInteger();
+    private final AtomicInteger dirsReused = new AtomicInteger();
+    private final AtomicInteger zipsRead = new AtomicInteger();
+    private final AtomicInteger zipsReused = new AtomicInteger();
+
+    /**
+     * @param snapshotFile the file where the snapshot is kept (may be null, in which case nothing is persisted).
+     */
+    public PythonPathDiscovery(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * @return the modules found in the given roots (never null).
+     */
+    public Result discover(List<String> pythonpath, IProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        long initialTime = System.currentTimeMillis();
+        final Map<String, RootSnapshot> previous = loadSnapshot();
+        final IProgressMonitor workerMonitor = new CancelOnlyMonitor(monitor);
+
+        List<RootSnapshot> found = new ArrayList<RootSnapshot>(pythonpath.size());
+        boolean complete = true;
+        int nThreads = Math.min(pythonpath.size(), Runtime.getRuntime().availableProcessors());
+        if (nThreads <= 1) {
+            for (String root : pythonpath) {
+                found.add(walkRoot(root, previous != null ? previous.get(root) : null, workerMonitor));
+            }
+        } else {
+            monitor.setTaskName("Finding modules in the PYTHONPATH...");
+            ExecutorService executor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PyDev: PYTHONPATH discovery");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            try {
+                List<Future<RootSnapshot>> futures = new ArrayList<Future<RootSnapshot>>(pythonpath.size());
+                for (final String root : pythonpath) {
+                    futures.add(executor.submit(new Callable<RootSnapshot>() {
+
+                        public RootSnapshot call() throws Exception {
+                            return walkRoot(root, previous != null ? previous.get(root) : null, workerMonitor);
+                        }
+                    }));
+                }
+                //Note: keep the PYTHONPATH order (later roots override the modules found in earlier roots).
+                for (Future<RootSnapshot> future : futures) {
+                    try {
+                        found.add(future.get());
+                    } catch (Exception e) {
+                        Log.log(e);
+                        complete = false;
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        ModulesFoundStructure ret = new ModulesFoundStructure();
+        for (RootSnapshot rootSnapshot : found) {
+            addToStructure(rootSnapshot, ret);
+        }
+
+        if (monitor.isCanceled() || !complete || snapshotFile == null) {
+            //Don't save nor compute the delta with incomplete information.
+            return new Result(ret, previous != null, null, null, null, this, null);
+        }
+
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = null;
+        List<ModulesKey> added = new ArrayList<ModulesKey>();
+        List<ModulesKey> removed = new ArrayList<ModulesKey>();
+        if (previous == null) {
+            keys = ModulesManager.buildKeysFromModulesFound(monitor, ret);
+            added.addAll(keys.values());
+
+        } else if (hasChanges(previous, found)) {
+            //Only build the keys of the previous discovery if something changed.
+            keys = ModulesManager.buildKeysFromModulesFound(monitor, ret);
+            ModulesFoundStructure previousFound = new ModulesFoundStructure();
+            for (RootSnapshot rootSnapshot : previous.values()) {
+                addToStructure(rootSnapshot, previousFound);
+            }
+            diffKeys(keys, ModulesManager.buildKeysFromModulesFound(monitor, previousFound), added, removed);
+        }
+        if (DEBUG) {
+            System.out.println("PythonPathDiscovery: " + (System.currentTimeMillis() - initialTime) + " millis. Dirs listed: "
+                    + dirsListed + " reused: " + dirsReused + " Zips read: " + zipsRead + " reused: " + zipsReused
+                    + " Added: " + added.size() + " Removed: " + removed.size());
+        }
+        return new Result(ret, previous != null, keys, added, removed, this, found);
+    }
+
+    // Delta -----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return whether the roots found may have different modules from the ones in the previous snapshot (the
+     * directories and zips which didn't change are reused, so, it's enough to check if the same instances are there).
+     */
+    private static boolean hasChanges(Map<String, RootSnapshot> previous, List<RootSnapshot> found) {
+        if (previous.size() != found.size()) {
+            return true;
+        }
+        //Note: the order matters (later roots override the modules found in earlier roots).
+        Iterator<RootSnapshot> previousIt = previous.values().iterator();
+        for (RootSnapshot rootSnapshot : found) {
+            RootSnapshot previousRoot = previousIt.next();
+            if (!previousRoot.root.equals(rootSnapshot.root) || previousRoot.kind != rootSnapshot.kind) {
+                return true;
+            }
+            if (rootSnapshot.kind == KIND_ZIP && previousRoot != rootSnapshot) {
+                return true;
+            }
+            if (rootSnapshot.kind == KIND_DIR) {
+                if (previousRoot.dirs.size() != rootSnapshot.dirs.size()) {
+                    return true;
+                }
+                for (Map.Entry<String, DirEntry> entry : rootSnapshot.dirs.entrySet()) {
+                    if (previousRoot.dirs.get(entry.getKey()) != entry.getValue()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void diffKeys(PyPublicTreeMap<ModulesKey, ModulesKey> keys,
+            PyPublicTreeMap<ModulesKey, ModulesKey> previousKeys, List<ModulesKey> added, List<ModulesKey> removed) {
+        //Note: use the values (when a key is replaced, the map keeps the first key instance).
+        for (ModulesKey key : keys.values()) {
+            if (!isSameModule(key, previousKeys.get(key))) {
+                added.add(key);
+            }
+        }
+        for (ModulesKey key : previousKeys.values()) {
+            if (!isSameModule(key, keys.get(key))) {
+                removed.add(key);
+            }
+        }
+    }
+
+    /**
+     * Keys are equal considering only the name, so, check whether it's actually the same module (i.e.: the class and
+     * the file must also be the same).
+     */
+    private static boolean isSameModule(ModulesKey key, ModulesKey other) {
+        if (other == null || other.getClass() != key.getClass()) {
+            return false;
+        }
+        if (key.file == null ? other.file != null : !key.file.equals(other.file)) {
+            return false;
+        }
+        if (key instanceof ModulesKeyForZip) {
+            String zipModulePath = ((ModulesKeyForZip) key).zipModulePath;
+            String otherZipModulePath = ((ModulesKeyForZip) other).zipModulePath;
+            return zipModulePath == null ? otherZipModulePath == null : zipModulePath.equals(otherZipModulePath);
+        }
+        return true;
+    }
+
+    // Walking ---------------------------------------------------------------------------------------------------------
+
+    private RootSnapshot walkRoot(String root, RootSnapshot previous, IProgressMonitor monitor) {
+        File rootFile = new File(root);
+        Path path;
+        BasicFileAttributes attrs;
+        try {
+            path = rootFile.toPath();
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (Exception e) {
+            //Doesn't exist (or is not valid).
+            return new RootSnapshot(root, KIND_NONE);
+        }
+
+        if (attrs.isDirectory()) {
+            RootSnapshot ret = new RootSnapshot(root, KIND_DIR);
+            walkDir(ret, previous != null && previous.kind == KIND_DIR ? previous : null, path, "", attrs,
+                    new HashSet<Object>(), monitor);
+            return ret;
+        }
+
+        if (attrs.isRegularFile() && FileTypesPreferencesPage.isValidZipFile(rootFile.getName())) {
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            if (previous != null && previous.kind == KIND_ZIP && previous.zipSize == size
+                    && previous.zipMtime == mtime) {
+                zipsReused.incrementAndGet();
+                return previous;
+            }
+            ZipContents zipContents = PythonPathHelper.getFromZip(rootFile, monitor);
+            if (zipContents == null) {
+                return new RootSnapshot(root, KIND_NONE);
+            }
+            zipsRead.incrementAndGet();
+            RootSnapshot ret = new RootSnapshot(root, KIND_ZIP);
+            ret.zipSize = size;
+            ret.zipMtime = mtime;
+            ret.zipContentsType = zipContents.zipContentsType;
+            ret.zipPaths = zipContents.foundFileZipPaths.toArray(new String[zipContents.foundFileZipPaths.size()]);
+            return ret;
+        }
+        return new RootSnapshot(root, KIND_NONE);
+    }
+
+    private void walkDir(RootSnapshot rootSnapshot, RootSnapshot previous, Path path, String relative,
+            BasicFileAttributes attrs, Set<Object> visited, IProgressMonitor monitor) {
+        if (monitor.isCanceled()) {
+            return;
+        }
+        //Check if it's a symlink loop.
+        Object key = attrs.fileKey();
+        if (key == null) {
+            try {
+                key = path.toRealPath().toString();
+            } catch (IOException e) {
+                key = path.toString();
+            }
+        }
+        if (!visited.add(key)) {
+            return;
+        }
+
+        long mtime = attrs.lastModifiedTime().toMillis();
+        boolean isRoot = relative.length() == 0;
+        DirEntry entry = previous != null ? previous.dirs.get(relative) : null;
+        if (entry != null && entry.mtime == mtime) {
+            //The entries in the directory didn't change.
+            dirsReused.incrementAndGet();
+        } else if (!isRoot && !hasInit(path)) {
+            //Not a package (no need to list it).
+            entry = new DirEntry(mtime, false, new String[0], new String[0]);
+        } else {
+            entry = listDir(path, mtime);
+            dirsListed.incrementAndGet();
+        }
+        rootSnapshot.dirs.put(relative, entry);
+
+        if (!isRoot && !entry.hasInit) {
+            return;
+        }
+        for (String subdir : entry.subdirs) {
+            Path subPath = path.resolve(subdir);
+            BasicFileAttributes subAttrs;
+            try {
+                subAttrs = Files.readAttributes(subPath, BasicFileAttributes.class);
+            } catch (IOException e) {
+                continue; //Removed in the meanwhile (or broken link).
+            }
+            if (subAttrs.isDirectory()) {
+                walkDir(rootSnapshot, previous, subPath, isRoot ? subdir : relative + '/' + subdir, subAttrs,
+                        visited, monitor);
+            }
+        }
+    }
+
+    private static boolean hasInit(Path dir) {
+        // Checking for existence of a specific file is much faster than listing a directory!
+        for (String init : FileTypesPreferencesPage.getValidInitFiles()) {
+            if (Files.exists(dir.resolve(init))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the entries in the directory (the attributes are gotten along with the listing).
+     */
+    private static DirEntry listDir(final Path dir, long mtime) {
+        final List<String> files = new ArrayList<String>();
+        final List<String> subdirs = new ArrayList<String>();
+        final boolean[] hasInit = new boolean[] { false };
+        try {
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path fileName = file.getFileName();
+                    if (fileName == null) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String name = fileName.toString();
+                    if (attrs.isDirectory()) {
+                        subdirs.add(name);
+
+                    } else if (attrs.isRegularFile() && PythonPathHelper.isValidFileMod(name)) {
+                        files.add(name);
+                        if (!hasInit[0] && PythonPathHelper.isValidInitFile(name)) {
+                            hasInit[0] = true;
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    //i.e.: broken links or no permission.
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            Log.log(e);
+        }
+        return new DirEntry(mtime, hasInit[0], files.toArray(new String[files.size()]),
+                subdirs.toArray(new String[subdirs.size()]));
+    }
+
+    // Building the structure ------------------------------------------------------------------------------------------
+
+    private static void addToStructure(RootSnapshot rootSnapshot, ModulesFoundStructure modulesFound) {
+        if (rootSnapshot.kind == KIND_DIR) {
+            addDirToStructure(rootSnapshot, "", "", new File(rootSnapshot.root), modulesFound,
+                    new FastStringBuffer());
+
+        } else if (rootSnapshot.kind == KIND_ZIP) {
+            ZipContents zipContents = new ZipContents(new File(rootSnapshot.root));
+            zipContents.zipContentsType = rootSnapshot.zipContentsType;
+            for (String path : rootSnapshot.zipPaths) {
+                zipContents.foundFileZipPaths.add(path);
+                zipContents.foundFolderZipPaths.add(StringUtils.stripFromLastSlash(path));
+            }
+            //Same state we'd have after consolidatePythonpathInfo.
+            zipContents.pyFilesLowerToRegular = null;
+            zipContents.pyfoldersLower = null;
+            zipContents.pyInitFilesLowerWithoutExtension = null;
+            modulesFound.zipContents.add(zipContents);
+        }
+    }
+
+    private static void addDirToStructure(RootSnapshot rootSnapshot, String relative, String packageName,
+            File dir, ModulesFoundStructure modulesFound, FastStringBuffer buf) {
+        DirEntry entry = rootSnapshot.dirs.get(relative);
+        boolean isRoot = relative.length() == 0;
+        if (entry == null || (!isRoot && !entry.hasInit)) {
+            return;
+        }
+        for (String name : entry.files) {
+            String modName;
+            if (packageName.length() != 0) {
+                modName = buf.clear().append(packageName).append('.').append(PythonPathHelper.stripExtension(name))
+                        .toString();
+            } else {
+                modName = PythonPathHelper.stripExtension(name);
+            }
+            if (PythonPathHelper.isValidModuleLastPart(FullRepIterable.getLastPart(modName))) {
+                modulesFound.regularModules.put(new File(dir, name), modName);
+            }
+        }
+        for (String subdir : entry.subdirs) {
+            String subRelative = isRoot ? subdir : relative + '/' + subdir;
+            String subPackage = packageName.length() != 0 ? packageName + '.' + subdir : subdir;
+            addDirToStructure(rootSnapshot, subRelative, subPackage, new File(dir, subdir), modulesFound, buf);
+        }
+    }
+
+    // Persistence -----------------------------------------------------------------------------------------------------
+
+    /**
+     * The snapshot is only valid if the configuration of what's a valid file is the same.
+     */
+    private static String getConfigSignature() {
+        return StringUtils.join(",", FileTypesPreferencesPage.getDottedValidSourceFiles()) + "|"
+                + StringUtils.join(",", FileTypesPreferencesPage.getValidInitFiles());
+    }
+
+    /**
+     * @return root -> snapshot (in the order they were saved) or null if there's no valid snapshot.
+     */
+    private Map<String, RootSnapshot> loadSnapshot() {
+        if (snapshotFile == null || !snapshotFile.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+            try {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                    return null;
+                }
+                if (!getConfigSignature().equals(in.readUTF())) {
+                    return null;
+                }
+                int roots = in.readInt();
+                Map<String, RootSnapshot> ret = new LinkedHashMap<String, RootSnapshot>();
+                for (int i = 0; i < roots; i++) {
+                    RootSnapshot rootSnapshot = new RootSnapshot(in.readUTF(), in.readByte());
+                    if (rootSnapshot.kind == KIND_DIR) {
+                        int dirs = in.readInt();
+                        for (int j = 0; j < dirs; j++) {
+                            String relative = in.readUTF();
+                            long mtime = in.readLong();
+                            boolean hasInit = in.readBoolean();
+                            String[] files = readStrings(in);
+                            String[] subdirs = readStrings(in);
+                            rootSnapshot.dirs.put(relative, new DirEntry(mtime, hasInit, files, subdirs));
+                        }
+                    } else if (rootSnapshot.kind == KIND_ZIP) {
+                        rootSnapshot.zipSize = in.readLong();
+                        rootSnapshot.zipMtime = in.readLong();
+                        rootSnapshot.zipContentsType = in.readInt();
+                        rootSnapshot.zipPaths = readStrings(in);
+                    }
+                    ret.put(rootSnapshot.root, rootSnapshot);
+                }
+                return ret;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            Log.log("Error reading PYTHONPATH snapshot: " + snapshotFile, e);
+            return null;
+        }
+    }
+
+    private boolean saveSnapshot(List<RootSnapshot> found) {
+        if (snapshotFile == null) {
+            return false;
+        }
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(getConfigSignature());
+                out.writeInt(found.size());
+                for (RootSnapshot rootSnapshot : found) {
+                    out.writeUTF(rootSnapshot.root);
+                    out.writeByte(rootSnapshot.kind);
+                    if (rootSnapshot.kind == KIND_DIR) {
+                        out.writeInt(rootSnapshot.dirs.size());
+                        Iterator<Map.Entry<String, DirEntry>> it = rootSnapshot.dirs.entrySet().iterator();
+                        while (it.hasNext()) {
+                            Map.Entry<String, DirEntry> entry = it.next();
+                            DirEntry dirEntry = entry.getValue();
+                            out.writeUTF(entry.getKey());
+                            out.writeLong(dirEntry.mtime);
+                            out.writeBoolean(dirEntry.hasInit);
+                            writeStrings(out, dirEntry.files);
+                            writeStrings(out, dirEntry.subdirs);
+                        }
+                    } else if (rootSnapshot.kind == KIND_ZIP) {
+                        out.writeLong(rootSnapshot.zipSize);
+                        out.writeLong(rootSnapshot.zipMtime);
+                        out.writeInt(rootSnapshot.zipContentsType);
+                        writeStrings(out, rootSnapshot.zipPaths);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (Exception e) {
+            Log.log("Error saving PYTHONPATH snapshot: " + snapshotFile, e);
+            return false;
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        String[] ret = new String[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = in.readUTF();
+        }
+        return ret;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * @return a description of what was done in the last discovery (for diagnosis).
+     */
+    public String getStats() {
+        return "PythonPathDiscovery[dirsListed=" + dirsListed + ", dirsReused=" + dirsReused + ", zipsRead="
+                + zipsRead + ", zipsReused=" + zipsReused + "]";
+    }
+}
@@ -61,7 +61,6 @@ import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.OrderedMap;
 import org.python.pydev.ui.filetypes.FileTypesPreferencesPage;
 import org.python.pydev.utils.PyFileListing;
-import org.python.pydev.utils.PyFileListing.PyFileInfo;
 
 /**
  * This is not a singleton because we may have a different pythonpath for each project (even though
@@ -85,6 +84,11 @@ public final class PythonPathHelper implements IPythonPathHelper {
     private transient IPythonModuleResolver[] pythonModuleResolvers;
     private final Object pythonModuleResolversLock = new Object();
 
+    /**
+     * Where the snapshot of the PYTHONPATH discovery is kept (null means that it's not persisted).
+     */
+    private volatile File discoverySnapshotFile;
+
     /**
      * Returns the default path given from the string.
      * @param str
@@ -631,6 +635,16 @@ public final class PythonPathHelper implements IPythonPathHelper {
         return getModulesFoundStructure(null, monitor);
     }
 
+    /**
+     * Collects the Python modules.
+     *
+     * @see #findModules(IProject, IProgressMonitor)
+     */
+    public ModulesFoundStructure getModulesFoundStructure(IProject project,
+            IProgressMonitor monitor) {
+        return findModules(project, monitor).modulesFound;
+    }
+
     /**
      * Collects the Python modules.
      * <p>
@@ -640,10 +654,10 @@ public final class PythonPathHelper implements IPythonPathHelper {
      *
      * @param project the project scope, can be {@code null} to represent a system-wide collection.
      * @param monitor a project monitor, can be {@code null}.
-     * @return a {@link ModulesFoundStructure} containing the encountered modules.
+     * @return the result with the encountered modules (which only has the modules added/removed since the
+     * previous discovery if the PYTHONPATH was traversed with a snapshot file set).
      */
-    public ModulesFoundStructure getModulesFoundStructure(IProject project,
-            IProgressMonitor monitor) {
+    public PythonPathDiscovery.Result findModules(IProject project, IProgressMonitor monitor) {
         if (monitor == null) {
             monitor = new NullProgressMonitor();
         }
@@ -670,46 +684,31 @@ public final class PythonPathHelper implements IPythonPathHelper {
                         }
                     }
                 }
-                return modulesFoundStructure;
+                return new PythonPathDiscovery(discoverySnapshotFile).createResult(modulesFoundStructure);
             }
         }
 
         // The default behavior is to recursively traverse the directories in the PYTHONPATH to
         // collect all encountered Python modules.
-        ModulesFoundStructure ret = new ModulesFoundStructure();
-
-        List<String> pythonpathList = getPythonpath();
-        FastStringBuffer tempBuf = new FastStringBuffer();
-        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
-            String element = iter.next();
-
-            if (monitor.isCanceled()) {
-                break;
-            }
+        return discoverModules(monitor);
+    }
 
-            //the slow part is getting the files... not much we can do (I think).
-            File root = new File(element);
-            PyFileListing below = getModulesBelow(root, monitor);
-            if (below != null) {
-
-                Iterator<PyFileInfo> e1 = below.getFoundPyFileInfos().iterator();
-                while (e1.hasNext()) {
-                    PyFileInfo pyFileInfo = e1.next();
-                    File file = pyFileInfo.getFile();
-                    String modName = pyFileInfo.getModuleName(tempBuf);
-                    if (isValidModuleLastPart(FullRepIterable.getLastPart(modName))) {
-                        ret.regularModules.put(file, modName);
-                    }
-                }
+    /**
+     * Sets the file where the snapshot of the discovery is kept (so that the directories and zips which didn't change
+     * aren't listed again in the next discovery).
+     */
+    public void setDiscoverySnapshotFile(File discoverySnapshotFile) {
+        this.discoverySnapshotFile = discoverySnapshotFile;
+    }
 
-            } else { //ok, it was null, so, maybe this is not a folder, but zip file with java classes...
-                ModulesFoundStructure.ZipContents zipContents = getFromZip(root, monitor);
-                if (zipContents != null) {
-                    ret.zipContents.add(zipContents);
-                }
-            }
-        }
-        return ret;
+    /**
+     * Traverses the directories and zips in the PYTHONPATH to collect the modules (without consulting the module
+     * resolvers).
+     *
+     * @return the modules found along with the modules added/removed since the last discovery.
+     */
+    public PythonPathDiscovery.Result discoverModules(IProgressMonitor monitor) {
+        return new PythonPathDiscovery(discoverySnapshotFile).discover(getPythonpath(), monitor);
     }
 
     /**
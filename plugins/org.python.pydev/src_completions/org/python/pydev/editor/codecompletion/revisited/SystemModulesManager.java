@@ -17,6 +17,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
@@ -37,6 +38,7 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModulesStore;
 import org.python.pydev.editor.codecompletion.revisited.modules.EmptyModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.PredefinedSourceModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -45,10 +47,8 @@ import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.nature.SystemPythonNature;
 import org.python.pydev.shared_core.cache.LRUCache;
-import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
 import org.python.pydev.shared_core.string.FastStringBuffer;
-import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
 
@@ -69,6 +69,17 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      */
     private InterpreterInfo info;
 
+    /**
+     * The discovery applied to the keys whose snapshot should be saved in the next save (the snapshot is only saved
+     * after the keys, so that it's never ahead of the saved keys).
+     */
+    private final AtomicReference<PythonPathDiscovery.Result> pendingDiscovery = new AtomicReference<PythonPathDiscovery.Result>();
+
+    /**
+     * Whether the keys are the ones from the saved snapshot of the last discovery.
+     */
+    private volatile boolean keysInSyncWithDiscoverySnapshot;
+
     public SystemModulesManager(InterpreterInfo info) {
         this.info = info;
     }
@@ -374,6 +385,9 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
                 "v1_sys_astdelta", readFromFileMethod,
                 toFileMethod);
         d.processDeltas(this); //process the current deltas (clears current deltas automatically and saves it when the processing is concluded)
+
+        //The snapshot is always saved after the keys (and removed before saving keys which don't match it).
+        keysInSyncWithDiscoverySnapshot = true;
     }
 
     public void save() {
@@ -382,23 +396,37 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
         if (d != null) {
             d.clearAll(); //When save is called, the deltas don't need to be used anymore.
         }
+        PythonPathDiscovery.Result discovery = pendingDiscovery.get();
+        if (discovery != null) {
+            //If the keys are saved but the snapshot isn't, the next discovery won't have a delta.
+            keysInSyncWithDiscoverySnapshot = false;
+            discovery.deleteSnapshot();
+        }
         this.saveToFile(workspaceMetadataFile);
 
+        //If a new discovery was applied in the meanwhile, its snapshot is only saved in the next save.
+        if (discovery != null && pendingDiscovery.compareAndSet(discovery, null)) {
+            keysInSyncWithDiscoverySnapshot = discovery.saveSnapshot();
+        }
     }
 
-    public File getIoDirectory() {
-        return info.getIoDirectory();
+    @Override
+    protected boolean isInSyncWithDiscoverySnapshot() {
+        return keysInSyncWithDiscoverySnapshot && pendingDiscovery.get() == null;
     }
 
-    /**
-     * @param keysFound
-     */
-    public void updateKeysAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound) {
-        synchronized (modulesKeysLock) {
-            modulesKeys.clear();
-            modulesKeys.putAll(keysFound);
+    @Override
+    protected void onDiscoveryApplied(PythonPathDiscovery.Result discovery, boolean changed) {
+        if (changed || pendingDiscovery.get() != null) {
+            pendingDiscovery.set(discovery);
+        } else if (isInSyncWithDiscoverySnapshot()) {
+            //The keys didn't change, so, the saved keys also match the new snapshot.
+            keysInSyncWithDiscoverySnapshot = discovery.saveSnapshot();
         }
-        this.save();
+    }
+
+    public File getIoDirectory() {
+        return info.getIoDirectory();
     }
 
     @Override
@@ -409,21 +437,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
             if (ioDirectory != null) {
                 File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
                 if (d.exists()) {
-                    File[] files = d.listFiles();
-                    if (files != null) {
-
-                        for (int i = 0; i < files.length; ++i) {
-                            File f = files[i];
-
-                            if (f.isFile()) {
-                                try {
-                                    FileUtils.deleteFile(f);
-                                } catch (IOException e) {
-                                    Log.log(e);
-                                }
-                            }
-                        }
-                    }
+                    CompiledModulesStore.clear(d);
                 }
             }
         } catch (Exception e) {
@@ -432,32 +446,30 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
         super.changePythonPath(pythonpath, project, monitor);
     }
 
+    @Override
+    protected File getDiscoverySnapshotFile() {
+        try {
+            File ioDirectory = getIoDirectory();
+            if (ioDirectory != null) {
+                return new File(ioDirectory, PythonPathDiscovery.SNAPSHOT_FILE_NAME);
+            }
+        } catch (Exception e) {
+            //i.e.: the plugin is not available (in tests).
+        }
+        return null;
+    }
+
     /**
      * Gets the directory where compiled modules should be saved.
      */
-    public File getCompiledModuleCacheFile(String name) {
+    public File getCompiledModulesCacheDir() {
         File ioDirectory = getIoDirectory();
         if (ioDirectory != null) {
             File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
             if (!d.exists()) {
                 d.mkdirs();
             }
-            int len = name.length();
-            String pre = "";
-            if (len >= 3) {
-                pre = name.substring(0, 3);
-
-            } else if (len >= 2) {
-                pre = name.substring(0, 2);
-
-            } else if (len >= 1) {
-                pre = name.substring(0, 1);
-
-            }
-
-            //Already separate dotted from non dotted (i.e.: top level) modules.
-            String post = name.contains(".") ? ".top" : ".inn";
-            return new File(d, StringUtils.join("", pre, "_", StringUtils.md5(name), post));
+            return d;
         }
         return null;
     }
@@ -11,27 +11,16 @@
  */
 package org.python.pydev.editor.codecompletion.revisited.modules;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jface.text.Document;
 import org.python.pydev.core.ExtensionHelper;
@@ -46,10 +35,7 @@ import org.python.pydev.core.ISystemModulesManager;
 import org.python.pydev.core.IToken;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.core.ObjectsPool;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
-import org.python.pydev.core.concurrency.IRunnableWithMonitor;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.editor.codecompletion.revisited.visitors.Definition;
@@ -191,26 +177,26 @@ public class CompiledModule extends AbstractModule {
     }
 
     /**
-     * @return the file to be used to write/read the cache.
+     * @return the store to be used to write/read the cache.
      */
-    private static File getCacheFile(String name, IModulesManager manager) {
+    private static CompiledModulesStore getStore(IModulesManager manager) {
         if (manager instanceof ISystemModulesManager) {
             ISystemModulesManager systemModulesManager = (ISystemModulesManager) manager;
-            return systemModulesManager.getCompiledModuleCacheFile(name);
+            return CompiledModulesStore.get(systemModulesManager.getCompiledModulesCacheDir());
         }
         return null;
     }
 
     /**
-     * Updates the file with the cache to have the given information.
+     * Updates the store with the cache to have the given information.
      */
     private static void updateCache(final String name, IModulesManager manager, final Tuple<File, IToken[]> info) {
         try {
             if (info != null && info.o2 != null && info.o2.length > 10) { //Don't cache anything less than 10 tokens.
-                File f = getCacheFile(name, manager);
+                CompiledModulesStore store = getStore(manager);
 
                 //Only cache modules that are in the system modules manager.
-                if (f == null && !(manager instanceof ISystemModulesManager)) {
+                if (store == null && !(manager instanceof ISystemModulesManager)) {
                     ISystemModulesManager systemModulesManager = manager.getSystemModulesManager();
                     manager = null; //i.e.: just making sure it won't be used later on...
 
@@ -218,62 +204,22 @@ public class CompiledModule extends AbstractModule {
                     //a project we don't cache it for now).
                     for (String part : new FullRepIterable(name)) {
                         if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                            f = getCacheFile(name, systemModulesManager);
+                            store = getStore(systemModulesManager);
                             break;
                         }
                         if (!part.contains(".")) {
                             part += ".__init__";
                             if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                                f = getCacheFile(name, systemModulesManager);
+                                store = getStore(systemModulesManager);
                                 break;
                             }
                         }
                     }
                 }
 
-                if (f != null) {
-                    final File cacheFile = f;
-                    IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
-
-                        @Override
-                        public void run() {
-                            try (OutputStream out = new FileOutputStream(cacheFile)) {
-                                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
-                                    try (BufferedOutputStream buf = new BufferedOutputStream(gzip)) {
-                                        try (ObjectOutputStream stream = new ObjectOutputStream(buf)) {
-                                            stream.writeObject(name);
-                                            stream.writeObject(info.o1);
-
-                                            IToken[] toks = info.o2;
-                                            int size = toks.length;
-                                            stream.writeInt(size);
-
-                                            //Write in 2 batches (leave the docstring in a separate batch as it's usually
-                                            //the big part of the info -- that way we can partially read it without reading
-                                            //the docstrings later on).
-                                            for (int i = 0; i < size; i++) {
-                                                IToken tok = toks[i];
-                                                stream.writeObject(tok.getRepresentation());
-                                                stream.writeInt(tok.getType());
-                                                stream.writeObject(tok.getArgs());
-                                                stream.writeObject(tok.getParentPackage());
-                                            }
-                                            for (int i = 0; i < size; i++) {
-                                                stream.writeObject(toks[i].getDocStr());
-                                            }
-                                        }
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.log(e);
-                            }
-                        }
-
-                        @Override
-                        public void setMonitor(IProgressMonitor monitor) {
-                        }
-                    };
-                    RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "Cache module: " + name);
+                if (store != null) {
+                    //Saved later on in a job.
+                    store.put(name, info.o1, info.o2);
                 }
             }
         } catch (Exception e) {
@@ -285,39 +231,12 @@ public class CompiledModule extends AbstractModule {
      * Gets cached information for the given name. Could be a dotted or non-dotted name.
      */
     private static Tuple<File, IToken[]> getCached(String name, IModulesManager manager) {
-        File f = getCacheFile(name, manager.getSystemModulesManager());
-
-        if (f != null && f.exists()) {
+        CompiledModulesStore store = getStore(manager.getSystemModulesManager());
+        if (store != null) {
             try {
-                IToken[] toks = null;
-                File file = null;
-                try (FileInputStream fin = new FileInputStream(f)) {
-                    try (InputStream in = new BufferedInputStream(new GZIPInputStream(fin))) {
-                        try (ObjectInputStream stream = new ObjectInputStream(in)) {
-                            ObjectsPool.ObjectsPoolMap map = new ObjectsPool.ObjectsPoolMap();
-                            @SuppressWarnings("unused")
-                            Object _name = stream.readObject(); //we already have the name set (so, it's only there for completeness). 
-                            file = (File) stream.readObject();
-                            int size = stream.readInt();
-
-                            toks = new IToken[size];
-                            for (int i = 0; i < size; i++) {
-                                //Note intern (we probably have many empty strings -- or the same for parentPackage)
-                                String rep = ObjectsPool.internLocal(map, (String) stream.readObject());
-                                int type = stream.readInt();
-                                String args = ObjectsPool.internLocal(map, (String) stream.readObject());
-                                String parentPackage = ObjectsPool.internLocal(map, (String) stream.readObject());
-                                toks[i] = new CompiledToken(rep, "", args, parentPackage, type);
-                            }
-                            for (int i = 0; i < size; i++) {
-                                toks[i].setDocStr(ObjectsPool.internLocal(map, (String) stream.readObject()));
-                            }
-                        }
-                    }
-                }
-                return new Tuple<File, IToken[]>(file, toks);
+                return store.get(name);
             } catch (Exception e) {
-                Log.log("Unable to read contents from: " + f, e); //Unable to read: just log it
+                Log.log("Unable to read cached contents for: " + name, e); //Unable to read: just log it
             }
         }
         return null;
@@ -327,9 +246,9 @@ public class CompiledModule extends AbstractModule {
             String act,
             String tokenToCompletion) throws Exception, MisconfigurationException, PythonNatureWithoutProjectException {
         IToken[] toks;
+        List<String> completePythonpath = getCompletePythonpath(manager.getModulesManager(), nature);
         AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
-        List<String[]> completions = shell.getImportCompletions(tokenToCompletion,
-                getCompletePythonpath(manager.getModulesManager(), nature)).o2;
+        List<String[]> completions = shell.getImportCompletions(tokenToCompletion, completePythonpath).o2;
 
         List<IToken> lst = new ArrayList<IToken>();
 
@@ -358,9 +277,9 @@ public class CompiledModule extends AbstractModule {
             Log.log(IStatus.INFO, ("Compiled modules: getting info for:" + name), null);
         }
         final IPythonNature nature = manager.getNature();
+        List<String> completePythonpath = getCompletePythonpath(manager, nature);
         AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
-        Tuple<String, List<String[]>> completions = shell.getImportCompletions(name,
-                getCompletePythonpath(manager, nature)); //default
+        Tuple<String, List<String[]>> completions = shell.getImportCompletions(name, completePythonpath); //default
 
         if (TRACE_COMPILED_MODULES) {
             Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
@@ -592,9 +511,10 @@ public class CompiledModule extends AbstractModule {
             return found;
         }
 
+        List<String> completePythonPath = nature.getAstManager().getModulesManager()
+                .getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager());
         AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
-        Tuple<String[], int[]> def = shell.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
-                .getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
+        Tuple<String[], int[]> def = shell.getLineCol(this.name, token, completePythonPath); //default
         if (def == null) {
             if (TRACE_COMPILED_MODULES) {
                 System.out.println("CompiledModule.findDefinition:" + token + " = empty");
@@ -0,0 +1,580 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.concurrency.IRunnableWithMonitor;
+import org.python.pydev.core.concurrency.RunnableAsJobsPool;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps the tokens of the compiled modules of an interpreter (gotten from the shell) in a single binary file
+ * (in the directory of the interpreter, so, it's related to the interpreter executable).
+ *
+ * The file is memory-mapped when loaded and the tokens of a module are only created when the module is requested
+ * (the docstrings are only read when actually requested in a token).
+ *
+ * Format (version 1):
+ *
+ * int magic, int version
+ * int stringsCount, strings (int length + utf-8 bytes)
+ * int docsCount, docs (int length + utf-8 bytes)
+ * int modulesCount, modules (int name, int file (-1 if None), long file stamp, int tokensCount,
+ *     tokens (int rep, int type, int args, int parentPackage, int doc))
+ *
+ * Where strings are indexes in the strings table and docs are indexes in the docs table.
+ *
+ * Each save writes a new file (with a new generation in the name) and the previous one is removed (when possible:
+ * a file which is still mapped may not be removed in some platforms).
+ */
+public final class CompiledModulesStore {
+
+    private static final int MAGIC = 0x50594D43;
+    private static final int VERSION = 1;
+
+    private static final String FILE_PREFIX = "compiled_modules_v1_";
+    private static final String FILE_SUFFIX = ".bin";
+
+    /**
+     * Suffixes of the files where each compiled module was cached previously (removed when found).
+     */
+    private static final String[] OLD_CACHE_SUFFIXES = new String[] { ".top", ".inn" };
+
+    private static final Map<File, CompiledModulesStore> stores = new HashMap<File, CompiledModulesStore>();
+
+    /**
+     * @param dir the directory where the compiled modules of some interpreter are cached.
+     * @return the store shared for the given directory (or null if the directory is null).
+     */
+    public static CompiledModulesStore get(File dir) {
+        if (dir == null) {
+            return null;
+        }
+        synchronized (stores) {
+            CompiledModulesStore store = stores.get(dir);
+            if (store == null) {
+                store = load(dir);
+                stores.put(dir, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Removes the contents cached in the given directory (i.e.: when the interpreter configuration changed).
+     */
+    public static void clear(File dir) {
+        if (dir == null) {
+            return;
+        }
+        synchronized (stores) {
+            CompiledModulesStore old = stores.remove(dir);
+            if (old != null) {
+                synchronized (old.lock) {
+                    old.disposed = true; //A save which is still scheduled must not write to the dir.
+                }
+            }
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            int notDeletedGeneration = -1;
+            for (File f : files) {
+                if (f.isFile() && !f.delete()) {
+                    int generation = getGeneration(f);
+                    if (generation < 0) {
+                        Log.log("Unable to delete: " + f);
+                    }
+                    notDeletedGeneration = Math.max(notDeletedGeneration, generation);
+                }
+            }
+            if (notDeletedGeneration >= 0) {
+                //Still mapped: write an empty store over it so that it's not used later on.
+                CompiledModulesStore store = new CompiledModulesStore(dir);
+                store.generation = notDeletedGeneration;
+                store.save();
+                stores.put(dir, store);
+            }
+        }
+    }
+
+    /**
+     * @return a new store with the contents saved in the given directory (not shared).
+     */
+    public static CompiledModulesStore load(File dir) {
+        CompiledModulesStore store = new CompiledModulesStore(dir);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return store;
+        }
+        File newest = null;
+        for (File f : files) {
+            int generation = getGeneration(f);
+            if (generation > store.generation) {
+                if (newest != null) {
+                    newest.delete(); //Older generation.
+                }
+                newest = f;
+                store.generation = generation;
+
+            } else if (generation >= 0) {
+                f.delete(); //Older generation.
+
+            } else {
+                String name = f.getName();
+                for (String suffix : OLD_CACHE_SUFFIXES) {
+                    if (name.endsWith(suffix)) {
+                        f.delete(); //Cache from a previous version.
+                        break;
+                    }
+                }
+            }
+        }
+        if (newest != null) {
+            try {
+                store.map(newest, store.generation);
+            } catch (Exception e) {
+                Log.log("Unable to read compiled modules from: " + newest, e);
+                store.clearMapped();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @return the generation of the given store file or -1 if it's not a store file.
+     */
+    private static int getGeneration(File f) {
+        String name = f.getName();
+        if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+            try {
+                return Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                //ignore
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A token whose docstring is only read from the store when requested.
+     */
+    private static final class StoredToken extends CompiledToken {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient CompiledModulesStore store;
+        private transient int docIndex;
+
+        private StoredToken(String rep, String args, String parentPackage, int type, CompiledModulesStore store,
+                int docIndex) {
+            super(rep, null, args, parentPackage, type);
+            this.doc = null;
+            this.store = store;
+            this.docIndex = docIndex;
+        }
+
+        @Override
+        public String getDocStr() {
+            String d = doc;
+            if (d == null) {
+                d = store.readDoc(docIndex);
+                doc = d;
+            }
+            return d;
+        }
+
+        /**
+         * Serialized as a regular token (the store is not serialized).
+         */
+        private Object writeReplace() {
+            return new CompiledToken(rep, getDocStr(), args, parentPackage, type);
+        }
+    }
+
+    private static final class Entry {
+
+        private final File file;
+        private final long stamp;
+        private final IToken[] tokens;
+
+        private Entry(File file, long stamp, IToken[] tokens) {
+            this.file = file;
+            this.stamp = stamp;
+            this.tokens = tokens;
+        }
+    }
+
+    private final File dir;
+
+    /**
+     * Guards all the fields below.
+     */
+    private final Object lock = new Object();
+
+    private int generation = -1;
+
+    /**
+     * The generation of the file currently mapped (-1 if none).
+     */
+    private int mappedGeneration = -1;
+
+    //The contents of the mapped file (buffer is null if there's no file).
+    private ByteBuffer buffer;
+    private int[] stringOffsets;
+    private String[] strings;
+    private int[] docOffsets;
+    private Map<String, Integer> moduleOffsets = new HashMap<String, Integer>();
+
+    /**
+     * Modules added after the file was mapped (they override the mapped ones).
+     */
+    private final Map<String, Entry> added = new HashMap<String, Entry>();
+
+    private boolean saveScheduled;
+
+    private boolean disposed;
+
+    /**
+     * Held during a whole save (write, map and removal of the old file): saves are run as jobs which may run
+     * concurrently.
+     */
+    private final Object saveLock = new Object();
+
+    private CompiledModulesStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Maps the given file (unless a newer generation is already mapped).
+     *
+     * @return whether the file was mapped.
+     */
+    private boolean map(File f, int fileGeneration) throws IOException {
+        ByteBuffer buf;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            FileChannel channel = raf.getChannel();
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int pos = 0;
+        if (buf.getInt(pos) != MAGIC || buf.getInt(pos + 4) != VERSION) {
+            throw new IOException("Unexpected header.");
+        }
+        pos += 8;
+
+        int stringsCount = buf.getInt(pos);
+        pos += 4;
+        int[] stringOffsets = new int[stringsCount];
+        for (int i = 0; i < stringsCount; i++) {
+            stringOffsets[i] = pos;
+            pos += 4 + buf.getInt(pos);
+        }
+
+        int docsCount = buf.getInt(pos);
+        pos += 4;
+        int[] docOffsets = new int[docsCount];
+        for (int i = 0; i < docsCount; i++) {
+            docOffsets[i] = pos;
+            pos += 4 + buf.getInt(pos);
+        }
+
+        synchronized (lock) {
+            if (fileGeneration <= mappedGeneration) {
+                return false;
+            }
+            this.mappedGeneration = fileGeneration;
+            this.buffer = buf;
+            this.stringOffsets = stringOffsets;
+            this.strings = new String[stringsCount];
+            this.docOffsets = docOffsets;
+            this.moduleOffsets = new HashMap<String, Integer>();
+
+            int modulesCount = buf.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < modulesCount; i++) {
+                moduleOffsets.put(readString(buf.getInt(pos)), pos);
+                int tokensCount = buf.getInt(pos + 16);
+                pos += 20 + (tokensCount * 20);
+            }
+        }
+        return true;
+    }
+
+    private void clearMapped() {
+        synchronized (lock) {
+            buffer = null;
+            mappedGeneration = -1;
+            stringOffsets = null;
+            strings = null;
+            docOffsets = null;
+            moduleOffsets = new HashMap<String, Integer>();
+        }
+    }
+
+    private static String readUtf8(ByteBuffer buf, int pos) {
+        int len = buf.getInt(pos);
+        byte[] bytes = new byte[len];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(pos + 4);
+        dup.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private String readString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        String s = strings[index];
+        if (s == null) {
+            s = readUtf8(buffer, stringOffsets[index]);
+            strings[index] = s; //Reused in all the tokens (so, the same instance is shared).
+        }
+        return s;
+    }
+
+    private String readDoc(int index) {
+        synchronized (lock) {
+            if (buffer == null || docOffsets == null || index >= docOffsets.length) {
+                return ""; //cleared in the meanwhile
+            }
+            return readUtf8(buffer, docOffsets[index]);
+        }
+    }
+
+    private static long getStamp(File file) {
+        return file == null ? 0 : file.lastModified();
+    }
+
+    /**
+     * @return the file and tokens of the given module (or null if it's not available or if its file changed).
+     */
+    public Tuple<File, IToken[]> get(String name) {
+        synchronized (lock) {
+            Entry entry = added.get(name);
+            if (entry == null) {
+                entry = readEntry(name, true);
+            }
+            if (entry == null || entry.stamp != getStamp(entry.file)) {
+                return null;
+            }
+            return new Tuple<File, IToken[]>(entry.file, entry.tokens);
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     *
+     * @param lazyDocs if true the docstrings are only read when requested.
+     */
+    private Entry readEntry(String name, boolean lazyDocs) {
+        Integer offset = moduleOffsets.get(name);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer buf = buffer;
+        int pos = offset;
+        String filePath = readString(buf.getInt(pos + 4));
+        long stamp = buf.getLong(pos + 8);
+        int tokensCount = buf.getInt(pos + 16);
+        pos += 20;
+
+        IToken[] tokens = new IToken[tokensCount];
+        for (int i = 0; i < tokensCount; i++) {
+            String rep = readString(buf.getInt(pos));
+            int type = buf.getInt(pos + 4);
+            String args = readString(buf.getInt(pos + 8));
+            String parentPackage = readString(buf.getInt(pos + 12));
+            int docIndex = buf.getInt(pos + 16);
+            pos += 20;
+            if (lazyDocs) {
+                tokens[i] = new StoredToken(rep, args, parentPackage, type, this, docIndex);
+            } else {
+                tokens[i] = new CompiledToken(rep, readUtf8(buf, docOffsets[docIndex]), args, parentPackage, type);
+            }
+        }
+        return new Entry(filePath == null ? null : new File(filePath), stamp, tokens);
+    }
+
+    /**
+     * Adds the tokens of some module (the store is saved later on in a job).
+     */
+    public void put(String name, File file, IToken[] tokens) {
+        synchronized (lock) {
+            added.put(name, new Entry(file, getStamp(file), tokens));
+            if (saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
+
+            @Override
+            public void run() {
+                save();
+            }
+
+            @Override
+            public void setMonitor(IProgressMonitor monitor) {
+            }
+        };
+        RunnableAsJobsPool.getSingleton().scheduleToRun(runnable, "Save compiled modules cache");
+    }
+
+    /**
+     * Writes all the modules to a new file (and maps it).
+     */
+    /*default*/void save() {
+        synchronized (saveLock) {
+            Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+            Map<String, Entry> savedAdded;
+            int newGeneration;
+            int previousGeneration;
+            synchronized (lock) {
+                saveScheduled = false;
+                if (disposed) {
+                    return;
+                }
+                for (String name : moduleOffsets.keySet()) {
+                    if (!added.containsKey(name)) {
+                        entries.put(name, readEntry(name, false));
+                    }
+                }
+                entries.putAll(added);
+                savedAdded = new HashMap<String, Entry>(added);
+                previousGeneration = mappedGeneration;
+                generation++;
+                newGeneration = generation;
+            }
+
+            File newFile = new File(dir, FILE_PREFIX + newGeneration + FILE_SUFFIX);
+            try {
+                if (!dir.exists()) {
+                    dir.mkdirs();
+                }
+                write(newFile, entries);
+                if (!map(newFile, newGeneration)) {
+                    newFile.delete(); //A newer generation is already mapped.
+                    return;
+                }
+            } catch (Exception e) {
+                Log.log("Unable to save compiled modules to: " + newFile, e);
+                newFile.delete();
+                return;
+            }
+
+            synchronized (lock) {
+                //Entries added while saving remain (they'll be saved in the next save).
+                for (Map.Entry<String, Entry> entry : savedAdded.entrySet()) {
+                    if (added.get(entry.getKey()) == entry.getValue()) {
+                        added.remove(entry.getKey());
+                    }
+                }
+            }
+            //May fail if it's still mapped (in this case it'll be removed in the next load).
+            new File(dir, FILE_PREFIX + (newGeneration - 1) + FILE_SUFFIX).delete();
+            if (previousGeneration >= 0 && previousGeneration != newGeneration - 1) {
+                new File(dir, FILE_PREFIX + previousGeneration + FILE_SUFFIX).delete();
+            }
+        }
+    }
+
+    private static void write(File f, Map<String, Entry> entries) throws IOException {
+        Map<String, Integer> stringIndexes = new LinkedHashMap<String, Integer>();
+        List<String> docs = new ArrayList<String>();
+        Map<String, Integer> docIndexes = new HashMap<String, Integer>();
+
+        //First pass: gather the strings.
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            addString(stringIndexes, entry.getKey());
+            Entry e = entry.getValue();
+            if (e.file != null) {
+                addString(stringIndexes, e.file.getPath());
+            }
+            for (IToken token : e.tokens) {
+                addString(stringIndexes, token.getRepresentation());
+                addString(stringIndexes, token.getArgs());
+                addString(stringIndexes, token.getParentPackage());
+                String doc = token.getDocStr();
+                if (doc == null) {
+                    doc = "";
+                }
+                if (!docIndexes.containsKey(doc)) {
+                    docIndexes.put(doc, docs.size());
+                    docs.add(doc);
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(stringIndexes.size());
+            for (String s : stringIndexes.keySet()) {
+                writeUtf8(out, s);
+            }
+
+            out.writeInt(docs.size());
+            for (String s : docs) {
+                writeUtf8(out, s);
+            }
+
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry e = entry.getValue();
+                out.writeInt(stringIndexes.get(entry.getKey()));
+                out.writeInt(e.file != null ? stringIndexes.get(e.file.getPath()) : -1);
+                out.writeLong(e.stamp);
+                out.writeInt(e.tokens.length);
+                for (IToken token : e.tokens) {
+                    out.writeInt(getIndex(stringIndexes, token.getRepresentation()));
+                    out.writeInt(token.getType());
+                    out.writeInt(getIndex(stringIndexes, token.getArgs()));
+                    out.writeInt(getIndex(stringIndexes, token.getParentPackage()));
+                    String doc = token.getDocStr();
+                    out.writeInt(docIndexes.get(doc == null ? "" : doc));
+                }
+            }
+        }
+    }
+
+    private static void addString(Map<String, Integer> stringIndexes, String s) {
+        if (s != null && !stringIndexes.containsKey(s)) {
+            stringIndexes.put(s, stringIndexes.size());
+        }
+    }
+
+    private static int getIndex(Map<String, Integer> stringIndexes, String s) {
+        return s == null ? -1 : stringIndexes.get(s);
+    }
+
+    private static void writeUtf8(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -21,6 +21,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -49,7 +50,8 @@ import org.python.pydev.shared_core.utils.Timer;
  * This is the shell that 'talks' to the python / jython process (it is intended to be subclassed so that
  * we know how to deal with each).
  *
- * Its methods are synched to prevent concurrent access.
+ * Its methods are synched to prevent concurrent access (requests from threads other than the main thread are
+ * distributed among a pool of shells for each interpreter -- see ShellsContainer).
  *
  * @author fabioz
  *
@@ -60,10 +62,20 @@ public abstract class AbstractShell {
 
     private static final int MAIN_THREAD_SHELL = 1;
 
-    private static final int OTHER_THREADS_SHELL = 2;
+    /*default*/static final int OTHER_THREADS_SHELL = 2;
+
+    /**
+     * Max number of shells for threads other than the main thread (their ids are OTHER_THREADS_SHELL + i).
+     */
+    /*default*/static final int MAX_OTHER_THREADS_SHELLS = 8;
 
     public static int[] getAllShellIds() {
-        return new int[] { MAIN_THREAD_SHELL, OTHER_THREADS_SHELL };
+        int[] ret = new int[MAX_OTHER_THREADS_SHELLS + 1];
+        ret[0] = MAIN_THREAD_SHELL;
+        for (int i = 0; i < MAX_OTHER_THREADS_SHELLS; i++) {
+            ret[i + 1] = OTHER_THREADS_SHELL + i;
+        }
+        return ret;
     }
 
     public static final int getShellId() {
@@ -100,6 +112,17 @@ public abstract class AbstractShell {
      */
     private final Semaphore semaphore = new Semaphore(1);
 
+    /**
+     * Number of requests using or waiting to use this shell.
+     */
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    /**
+     * Number of requests which reserved this shell (in the pool) but still didn't acquire it (they're also counted
+     * in the pending requests).
+     */
+    private final AtomicInteger reservations = new AtomicInteger();
+
     private final Object ioLock = new Object();
 
     private static void dbg(String string, int priority) {
@@ -662,9 +685,63 @@ public abstract class AbstractShell {
         }
     }
 
+    /**
+     * @return the number of requests using or waiting to use this shell.
+     */
+    /*default*/int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    /**
+     * Reserves the shell for a request which will be done later on. Must be called with the shells lock held when a
+     * shell is chosen from the pool (so that other threads already see it as busy). The reservation is released
+     * when the handle gotten from acquire() is closed.
+     */
+    /*default*/void reserve() {
+        reservations.incrementAndGet();
+        pendingRequests.incrementAndGet();
+    }
+
+    /**
+     * @return true if a reservation was consumed (in which case it's already counted in the pending requests).
+     */
+    private boolean consumeReservation() {
+        while (true) {
+            int current = reservations.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (reservations.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the shell is connected and its process is still alive.
+     */
+    /*default*/boolean isHealthy() {
+        if (!isConnected || inStart) {
+            return false;
+        }
+        ProcessCreationInfo p = process;
+        if (p == null) {
+            return false;
+        }
+        try {
+            p.exitValue();
+            return false; //the process exited
+        } catch (IllegalThreadStateException e) {
+            return true; //still running
+        }
+    }
+
     @SuppressWarnings("unused")
     private AutoCloseable acquire(String msg) {
         final Timer timer = new Timer();
+        if (!consumeReservation()) {
+            pendingRequests.incrementAndGet();
+        }
         semaphore.acquire();
         if (DEBUG_SHELL >= 1) {
             String name = Thread.currentThread().getName();
@@ -680,6 +757,7 @@ public abstract class AbstractShell {
                     timer.printDiff("-- Time to execute: " + s);
                 }
                 semaphore.release();
+                pendingRequests.decrementAndGet();
             }
         };
     }
@@ -749,9 +827,8 @@ public abstract class AbstractShell {
             throws Exception {
         FastStringBuffer read = null;
 
-        str = URLEncoder.encode(str, ENCODING_UTF_8);
-
         try (AutoCloseable permit = acquire(StringUtils.join("", "getImportCompletions: ", str))) {
+            str = URLEncoder.encode(str, ENCODING_UTF_8);
             internalChangePythonPath(pythonpath);
             read = this.writeAndGetResults("@@IMPORTS:", str, "\nEND@@");
         }
@@ -768,10 +845,9 @@ public abstract class AbstractShell {
             throws Exception {
         FastStringBuffer read = null;
 
-        String str = moduleName + "." + token;
-        str = URLEncoder.encode(str, ENCODING_UTF_8);
-
         try (AutoCloseable permit = acquire("getLineCol")) {
+            String str = moduleName + "." + token;
+            str = URLEncoder.encode(str, ENCODING_UTF_8);
             internalChangePythonPath(pythonpath);
             read = this.writeAndGetResults("@@SEARCH", str, "\nEND@@");
         }
@@ -802,15 +878,15 @@ public abstract class AbstractShell {
             List<String> pythonpath) throws Exception {
 
         FastStringBuffer read = null;
-        String str = StringUtils.join(
-                "|",
-                new String[] { String.valueOf(ps.getCursorLine()), String.valueOf(ps.getCursorColumn()),
-                        charset, FileUtils.getFileAbsolutePath(editorFile),
-                        StringUtils.replaceNewLines(ps.getDoc().get(), "\n") });
-
-        str = URLEncoder.encode(str, ENCODING_UTF_8);
 
         try (AutoCloseable permit = acquire("getJediCompletions")) {
+            String str = StringUtils.join(
+                    "|",
+                    new String[] { String.valueOf(ps.getCursorLine()), String.valueOf(ps.getCursorColumn()),
+                            charset, FileUtils.getFileAbsolutePath(editorFile),
+                            StringUtils.replaceNewLines(ps.getDoc().get(), "\n") });
+
+            str = URLEncoder.encode(str, ENCODING_UTF_8);
             internalChangePythonPath(pythonpath);
             read = this.writeAndGetResults("@@MSG_JEDI:", str, "\nEND@@");
         }
@@ -2,8 +2,10 @@ package org.python.pydev.editor.codecompletion.shell;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
@@ -13,9 +15,11 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
 import org.python.pydev.editor.codecompletion.revisited.ModulesManager;
 import org.python.pydev.logging.DebugSettings;
 import org.python.pydev.plugin.PydevPlugin;
+import org.python.pydev.shared_core.callbacks.ICallback;
 
 public class ShellsContainer {
 
@@ -32,6 +36,17 @@ public class ShellsContainer {
      */
     private static Map<String, Map<Integer, AbstractShell>> shells = new HashMap<String, Map<Integer, AbstractShell>>();
 
+    /**
+     * Shells from the pool of the other threads which are being started (outside of the shells lock). Entries
+     * are the interpreter executable + "|" + the shell id (access synchronized on shells).
+     */
+    private static Set<String> startingShells = new HashSet<String>();
+
+    /**
+     * Meant to be used in tests! If set, it's used to create the shells (receives the interpreter type).
+     */
+    /*default*/static volatile ICallback<AbstractShell, Integer> shellCreatorForTests;
+
     /**
      * simple stop of a shell (it may be later restarted)
      */
@@ -162,9 +177,144 @@ public class ShellsContainer {
 
     public static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
             JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
+        if (id == AbstractShell.OTHER_THREADS_SHELL) {
+            return getPooledServerShell(nature.getProjectInterpreter(), nature.getInterpreterType());
+        }
         return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
     }
 
+    /**
+     * Gets a shell for a thread other than the main thread: an idle shell from the pool of the interpreter is
+     * preferred, then a new shell (if the pool isn't full yet) and then the shell with less pending requests
+     * (so, a slow request -- such as a heavy import -- doesn't block requests in other threads).
+     *
+     * Shells whose process died are removed from the pool (and are restarted when needed).
+     *
+     * The returned shell is reserved (i.e.: counted as having a pending request) while the shells lock is held, so,
+     * concurrent callers don't all pick the same idle shell. The reservation is released when the handle acquired
+     * for the request is closed.
+     */
+    private static AbstractShell getPooledServerShell(IInterpreterInfo interpreter, int relatedTo)
+            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
+        return getPooledServerShell(interpreter, relatedTo, PyCodeCompletionPreferencesPage.getShellsPoolSize());
+    }
+
+    /*default*/static AbstractShell getPooledServerShell(IInterpreterInfo interpreter, int relatedTo, int poolSize)
+            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
+        poolSize = Math.min(AbstractShell.MAX_OTHER_THREADS_SHELLS, poolSize);
+        String executable = interpreter.getExecutableOrJar();
+        AbstractShell newShell;
+        int newShellId;
+        synchronized (shells) {
+            while (true) {
+                Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
+                AbstractShell best = null;
+                int emptyId = -1;
+                for (int i = 0; i < poolSize; i++) {
+                    Integer id = AbstractShell.OTHER_THREADS_SHELL + i;
+                    AbstractShell shell = typeToShell.get(id);
+                    if (shell != null && shell.getPendingRequests() == 0 && !shell.isHealthy()) {
+                        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+                            Log.toLogFile("Removing shell which is not alive: " + id, AbstractShell.class);
+                        }
+                        shell.endIt();
+                        typeToShell.remove(id);
+                        shell = null;
+                    }
+                    if (shell == null) {
+                        if (emptyId == -1 && !startingShells.contains(executable + "|" + id)) {
+                            emptyId = id;
+                        }
+                        continue;
+                    }
+                    if (shell.getPendingRequests() == 0) {
+                        shell.reserve();
+                        return shell; //idle
+                    }
+                    if (best == null || shell.getPendingRequests() < best.getPendingRequests()) {
+                        best = shell;
+                    }
+                }
+
+                if (emptyId != -1) {
+                    if (best == null) {
+                        //No shell available: start it with the lock held (so that others wait for it).
+                        AbstractShell shell = getServerShell(interpreter, relatedTo, emptyId);
+                        shell.reserve();
+                        return shell;
+                    }
+                    //Start a new shell for this request (others keep on using the shells already available).
+                    newShell = createShell(relatedTo);
+                    newShellId = emptyId;
+                    startingShells.add(executable + "|" + newShellId);
+                    break;
+                }
+                if (best != null) {
+                    best.reserve();
+                    return best;
+                }
+                //All the shells are still being started: wait for one of them.
+                try {
+                    shells.wait();
+                } catch (InterruptedException e) {
+                    //ignore
+                }
+            }
+        }
+
+        boolean started = false;
+        AbstractShell existing = null;
+        try {
+            newShell.startIt(interpreter);
+            started = true;
+        } finally {
+            synchronized (shells) {
+                startingShells.remove(executable + "|" + newShellId);
+                if (started && !AbstractShell.finishedForGood) {
+                    //Check again: the state may have changed while the shell was started without the lock.
+                    Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
+                    existing = typeToShell.get(newShellId);
+                    if (existing == null) {
+                        typeToShell.put(newShellId, newShell);
+                        newShell.reserve();
+                    } else {
+                        existing.reserve();
+                    }
+                }
+                shells.notifyAll();
+            }
+        }
+        if (AbstractShell.finishedForGood) {
+            //The shells were shutdown while this one was being started.
+            newShell.shutdown();
+            throw new RuntimeException("Shells are already finished for good, so, the started shell was stopped.");
+        }
+        if (existing != null) {
+            newShell.endIt();
+            return existing;
+        }
+        return newShell;
+    }
+
+    private static AbstractShell createShell(int relatedTo) throws IOException, CoreException {
+        ICallback<AbstractShell, Integer> creator = shellCreatorForTests;
+        if (creator != null) {
+            return creator.call(relatedTo);
+        }
+        if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
+            return new PythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
+            return new JythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
+            return new IronpythonShell();
+
+        } else {
+            throw new RuntimeException("unknown related id");
+        }
+    }
+
     /**
      * @param interpreter the interpreter that should create the shell
      *
@@ -213,18 +363,7 @@ public class ShellsContainer {
                 if (DebugSettings.DEBUG_CODE_COMPLETION) {
                     Log.toLogFile("pythonShell == null", AbstractShell.class);
                 }
-                if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
-                    pythonShell = new PythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
-                    pythonShell = new JythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
-                    pythonShell = new IronpythonShell();
-
-                } else {
-                    throw new RuntimeException("unknown related id");
-                }
+                pythonShell = createShell(relatedTo);
                 if (DebugSettings.DEBUG_CODE_COMPLETION) {
                     Log.toLogFile("pythonShell.startIt()", AbstractShell.class);
                     Log.addLogLevel();
@@ -25,7 +25,7 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.ISystemModulesManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.TestDependent;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.concurrency.RunnableAsJobsPool;
 import org.python.pydev.core.structure.CompletionRecursionException;
 import org.python.pydev.editor.codecompletion.revisited.AbstractASTManager;
 import org.python.pydev.editor.codecompletion.revisited.CodeCompletionTestsBase;
@@ -33,6 +33,7 @@ import org.python.pydev.editor.codecompletion.revisited.CompletionCache;
 import org.python.pydev.editor.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModulesStore;
 import org.python.pydev.editor.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.editor.codecompletion.shell.AbstractShell;
 import org.python.pydev.editor.codecompletion.shell.PythonShell;
@@ -599,9 +600,9 @@ public class PythonCompletionWithBuiltinsTest extends CodeCompletionTestsBase {
         assertTrue(module instanceof CompiledModule);
         ISystemModulesManager systemModulesManager = nature.getAstManager().getModulesManager()
                 .getSystemModulesManager();
-        RunnableAsJobsPoolThread.getSingleton().waitToFinishCurrent();
-        File file = systemModulesManager.getCompiledModuleCacheFile(module.getName());
-        assertTrue(file.exists());
+        RunnableAsJobsPool.getSingleton().waitToFinishCurrent();
+        File dir = systemModulesManager.getCompiledModulesCacheDir();
+        assertNotNull(CompiledModulesStore.load(dir).get(module.getName()));
     }
 
     public void testAssignToFuncCompletion() throws Exception {
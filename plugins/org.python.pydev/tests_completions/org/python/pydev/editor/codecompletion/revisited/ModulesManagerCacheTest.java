@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
+
+public class ModulesManagerCacheTest extends TestCase {
+
+    private static final int SHARDS = 16;
+
+    /**
+     * Weight given by the cache to an EmptyModule.
+     */
+    private static final int EMPTY_WEIGHT = 256;
+
+    private ProjectModulesManager manager;
+    private File file;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ModulesManagerCacheTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        manager = new ProjectModulesManager();
+        file = File.createTempFile("modules_manager_cache_test", ".py");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Note: the keys aren't added to the manager (so, getObj() won't create a module if it's not in the cache).
+     */
+    private List<ModulesKey> createKeysInShard(ModulesManagerCache cache, int shard, int count) {
+        List<ModulesKey> ret = new ArrayList<ModulesKey>();
+        for (int i = 0; ret.size() < count; i++) {
+            ModulesKey key = new ModulesKey("shard" + shard + "_mod" + i, null);
+            if (cache.getShardIndex(key, manager) == shard) {
+                ret.add(key);
+            }
+        }
+        return ret;
+    }
+
+    private void addEmpty(ModulesManagerCache cache, ModulesKey key) {
+        cache.add(key, AbstractModule.createEmptyModule(key), manager);
+    }
+
+    private boolean isCached(ModulesManagerCache cache, ModulesKey key) {
+        return cache.getObj(key, manager) != null;
+    }
+
+    public void testEvictionByWeight() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(SHARDS * 4 * EMPTY_WEIGHT);
+        List<ModulesKey> keys = createKeysInShard(cache, 0, 6);
+        for (int i = 0; i < 4; i++) {
+            addEmpty(cache, keys.get(i));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(4 * EMPTY_WEIGHT, cache.getWeight());
+        assertEquals(0, cache.getEvictions());
+
+        //Access the first so that the second is the least recently used.
+        assertTrue(isCached(cache, keys.get(0)));
+        addEmpty(cache, keys.get(4));
+        assertEquals(4, cache.size());
+        assertEquals(4 * EMPTY_WEIGHT, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+        assertFalse(isCached(cache, keys.get(1)));
+        assertTrue(isCached(cache, keys.get(0)));
+        assertTrue(isCached(cache, keys.get(4)));
+
+        //A module heavier than the shard bound evicts all the others (but is kept itself).
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[100]);
+        } finally {
+            stream.close();
+        }
+        ModulesKey heavyKey = keys.get(5);
+        SourceModule heavy = new SourceModule(heavyKey.name, file, null, null);
+        cache.add(heavyKey, heavy, manager);
+        assertEquals(1, cache.size());
+        assertEquals(100 * 20, cache.getWeight());
+        assertEquals(5, cache.getEvictions());
+        assertSame(heavy, cache.getObj(heavyKey, manager));
+
+        //And is evicted when something else is added to the shard.
+        addEmpty(cache, keys.get(1));
+        assertEquals(1, cache.size());
+        assertEquals(EMPTY_WEIGHT, cache.getWeight());
+        assertFalse(isCached(cache, heavyKey));
+
+        //Re-adding a module replaces its weight.
+        addEmpty(cache, keys.get(1));
+        assertEquals(EMPTY_WEIGHT, cache.getWeight());
+        cache.remove(keys.get(1), manager);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testPerShardBounds() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(SHARDS * 2 * EMPTY_WEIGHT);
+        for (int i = 0; i < 1000; i++) {
+            addEmpty(cache, new ModulesKey("mod" + i, null));
+        }
+        assertTrue(cache.getMaxShardWeight() <= 2 * EMPTY_WEIGHT);
+        assertTrue(cache.size() <= SHARDS * 2);
+        assertEquals(cache.size() * EMPTY_WEIGHT, cache.getWeight());
+        assertEquals(1000 - cache.size(), cache.getEvictions());
+
+        //Adding to a shard doesn't evict the modules from the other shards.
+        cache.clear();
+        List<ModulesKey> shard0 = createKeysInShard(cache, 0, 2);
+        for (ModulesKey key : shard0) {
+            addEmpty(cache, key);
+        }
+        for (ModulesKey key : createKeysInShard(cache, 1, 10)) {
+            addEmpty(cache, key);
+        }
+        assertEquals(4, cache.size());
+        for (ModulesKey key : shard0) {
+            assertTrue(isCached(cache, key));
+        }
+    }
+
+    public void testConcurrentGetPut() throws Exception {
+        final ModulesManagerCache cache = new ModulesManagerCache(SHARDS * 8 * EMPTY_WEIGHT);
+        final List<ModulesKey> keys = new ArrayList<ModulesKey>();
+        for (int i = 0; i < 300; i++) {
+            ModulesKey key = new ModulesKey("mod" + i, null);
+            manager.modulesKeys.put(key, key);
+            keys.add(key);
+        }
+
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final AtomicInteger gets = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final Random random = new Random(i);
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20000; j++) {
+                            ModulesKey key = keys.get(random.nextInt(keys.size()));
+                            switch (random.nextInt(4)) {
+                                case 0:
+                                    addEmpty(cache, key);
+                                    break;
+
+                                case 1:
+                                    cache.remove(key, manager);
+                                    break;
+
+                                default:
+                                    gets.incrementAndGet();
+                                    //The key is in the manager: a module must always be returned.
+                                    AbstractModule module = cache.getObj(key, manager);
+                                    assertNotNull(module);
+                                    assertEquals(key.name, module.getName());
+                                    break;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), errors);
+        assertEquals(gets.get(), cache.getHits() + cache.getMisses());
+        assertTrue(cache.getMaxShardWeight() <= 8 * EMPTY_WEIGHT);
+        assertEquals(cache.size() * EMPTY_WEIGHT, cache.getWeight());
+    }
+}
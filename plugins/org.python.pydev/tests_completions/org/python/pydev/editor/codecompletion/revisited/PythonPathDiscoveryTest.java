@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.TestDependent;
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class PythonPathDiscoveryTest extends TestCase {
+
+    private File baseDir;
+    private File root;
+    private File snapshotFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = new File(TestDependent.TEST_PYDEV_PLUGIN_LOC, "data_temporary_for_testing");
+        FileUtils.deleteDirectoryTree(baseDir);
+        root = new File(baseDir, "root");
+        root.mkdirs();
+        snapshotFile = new File(baseDir, PythonPathDiscovery.SNAPSHOT_FILE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private void createFile(String relative) {
+        File f = new File(root, relative);
+        f.getParentFile().mkdirs();
+        FileUtils.writeStrToFile("", f);
+    }
+
+    /**
+     * Makes sure that the change is noticed even if the file system has a coarse modification time.
+     */
+    private void touchDir(String relative) {
+        File dir = relative.length() == 0 ? root : new File(root, relative);
+        dir.setLastModified(dir.lastModified() + 10000);
+    }
+
+    private PythonPathDiscovery.Result discoverWithoutSaving() {
+        List<String> pythonpath = new ArrayList<String>();
+        pythonpath.add(FileUtils.getFileAbsolutePath(root));
+        return new PythonPathDiscovery(snapshotFile).discover(pythonpath, new NullProgressMonitor());
+    }
+
+    private PythonPathDiscovery.Result discover() {
+        PythonPathDiscovery.Result result = discoverWithoutSaving();
+        if (snapshotFile != null) {
+            assertTrue(result.saveSnapshot());
+        }
+        return result;
+    }
+
+    private static Set<String> getNames(List<ModulesKey> keys) {
+        Set<String> ret = new HashSet<String>();
+        for (ModulesKey key : keys) {
+            ret.add(key.name);
+        }
+        return ret;
+    }
+
+    public void testDiscovery() throws Exception {
+        createFile("mod1.py");
+        createFile("pack/__init__.py");
+        createFile("pack/mod2.py");
+        createFile("pack/sub/__init__.py");
+        createFile("pack/sub/mod3.py");
+        createFile("notpack/mod4.py");
+        createFile("invalid-name.py");
+
+        PythonPathDiscovery.Result result = discover();
+        assertFalse(result.hadPreviousSnapshot);
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "pack.__init__", "pack.mod2", "pack.sub.__init__",
+                "pack.sub.mod3")), new HashSet<String>(result.modulesFound.regularModules.values()));
+        assertEquals(5, result.addedKeys.size());
+        assertEquals(0, result.removedKeys.size());
+        assertTrue(snapshotFile.exists());
+
+        //Nothing changed.
+        result = discover();
+        assertTrue(result.hadPreviousSnapshot);
+        assertEquals(5, result.modulesFound.regularModules.size());
+        assertEquals(0, result.addedKeys.size());
+        assertEquals(0, result.removedKeys.size());
+        assertEquals(5, result.getKeys(new NullProgressMonitor()).size());
+
+        //Add/remove modules (and make a folder a package).
+        createFile("pack/sub/mod5.py");
+        touchDir("pack/sub");
+        new File(root, "pack/mod2.py").delete();
+        touchDir("pack");
+        createFile("notpack/__init__.py");
+        touchDir("notpack");
+
+        result = discover();
+        assertTrue(result.hadPreviousSnapshot);
+        assertEquals(new HashSet<String>(Arrays.asList("pack.sub.mod5", "notpack.__init__", "notpack.mod4")),
+                getNames(result.addedKeys));
+        assertEquals(new HashSet<String>(Arrays.asList("pack.mod2")), getNames(result.removedKeys));
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "pack.__init__", "pack.sub.__init__",
+                "pack.sub.mod3", "pack.sub.mod5", "notpack.__init__", "notpack.mod4")), new HashSet<String>(
+                result.modulesFound.regularModules.values()));
+    }
+
+    public void testModuleInAnotherFile() throws Exception {
+        createFile("mod1.py");
+        discover();
+
+        //Same name, but another file: reported as removed and added.
+        new File(root, "mod1.py").delete();
+        createFile("mod1.pyw");
+        touchDir("");
+        PythonPathDiscovery.Result result = discover();
+        assertEquals(1, result.addedKeys.size());
+        assertEquals(new File(root, "mod1.pyw"), result.addedKeys.get(0).file);
+        assertEquals(1, result.removedKeys.size());
+        assertEquals(new File(root, "mod1.py"), result.removedKeys.get(0).file);
+    }
+
+    public void testSnapshotOnlySavedWhenRequested() throws Exception {
+        createFile("mod1.py");
+        PythonPathDiscovery.Result result = discoverWithoutSaving();
+        assertFalse(snapshotFile.exists());
+        assertEquals(1, result.addedKeys.size());
+
+        discover();
+        createFile("mod2.py");
+        touchDir("");
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), getNames(discoverWithoutSaving().addedKeys));
+
+        //The previous one wasn't saved: the delta is still computed from the same snapshot.
+        result = discoverWithoutSaving();
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), getNames(result.addedKeys));
+
+        result.deleteSnapshot();
+        assertFalse(snapshotFile.exists());
+        assertFalse(discoverWithoutSaving().hadPreviousSnapshot);
+    }
+
+    public void testDiscoveryWithoutSnapshot() throws Exception {
+        createFile("mod1.py");
+        snapshotFile = null;
+
+        PythonPathDiscovery.Result result = discover();
+        assertFalse(result.hadPreviousSnapshot);
+        assertEquals(1, result.modulesFound.regularModules.size());
+        assertNull(result.addedKeys);
+        assertFalse(result.saveSnapshot());
+        assertEquals(1, result.getKeys(new NullProgressMonitor()).size());
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.IToken;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class CompiledModulesStoreTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        baseDir = new File(FileUtils.getFileAbsolutePath(new File("compiledmodulesstore.temporary_dir")));
+        try {
+            FileUtils.deleteDirectoryTree(baseDir);
+        } catch (Exception e) {
+            //ignore
+        }
+        baseDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtils.deleteDirectoryTree(baseDir);
+        } catch (Exception e) {
+            //ignore
+        }
+    }
+
+    private static IToken[] createTokens(String parentPackage, int count) {
+        IToken[] tokens = new IToken[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = new CompiledToken("tok" + i, "doc" + (i % 2), i % 2 == 0 ? "(a, b)" : "", parentPackage,
+                    IToken.TYPE_FUNCTION);
+        }
+        return tokens;
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        CompiledModulesStore store = CompiledModulesStore.load(baseDir);
+        assertNull(store.get("mod1"));
+
+        store.put("mod1", null, createTokens("mod1", 3));
+        store.put("mod2", null, createTokens("mod2", 2));
+        store.save();
+
+        CompiledModulesStore loaded = CompiledModulesStore.load(baseDir);
+        Tuple<File, IToken[]> info = loaded.get("mod1");
+        assertNull(info.o1);
+        assertEquals(3, info.o2.length);
+        IToken tok = info.o2[2];
+        assertEquals("tok2", tok.getRepresentation());
+        assertEquals("(a, b)", tok.getArgs());
+        assertEquals("mod1", tok.getParentPackage());
+        assertEquals(IToken.TYPE_FUNCTION, tok.getType());
+        assertEquals("doc0", tok.getDocStr());
+        assertEquals("doc1", info.o2[1].getDocStr());
+
+        //Strings are shared among the tokens of the store.
+        assertSame(info.o2[0].getParentPackage(), info.o2[1].getParentPackage());
+
+        //Adding to a loaded store keeps the previous modules.
+        loaded.put("mod3", null, createTokens("mod3", 1));
+        loaded.save();
+        loaded = CompiledModulesStore.load(baseDir);
+        assertEquals(3, loaded.get("mod1").o2.length);
+        assertEquals(2, loaded.get("mod2").o2.length);
+        assertEquals(1, loaded.get("mod3").o2.length);
+    }
+
+    public void testFileChanged() throws Exception {
+        File file = new File(baseDir, "mod.pyd");
+        FileUtils.writeStrToFile("contents", file);
+        file.setLastModified(10000);
+
+        CompiledModulesStore store = CompiledModulesStore.load(baseDir);
+        store.put("mod", file, createTokens("mod", 1));
+        store.save();
+
+        CompiledModulesStore loaded = CompiledModulesStore.load(baseDir);
+        assertEquals(file, loaded.get("mod").o1);
+
+        file.setLastModified(20000);
+        assertNull(loaded.get("mod"));
+    }
+
+    public void testClear() throws Exception {
+        File oldCache = new File(baseDir, "os_123.inn");
+        FileUtils.writeStrToFile("contents", oldCache);
+
+        CompiledModulesStore store = CompiledModulesStore.load(baseDir);
+        assertFalse(oldCache.exists());
+        store.put("mod1", null, createTokens("mod1", 1));
+        store.save();
+
+        CompiledModulesStore.clear(baseDir);
+        assertNull(CompiledModulesStore.load(baseDir).get("mod1"));
+    }
+
+    public void testConcurrentSaves() throws Exception {
+        final CompiledModulesStore store = CompiledModulesStore.load(baseDir);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final String name = "mod" + i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        store.put(name, null, createTokens(name, j + 1));
+                        store.save();
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        //The last save must have the last version of all the modules (an older generation may not be mapped after it).
+        for (int i = 0; i < 8; i++) {
+            assertEquals(10, store.get("mod" + i).o2.length);
+        }
+        CompiledModulesStore loaded = CompiledModulesStore.load(baseDir);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(10, loaded.get("mod" + i).o2.length);
+        }
+    }
+}
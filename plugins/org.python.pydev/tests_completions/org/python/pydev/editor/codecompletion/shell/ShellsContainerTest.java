@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
+
+public class ShellsContainerTest extends TestCase {
+
+    /**
+     * A shell which doesn't start any process.
+     */
+    private static final class FakeShell extends AbstractShell {
+
+        private volatile boolean healthy = true;
+        private volatile int pendingRequests;
+        private volatile boolean ended;
+
+        private FakeShell(File f) throws IOException, CoreException {
+            super(f);
+        }
+
+        @Override
+        protected ProcessCreationInfo createServerProcess(IInterpreterInfo interpreter, int port) {
+            return null;
+        }
+
+        @Override
+        void startIt(IInterpreterInfo interpreter) {
+        }
+
+        @Override
+        boolean isHealthy() {
+            return healthy;
+        }
+
+        @Override
+        int getPendingRequests() {
+            return pendingRequests;
+        }
+
+        @Override
+        void reserve() {
+            pendingRequests++;
+        }
+
+        @Override
+        void endIt() {
+            ended = true;
+        }
+
+        @Override
+        void shutdown() {
+            ended = true;
+        }
+    }
+
+    private File serverFile;
+    private IInterpreterInfo interpreter;
+    private final List<FakeShell> created = new ArrayList<FakeShell>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverFile = File.createTempFile("shells_container_test", ".py");
+        interpreter = new InterpreterInfo("2.7", "shells_container_test_" + getName(), new ArrayList<String>());
+        ShellsContainer.shellCreatorForTests = new ICallback<AbstractShell, Integer>() {
+
+            @Override
+            public AbstractShell call(Integer relatedTo) {
+                try {
+                    FakeShell shell = new FakeShell(serverFile);
+                    created.add(shell);
+                    return shell;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ShellsContainer.shellCreatorForTests = null;
+        for (int i = 0; i < AbstractShell.MAX_OTHER_THREADS_SHELLS; i++) {
+            ShellsContainer.stopServerShell(interpreter, AbstractShell.OTHER_THREADS_SHELL + i);
+        }
+        serverFile.delete();
+        super.tearDown();
+    }
+
+    private FakeShell getShell(int poolSize) throws Exception {
+        return (FakeShell) ShellsContainer.getPooledServerShell(interpreter, IPythonNature.INTERPRETER_TYPE_PYTHON,
+                poolSize);
+    }
+
+    public void testPoolSizing() throws Exception {
+        FakeShell shell1 = getShell(2);
+        assertEquals(1, shell1.pendingRequests); //reserved when returned
+        shell1.pendingRequests = 0; //request finished
+        assertSame(shell1, getShell(2)); //idle: reused
+
+        //Still reserved by the previous caller: a new shell is created while the pool isn't full (i.e.: concurrent
+        //callers don't get the same idle shell).
+        FakeShell shell2 = getShell(2);
+        assertNotSame(shell1, shell2);
+        assertEquals(1, shell2.pendingRequests);
+        assertEquals(2, created.size());
+
+        //Pool full: the shell with less pending requests is used.
+        shell1.pendingRequests = 1;
+        shell2.pendingRequests = 2;
+        assertSame(shell1, getShell(2));
+        shell1.pendingRequests = 3;
+        assertSame(shell2, getShell(2));
+        assertEquals(2, created.size());
+
+        //The pool size is limited to the max number of shells.
+        for (FakeShell shell : created) {
+            shell.pendingRequests = 1;
+        }
+        for (int i = 0; i < AbstractShell.MAX_OTHER_THREADS_SHELLS + 2; i++) {
+            getShell(AbstractShell.MAX_OTHER_THREADS_SHELLS + 2).pendingRequests = 1;
+        }
+        assertEquals(AbstractShell.MAX_OTHER_THREADS_SHELLS, created.size());
+    }
+
+    public void testHealthEviction() throws Exception {
+        FakeShell shell1 = getShell(1);
+        shell1.pendingRequests = 0;
+        shell1.healthy = false;
+
+        //Not healthy and idle: removed from the pool (and a new one is started).
+        FakeShell shell2 = getShell(1);
+        assertNotSame(shell1, shell2);
+        assertTrue(shell1.ended);
+        assertFalse(shell2.ended);
+
+        //Not healthy but with pending requests: kept until the requests finish.
+        shell2.healthy = false;
+        shell2.pendingRequests = 1;
+        assertSame(shell2, getShell(1));
+        assertFalse(shell2.ended);
+        assertEquals(2, created.size());
+    }
+}